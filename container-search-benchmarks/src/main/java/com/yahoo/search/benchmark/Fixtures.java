@@ -0,0 +1,101 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.io.reader.NamedReader;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.config.QueryProfileXMLReader;
+import com.yahoo.search.result.Hit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Access to the fixtures the benchmarks run against, which are resources in the fixtures/ directory.
+ */
+class Fixtures {
+
+    /** The names of the query profile fixtures, in fixtures/queryprofiles/ */
+    private static final List<String> queryProfiles = Arrays.asList("default", "production");
+
+    private Fixtures() {}
+
+    /** Returns the non-empty lines of a fixture */
+    static List<String> lines(String name) {
+        try (BufferedReader reader = reader(name)) {
+            return reader.lines().filter(line -> ! line.trim().isEmpty()).collect(Collectors.toList());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns the bytes of a fixture given as lines of hex digits */
+    static byte[] hexBytes(String name) {
+        String hex = String.join("", lines(name));
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        return bytes;
+    }
+
+    /** Returns the query profiles in fixtures/queryprofiles/, not yet compiled */
+    static QueryProfileRegistry queryProfiles() {
+        List<NamedReader> readers = new ArrayList<>();
+        for (String name : queryProfiles)
+            readers.add(new NamedReader(name + ".xml", reader("queryprofiles/" + name + ".xml")));
+        try {
+            return new QueryProfileXMLReader().read(Collections.emptyList(), readers);
+        }
+        finally {
+            NamedReader.closeAll(readers);
+        }
+    }
+
+    /**
+     * Returns the hits in fixtures/hits.tsv, where each line contains
+     * id, relevance, title, body, year and url separated by tabs
+     */
+    static List<Hit> hits() {
+        List<Hit> hits = new ArrayList<>();
+        for (String line : lines("hits.tsv")) {
+            String[] fields = line.split("\t");
+            Hit hit = new Hit(fields[0], Double.parseDouble(fields[1]));
+            hit.setField("title", fields[2]);
+            hit.setField("body", fields[3]);
+            hit.setField("year", Integer.parseInt(fields[4]));
+            hit.setField("url", fields[5]);
+            hit.setFilled("default");
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    /** Returns a result containing the hits in fixtures/hits.tsv */
+    static Result result() {
+        List<Hit> hits = hits();
+        Result result = new Result(new Query("/?query=fixture&hits=" + hits.size()));
+        for (Hit hit : hits)
+            result.hits().add(hit);
+        result.setTotalHitCount(hits.size() * 100);
+        return result;
+    }
+
+    private static BufferedReader reader(String name) {
+        InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (in == null)
+            throw new IllegalArgumentException("No fixture '" + name + "'");
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,95 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts the hits in fixtures/hits.tsv in a hit group, and merges them from a number of
+ * sources the way results from multiple search nodes or federated sources are merged:
+ * Either by adding all and trimming, or by a k-way merge of sorted groups with {@link HitGroup#addMerged}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HitGroupBenchmark {
+
+    /** The number of sources to merge hits from */
+    @Param({"2", "8"})
+    public int sources;
+
+    /** The number of hits to keep after merging */
+    @Param({"10", "100"})
+    public int hits;
+
+    private List<Hit> shuffledHits;
+    private List<List<Hit>> sourceHits;
+    private List<HitGroup> sourceGroups;
+
+    @Setup
+    public void setup() {
+        List<Hit> fixtureHits = Fixtures.hits();
+        shuffledHits = new ArrayList<>(fixtureHits);
+        Collections.shuffle(shuffledHits, new Random(17));
+
+        // Distribute the hits over the sources while keeping each source sorted by relevance
+        sourceHits = new ArrayList<>();
+        for (int i = 0; i < sources; i++)
+            sourceHits.add(new ArrayList<>());
+        for (int i = 0; i < fixtureHits.size(); i++)
+            sourceHits.get(i % sources).add(fixtureHits.get(i));
+
+        sourceGroups = new ArrayList<>();
+        for (int i = 0; i < sources; i++) {
+            HitGroup group = new HitGroup("source" + i);
+            group.addAll(sourceHits.get(i));
+            group.sort();
+            sourceGroups.add(group);
+        }
+    }
+
+    @Benchmark
+    public HitGroup sort() {
+        HitGroup group = new HitGroup("sorted");
+        group.addAll(shuffledHits);
+        group.sort();
+        return group;
+    }
+
+    @Benchmark
+    public HitGroup merge() {
+        HitGroup group = new HitGroup("merged");
+        for (List<Hit> source : sourceHits)
+            group.addAll(source);
+        group.trim(0, hits);
+        return group;
+    }
+
+    @Benchmark
+    public HitGroup addMerged() {
+        HitGroup group = new HitGroup("merged");
+        group.addMerged(sourceGroups, hits);
+        return group;
+    }
+
+}
@@ -0,0 +1,62 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.search.Result;
+import com.yahoo.search.rendering.JsonRenderer;
+import com.yahoo.search.searchchain.Execution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a result containing the hits in fixtures/hits.tsv as JSON
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonRendererBenchmark {
+
+    private JsonRenderer prototype;
+    private Result result;
+    private Execution execution;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setup() {
+        prototype = new JsonRenderer();
+        result = Fixtures.result();
+        execution = new Execution(Execution.Context.createContextStub());
+        output = new ByteArrayOutputStream(1024 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        prototype.deconstruct();
+    }
+
+    /** Renders with a clone of the renderer, as is done for each request in the container */
+    @Benchmark
+    public int render() throws InterruptedException, ExecutionException {
+        JsonRenderer renderer = (JsonRenderer)prototype.clone();
+        renderer.init();
+        output.reset();
+        renderer.render(output, result, execution, null).get();
+        return output.size();
+    }
+
+}
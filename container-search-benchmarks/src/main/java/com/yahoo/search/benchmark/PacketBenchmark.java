@@ -0,0 +1,56 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.fs4.PacketDecoder;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes query packets for the requests in fixtures/requests.txt and decodes the
+ * query result packet in fixtures/query-result-packet.hex
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PacketBenchmark {
+
+    private List<Query> queries;
+    private byte[] queryResultPacket;
+
+    @Setup
+    public void setup() {
+        queries = Fixtures.lines("requests.txt").stream().map(Query::new).collect(Collectors.toList());
+        queryResultPacket = Fixtures.hexBytes("query-result-packet.hex");
+    }
+
+    @Benchmark
+    public void encodeQueryPackets(Blackhole blackhole) {
+        for (Query query : queries)
+            blackhole.consume(QueryPacket.create(query).grantEncodingBuffer(1));
+    }
+
+    @Benchmark
+    public void decodeQueryResultPacket(Blackhole blackhole) {
+        blackhole.consume(PacketDecoder.decode(ByteBuffer.wrap(queryResultPacket)));
+    }
+
+}
@@ -0,0 +1,58 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.jdisc.http.HttpRequest.Method;
+import com.yahoo.search.Query;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates queries from the requests in fixtures/requests.txt, with and without a query profile
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class QueryBenchmark {
+
+    private List<HttpRequest> requests;
+    private CompiledQueryProfile profile;
+
+    @Setup
+    public void setup() {
+        requests = Fixtures.lines("requests.txt").stream()
+                           .map(uri -> HttpRequest.createTestRequest(uri, Method.GET))
+                           .collect(Collectors.toList());
+        profile = Fixtures.queryProfiles().compile().getComponent("production");
+    }
+
+    @Benchmark
+    public void createQuery(Blackhole blackhole) {
+        for (HttpRequest request : requests)
+            blackhole.consume(new Query(request));
+    }
+
+    @Benchmark
+    public void createQueryWithProfile(Blackhole blackhole) {
+        for (HttpRequest request : requests)
+            blackhole.consume(new Query(request, profile));
+    }
+
+}
@@ -0,0 +1,82 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.benchmark;
+
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles the query profiles in fixtures/queryprofiles/ and looks up values in them
+ * for each combination of variant dimension values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class QueryProfileBenchmark {
+
+    private static final List<String> names = Arrays.asList("hits", "timeout", "model.defaultIndex", "model.type",
+                                                            "model.language", "ranking.profile",
+                                                            "ranking.features.query(freshness)",
+                                                            "presentation.summary", "source.music.hits",
+                                                            "nonexisting");
+
+    private QueryProfileRegistry registry;
+    private CompiledQueryProfile profile;
+    private List<Map<String, String>> contexts;
+
+    @Setup
+    public void setup() {
+        registry = Fixtures.queryProfiles();
+        registry.freeze();
+        profile = registry.compile().getComponent("production");
+
+        contexts = new ArrayList<>();
+        for (String region : Arrays.asList("us", "eu", "asia")) {
+            for (String device : Arrays.asList("mobile", "desktop")) {
+                Map<String, String> context = new HashMap<>();
+                context.put("region", region);
+                context.put("device", device);
+                contexts.add(context);
+            }
+        }
+    }
+
+    @Benchmark
+    public void compile(Blackhole blackhole) {
+        blackhole.consume(registry.compile());
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        for (Map<String, String> context : contexts)
+            for (String name : names)
+                blackhole.consume(profile.get(name, context));
+    }
+
+    @Benchmark
+    public void listValues(Blackhole blackhole) {
+        for (Map<String, String> context : contexts)
+            blackhole.consume(profile.listValues("ranking", context));
+    }
+
+}
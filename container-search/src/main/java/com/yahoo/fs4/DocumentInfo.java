@@ -34,6 +34,13 @@ public class DocumentInfo implements Cloneable {
         this.distributionKey = distributionKey;
     }
 
+    public DocumentInfo(GlobalId globalId, double metric, int partId, int distributionKey) {
+        this.globalId = globalId;
+        this.metric = metric;
+        this.partId = partId;
+        this.distributionKey = distributionKey;
+    }
+
     private double decodeMetric(ByteBuffer buffer) {
         return buffer.getDouble();
     }
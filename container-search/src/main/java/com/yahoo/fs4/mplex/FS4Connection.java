@@ -7,7 +7,11 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,19 +37,31 @@ public class FS4Connection implements Connection
     private Listener listener;
     private SocketChannel channel;
 
+    /** The max number of buffers to write in one gathering write */
+    private static final int maxGatheredBuffers = 64;
+
+    /** The largest extended (heap) read buffer we keep for reuse rather than reallocating for each large packet */
+    private static final int maxRetainedReadBufferSize = 8 * 1024 * 1024;
+
+    /** Whether we have write interest in the selector. Only accessed by the thread holding the writing flag */
     private boolean shouldWrite = false;
 
     private static int idCounter = 1;
     private int idNumber;
     private int maxInitialSize = 1024;
 
-    // outbound data
-    private ByteBuffer writeBuffer;
-    private LinkedList<ByteBuffer> writeBufferList = new LinkedList<>();
+    // outbound data: Any thread may add to the write queue, but only the thread which
+    // has acquired the writing flag moves buffers to pendingWrites and writes them
+    private final ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private final ByteBuffer[] gatheredWrites = new ByteBuffer[maxGatheredBuffers];
 
     // inbound data
     private ByteBuffer fixedReadBuffer = ByteBuffer.allocateDirect(256 * 1024);
     private ByteBuffer readBuffer = fixedReadBuffer;
+    /** An extended read buffer not currently in use, kept to avoid reallocating it for the next large packet */
+    private ByteBuffer spareReadBuffer = null;
 
     private volatile boolean valid = true;
 
@@ -72,25 +88,18 @@ public class FS4Connection implements Connection
     public void sendPacket (BasicPacket packet, Integer channelId) throws IOException {
         ByteBuffer buffer = packet.grantEncodingBuffer(channelId.intValue(), maxInitialSize);
         ByteBuffer viewForPacketListener = buffer.slice();
-        synchronized (this) {
-            if (!(valid && channel.isOpen())) {
-                throw new IllegalStateException("Connection is not valid. " +
-                        "Address = " + backend.getAddress()  +
-                        ", valid = " + valid +
-                        ", isOpen = " + channel.isOpen());
-            }
+        if (!(valid && channel.isOpen())) {
+            throw new IllegalStateException("Connection is not valid. " +
+                    "Address = " + backend.getAddress()  +
+                    ", valid = " + valid +
+                    ", isOpen = " + channel.isOpen());
+        }
 
-            if (buffer.capacity() > maxInitialSize) {
-                maxInitialSize = buffer.limit();
-            }
-            if (writeBuffer == null) {
-                writeBuffer = buffer;
-            } else {
-                writeBufferList.addLast(buffer);
-                enableWrite();
-            }
-            write();
+        if (buffer.capacity() > maxInitialSize) {
+            maxInitialSize = buffer.limit();
         }
+        writeQueue.add(buffer);
+        write();
 
         if (packetListener != null)
             packetListener.packetSent(backend.getChannel(channelId), packet, viewForPacketListener);
@@ -98,54 +107,64 @@ public class FS4Connection implements Connection
 
 
     /**
-     * The write event handler.  This can be called both from the client
-     * thread and from the IO thread, so it needs to be synchronized.  It
-     * assumes that IO is nonblocking, and will attempt to keep writing
-     * data until the system won't accept more data.
-     *
+     * The write event handler.  This can be called both from client
+     * threads and from the IO thread. Only one thread writes at any time:
+     * A thread finding another thread writing just returns, as the writing
+     * thread will pick up the buffers it queued.  It assumes that IO is
+     * nonblocking, and will attempt to keep writing data, gathering all
+     * queued buffers in each write, until the system won't accept more data.
      */
-    public synchronized void write () throws IOException {
+    public void write () throws IOException {
         if (! channel.isOpen()) {
             throw new IllegalStateException("Channel not open in write(), address=" + backend.getAddress());
         }
 
-        try {
-            int bytesWritten = 0;
-            boolean isFinished = false;
-            do {
-                // if writeBuffer is not set we need to fetch the next buffer
-                if (writeBuffer == null) {
-
-                    // if the list is empty, signal the selector we do not need
-                    // to do any writing for a while yet and bail
-                    if (writeBufferList.isEmpty()) {
-                        disableWrite();
-                        isFinished = true;
-                        break;
-                    }
-                    writeBuffer = writeBufferList.removeFirst();
-                }
-
-                // invariants: we have a writeBuffer
-                bytesWritten = channel.write(writeBuffer);
+        do {
+            if ( ! writing.compareAndSet(false, true)) return; // the thread which is writing will send our buffers
 
-                // buffer drained so we forget it and see what happens when we
-                // go around.  if indeed we go around
-                if (!writeBuffer.hasRemaining()) {
-                    writeBuffer = null;
+            try {
+                if ( ! writePending()) {
+                    enableWrite(); // wait for the selector to tell us we can write more
+                    return;
                 }
-            } while (bytesWritten > 0);
-            if (!isFinished) {
-                enableWrite();
+                disableWrite();
+            } catch (IOException e) {
+                log.log(LogLevel.DEBUG, "Failed writing to channel for backend "  + backend.getAddress() +
+                        ". Closing channel", e);
+                try {
+                    close();
+                } catch (IOException ignored) {}
+
+                throw e;
+            } finally {
+                writing.set(false);
             }
-        } catch (IOException e) {
-            log.log(LogLevel.DEBUG, "Failed writing to channel for backend "  + backend.getAddress() +
-                    ". Closing channel", e);
-            try {
-                close();
-            } catch (IOException ignored) {}
+        } while ( ! writeQueue.isEmpty()); // buffers may have been queued after we drained but before we let go
+    }
 
-            throw e;
+    /**
+     * Writes as much of the queued data as the channel will accept.
+     * Must only be called by the thread holding the writing flag.
+     *
+     * @return true if all queued data was written, false if the channel would not accept more
+     */
+    private boolean writePending() throws IOException {
+        while (true) {
+            for (ByteBuffer buffer; pendingWrites.size() < maxGatheredBuffers && (buffer = writeQueue.poll()) != null; )
+                pendingWrites.addLast(buffer);
+            if (pendingWrites.isEmpty()) return true;
+
+            int count = 0;
+            for (Iterator<ByteBuffer> i = pendingWrites.iterator(); i.hasNext() && count < maxGatheredBuffers; )
+                gatheredWrites[count++] = i.next();
+            long bytesWritten = channel.write(gatheredWrites, 0, count);
+            Arrays.fill(gatheredWrites, 0, count, null);
+
+            // forget the drained buffers
+            while ( ! pendingWrites.isEmpty() && ! pendingWrites.peekFirst().hasRemaining())
+                pendingWrites.removeFirst();
+
+            if (bytesWritten == 0 && ! pendingWrites.isEmpty()) return false;
         }
     }
 
@@ -179,6 +198,8 @@ public class FS4Connection implements Connection
                 if (readBuffer == fixedReadBuffer) {
                     bytesRead = channel.read(readBuffer);
                 } else {
+                    // stage through the fixed direct buffer, as reading into a heap buffer makes NIO
+                    // allocate and cache a temporary direct buffer as large as the heap buffer
                     fixedReadBuffer.clear();
                     if (readBuffer.remaining() < fixedReadBuffer.capacity()) {
                         fixedReadBuffer.limit(readBuffer.remaining());
@@ -340,7 +361,14 @@ public class FS4Connection implements Connection
             size = readBuffer.capacity() * 2;
         }
 
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp;
+        if (spareReadBuffer != null && spareReadBuffer.capacity() >= size) {
+            tmp = spareReadBuffer;
+            tmp.clear();
+            spareReadBuffer = null;
+        } else {
+            tmp = ByteBuffer.allocate(size);
+        }
         tmp.put(readBuffer);
         log.fine("Extended readBuffer to " + size + " bytes"
                  + "from " + readBuffer.capacity() + " bytes");
@@ -358,6 +386,10 @@ public class FS4Connection implements Connection
             return;
         }
         log.fine("Resetting readbuffer");
+        if (readBuffer.capacity() <= maxRetainedReadBufferSize
+            && (spareReadBuffer == null || readBuffer.capacity() > spareReadBuffer.capacity())) {
+            spareReadBuffer = readBuffer;
+        }
         readBuffer = fixedReadBuffer;
     }
 
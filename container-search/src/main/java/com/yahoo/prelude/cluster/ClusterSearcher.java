@@ -16,6 +16,7 @@ import com.yahoo.fs4.mplex.Backend;
 import com.yahoo.container.search.LegacyEmulationConfig;
 import com.yahoo.net.HostName;
 import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.dispatch.SearchCluster;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.Ping;
@@ -33,6 +34,7 @@ import com.yahoo.search.Searcher;
 import com.yahoo.search.config.ClusterConfig;
 import com.yahoo.search.query.ParameterParser;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.HitGroup;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.statistics.Statistics;
 import com.yahoo.statistics.Value;
@@ -129,7 +131,11 @@ public class ClusterSearcher extends Searcher {
         maxQueryCacheTimeout = ParameterParser.asMilliSeconds(clusterConfig.maxQueryCacheTimeout(),
                                                               DEFAULT_MAX_QUERY_CACHE_TIMEOUT);
 
-        CacheParams cacheParams = new CacheParams(createCache(clusterConfig, clusterModelName));
+        initGroupStatistics(dispatcher.searchCluster(), clusterModelName, manager);
+
+        CacheControl cacheControl = createCache(clusterConfig, clusterModelName);
+        initCacheStatistics(cacheControl, clusterModelName, manager);
+        CacheParams cacheParams = new CacheParams(cacheControl);
         SummaryParameters docSumParams = new SummaryParameters(qrsConfig
                 .com().yahoo().prelude().fastsearch().FastSearcher().docsum()
                 .defaultclass());
@@ -274,6 +280,29 @@ public class ClusterSearcher extends Searcher {
         return new CacheControl(config.cacheSize(), config.cacheTimeout());
     }
 
+    /** Samples the load of each search group each logging cycle */
+    private static void initGroupStatistics(SearchCluster searchCluster, String clusterModelName, Statistics manager) {
+        for (SearchCluster.Group group : searchCluster.groups().values()) {
+            String prefix = clusterModelName + ".group" + group.id();
+            new Value(prefix + ".inflight_requests", manager,
+                      new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                            .setCallback((handle, firstTime) -> ((Value)handle).put(group.inflightRequests())));
+            new Value(prefix + ".latency", manager,
+                      new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                            .setCallback((handle, firstTime) -> ((Value)handle).put(group.decayedLatency())));
+        }
+    }
+
+    /** Samples the packet cache counters which are not updated per query each logging cycle */
+    private static void initCacheStatistics(CacheControl cache, String clusterModelName, Statistics manager) {
+        new Value(clusterModelName + ".cache_evictions", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback((handle, firstTime) -> ((Value)handle).put(cache.evictions())));
+        new Value(clusterModelName + ".cache_lock_wait", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback((handle, firstTime) -> ((Value)handle).put(cache.lockWaitMillis())));
+    }
+
     public String getClusterModelName() {
         return clusterModelName;
     }
@@ -484,10 +513,19 @@ public class ClusterSearcher extends Searcher {
             return searcher.search(queries.get(0), execution);
         } else {
             Result mergedResult = new Result(query.clone());
+            List<HitGroup> results = new ArrayList<>(queries.size());
             for (Query q : queries) {
                 Result result = searcher.search(q, execution);
                 mergedResult.mergeWith(result);
-                mergedResult.hits().addAll(result.hits().asUnorderedHits());
+                results.add(result.hits());
+            }
+            if (mergedResult.getHitOrderer() != null) {
+                // Sorting needs the sort attributes of all the hits, which are filled below
+                for (HitGroup result : results)
+                    mergedResult.hits().addAll(result.asUnorderedHits());
+            }
+            else {
+                mergedResult.hits().addMerged(results, query.getOffset() + query.getHits());
             }
             // Should we trim the merged result?
             if (query.getOffset() > 0 || query.getHits() < mergedResult.hits().size()) {
@@ -21,13 +21,13 @@ public class CacheControl {
     /** Whether this CacheControl actually should cache hits at all. */
     private final boolean activeCache;
 
-    /** Direct unsychronized cache access */
-    private final PacketCache packetCache;
+    /** The cache, which is safe for concurrent access */
+    private final SegmentedPacketCache packetCache;
 
     public CacheControl(int sizeMegaBytes, double cacheTimeOutSeconds) {
         activeCache = sizeMegaBytes > 0 && cacheTimeOutSeconds > 0.0d;
         if (activeCache) {
-            packetCache = new PacketCache(sizeMegaBytes, 0, cacheTimeOutSeconds);
+            packetCache = new SegmentedPacketCache(sizeMegaBytes, cacheTimeOutSeconds);
         } else {
             packetCache = null;
         }
@@ -38,16 +38,25 @@ public class CacheControl {
         return packetCache.getCapacity();
     }
 
+    /** Returns the number of cache lookups which found a valid entry */
+    public long hits() { return activeCache ? packetCache.hits() : 0; }
+
+    /** Returns the number of cache lookups which did not find a valid entry */
+    public long misses() { return activeCache ? packetCache.misses() : 0; }
+
+    /** Returns the number of entries evicted from the cache to stay within capacity */
+    public long evictions() { return activeCache ? packetCache.evictions() : 0; }
+
+    /** Returns the total time in milliseconds spent waiting for cache locks */
+    public long lockWaitMillis() { return activeCache ? packetCache.lockWaitMillis() : 0; }
+
     public final boolean useCache(Query query) {
         return (activeCache && !query.getNoCache());
     }
 
     public final PacketWrapper lookup(CacheKey key, Query query) {
         if ((key != null) && useCache(query)) {
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                return packetCache.get(key, now);
-            }
+            return packetCache.get(key, System.currentTimeMillis());
         }
         return null;
     }
@@ -65,9 +74,7 @@ public class CacheControl {
         oldTimestamp = wrapper.getTimestamp();
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addResultPacket(resultPacket);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, oldTimestamp);
-        }
+        packetCache.put(key, wrapper, oldTimestamp);
     }
 
     // updates phases after first phase phase in multi phase search
@@ -79,9 +86,7 @@ public class CacheControl {
 
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addDocsums(packetKeys, packets);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, wrapper.getTimestamp());
-        }
+        packetCache.put(key, wrapper, wrapper.getTimestamp());
     }
 
     void cache(CacheKey key, Query query, DocsumPacketKey[] packetKeys, Packet[] packets) {
@@ -94,16 +99,12 @@ public class CacheControl {
         if (wrapper == null) {
             wrapper = new PacketWrapper(key, packetKeys,packets);
             long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, now);
-            }
+            packetCache.put(key, wrapper, now);
         } else {
             wrapper = (PacketWrapper) wrapper.clone();
             wrapper.addResultPacket((QueryResultPacket) packets[0]);
             wrapper.addDocsums(packetKeys, packets, 1);
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, wrapper.getTimestamp());
-            }
+            packetCache.put(key, wrapper, wrapper.getTimestamp());
         }
     }
 
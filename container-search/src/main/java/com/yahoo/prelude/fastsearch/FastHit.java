@@ -285,7 +285,10 @@ public class FastHit extends Hit {
             } else {
                 Inspector f = value.field(fieldName);
                 if (field.getEmulConfig().forceFillEmptyFields() || f.valid()) {
-                    setDocsumFieldIfNotPresent(fieldName, field.convert(f));
+                    if (field instanceof VariableLengthField) // defer conversion until the field is accessed, if ever
+                        setDocsumFieldIfNotPresent(fieldName, new LazySlimeField(field, f));
+                    else
+                        setDocsumFieldIfNotPresent(fieldName, field.convert(f));
                 }
             }
         }
@@ -418,6 +421,34 @@ public class FastHit extends Hit {
 
     }
 
+    /**
+     * Represents a field value residing in a slime docsum, which is converted to the
+     * value of the field type on first access. Text fields can also be fetched as raw
+     * UTF-8 without conversion.
+     */
+    private static class LazySlimeField extends LazyValue {
+
+        private final DocsumField fieldType;
+        private final Inspector value;
+
+        LazySlimeField(DocsumField fieldType, Inspector value) {
+            this.fieldType = fieldType;
+            this.value = value;
+        }
+
+        Object getValue(String fieldName) {
+            return fieldType.convert(value);
+        }
+
+        RawField getFieldAsUtf8(String fieldName) {
+            if (value.type() != Type.STRING) return null;
+            if ( ! (fieldType instanceof LongstringField || fieldType instanceof XMLField || fieldType instanceof StringField))
+                return null;
+            return new RawField(fieldType, value.asUtf8());
+        }
+
+    }
+
     private static class LazyString extends LazyValue {
 
         private final Inspector value;
@@ -24,8 +24,10 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.Dispatcher;
 import com.yahoo.search.dispatch.SearchCluster;
+import com.yahoo.search.dispatch.SearchResponse;
 import com.yahoo.search.grouping.GroupingRequest;
 import com.yahoo.search.grouping.request.GroupingOperation;
+import com.yahoo.search.grouping.vespa.GroupingExecutor;
 import com.yahoo.search.query.Ranking;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
@@ -56,6 +58,13 @@ public class FastSearcher extends VespaBackEndSearcher {
     /** If this is turned on this will make search queries directly to the local search node when possible */
     private final static CompoundName dispatchDirect = new CompoundName("dispatch.direct");
 
+    /**
+     * If this is turned on this will search all the nodes of a group directly and merge their results
+     * in this container, instead of searching through the dispatch node, when possible.
+     * This requires summaries to be filled over rpc (dispatch.summaries).
+     */
+    private final static CompoundName dispatchInternal = new CompoundName("dispatch.internal");
+
     /** The compression method which will be used with rpc dispatch. "lz4" (default) and "none" is supported. */
     private final static CompoundName dispatchCompression = new CompoundName("dispatch.compression");
 
@@ -172,10 +181,17 @@ public class FastSearcher extends VespaBackEndSearcher {
         try {
             if (dispatcher.searchCluster().groupSize() == 1)
                 forceSinglePassGrouping(query);
-            channel = chooseBackend(query).openChannel();
-            channel.setQuery(query);
 
-            Result result = searchTwoPhase(channel, query, queryPacket, cacheKey);
+            Result result;
+            Optional<SearchCluster.Group> dispatchGroup = chooseDispatchGroup(query);
+            if (dispatchGroup.isPresent()) {
+                result = searchGroup(dispatchGroup.get(), query);
+            }
+            else {
+                channel = chooseBackend(query).openChannel();
+                channel.setQuery(query);
+                result = searchTwoPhase(channel, query, queryPacket, cacheKey);
+            }
 
             if (query.properties().getBoolean(Ranking.RANKFEATURES, false)) {
                 // There is currently no correct choice for which
@@ -236,6 +252,43 @@ public class FastSearcher extends VespaBackEndSearcher {
                                           directDispatchRecipient.get().fs4port());
     }
 
+    /**
+     * Returns the group to search directly from this container, bypassing the dispatch node,
+     * or empty if this query should be sent to the dispatch node.
+     */
+    private Optional<SearchCluster.Group> chooseDispatchGroup(Query query) {
+        if ( ! query.properties().getBoolean(dispatchInternal, false)) return Optional.empty();
+
+        // Hits must be filled from the node they came from, which is only supported over rpc
+        if ( ! wantsRPCSummaryFill(query)) return Optional.empty();
+
+        // Merging of grouping results and sort data is only done by the dispatch node
+        if (GroupingExecutor.hasGroupingList(query)) return Optional.empty();
+        if (query.getRanking().getSorting() != null) return Optional.empty();
+
+        // Fall back to the dispatch node if no group is complete, which is handled with reduced coverage there
+        Optional<SearchCluster.Group> group = dispatcher.searchCluster().nextDispatchGroup();
+        if (group.isPresent())
+            query.trace(false, 2, "Dispatching internally to ", group.get());
+        return group;
+    }
+
+    /** Searches all the nodes of a group and merges their responses into a result */
+    private Result searchGroup(SearchCluster.Group group, Query query) {
+        SearchResponse response = dispatcher.search(query, group);
+
+        if (query.getPresentation().getSummary() == null)
+            query.getPresentation().setSummary(getDefaultDocsumClass());
+
+        Result result = new Result(query);
+        for (ErrorMessage error : response.errors())
+            result.hits().addError(error);
+        result.setTotalHitCount(response.totalHitCount());
+        response.coverage().ifPresent(result::setCoverage);
+        addUnfilledHits(result, response.documents(), false, null, null);
+        return result;
+    }
+
     /**
      * Only used to fill the sddocname field when using direct dispatching as that is normally done in VespaBackEndSearcher.decodeSummary
      * @param result The result
@@ -33,6 +33,9 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
     /** The max age for a valid cache entry, 0 mean infinite */
     private final long maxAge;
 
+    /** The number of entries removed from this to make room for new ones */
+    private long evictions = 0;
+
     private static final Logger log = Logger.getLogger(PacketCache.class.getName());
 
     public void clear() {
@@ -82,6 +85,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
     {
         if (totalSize > capacity) {
             totalSize -= eldest.getValue().getPacketsSize();
+            evictions++;
             return true;
         }
         return false;
@@ -93,6 +97,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
         for (Iterator<PacketWrapper> i = values().iterator(); i.hasNext();) {
             PacketWrapper eldestEntry = i.next();
             totalSize -= eldestEntry.getPacketsSize();
+            evictions++;
 
             i.remove();
             if (totalSize < capacity) {
@@ -132,7 +137,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
         }
 
         // don't insert if it is too big
-        if (size * 100 > capacity * maxCacheItemPercentage) {
+        if ((long) size * 100 > (long) capacity * maxCacheItemPercentage) {
             // removeField the old one since that is now stale.
             return remove(key);
         }
@@ -183,4 +188,9 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
         return totalSize;
     }
 
+    /** Returns the number of entries which has been evicted from this to stay within its capacity */
+    public long evictions() {
+        return evictions;
+    }
+
 }
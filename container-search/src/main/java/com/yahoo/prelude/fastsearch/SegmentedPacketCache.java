@@ -0,0 +1,186 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A packet cache which is split into a number of independently locked {@link PacketCache} segments,
+ * such that concurrent lookups of different keys do not contend on a single lock.
+ * Each segment does its own LRU eviction and byte accounting within an equal share of the total capacity.
+ * Since capacity is tracked per segment, the total capacity of this is not limited to 2 GB.
+ */
+public class SegmentedPacketCache {
+
+    /** The default max number of segments to use */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /** The smallest capacity in bytes we will give a single segment */
+    private static final int MIN_SEGMENT_BYTES = 1 << 20;
+
+    /** The max size of a cached item as a percentage of the total size */
+    private static final int MAX_CACHE_ITEM_PERCENTAGE = 1;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long capacity;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+
+    public SegmentedPacketCache(int capacityMegaBytes, double maxAge) {
+        this(capacityMegaBytes, maxAge, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Creates a segmented packet cache
+     *
+     * @param capacityMegaBytes the total cache size, measured in megabytes
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     * @param maxSegments the max number of segments to split this into. The actual number is the largest
+     *        power of two not larger than this which gives each segment at least a megabyte of capacity
+     */
+    public SegmentedPacketCache(int capacityMegaBytes, double maxAge, int maxSegments) {
+        if (capacityMegaBytes <= 0)
+            throw new IllegalArgumentException("Total cache size set to 0 or less megabytes. If no caching is desired, avoid creating this object instead.");
+        if (maxSegments < 1)
+            throw new IllegalArgumentException("A cache must have at least one segment, got " + maxSegments);
+
+        this.capacity = ((long)capacityMegaBytes) << 20;
+        int segmentCount = Integer.highestOneBit(maxSegments);
+        while (segmentCount > 1 && capacity / segmentCount < MIN_SEGMENT_BYTES)
+            segmentCount >>= 1;
+        int segmentCapacity = (int)Math.min(Integer.MAX_VALUE, capacity / segmentCount);
+
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(new PacketCache(0, segmentCapacity, maxAge));
+            // keep the max item size relative to the total capacity rather than to the segment
+            segments[i].cache.setMaxCacheItemPercentage(Math.min(100, MAX_CACHE_ITEM_PERCENTAGE * segmentCount));
+        }
+        segmentMask = segmentCount - 1;
+    }
+
+    /** Returns the entry for this key if present and not timed out at the given time, or null otherwise */
+    public PacketWrapper get(CacheKey key, long now) {
+        Segment segment = segmentOf(key);
+        PacketWrapper result;
+        lock(segment);
+        try {
+            result = segment.cache.get(key, now);
+        }
+        finally {
+            segment.lock.unlock();
+        }
+        if (result != null)
+            hits.increment();
+        else
+            misses.increment();
+        return result;
+    }
+
+    /**
+     * Adds an entry to this cache, unless its size is more than the max item percentage of the total size
+     *
+     * @param timestamp the timestamp for the first packet in the entry, unit milliseconds
+     */
+    public void put(CacheKey key, PacketWrapper value, long timestamp) {
+        Segment segment = segmentOf(key);
+        lock(segment);
+        try {
+            segment.cache.put(key, value, timestamp);
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            lock(segment);
+            try {
+                segment.cache.clear();
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /** Returns the total capacity of this in megabytes */
+    public int getCapacity() { return (int)(capacity >> 20); }
+
+    /** Returns the total capacity of this in bytes */
+    public long getByteCapacity() { return capacity; }
+
+    /** Returns the number of segments of this */
+    public int segmentCount() { return segments.length; }
+
+    /** Returns the number of lookups in this which found a valid entry */
+    public long hits() { return hits.sum(); }
+
+    /** Returns the number of lookups in this which did not find a valid entry */
+    public long misses() { return misses.sum(); }
+
+    /** Returns the total time, in milliseconds, threads have spent waiting for a segment lock */
+    public long lockWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.sum()); }
+
+    /** Returns the total number of entries evicted to stay within capacity */
+    public long evictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            lock(segment);
+            try {
+                evictions += segment.cache.evictions();
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        return evictions;
+    }
+
+    /** Returns the current number of bytes of packets in this cache */
+    public long totalPacketSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            lock(segment);
+            try {
+                size += segment.cache.totalPacketSize();
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentOf(CacheKey key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16); // spread the high bits, as we only use the lowest
+        return segments[hash & segmentMask];
+    }
+
+    /** Acquires the lock of this segment, and records the wait time only if the lock is contended */
+    private void lock(Segment segment) {
+        if (segment.lock.tryLock()) return;
+
+        long start = System.nanoTime();
+        segment.lock.lock();
+        lockWaitNanos.add(System.nanoTime() - start);
+    }
+
+    private static final class Segment {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final PacketCache cache;
+
+        Segment(PacketCache cache) {
+            this.cache = cache;
+        }
+
+    }
+
+}
@@ -257,6 +257,12 @@ public class BlendingSearcher extends Searcher {
 
     private Result blendResultsDirectly(Result result, Query q, int offset,
                                         int hits, List<HitGroup> groups, Execution execution) {
+        if (q.getRanking().getSorting() == null) { // the hits of each group are sorted already: Merge them
+            result.hits().addMerged(groups, offset + hits);
+            result.hits().trim(offset, hits);
+            return result;
+        }
+
         DocumentMerger m = new BasicMerger(result, groups.get(0));
 
         m.scanResult(execution);
@@ -0,0 +1,139 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A map of results which keeps the estimated total size of its content below a given maximum
+ * by evicting the least recently used entries.
+ * <p>
+ * Thread safe.
+ */
+final class ResultCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+    private final long maxSizeBytes;
+    private final long maxEntrySizeBytes;
+
+    private long sizeBytes = 0;
+
+    ResultCache(long maxSizeBytes, long maxEntrySizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxEntrySizeBytes = maxEntrySizeBytes;
+    }
+
+    /** Returns the entry of the given key, or null if none */
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds an entry, replacing any previous entry with this key
+     *
+     * @return whether the entry was added, which it is not if it is larger than the max entry size
+     */
+    synchronized boolean put(String key, Entry entry) {
+        if (entry.sizeBytes() > maxEntrySizeBytes) return false;
+
+        removed(entries.put(key, entry));
+        sizeBytes += entry.sizeBytes();
+        for (Iterator<Entry> i = entries.values().iterator(); sizeBytes > maxSizeBytes && i.hasNext(); ) {
+            removed(i.next());
+            i.remove();
+        }
+        return true;
+    }
+
+    /**
+     * Removes all entries which may contain documents of the given type,
+     * that is those produced by queries restricted to this type or not restricted at all
+     *
+     * @return the number of entries removed
+     */
+    synchronized int invalidate(String documentType) {
+        int count = 0;
+        for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+            Entry entry = i.next();
+            if ( ! entry.mayContain(documentType)) continue;
+            removed(entry);
+            i.remove();
+            count++;
+        }
+        return count;
+    }
+
+    /** Removes all entries */
+    synchronized void invalidateAll() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    /** Returns the number of entries in this */
+    synchronized int size() { return entries.size(); }
+
+    /** Returns the estimated total size of the entries in this */
+    synchronized long sizeBytes() { return sizeBytes; }
+
+    private void removed(Entry entry) {
+        if (entry != null)
+            sizeBytes -= entry.sizeBytes();
+    }
+
+    /** A cached result. The result itself is never modified or returned. */
+    static final class Entry {
+
+        private final Result result;
+        private final long sizeBytes;
+        private final long createdMillis;
+        private final Set<String> restrict;
+        private final AtomicBoolean revalidating = new AtomicBoolean(false);
+
+        /**
+         * Creates an entry
+         *
+         * @param result the result to cache, which must not be modified after this
+         * @param sizeBytes the estimated size of the result
+         * @param createdMillis the time the result was created
+         * @param restrict the document types the query producing this was restricted to, or empty if all
+         */
+        Entry(Result result, long sizeBytes, long createdMillis, Set<String> restrict) {
+            this.result = result;
+            this.sizeBytes = sizeBytes;
+            this.createdMillis = createdMillis;
+            this.restrict = Collections.unmodifiableSet(restrict);
+        }
+
+        /** Returns a copy of the cached result which belongs to the given query */
+        Result resultFor(Query query) {
+            Result copy = result.clone();
+            copy.setQuery(query);
+            return copy;
+        }
+
+        long sizeBytes() { return sizeBytes; }
+
+        /** Returns the age of this in milliseconds, given the current time */
+        long ageMillis(long nowMillis) { return nowMillis - createdMillis; }
+
+        boolean mayContain(String documentType) {
+            return restrict.isEmpty() || restrict.contains(documentType);
+        }
+
+        /** Marks this as being revalidated and returns true, or returns false if this is already being revalidated */
+        boolean startRevalidation() { return revalidating.compareAndSet(false, true); }
+
+        /** Marks this as not being revalidated */
+        void endRevalidation() { revalidating.set(false); }
+
+    }
+
+}
@@ -0,0 +1,300 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.yahoo.cache.SizeCalculator;
+import com.yahoo.component.chain.dependencies.After;
+import com.yahoo.component.chain.dependencies.Before;
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.query.Model;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.query.profile.QueryProfileProperties;
+import com.yahoo.search.query.ranking.MatchPhase;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+
+import java.time.Clock;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A cache of complete results, placed after query transformation such that queries which are
+ * equal after normalization share results.
+ * <p>
+ * Results are keyed on the query tree, sources and restrict, paging, language, summary, ranking,
+ * the id of the query profile of the query and all other parameters of the request, such as
+ * presentation parameters. Searchers which depend on properties set by other searchers
+ * must be placed before this, or the key must be extended by overriding {@link #cacheKey}.
+ * Queries with grouping requests are not cached.
+ * <p>
+ * A cached result is served for the configured time to live. After that it may be served for the configured
+ * stale-while-revalidate time while it is being refreshed in the background. Identical queries which
+ * miss the cache at the same time are collapsed into a single execution whose result is shared.
+ * <p>
+ * Results containing errors or having incomplete or degraded coverage are not cached.
+ * Setting <code>nocache</code> bypasses the cache, and setting <code>nocachewrite</code>
+ * prevents the result from being written to it.
+ * <p>
+ * Cached results can be invalidated per document type by calling {@link #invalidate(String)},
+ * which removes the results of queries restricted to that document type and queries not restricted at all.
+ * <p>
+ * Metrics: This emits the counts resultCacheHits, resultCacheStaleHits, resultCacheMisses
+ * and resultCacheCollapsedRequests.
+ */
+@After(PhaseNames.TRANSFORMED_QUERY)
+@Before(PhaseNames.BLENDED_RESULT)
+public class ResultCacheSearcher extends Searcher {
+
+    private static final CompoundName noCacheWrite = new CompoundName("nocachewrite");
+
+    /** Request parameters which are left out of the cache key as their effect is already normalized into it */
+    private static final Set<String> normalizedParameters =
+            ImmutableSet.of("query", "sources", "search", "restrict", "timeout", "nocache", "nocachewrite");
+
+    private static final long hitSizeOverheadBytes = 100;
+
+    private final ResultCache cache;
+
+    /** The executions which are currently producing a result for a key, which identical queries may wait for */
+    private final ConcurrentHashMap<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor revalidator;
+
+    private final SizeCalculator sizeCalculator = new SizeCalculator();
+
+    private final long timeToLiveMillis;
+    private final long staleWhileRevalidateMillis;
+    private final boolean fill;
+    private final Clock clock;
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter collapsedRequests;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metric) {
+        this(config, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a clock to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metric, Clock clock) {
+        this.cache = new ResultCache(config.maxSizeMegabytes() * 1024L * 1024L, config.maxEntrySizeBytes());
+        this.timeToLiveMillis = (long)(config.timeToLiveSeconds() * 1000);
+        this.staleWhileRevalidateMillis = (long)(config.staleWhileRevalidateSeconds() * 1000);
+        this.fill = config.fill();
+        this.clock = clock;
+        this.revalidator = new ThreadPoolExecutor(config.revalidationThreads(), config.revalidationThreads(),
+                                                  0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1000),
+                                                  ThreadFactoryFactory.getDaemonThreadFactory("search.resultcache"));
+
+        this.hits = metric.declareCounter("resultCacheHits");
+        this.staleHits = metric.declareCounter("resultCacheStaleHits");
+        this.misses = metric.declareCounter("resultCacheMisses");
+        this.collapsedRequests = metric.declareCounter("resultCacheCollapsedRequests");
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache() || ! GroupingRequest.getRequests(query).isEmpty())
+            return execution.search(query);
+
+        String key = cacheKey(query);
+        ResultCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            long age = entry.ageMillis(clock.millis());
+            if (age <= timeToLiveMillis) {
+                hits.add(1);
+                return entry.resultFor(query);
+            }
+            if (age <= timeToLiveMillis + staleWhileRevalidateMillis) {
+                staleHits.add(1);
+                if (entry.startRevalidation())
+                    revalidate(key, entry, query, execution);
+                return entry.resultFor(query);
+            }
+        }
+        misses.add(1);
+        return searchCollapsed(key, query, execution);
+    }
+
+    /**
+     * Executes the query unless an identical query is already executing,
+     * in which case the result of that is returned if it becomes available in time
+     */
+    private Result searchCollapsed(String key, Query query, Execution execution) {
+        CompletableFuture<Result> ownExecution = new CompletableFuture<>();
+        CompletableFuture<Result> runningExecution = inFlight.putIfAbsent(key, ownExecution);
+        if (runningExecution != null) {
+            collapsedRequests.add(1);
+            Result sharedResult = await(runningExecution, query);
+            if (sharedResult != null) {
+                Result result = sharedResult.clone();
+                result.setQuery(query);
+                return result;
+            }
+            return execution.search(query); // The running execution did not produce a cacheable result in time
+        }
+
+        Result cachedResult = null;
+        try {
+            Result result = execution.search(query);
+            cachedResult = cache(key, query, result, execution);
+            return result;
+        }
+        finally {
+            inFlight.remove(key, ownExecution);
+            ownExecution.complete(cachedResult);
+        }
+    }
+
+    /** Returns the result of the given execution, or null if it is not available within the time left of the query */
+    private Result await(CompletableFuture<Result> execution, Query query) {
+        try {
+            return execution.get(Math.max(query.getTimeLeft(), 0), TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /** Refreshes an expired entry in the background */
+    private void revalidate(String key, ResultCache.Entry entry, Query query, Execution execution) {
+        Query revalidationQuery = query.clone();
+        revalidationQuery.resetTimeout();
+        // Continues at the searcher after this, with a context of its own as the request may complete first
+        Execution revalidationExecution = new Execution(execution);
+        try {
+            revalidator.execute(() -> {
+                try {
+                    cache(key, revalidationQuery, revalidationExecution.search(revalidationQuery), revalidationExecution);
+                }
+                finally {
+                    entry.endRevalidation();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) { // Too many pending revalidations: Serve stale and retry later
+            entry.endRevalidation();
+        }
+    }
+
+    /**
+     * Fills the result if configured to and adds a copy of it to the cache if it is cacheable
+     *
+     * @return the cached copy, or null if the result was not cached
+     */
+    private Result cache(String key, Query query, Result result, Execution execution) {
+        if (fill)
+            execution.fill(result);
+        if ( ! isCacheable(result) || query.properties().getBoolean(noCacheWrite)) return null;
+
+        Result copy = result.clone();
+        ResultCache.Entry entry = new ResultCache.Entry(copy, sizeOf(copy), clock.millis(),
+                                                        new HashSet<>(query.getModel().getRestrict()));
+        return cache.put(key, entry) ? copy : null;
+    }
+
+    private boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        if (coverage != null && ( ! coverage.getFull() || coverage.isDegraded())) return false;
+        return true;
+    }
+
+    /** Returns an estimate of the memory consumed by the hits of a result */
+    private long sizeOf(Result result) {
+        long size = 0;
+        for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); )
+            size += hitSizeOverheadBytes + sizeCalculator.sizeOf(i.next().fields());
+        return size;
+    }
+
+    /**
+     * Returns the key of the cached result of a query.
+     * Queries returning the same key must produce the same result.
+     */
+    protected String cacheKey(Query query) {
+        StringBuilder key = new StringBuilder();
+        QueryProfileProperties profile = query.properties().getInstance(QueryProfileProperties.class);
+        if (profile != null && profile.getQueryProfile() != null)
+            key.append(profile.getQueryProfile().getId());
+
+        Model model = query.getModel();
+        key.append('|').append(model.getQueryTree());
+        key.append('|').append(new TreeSet<>(model.getSources()));
+        key.append('|').append(new TreeSet<>(model.getRestrict()));
+        key.append('|').append(model.getLanguage());
+        key.append('|').append(query.getOffset()).append(',').append(query.getHits());
+        key.append('|').append(query.getPresentation().getSummary());
+
+        Ranking ranking = query.getRanking();
+        key.append('|').append(ranking.getProfile());
+        key.append('|').append(new TreeMap<>(ranking.getFeatures().asMap()));
+        key.append('|').append(new TreeMap<>(ranking.getProperties().asMap()));
+        key.append('|').append(ranking.getSorting());
+        key.append('|').append(ranking.getLocation());
+        key.append('|').append(ranking.getFreshness());
+        MatchPhase matchPhase = ranking.getMatchPhase();
+        key.append('|').append(matchPhase.getAttribute()).append(',').append(matchPhase.getMaxHits())
+           .append(',').append(matchPhase.getAscending());
+
+        if (query.getHttpRequest() != null) {
+            Map<String, String> parameters = new TreeMap<>(query.getHttpRequest().propertyMap());
+            parameters.keySet().removeAll(normalizedParameters);
+            key.append('|').append(parameters);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Removes the cached results which may contain documents of the given type,
+     * that is results of queries restricted to this type or not restricted at all.
+     *
+     * @return the number of results removed
+     */
+    public int invalidate(String documentType) {
+        return cache.invalidate(documentType);
+    }
+
+    /** Removes all cached results */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /** Returns the number of results currently cached */
+    public int size() { return cache.size(); }
+
+    @Override
+    public void deconstruct() {
+        revalidator.shutdownNow();
+    }
+
+}
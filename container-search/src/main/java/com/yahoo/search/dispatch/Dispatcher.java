@@ -33,7 +33,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * A dispatcher communicates with search nodes to (in the future) perform queries and (now) fill hits.
+ * A dispatcher communicates with search nodes to perform queries and fill hits.
  * This class is multithread safe.
  *
  * @author bratseth
@@ -52,9 +52,13 @@ public class Dispatcher extends AbstractComponent {
 
     private final Compressor compressor = new Compressor();
 
+    // Only needed until query requests are moved to rpc
+    private final FS4ResourcePool fs4ResourcePool;
+
     public Dispatcher(DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool,
                       int containerClusterSize, VipStatus vipStatus) {
         this.client = new RpcClient();
+        this.fs4ResourcePool = fs4ResourcePool;
         this.searchCluster = new SearchCluster(dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus);
 
         // Create node rpc connections, indexed by the legacy "partid", which allows us to bridge
@@ -69,6 +73,7 @@ public class Dispatcher extends AbstractComponent {
     /** For testing */
     public Dispatcher(Map<Integer, Client.NodeConnection> nodeConnections, Client client) {
         this.searchCluster = null;
+        this.fs4ResourcePool = null;
         this.nodeConnections = ImmutableMap.copyOf(nodeConnections);
         this.client = client;
     }
@@ -76,6 +81,24 @@ public class Dispatcher extends AbstractComponent {
     /** Returns the search cluster this dispatches to */
     public SearchCluster searchCluster() { return searchCluster; }
 
+    /**
+     * Searches all the nodes of the given group and merges their hits in this container, instead of
+     * searching through a dispatch node. Nodes are queried over fs4 until search is available over rpc.
+     * The returned documents are tagged with the distribution key of the node they are from, so the
+     * hits must subsequently be filled by {@link #fill}.
+     * Only queries ordered by relevance and without grouping can be dispatched like this.
+     */
+    public SearchResponse search(Query query, SearchCluster.Group group) {
+        long startTime = System.nanoTime();
+        group.requestStarted();
+        try {
+            return new GroupSearch(group, fs4ResourcePool).search(query);
+        }
+        finally {
+            group.requestCompleted(System.nanoTime() - startTime);
+        }
+    }
+
     /** Fills the given summary class by sending RPC requests to the right search nodes */
     public void fill(Result result, String summaryClass, CompressionType compression) {
         try {
@@ -0,0 +1,206 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.ChannelTimeoutException;
+import com.yahoo.fs4.DocumentInfo;
+import com.yahoo.fs4.ErrorPacket;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.fs4.QueryResultPacket;
+import com.yahoo.fs4.mplex.FS4Channel;
+import com.yahoo.fs4.mplex.InvalidChannelException;
+import com.yahoo.prelude.fastsearch.FS4ResourcePool;
+import com.yahoo.search.Query;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Sends a query to all the nodes of a group in parallel over the fs4 protocol, and merges the
+ * top hits of each node into the result window of the query, bypassing the dispatch node.
+ */
+class GroupSearch {
+
+    private final SearchCluster.Group group;
+    private final FS4ResourcePool fs4ResourcePool;
+
+    GroupSearch(SearchCluster.Group group, FS4ResourcePool fs4ResourcePool) {
+        this.group = group;
+        this.fs4ResourcePool = fs4ResourcePool;
+    }
+
+    SearchResponse search(Query query) {
+        List<QueryPacket> queryPackets = createNodeQueryPackets(query);
+        List<FS4Channel> channels = new ArrayList<>(group.nodes().size());
+        boolean[] sent = new boolean[group.nodes().size()];
+        List<ErrorMessage> errors = new ArrayList<>();
+        try {
+            // Scatter
+            for (int i = 0; i < group.nodes().size(); i++) {
+                SearchCluster.Node node = group.nodes().get(i);
+                FS4Channel channel = fs4ResourcePool.getBackend(node.hostname(), node.fs4port()).openChannel();
+                channel.setQuery(query);
+                channels.add(channel);
+                try {
+                    sent[i] = channel.sendPacket(queryPackets.get(i));
+                    if ( ! sent[i])
+                        errors.add(ErrorMessage.createBackendCommunicationError("Could not reach " + node));
+                }
+                catch (InvalidChannelException e) {
+                    errors.add(ErrorMessage.createBackendCommunicationError("Invalid channel to " + node));
+                }
+                catch (IOException e) {
+                    errors.add(ErrorMessage.createBackendCommunicationError("IO error sending query to " + node + ": " + e.getMessage()));
+                }
+            }
+
+            // Gather
+            List<List<DocumentInfo>> nodeDocuments = new ArrayList<>(group.nodes().size());
+            long totalHitCount = 0;
+            Coverage coverage = null;
+            for (int i = 0; i < group.nodes().size(); i++) {
+                if ( ! sent[i]) continue;
+                SearchCluster.Node node = group.nodes().get(i);
+                QueryResultPacket resultPacket = receiveResult(channels.get(i), node, query, errors);
+                if (resultPacket == null) continue;
+
+                totalHitCount += resultPacket.getTotalDocumentCount();
+                if (resultPacket.getCoverageFeature()) {
+                    Coverage nodeCoverage = new Coverage(resultPacket.getCoverageDocs(), resultPacket.getActiveDocs())
+                                                    .setSoonActive(resultPacket.getSoonActiveDocs())
+                                                    .setDegradedReason(resultPacket.getDegradedReason());
+                    if (coverage == null)
+                        coverage = nodeCoverage;
+                    else
+                        coverage.merge(nodeCoverage);
+                }
+                nodeDocuments.add(withDistributionKey(node.key(), resultPacket.getDocuments()));
+            }
+            return new SearchResponse(merge(nodeDocuments, query.getOffset(), query.getHits()),
+                                      totalHitCount, Optional.ofNullable(coverage), errors);
+        }
+        finally {
+            for (FS4Channel channel : channels)
+                channel.close();
+        }
+    }
+
+    /**
+     * Creates one query packet per node. Each node must return all the hits up to the end of the
+     * requested window, as we cannot know which node contributes hits to it before merging.
+     */
+    private List<QueryPacket> createNodeQueryPackets(Query query) {
+        int offset = query.getOffset();
+        int hits = query.getHits();
+        List<QueryPacket> queryPackets = new ArrayList<>(group.nodes().size());
+        try {
+            query.setOffset(0);
+            query.setHits(offset + hits);
+            for (int i = 0; i < group.nodes().size(); i++) {
+                QueryPacket queryPacket = QueryPacket.create(query);
+                queryPacket.allocateAndEncode(0); // the channel id is patched in when sending
+                queryPackets.add(queryPacket);
+            }
+        }
+        finally {
+            query.setOffset(offset);
+            query.setHits(hits);
+        }
+        return queryPackets;
+    }
+
+    /** Returns the result from a node, or null (after adding an error) if there is no valid result */
+    private QueryResultPacket receiveResult(FS4Channel channel, SearchCluster.Node node, Query query,
+                                            List<ErrorMessage> errors) {
+        BasicPacket[] packets;
+        try {
+            packets = channel.receivePackets(Math.max(50, query.getTimeLeft()), 1);
+        }
+        catch (ChannelTimeoutException e) {
+            errors.add(ErrorMessage.createTimeout("Timeout while waiting for " + node));
+            return null;
+        }
+        catch (InvalidChannelException e) {
+            errors.add(ErrorMessage.createBackendCommunicationError("Invalid channel for " + node));
+            return null;
+        }
+
+        if (packets.length == 0) {
+            errors.add(ErrorMessage.createBackendCommunicationError(node + " returned no packets"));
+            return null;
+        }
+        if (packets[0] instanceof QueryResultPacket)
+            return (QueryResultPacket)packets[0];
+
+        if (packets[0] instanceof ErrorPacket && ((ErrorPacket)packets[0]).getErrorCode() == 8)
+            errors.add(ErrorMessage.createTimeout("Query timed out in " + node));
+        else
+            errors.add(ErrorMessage.createBackendCommunicationError("Received " + packets[0] + " from " + node +
+                                                                    " when expecting a query result"));
+        return null;
+    }
+
+    /** Nodes do not know their distribution key, so we add it to be able to fill the hits from the right node */
+    private static List<DocumentInfo> withDistributionKey(int key, List<DocumentInfo> documents) {
+        List<DocumentInfo> keyed = new ArrayList<>(documents.size());
+        for (DocumentInfo document : documents)
+            keyed.add(new DocumentInfo(document.getGlobalId(), document.getMetric(), document.getPartId(), key));
+        return keyed;
+    }
+
+    /**
+     * Merges lists of documents which are each sorted by decreasing relevance
+     * and returns the documents in the given window of the merged list.
+     */
+    static List<DocumentInfo> merge(List<List<DocumentInfo>> nodeDocuments, int offset, int hits) {
+        if (hits <= 0) return Collections.emptyList();
+
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(1, nodeDocuments.size()));
+        for (int i = 0; i < nodeDocuments.size(); i++) {
+            if ( ! nodeDocuments.get(i).isEmpty())
+                cursors.add(new Cursor(i, nodeDocuments.get(i)));
+        }
+
+        List<DocumentInfo> merged = new ArrayList<>(hits);
+        for (int position = 0; position < offset + hits && ! cursors.isEmpty(); position++) {
+            Cursor cursor = cursors.poll();
+            if (position >= offset)
+                merged.add(cursor.current());
+            if (cursor.next())
+                cursors.add(cursor);
+        }
+        return merged;
+    }
+
+    private static class Cursor implements Comparable<Cursor> {
+
+        private final int source;
+        private final List<DocumentInfo> documents;
+        private int index = 0;
+
+        Cursor(int source, List<DocumentInfo> documents) {
+            this.source = source;
+            this.documents = documents;
+        }
+
+        DocumentInfo current() { return documents.get(index); }
+
+        /** Advances this and returns whether there are more documents */
+        boolean next() { return ++index < documents.size(); }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int order = Double.compare(other.current().getMetric(), this.current().getMetric());
+            if (order != 0) return order;
+            return Integer.compare(this.source, other.source); // stable ordering of equally relevant hits
+        }
+
+    }
+
+}
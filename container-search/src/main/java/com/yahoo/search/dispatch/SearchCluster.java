@@ -20,17 +20,21 @@ import com.yahoo.yolean.Exceptions;
 import com.yahoo.prelude.Pong;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -50,6 +54,7 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
     private double minActivedocsCoveragePercentage;
     private final int size;
     private final ImmutableMap<Integer, Group> groups;
+    private final ImmutableList<Group> orderedGroups;
     private final ImmutableMultimap<String, Node> nodesByHost;
     private final ClusterMonitor<Node> clusterMonitor;
     private final VipStatus vipStatus;
@@ -85,6 +90,7 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
         for (Map.Entry<Integer, List<Node>> group : nodes.stream().collect(Collectors.groupingBy(Node::group)).entrySet())
             groupsBuilder.put(group.getKey(), new Group(group.getKey(), group.getValue()));
         this.groups = groupsBuilder.build();
+        this.orderedGroups = ImmutableList.copyOf(groups.values());
 
         // Index nodes by host
         ImmutableMultimap.Builder<String, Node> nodesByHostBuilder = new ImmutableMultimap.Builder<>();
@@ -138,7 +144,7 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
     private static ImmutableList<Node> toNodes(DispatchConfig dispatchConfig) {
         ImmutableList.Builder<Node> nodesBuilder = new ImmutableList.Builder<>();
         for (DispatchConfig.Node node : dispatchConfig.node())
-            nodesBuilder.add(new Node(node.host(), node.fs4port(), node.group()));
+            nodesBuilder.add(new Node(node.key(), node.host(), node.fs4port(), node.group()));
         return nodesBuilder.build();
     }
 
@@ -177,6 +183,32 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
         return directDispatchTarget;
     }
 
+    /**
+     * Returns a group which can serve a query on its own, that is, which has sufficient coverage and all nodes up,
+     * or empty if there is no such group. If there are several such groups, the least loaded of two randomly
+     * chosen ones is returned, such that slower groups receive less traffic without herding to the fastest.
+     */
+    public Optional<Group> nextDispatchGroup() {
+        return nextDispatchGroup(ThreadLocalRandom.current());
+    }
+
+    Optional<Group> nextDispatchGroup(Random random) {
+        List<Group> candidates = new ArrayList<>(orderedGroups.size());
+        for (Group group : orderedGroups)
+            if (group.hasSufficientCoverage() && group.isFullyWorking())
+                candidates.add(group);
+
+        if (candidates.isEmpty()) return Optional.empty();
+        if (candidates.size() == 1) return Optional.of(candidates.get(0));
+
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) second++;
+        Group a = candidates.get(first);
+        Group b = candidates.get(second);
+        return Optional.of(a.load() <= b.load() ? a : b);
+    }
+
     /** Used by the cluster monitor to manage node status */
     @Override
     public void working(Node node) {
@@ -304,8 +336,16 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
         private final int id;
         private final ImmutableList<Node> nodes;
 
+        /** The weight given to the latest latency sample when updating the decayed average */
+        private static final double latencyDecay = 0.1;
+
+        /** The latency used for the load of groups with faster or no measured latency, in milliseconds */
+        private static final double minLatency = 0.1;
+
         private final AtomicBoolean hasSufficientCoverage = new AtomicBoolean(true);
         private final AtomicLong activeDocuments = new AtomicLong(0);
+        private final AtomicInteger inflightRequests = new AtomicInteger(0);
+        private final AtomicLong decayedLatency = new AtomicLong(Double.doubleToLongBits(0.0));
 
         public Group(int id, List<Node> nodes) {
             this.id = id;
@@ -326,6 +366,42 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
             return hasSufficientCoverage.get();
         }
 
+        /** Returns whether all the nodes of this group are currently responding to requests */
+        public boolean isFullyWorking() {
+            for (Node node : nodes)
+                if ( ! node.isWorking()) return false;
+            return true;
+        }
+
+        /** Must be called when a request is sent to this group */
+        public void requestStarted() {
+            inflightRequests.incrementAndGet();
+        }
+
+        /** Must be called when a request to this group completes, successfully or not */
+        public void requestCompleted(long latencyNanos) {
+            inflightRequests.decrementAndGet();
+            double latency = latencyNanos / 1_000_000.0;
+            while (true) {
+                long current = decayedLatency.get();
+                double currentLatency = Double.longBitsToDouble(current);
+                double newLatency = currentLatency == 0.0 ? latency
+                                                          : currentLatency + latencyDecay * (latency - currentLatency);
+                if (decayedLatency.compareAndSet(current, Double.doubleToLongBits(newLatency))) return;
+            }
+        }
+
+        /** Returns the number of requests currently sent to this group but not completed */
+        public int inflightRequests() { return inflightRequests.get(); }
+
+        /** Returns the exponentially decayed average latency of requests to this group in milliseconds, or 0 if unknown */
+        public double decayedLatency() { return Double.longBitsToDouble(decayedLatency.get()); }
+
+        /** Returns the current load of this group: The expected time to complete the requests in flight and another */
+        double load() {
+            return (inflightRequests() + 1) * Math.max(minLatency, decayedLatency());
+        }
+
         void setHasSufficientCoverage(boolean sufficientCoverage) {
             hasSufficientCoverage.lazySet(sufficientCoverage);
         }
@@ -361,6 +437,7 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
     /** A node in a search cluster. This class is multithread safe. */
     public static class Node {
 
+        private final int key;
         private final String hostname;
         private final int fs4port;
         private final int group;
@@ -368,12 +445,16 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
         private final AtomicBoolean working = new AtomicBoolean(true);
         private final AtomicLong activeDocuments = new AtomicLong(0);
 
-        public Node(String hostname, int fs4port, int group) {
+        public Node(int key, String hostname, int fs4port, int group) {
+            this.key = key;
             this.hostname = hostname;
             this.fs4port = fs4port;
             this.group = group;
         }
 
+        /** Returns the unique and stable distribution key of this node */
+        public int key() { return key; }
+
         public String hostname() { return hostname; }
 
         public int fs4port() { return fs4port; }
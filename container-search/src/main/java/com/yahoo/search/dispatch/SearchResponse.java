@@ -0,0 +1,48 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+import com.yahoo.fs4.DocumentInfo;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The merged response to a query which has been dispatched to all the nodes of a search group.
+ * This is immutable.
+ */
+@Beta
+public class SearchResponse {
+
+    private final ImmutableList<DocumentInfo> documents;
+    private final long totalHitCount;
+    private final Optional<Coverage> coverage;
+    private final ImmutableList<ErrorMessage> errors;
+
+    SearchResponse(List<DocumentInfo> documents, long totalHitCount, Optional<Coverage> coverage,
+                   List<ErrorMessage> errors) {
+        this.documents = ImmutableList.copyOf(documents);
+        this.totalHitCount = totalHitCount;
+        this.coverage = coverage;
+        this.errors = ImmutableList.copyOf(errors);
+    }
+
+    /**
+     * Returns the documents in the requested result window, in relevance order.
+     * Each document carries the distribution key of the node it was returned from.
+     */
+    public List<DocumentInfo> documents() { return documents; }
+
+    /** Returns the total number of matches across the nodes which responded */
+    public long totalHitCount() { return totalHitCount; }
+
+    /** Returns the merged coverage of the nodes which responded, or empty if no node reported coverage */
+    public Optional<Coverage> coverage() { return coverage; }
+
+    /** Returns the errors from the nodes which did not respond successfully. This is empty if all nodes responded */
+    public List<ErrorMessage> errors() { return errors; }
+
+}
@@ -13,10 +13,12 @@ import com.yahoo.processing.response.IncomingData;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -249,6 +251,103 @@ public class HitGroup extends Hit implements DataList<Hit>, Cloneable, Iterable<
             add(hit);
     }
 
+    /**
+     * Adds the hits of the given groups to this group, merged in the order of this group.
+     * <p>
+     * This produces the same order as adding all the hits and sorting, but since the hits of each group
+     * are already sorted, this does a k-way merge which is O(n log k) for k groups rather than a full sort.
+     * Only the first <code>maxConcreteHits</code> concrete hits in merged order are added to this.
+     * Auxiliary hits and the hits already in this group are always kept.
+     * This group is sorted after this returns, such that it will not be sorted again.
+     * <p>
+     * If the hits of this group are explicitly ordered, ordered by an orderer without a comparator,
+     * or the hits of this or the given groups lack the values needed to sort them, the hits are just added
+     * and sorted lazily as with {@link #addAll}.
+     *
+     * @param groups the groups whose hits should be added to this
+     * @param maxConcreteHits the max number of concrete hits to keep, typically offset + hits
+     */
+    public void addMerged(List<HitGroup> groups, int maxConcreteHits) {
+        updateHits();
+        Comparator<Hit> comparator = hitOrderer == null ? Comparator.naturalOrder() : hitOrderer.getComparator();
+        if (comparator == null || orderedHits || ! likelyHitsHaveCorrectValueForSortFields()
+            || groups.stream().anyMatch(group -> group.orderedHits || ! likelyHaveCorrectValueForSortFields(group))) {
+            for (HitGroup group : groups)
+                addAll(group.asUnorderedHits());
+            return;
+        }
+
+        PriorityQueue<MergeCursor> cursors = new PriorityQueue<>(groups.size() + 1, (a, b) -> {
+            int order = comparator.compare(a.current(), b.current());
+            return order != 0 ? order : Integer.compare(a.source, b.source);
+        });
+        List<Hit> existingHits = new ArrayList<>(hits);
+        existingHits.sort(comparator);
+        addCursor(new MergeCursor(0, existingHits, true), cursors);
+        for (int i = 0; i < groups.size(); i++) {
+            HitGroup group = groups.get(i);
+            List<Hit> groupHits = group.asUnorderedHits();
+            addCursor(new MergeCursor(i + 1,
+                                      group.hitsSorted && group.hitOrderer == hitOrderer ? groupHits : sorted(groupHits, comparator),
+                                      group.getConcreteSizeShallow() < groupHits.size()),
+                      cursors);
+        }
+
+        hits.clear();
+        int concreteCount = 0;
+        while ( ! cursors.isEmpty()) {
+            MergeCursor cursor = cursors.poll();
+            Hit hit = cursor.current();
+            if (cursor.source == 0) { // already accounted for
+                hits.add(hit);
+                if ( ! hit.isAuxiliary())
+                    concreteCount++;
+            }
+            else if (hit.isAuxiliary()) {
+                add(hit);
+            }
+            else if (concreteCount < maxConcreteHits) {
+                add(hit);
+                concreteCount++;
+            }
+
+            cursor.next++;
+            if (concreteCount >= maxConcreteHits && ! cursor.hasAuxiliaryHits) continue; // nothing more to add from it
+            addCursor(cursor, cursors);
+        }
+        hitsSorted = true;
+    }
+
+    private static void addCursor(MergeCursor cursor, PriorityQueue<MergeCursor> cursors) {
+        if (cursor.next < cursor.hits.size())
+            cursors.add(cursor);
+    }
+
+    private static List<Hit> sorted(List<Hit> hits, Comparator<Hit> comparator) {
+        List<Hit> sorted = new ArrayList<>(hits);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    /** A position in a sorted list of hits which are merged into this */
+    private static final class MergeCursor {
+
+        /** The index of the source of these hits, where 0 is this group */
+        final int source;
+        final List<Hit> hits;
+        final boolean hasAuxiliaryHits;
+        int next = 0;
+
+        MergeCursor(int source, List<Hit> hits, boolean hasAuxiliaryHits) {
+            this.source = source;
+            this.hits = hits;
+            this.hasAuxiliaryHits = hasAuxiliaryHits;
+        }
+
+        Hit current() { return hits.get(next); }
+
+    }
+
     /**
      * Returns the hit at the given (0-base) index in this group of hit
      * (without searching any subgroups).
@@ -593,10 +692,15 @@ public class HitGroup extends Hit implements DataList<Hit>, Cloneable, Iterable<
     }
 
     private boolean likelyHitsHaveCorrectValueForSortFields() {
+        return likelyHaveCorrectValueForSortFields(this);
+    }
+
+    /** Returns whether the hits of the given group likely have the values needed to sort them by the orderer of this */
+    private boolean likelyHaveCorrectValueForSortFields(HitGroup group) {
         if (hitOrderer == null) {
             return true;
         } else {
-            Set<String> filledFields = getFilled();
+            Set<String> filledFields = group.getFilled();
             return filledFields == null || !filledFields.isEmpty();
         }
     }
@@ -0,0 +1,372 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.fs4.mplex;
+
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.ErrorPacket;
+import com.yahoo.fs4.Packet;
+import com.yahoo.io.Connection;
+import com.yahoo.io.Listener;
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading and writing packets over a scripted socket channel.
+ */
+public class FS4ConnectionTestCase {
+
+    private final MockSocketChannel channel = new MockSocketChannel();
+    private final MockListener listener = new MockListener();
+    private final MockBackend backend = new MockBackend();
+    private final FS4Connection connection = new FS4Connection(channel, listener, backend,
+                                                               new BackendTestCase.MockPacketListener());
+
+    @Test
+    public void requireThatPacketsSplitOverSeveralReadsAreDecoded() throws IOException {
+        byte[] packet = errorPacket(1, "a message");
+        channel.deliver(Arrays.copyOfRange(packet, 0, 3));
+        connection.read();
+        assertEquals(0, backend.received.size());
+
+        channel.deliver(Arrays.copyOfRange(packet, 3, 15));
+        connection.read();
+        assertEquals(0, backend.received.size());
+
+        channel.deliver(Arrays.copyOfRange(packet, 15, packet.length));
+        connection.read();
+        assertEquals(Collections.singletonList("a message (1)"), backend.received);
+        assertTrue(channel.readsWereDirect);
+    }
+
+    @Test
+    public void requireThatSeveralPacketsInOneReadAreDecoded() throws IOException {
+        byte[] first = errorPacket(1, "first");
+        byte[] second = errorPacket(2, "second");
+        byte[] third = errorPacket(3, "third");
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(first);
+        data.write(second);
+        data.write(third, 0, 10);
+        channel.deliver(data.toByteArray());
+        connection.read();
+        assertEquals(Arrays.asList("first (1)", "second (2)"), backend.received);
+
+        channel.deliver(Arrays.copyOfRange(third, 10, third.length));
+        connection.read();
+        assertEquals(Arrays.asList("first (1)", "second (2)", "third (3)"), backend.received);
+        assertTrue(channel.readsWereDirect);
+    }
+
+    @Test
+    public void requireThatPacketsLargerThanTheFixedReadBufferAreDecoded() throws IOException {
+        for (int size : new int[] { 300 * 1024, 3 * 1024 * 1024, 600 * 1024 }) {
+            backend.received.clear();
+            String message = largeMessage(size);
+            byte[] large = errorPacket(size, message);
+            // deliver in pieces which do not line up with any buffer size
+            for (int offset = 0; offset < large.length; offset += 100_003) {
+                channel.deliver(Arrays.copyOfRange(large, offset, Math.min(large.length, offset + 100_003)));
+            }
+            channel.deliver(errorPacket(7, "small"));
+            // play the selector: keep reading while there is data
+            while (channel.hasIncoming()) {
+                connection.read();
+            }
+            assertEquals(2, backend.received.size());
+            assertEquals(message + " (" + size + ")", backend.received.get(0));
+            assertEquals("small (7)", backend.received.get(1));
+        }
+        assertTrue("Reads are staged through the direct buffer", channel.readsWereDirect);
+    }
+
+    @Test
+    public void requireThatWritesAreResumedWhenTheChannelAcceptsMoreData() throws IOException {
+        channel.writeCapacity = 50;
+        for (int i = 0; i < 10; i++) {
+            connection.sendPacket(new TestPacket(40), i);
+        }
+        assertEquals(50, channel.written.size());
+        assertTrue(listener.writeInterest);
+
+        while (listener.writeInterest) {
+            channel.writeCapacity = 30;
+            connection.write();
+        }
+        assertEquals(channelIds(0, 10), frames(channel.written.toByteArray(), 40));
+    }
+
+    @Test
+    public void requireThatPacketsWrittenByConcurrentThreadsAreNotInterleaved() throws Exception {
+        int threadCount = 8;
+        int packetsPerThread = 500;
+        channel.writeCapacity = 1000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threadCount; t++) {
+            int firstChannel = t * packetsPerThread;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < packetsPerThread; i++) {
+                        connection.sendPacket(new TestPacket(100), firstChannel + i);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+
+        // play the selector: keep writing while we have write interest
+        while (listener.writeInterest) {
+            channel.writeCapacity = 1000;
+            connection.write();
+        }
+        List<Integer> channelIds = frames(channel.written.toByteArray(), 100);
+        assertEquals(threadCount * packetsPerThread, channelIds.size());
+        assertEquals(new HashSet<>(channelIds(0, threadCount * packetsPerThread)), new HashSet<>(channelIds));
+        for (int t = 0; t < threadCount; t++) {
+            int previous = -1;
+            for (int channelId : channelIds) {
+                if (channelId / packetsPerThread != t) continue;
+                assertTrue("Packets of one thread are written in order", channelId > previous);
+                previous = channelId;
+            }
+        }
+    }
+
+    @Test
+    public void requireThatNothingIsWrittenWhenTheQueueIsEmpty() throws IOException {
+        connection.write();
+        assertEquals(0, channel.written.size());
+        assertFalse(listener.writeInterest);
+    }
+
+    private static byte[] errorPacket(int errorCode, String message) {
+        byte[] messageBytes = Utf8.toBytes(message);
+        ByteBuffer buffer = ByteBuffer.allocate(20 + messageBytes.length);
+        buffer.putInt(16 + messageBytes.length); // the length does not include itself
+        buffer.putInt(ErrorPacket.create().getCode());
+        buffer.putInt(errorCode);
+        buffer.putInt(errorCode);
+        buffer.putInt(messageBytes.length);
+        buffer.put(messageBytes);
+        return buffer.array();
+    }
+
+    private static String largeMessage(int size) {
+        StringBuilder b = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            b.append((char)('a' + i % 26));
+        }
+        return b.toString();
+    }
+
+    private static List<Integer> channelIds(int from, int to) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    /** Splits the given data into packets of the given body size, and returns the channel id of each */
+    private static List<Integer> frames(byte[] data, int bodySize) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<Integer> channelIds = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            assertEquals(8 + bodySize, buffer.getInt());
+            assertEquals(TestPacket.CODE, buffer.getInt());
+            channelIds.add(buffer.getInt());
+            for (int i = 0; i < bodySize; i++) {
+                assertEquals((byte)i, buffer.get());
+            }
+        }
+        return channelIds;
+    }
+
+    private static class TestPacket extends Packet {
+
+        static final int CODE = 218;
+        private final int bodySize;
+
+        TestPacket(int bodySize) {
+            this.bodySize = bodySize;
+        }
+
+        @Override
+        public int getCode() { return CODE; }
+
+        @Override
+        protected void encodeBody(ByteBuffer buffer) {
+            for (int i = 0; i < bodySize; i++) {
+                buffer.put((byte)i);
+            }
+        }
+    }
+
+    private static class MockBackend extends Backend {
+
+        final List<String> received = new ArrayList<>();
+
+        @Override
+        protected void receivePacket(BasicPacket packet) {
+            received.add(packet.toString());
+        }
+    }
+
+    private static class MockListener extends Listener {
+
+        volatile boolean writeInterest = false;
+
+        MockListener() {
+            super("test");
+        }
+
+        @Override
+        public Listener modifyInterestOps(Connection connection, int op, boolean set) {
+            writeInterest = set;
+            return this;
+        }
+
+        @Override
+        public Listener modifyInterestOpsBatch(Connection connection, int op, boolean set) {
+            writeInterest = set;
+            return this;
+        }
+    }
+
+    /** A socket channel which reads the data delivered to it, and writes a limited number of bytes at a time */
+    private static class MockSocketChannel extends SocketChannel {
+
+        private final ArrayDeque<ByteBuffer> incoming = new ArrayDeque<>();
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int writeCapacity = Integer.MAX_VALUE;
+        boolean readsWereDirect = true;
+
+        MockSocketChannel() {
+            super(SelectorProvider.provider());
+        }
+
+        void deliver(byte[] data) {
+            incoming.addLast(ByteBuffer.wrap(data));
+        }
+
+        boolean hasIncoming() { return ! incoming.isEmpty(); }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            readsWereDirect &= dst.isDirect();
+            int count = 0;
+            while ( ! incoming.isEmpty() && dst.hasRemaining()) {
+                ByteBuffer next = incoming.peekFirst();
+                int n = Math.min(next.remaining(), dst.remaining());
+                ByteBuffer slice = next.slice();
+                slice.limit(n);
+                dst.put(slice);
+                next.position(next.position() + n);
+                count += n;
+                if ( ! next.hasRemaining()) {
+                    incoming.removeFirst();
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) {
+            return (int)write(new ByteBuffer[] { src }, 0, 1);
+        }
+
+        @Override
+        public synchronized long write(ByteBuffer[] srcs, int offset, int length) {
+            long count = 0;
+            for (int i = offset; i < offset + length && writeCapacity > 0; i++) {
+                while (srcs[i].hasRemaining() && writeCapacity > 0) {
+                    written.write(srcs[i].get());
+                    writeCapacity--;
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public SocketChannel bind(SocketAddress local) { return this; }
+
+        @Override
+        public <T> SocketChannel setOption(SocketOption<T> name, T value) { return this; }
+
+        @Override
+        public <T> T getOption(SocketOption<T> name) { return null; }
+
+        @Override
+        public Set<SocketOption<?>> supportedOptions() { return Collections.emptySet(); }
+
+        @Override
+        public SocketChannel shutdownInput() { return this; }
+
+        @Override
+        public SocketChannel shutdownOutput() { return this; }
+
+        @Override
+        public Socket socket() { return null; }
+
+        @Override
+        public boolean isConnected() { return true; }
+
+        @Override
+        public boolean isConnectionPending() { return false; }
+
+        @Override
+        public boolean connect(SocketAddress remote) { return true; }
+
+        @Override
+        public boolean finishConnect() { return true; }
+
+        @Override
+        public SocketAddress getRemoteAddress() { return null; }
+
+        @Override
+        public SocketAddress getLocalAddress() { return null; }
+
+        @Override
+        protected void implCloseSelectableChannel() { }
+
+        @Override
+        protected void implConfigureBlocking(boolean block) { }
+    }
+
+}
@@ -397,6 +397,17 @@ public class ClusterSearcherTestCase extends junit.framework.TestCase {
         assertResult(6, new ArrayList<>(),  getResult(6, 2, extra, ex));
     }
 
+    public void testThatMultipleDocumentTypesCanBeSearchedWhenSorting() {
+        Execution ex = createExecution(true);
+
+        String extra = "&sorting=%2Basc-score";
+        com.yahoo.search.Result result = getResult(0, 4, extra, ex);
+        assertEquals(3.0, result.hits().asList().get(0).getField("asc-score"));
+        assertResult(9, Arrays.asList(3.0, 4.0, 5.0, 6.0),  getResult(0, 4, extra, ex));
+        assertResult(9, Arrays.asList(6.0, 7.0, 8.0),       getResult(3, 3, extra, ex));
+        assertResult(9, Arrays.asList(9.0, 10.0, 11.0),     getResult(6, 4, extra, ex));
+    }
+
     public void testLocalConnect() throws UnknownHostException {
         ClusterSearcher cluster = new ClusterSearcher(new LinkedHashSet<>(Arrays.asList("dummy")));
         boolean canFindYahoo;
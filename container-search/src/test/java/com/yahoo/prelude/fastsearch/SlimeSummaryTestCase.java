@@ -21,7 +21,9 @@ import org.junit.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class SlimeSummaryTestCase {
@@ -144,6 +146,30 @@ public class SlimeSummaryTestCase {
         assertEquals(tensor2, hit.getField("tensor_field2"));
     }
 
+    @Test
+    public void testFieldsAreDecodedOnAccess() {
+        Tensor tensor1 = Tensor.from("tensor(x{},y{}):{{x:foo,y:bar}:0.1}");
+        Tensor tensor2 = Tensor.from("tensor(x[],y[1]):{{x:0,y:0}:-0.3}");
+
+        String summary_cf = "file:src/test/java/com/yahoo/prelude/fastsearch/summary.cfg";
+        DocsumDefinitionSet set = createDocsumDefinitionSet(summary_cf);
+        FastHit hit = new FastHit();
+        set.lazyDecode("default", makeDocsum(tensor1, tensor2), hit);
+
+        assertFalse(hit.fieldIsNotDecoded("integer_field"));
+        assertTrue(hit.fieldIsNotDecoded("string_field"));
+        assertTrue(hit.fieldIsNotDecoded("tensor_field1"));
+
+        assertEquals("string_value", new String(hit.fetchFieldAsUtf8("string_field").getUtf8(), StandardCharsets.UTF_8));
+        assertTrue(hit.fieldIsNotDecoded("string_field"));
+        assertNull(hit.fetchFieldAsUtf8("tensor_field1")); // not text: Must be decoded to be rendered
+
+        assertEquals(tensor1, hit.getField("tensor_field1"));
+        assertFalse(hit.fieldIsNotDecoded("tensor_field1"));
+        assertEquals("string_value", hit.getField("string_field"));
+        assertFalse(hit.fieldIsNotDecoded("string_field"));
+    }
+
     private DocsumDefinitionSet createDocsumDefinitionSet(String configID) {
         DocumentdbInfoConfig config = new ConfigGetter<>(DocumentdbInfoConfig.class).getConfig(configID);
         return new DocsumDefinitionSet(config.documentdb(0));
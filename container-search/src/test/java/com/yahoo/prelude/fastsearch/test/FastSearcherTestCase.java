@@ -418,7 +418,7 @@ public class FastSearcherTestCase {
     public void testSinglePassGroupingIsForcedWithSingleNodeGroups() {
         FastSearcher fastSearcher = new FastSearcher(new MockBackend(),
                                                      new FS4ResourcePool(1),
-                                                     new MockDispatcher(new SearchCluster.Node("host0", 123, 0)),
+                                                     new MockDispatcher(new SearchCluster.Node(0, "host0", 123, 0)),
                                                      new SummaryParameters(null),
                                                      new ClusterParams("testhittype"),
                                                      new CacheParams(100, 1e64),
@@ -441,8 +441,8 @@ public class FastSearcherTestCase {
     @Test
     public void testSinglePassGroupingIsNotForcedWithSingleNodeGroups() {
         MockDispatcher dispatcher = 
-                new MockDispatcher(ImmutableList.of(new SearchCluster.Node("host0", 123, 0),
-                                                    new SearchCluster.Node("host1", 123, 0)));
+                new MockDispatcher(ImmutableList.of(new SearchCluster.Node(0, "host0", 123, 0),
+                                                    new SearchCluster.Node(1, "host1", 123, 0)));
 
         FastSearcher fastSearcher = new FastSearcher(new MockBackend(),
                                                      new FS4ResourcePool(1),
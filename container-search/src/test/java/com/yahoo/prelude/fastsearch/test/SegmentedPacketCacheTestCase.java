@@ -0,0 +1,95 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch.test;
+
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.BufferTooSmallException;
+import com.yahoo.fs4.PacketDecoder;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.prelude.fastsearch.PacketWrapper;
+import com.yahoo.prelude.fastsearch.SegmentedPacketCache;
+import com.yahoo.search.Query;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SegmentedPacketCacheTestCase {
+
+    @Test
+    public void testSegmentCountIsLimitedByCapacity() {
+        assertEquals(1, new SegmentedPacketCache(1, 1e64).segmentCount());
+        assertEquals(4, new SegmentedPacketCache(5, 1e64).segmentCount());
+        assertEquals(16, new SegmentedPacketCache(100, 1e64).segmentCount());
+        assertEquals(8, new SegmentedPacketCache(100, 1e64, 12).segmentCount());
+    }
+
+    @Test
+    public void testCapacityIsNotLimitedTo2GB() {
+        SegmentedPacketCache cache = new SegmentedPacketCache(8192, 1e64);
+        assertEquals(8192, cache.getCapacity());
+        assertEquals(8192L << 20, cache.getByteCapacity());
+    }
+
+    @Test
+    public void testPutAndGetInCacheLargerThan2GB() throws BufferTooSmallException {
+        for (int capacityMegaBytes : new int[] { 2048, 4096, 8192 }) {
+            SegmentedPacketCache cache = new SegmentedPacketCache(capacityMegaBytes, 1e64);
+            long now = System.currentTimeMillis();
+            CacheKey[] keys = new CacheKey[100];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new CacheKey(QueryPacket.create(new Query("/?query=key" + i)));
+                cache.put(keys[i], createCacheEntry(keys[i]), now);
+            }
+            for (CacheKey key : keys)
+                assertNotNull("Cached in a cache of " + capacityMegaBytes + " MB", cache.get(key, now));
+            assertEquals(100, cache.hits());
+            assertEquals(0, cache.misses());
+        }
+    }
+
+    @Test
+    public void testPutAndGetWithStatistics() throws BufferTooSmallException {
+        SegmentedPacketCache cache = new SegmentedPacketCache(100, 1e64);
+        long now = System.currentTimeMillis();
+        CacheKey[] keys = new CacheKey[100];
+        long totalSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new CacheKey(QueryPacket.create(new Query("/?query=key" + i)));
+            cache.put(keys[i], createCacheEntry(keys[i]), now);
+            totalSize += keys[i].byteSize() + PacketCacheTestCase.length;
+        }
+        for (CacheKey key : keys)
+            assertNotNull(cache.get(key, now));
+        assertNull(cache.get(new CacheKey(QueryPacket.create(new Query("/?query=nokey"))), now));
+
+        assertEquals(100, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0, cache.evictions());
+        assertEquals(totalSize, cache.totalPacketSize());
+
+        cache.clear();
+        assertEquals(0, cache.totalPacketSize());
+        assertNull(cache.get(keys[0], now));
+    }
+
+    @Test
+    public void testEntryAging() throws BufferTooSmallException {
+        SegmentedPacketCache cache = new SegmentedPacketCache(1, 5 * 3600);
+        CacheKey key = new CacheKey(QueryPacket.create(new Query("/?query=key")));
+        long now = System.currentTimeMillis();
+        cache.put(key, createCacheEntry(key), now - 10 * 3600 * 1000);
+        assertNull(cache.get(key, now));
+    }
+
+    private PacketWrapper createCacheEntry(CacheKey key) throws BufferTooSmallException {
+        ByteBuffer data = ByteBuffer.allocate(PacketCacheTestCase.length);
+        data.put(PacketCacheTestCase.queryResultPacketData);
+        data.flip();
+        return new PacketWrapper(key, new BasicPacket[] { PacketDecoder.extractPacket(data).packet });
+    }
+
+}
@@ -0,0 +1,263 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.cache.ResultCacheSearcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.grouping.request.GroupingOperation;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the result cache searcher
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final Thread testThread = Thread.currentThread();
+
+    @Test
+    public void testCaching() {
+        Backend backend = new Backend();
+        ResultCacheSearcher cache = cacheSearcher();
+        Chain<Searcher> chain = new Chain<>(cache, backend);
+
+        assertEquals("backend:1", search("?query=foo", chain).hits().get(0).getId().toString());
+        Query query = new Query("?query=foo");
+        Result cached = search(query, chain);
+        assertEquals("Served from the cache", "backend:1", cached.hits().get(0).getId().toString());
+        assertSame(query, cached.getQuery());
+        assertEquals(1, backend.count());
+
+        assertEquals("backend:2", search("?query=foo&sources=a,b", chain).hits().get(0).getId().toString());
+        assertEquals("Queries normalize to the same key", "backend:2", search("?query=foo&sources=b,a", chain).hits().get(0).getId().toString());
+        assertEquals("Paging is part of the key", "backend:3", search("?query=foo&hits=5", chain).hits().get(0).getId().toString());
+        assertEquals("Ranking is part of the key", "backend:4", search("?query=foo&ranking=other", chain).hits().get(0).getId().toString());
+        assertEquals("Request parameters are part of the key", "backend:5", search("?query=foo&summaryFields=title", chain).hits().get(0).getId().toString());
+        assertEquals("Timeout is not part of the key", "backend:1", search("?query=foo&timeout=3s", chain).hits().get(0).getId().toString());
+        assertEquals("nocache bypasses the cache", "backend:6", search("?query=foo&nocache=true", chain).hits().get(0).getId().toString());
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testGroupingQueriesAreNotCached() {
+        Backend backend = new Backend();
+        ResultCacheSearcher cache = cacheSearcher();
+        Chain<Searcher> chain = new Chain<>(cache, backend);
+
+        for (int i = 0; i < 2; i++) {
+            Query query = new Query("?query=foo");
+            GroupingRequest.newInstance(query).setRootOperation(GroupingOperation.fromString("all(group(a) each(output(count())))"));
+            search(query, chain);
+        }
+        assertEquals(2, backend.count());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testModifyingAReturnedResultDoesNotModifyTheCachedResult() {
+        Backend backend = new Backend();
+        Chain<Searcher> chain = new Chain<>(cacheSearcher(), backend);
+
+        search("?query=foo", chain).hits().add(new Hit("added"));
+        assertEquals(1, search("?query=foo", chain).hits().size());
+        assertEquals(1, backend.count());
+    }
+
+    @Test
+    public void testErrorsAreNotCached() {
+        Backend backend = new Backend();
+        ResultCacheSearcher cache = cacheSearcher();
+        Chain<Searcher> chain = new Chain<>(cache, backend);
+
+        search("?query=foo&fail=true", chain);
+        search("?query=foo&fail=true", chain);
+        search("?query=foo&nocachewrite=true", chain);
+        assertEquals(3, backend.count());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiryAndStaleWhileRevalidate() throws InterruptedException {
+        Backend backend = new Backend();
+        Chain<Searcher> chain = new Chain<>(cacheSearcher(), backend);
+
+        assertEquals("backend:1", search("?query=foo", chain).hits().get(0).getId().toString());
+        clock.advance(Duration.ofSeconds(15));
+        assertEquals("Stale result is served", "backend:1", search("?query=foo", chain).hits().get(0).getId().toString());
+        backend.awaitCount(2);
+        awaitCached("backend:2", chain);
+
+        clock.advance(Duration.ofSeconds(31));
+        assertEquals("Expired beyond staleness: Not served", "backend:3", search("?query=foo", chain).hits().get(0).getId().toString());
+    }
+
+    @Test
+    public void testRevalidationContinuesAfterTheCacheWhenItIsNotInTheChain() throws InterruptedException {
+        Backend backend = new Backend();
+        ResultCacheSearcher cache = cacheSearcher();
+        Searcher wrapper = new Searcher() {
+            @Override
+            public Result search(Query query, Execution execution) {
+                assertSame("Only invoked by the test thread", testThread, Thread.currentThread());
+                return cache.search(query, execution);
+            }
+        };
+        Chain<Searcher> chain = new Chain<>(wrapper, backend);
+
+        assertEquals("backend:1", search("?query=foo", chain).hits().get(0).getId().toString());
+        clock.advance(Duration.ofSeconds(15));
+        assertEquals("Stale result is served", "backend:1", search("?query=foo", chain).hits().get(0).getId().toString());
+        backend.awaitCount(2);
+        awaitCached("backend:2", chain);
+        assertEquals(2, backend.count());
+    }
+
+    @Test
+    public void testInvalidation() {
+        Backend backend = new Backend();
+        ResultCacheSearcher cache = cacheSearcher();
+        Chain<Searcher> chain = new Chain<>(cache, backend);
+
+        search("?query=foo", chain);
+        search("?query=foo&restrict=music", chain);
+        search("?query=foo&restrict=books", chain);
+        search("?query=foo&restrict=books,music", chain);
+        assertEquals(4, cache.size());
+
+        assertEquals(3, cache.invalidate("music"));
+        assertEquals(1, cache.size());
+        search("?query=foo&restrict=books", chain);
+        assertEquals(4, backend.count());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentIdenticalQueriesAreCollapsed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Backend backend = new Backend(release);
+        Chain<Searcher> chain = new Chain<>(cacheSearcher(), backend);
+        AtomicReference<Result> second = new AtomicReference<>();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Result> first = executor.submit(() -> search("?query=foo", chain));
+            backend.awaitCount(1);
+            Thread secondThread = new Thread(() -> second.set(search("?query=foo", chain)));
+            secondThread.start();
+            awaitWaiting(secondThread);
+            release.countDown();
+            secondThread.join(60 * 1000);
+            assertEquals("backend:1", first.get(60, TimeUnit.SECONDS).hits().get(0).getId().toString());
+            assertEquals("backend:1", second.get().hits().get(0).getId().toString());
+            assertEquals("The backend is invoked exactly once", 1, backend.count());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /** Waits until the given thread is blocked waiting for a collapsed execution (or anything else) */
+    private void awaitWaiting(Thread thread) throws InterruptedException {
+        long end = System.currentTimeMillis() + 60 * 1000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && thread.getState() != Thread.State.WAITING) {
+            assertTrue("Thread is waiting", System.currentTimeMillis() < end);
+            Thread.sleep(1);
+        }
+    }
+
+    private ResultCacheSearcher cacheSearcher() {
+        ResultCacheConfig.Builder config = new ResultCacheConfig.Builder();
+        config.timeToLiveSeconds(10);
+        config.staleWhileRevalidateSeconds(20);
+        return new ResultCacheSearcher(new ResultCacheConfig(config), MetricReceiver.nullImplementation, clock);
+    }
+
+    private void awaitCached(String expectedId, Chain<Searcher> chain) throws InterruptedException {
+        for (int i = 0; i < 6000; i++) {
+            if (search("?query=foo", chain).hits().get(0).getId().toString().equals(expectedId)) return;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Result " + expectedId + " was not cached");
+    }
+
+    private Result search(String request, Chain<Searcher> chain) {
+        return search(new Query(request), chain);
+    }
+
+    private Result search(Query query, Chain<Searcher> chain) {
+        return new Execution(chain, Execution.Context.createContextStub()).search(query);
+    }
+
+    /** Returns a result with a single hit with an id containing the number of times this has been called */
+    private static class Backend extends Searcher {
+
+        private final AtomicInteger count = new AtomicInteger(0);
+        private final CountDownLatch release;
+
+        Backend() {
+            this(new CountDownLatch(0));
+        }
+
+        /** Creates a backend which does not return until the given latch is released */
+        Backend(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            int current;
+            synchronized (count) {
+                current = count.incrementAndGet();
+                count.notifyAll();
+            }
+            try {
+                assertTrue(release.await(60, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (query.properties().getBoolean("fail"))
+                return new Result(query, ErrorMessage.createBackendCommunicationError("Failed"));
+            Result result = new Result(query);
+            result.hits().add(new Hit("backend:" + current));
+            return result;
+        }
+
+        int count() { return count.get(); }
+
+        void awaitCount(int expected) throws InterruptedException {
+            synchronized (count) {
+                long end = System.currentTimeMillis() + 60 * 1000;
+                while (count.get() < expected && System.currentTimeMillis() < end)
+                    count.wait(100);
+            }
+            assertTrue(count.get() >= expected);
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.document.GlobalId;
+import com.yahoo.fs4.DocumentInfo;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests dispatching queries to all the nodes of a group
+ */
+public class GroupSearchTestCase {
+
+    @Test
+    public void testMergingNodeResults() {
+        List<List<DocumentInfo>> nodeDocuments = Arrays.asList(documents(0, 9.0, 5.0, 1.0),
+                                                               documents(1, 8.0, 7.0, 6.0),
+                                                               Collections.emptyList(),
+                                                               documents(3, 9.0, 2.0));
+
+        assertMerged("0:9.0 3:9.0 1:8.0 1:7.0 1:6.0 0:5.0 3:2.0 0:1.0", nodeDocuments, 0, 10);
+        assertMerged("0:9.0 3:9.0 1:8.0", nodeDocuments, 0, 3);
+        assertMerged("1:7.0 1:6.0", nodeDocuments, 3, 2);
+        assertMerged("0:1.0", nodeDocuments, 7, 5);
+        assertMerged("", nodeDocuments, 8, 5);
+        assertMerged("", nodeDocuments, 0, 0);
+    }
+
+    private void assertMerged(String expected, List<List<DocumentInfo>> nodeDocuments, int offset, int hits) {
+        StringBuilder b = new StringBuilder();
+        for (DocumentInfo document : GroupSearch.merge(nodeDocuments, offset, hits))
+            b.append(document.getDistributionKey()).append(":").append(document.getMetric()).append(" ");
+        assertEquals(expected, b.toString().trim());
+    }
+
+    private List<DocumentInfo> documents(int key, double ... metrics) {
+        DocumentInfo[] documents = new DocumentInfo[metrics.length];
+        for (int i = 0; i < metrics.length; i++)
+            documents[i] = new DocumentInfo(new GlobalId(new byte[GlobalId.LENGTH]), metrics[i], 0, key);
+        return Arrays.asList(documents);
+    }
+
+}
@@ -0,0 +1,75 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.google.common.collect.ImmutableList;
+import com.yahoo.container.handler.VipStatus;
+import com.yahoo.prelude.fastsearch.FS4ResourcePool;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SearchClusterTestCase {
+
+    private final SearchCluster.Node node0 = new SearchCluster.Node(0, "host0", 123, 0);
+    private final SearchCluster.Node node1 = new SearchCluster.Node(1, "host1", 123, 0);
+    private final SearchCluster.Node node2 = new SearchCluster.Node(2, "host2", 123, 1);
+    private final SearchCluster.Node node3 = new SearchCluster.Node(3, "host3", 123, 1);
+
+    private final SearchCluster cluster = new SearchCluster(88.0, ImmutableList.of(node0, node1, node2, node3),
+                                                            new FS4ResourcePool(1), 1, new VipStatus());
+    private final SearchCluster.Group group0 = cluster.groups().get(0);
+    private final SearchCluster.Group group1 = cluster.groups().get(1);
+
+    @Test
+    public void testOnlyCompleteGroupsAreSelected() {
+        cluster.failed(node1);
+        assertEquals(group1, cluster.nextDispatchGroup().get());
+        assertEquals(group1, cluster.nextDispatchGroup().get());
+
+        cluster.failed(node2);
+        assertFalse("No complete group: Fall back to dispatch node", cluster.nextDispatchGroup().isPresent());
+
+        cluster.working(node1);
+        assertEquals(group0, cluster.nextDispatchGroup().get());
+    }
+
+    @Test
+    public void testLeastLoadedGroupIsSelected() {
+        Random random = new Random(1);
+        group0.requestStarted();
+        assertEquals("Fewer requests in flight", group1, cluster.nextDispatchGroup(random).get());
+
+        group1.requestStarted();
+        group1.requestStarted();
+        assertEquals("Fewer requests in flight", group0, cluster.nextDispatchGroup(random).get());
+
+        group0.requestCompleted(100_000_000);
+        group1.requestCompleted(1_000_000);
+        group1.requestCompleted(1_000_000);
+        assertEquals(100.0, group0.decayedLatency(), 0.001);
+        assertEquals(1.0, group1.decayedLatency(), 0.001);
+        assertEquals("Lower latency", group1, cluster.nextDispatchGroup(random).get());
+
+        for (int i = 0; i < 10; i++)
+            group1.requestStarted();
+        assertEquals("Still lower expected completion time", group1, cluster.nextDispatchGroup(random).get());
+        for (int i = 0; i < 100; i++)
+            group1.requestStarted();
+        assertEquals("Higher expected completion time", group0, cluster.nextDispatchGroup(random).get());
+    }
+
+    @Test
+    public void testLatencyDecay() {
+        group0.requestStarted();
+        group0.requestCompleted(10_000_000);
+        assertEquals(10.0, group0.decayedLatency(), 0.001);
+        group0.requestStarted();
+        group0.requestCompleted(20_000_000);
+        assertEquals(11.0, group0.decayedLatency(), 0.001);
+        assertEquals(0, group0.inflightRequests());
+    }
+
+}
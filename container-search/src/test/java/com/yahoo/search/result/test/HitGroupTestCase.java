@@ -2,16 +2,19 @@
 package com.yahoo.search.result.test;
 
 import com.yahoo.search.Query;
+import com.yahoo.search.query.Sorting;
 import com.yahoo.search.result.DefaultErrorHit;
 import com.yahoo.search.result.ErrorHit;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.result.HitSortOrderer;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -254,7 +257,59 @@ public class HitGroupTestCase {
         assertFalse(hg.isFilled("anyclass"));
         assertTrue(hg.getFilled().isEmpty());
     }
-    
+
+    @Test
+    public void testAddMerged() {
+        List<HitGroup> sources = Arrays.asList(group("a", 0.9, 0.5, 0.5, 0.1),
+                                               group("b", 0.8, 0.7, 0.5),
+                                               group("c", 0.95, 0.2));
+        sources.get(1).addError(ErrorMessage.createTimeout("b timed out"));
+
+        HitGroup sorted = new HitGroup("sorted");
+        sorted.add(new Hit("existing", 0.6));
+        for (HitGroup source : sources)
+            sorted.addAll(source.asUnorderedHits());
+
+        HitGroup merged = new HitGroup("merged");
+        merged.add(new Hit("existing", 0.6));
+        merged.addMerged(sources, 100);
+        assertEquals(ids(sorted), ids(merged));
+        assertEquals(10, merged.getConcreteSize());
+        assertEquals("b timed out", merged.getError().getDetailedMessage());
+
+        HitGroup trimmed = new HitGroup("trimmed");
+        trimmed.add(new Hit("existing", 0.6));
+        trimmed.addMerged(sources, 4);
+        assertEquals(ids(sorted).subList(0, 4), ids(trimmed).subList(0, 4));
+        assertEquals("Existing hits are kept", 5, trimmed.getConcreteSize());
+        assertEquals("The error hit is kept", 6, trimmed.size());
+        trimmed.trim(1, 3);
+        assertEquals(ids(sorted).subList(1, 4), ids(trimmed).subList(0, 3));
+    }
+
+    @Test
+    public void testAddMergedDoesNotMergeUnfilledHitsBySortFields() {
+        List<HitGroup> sources = Arrays.asList(group("a", 0.9, 0.5), group("b", 0.8, 0.7, 0.5));
+        for (HitGroup source : sources)
+            source.asUnorderedHits().forEach(Hit::setFillable);
+
+        HitGroup merged = new HitGroup("merged");
+        merged.setOrderer(new HitSortOrderer(new Sorting("+score")));
+        merged.addMerged(sources, 2);
+        assertEquals("All hits are added, to be sorted once filled", 5, merged.getConcreteSize());
+    }
+
+    private HitGroup group(String name, double ... relevances) {
+        HitGroup group = new HitGroup(name);
+        for (int i = 0; i < relevances.length; i++)
+            group.add(new Hit(name + i, relevances[i]));
+        return group;
+    }
+
+    private List<String> ids(HitGroup group) {
+        return group.asList().stream().filter(hit -> ! hit.isMeta()).map(hit -> hit.getId().toString()).collect(Collectors.toList());
+    }
+
     /** Returns the (first) error hit in the given list, or empty if none */
     private Optional<ErrorHit> errorHitIn(List<Hit> hits) {
         return hits.stream().filter(h -> h instanceof ErrorHit).map(ErrorHit.class::cast).findFirst();
@@ -93,7 +93,7 @@ public class JsonReader {
         }
         Optional<DocumentParseInfo> documentParseInfo;
         try {
-            documentParseInfo = parseDocument();
+            documentParseInfo = new DocumentParser(parser, typeManager).parse(Optional.empty());
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
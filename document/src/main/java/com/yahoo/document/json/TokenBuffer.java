@@ -12,6 +12,10 @@ import com.google.common.base.Preconditions;
 
 /**
  * Helper class to enable lookahead in the token stream.
+ * <p>
+ * A token buffer may also be created on top of a parser positioned at the start of a JSON struct. It then reads the
+ * tokens of that struct directly from the parser as they are consumed, without storing them, and does not support
+ * lookahead.
  *
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
@@ -29,6 +33,8 @@ public class TokenBuffer {
     }
 
     private Deque<Token> buffer;
+    private final JsonParser source;
+    private boolean exhausted = false;
     private int nesting = 0;
 
     public TokenBuffer() {
@@ -37,12 +43,36 @@ public class TokenBuffer {
 
     private TokenBuffer(Deque<Token> buffer) {
         this.buffer = buffer;
+        this.source = null;
         if (buffer.size() > 0) {
             updateNesting(buffer.peekFirst().token);
         }
     }
 
+    /**
+     * Creates a token buffer which reads the JSON struct the given parser is positioned at directly from the parser.
+     *
+     * @param source the parser to read tokens from, positioned at the start of an object or array
+     */
+    public TokenBuffer(JsonParser source) {
+        JsonToken first = source.currentToken();
+        Preconditions.checkArgument(first != null && first.isStructStart(),
+                "Expected start of object or array, got %s.", first);
+        this.buffer = null;
+        this.source = source;
+        updateNesting(first);
+    }
+
     public JsonToken next() {
+        if (source != null) {
+            if (exhausted || nesting == 0) {
+                exhausted = true;
+                return null;
+            }
+            JsonToken t = nextValue(source);
+            updateNesting(t);
+            return t;
+        }
         buffer.removeFirst();
         Token t = buffer.peekFirst();
         if (t == null) {
@@ -53,18 +83,42 @@ public class TokenBuffer {
     }
 
     public JsonToken currentToken() {
+        if (source != null) {
+            return source.currentToken();
+        }
         return buffer.peekFirst().token;
     }
 
     public String currentName() {
+        if (source != null) {
+            try {
+                return source.getCurrentName();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return buffer.peekFirst().name;
     }
 
     public String currentText() {
+        if (source != null) {
+            try {
+                return source.getText();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return buffer.peekFirst().text;
     }
 
+    /**
+     * Returns the number of tokens left in this. When reading from a parser, this is 1 until the end of the struct
+     * has been consumed, and then 0.
+     */
     public int size() {
+        if (source != null) {
+            return exhausted ? 0 : 1;
+        }
         return buffer.size();
     }
 
@@ -73,10 +127,12 @@ public class TokenBuffer {
     }
 
     public void bufferObject(JsonToken first, JsonParser tokens) {
+        checkBuffering();
         bufferJsonStruct(first, tokens, JsonToken.START_OBJECT);
     }
 
     public void bufferArray(JsonToken first, JsonParser tokens) {
+        checkBuffering();
         bufferJsonStruct(first, tokens, JsonToken.START_ARRAY);
     }
 
@@ -137,9 +193,17 @@ public class TokenBuffer {
         return nesting;
     }
 
+    private void checkBuffering() {
+        Preconditions.checkState(source == null, "Can not buffer tokens in a token buffer reading from a parser.");
+    }
+
     public String dumpContents() {
         StringBuilder b = new StringBuilder();
         b.append("[nesting: ").append(nesting()).append("\n");
+        if (source != null) {
+            b.append("(streaming from parser, at ").append(currentToken()).append(")\n]\n");
+            return b.toString();
+        }
         for (Token t : buffer) {
             b.append("(").append(t.token).append(", \"").append(t.name).append("\", \"").append(t.text).append("\")\n");
         }
@@ -155,6 +219,7 @@ public class TokenBuffer {
     }
 
     public TokenBuffer prefetchCurrentElement() {
+        checkBuffering();
         Deque<Token> copy = new ArrayDeque<>();
 
         if (currentToken().isScalarValue()) {
@@ -174,6 +239,7 @@ public class TokenBuffer {
     }
 
     public Token prefetchScalar(String name) {
+        checkBuffering();
         int localNesting = nesting();
         int nestingBarrier = localNesting;
         Token toReturn = null;
@@ -4,7 +4,11 @@ package com.yahoo.document.json.document;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.readers.DocumentParseInfo;
+import com.yahoo.document.json.readers.VespaJsonDocumentReader;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -26,19 +30,37 @@ public class DocumentParser {
     public static final String FIELDS = "fields";
     public static final String REMOVE = "remove";
     private final JsonParser parser;
+    private final DocumentTypeManager typeManager;
     private  long indentLevel;
+    private RuntimeException fieldsError;
 
     public DocumentParser(JsonParser parser) {
+        this(parser, null);
+    }
+
+    /**
+     * Creates a parser which reads the fields of a put directly from the JSON parser into the document when the
+     * operation and id precede the fields, instead of buffering the fields.
+     *
+     * @param parser      the JSON parser to read from
+     * @param typeManager the document types to create documents from, or null to always buffer the fields
+     */
+    public DocumentParser(JsonParser parser, DocumentTypeManager typeManager) {
         this.parser = parser;
+        this.typeManager = typeManager;
     }
 
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
         indentLevel = 0;
         DocumentParseInfo documentParseInfo = new DocumentParseInfo();
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
+        fieldsError = null;
         do {
             parseOneItem(documentParseInfo, documentIdArg.isPresent() /* doc id set externally */);
         } while (indentLevel > 0L);
+        if (fieldsError != null) {
+            throw fieldsError; // only now that the whole operation is consumed, so the next one can be read
+        }
 
         if (documentParseInfo.documentId != null) {
             return Optional.of(documentParseInfo);
@@ -113,7 +135,11 @@ public class DocumentParser {
             JsonToken currentToken = parser.getCurrentToken();
             // "fields" opens a dictionary and is therefore on level two which might be surprising.
             if (currentToken == JsonToken.START_OBJECT && FIELDS.equals(parser.getCurrentName())) {
-                documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
+                if (canReadPutDirectly(documentParseInfo)) {
+                    readPutDirectly(documentParseInfo);
+                } else {
+                    documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
+                }
                 processIndent();
             }
         } catch (IOException e) {
@@ -121,6 +147,34 @@ public class DocumentParser {
         }
     }
 
+    private boolean canReadPutDirectly(DocumentParseInfo documentParseInfo) {
+        return typeManager != null
+               && documentParseInfo.operationType == SupportedOperation.PUT
+               && documentParseInfo.documentId != null
+               && documentParseInfo.put == null
+               && documentParseInfo.fieldsBuffer.size() == 0;
+    }
+
+    private void readPutDirectly(DocumentParseInfo documentParseInfo) throws IOException {
+        DocumentType documentType = typeManager.getDocumentType(documentParseInfo.documentId.getDocType());
+        if (documentType == null) {
+            fieldsError = new IllegalArgumentException(String.format("Document type %s does not exist",
+                                                                     documentParseInfo.documentId.getDocType()));
+            parser.skipChildren();
+            return;
+        }
+        TokenBuffer fields = new TokenBuffer(parser);
+        try {
+            documentParseInfo.put = new VespaJsonDocumentReader().createPut(documentType, documentParseInfo.documentId,
+                                                                            fields);
+        } catch (RuntimeException e) {
+            while (fields.next() != null) {
+                // skip the rest of the fields
+            }
+            fieldsError = e;
+        }
+    }
+
     private static SupportedOperation operationNameToOperationType(String operationName) {
         switch (operationName) {
             case PUT:
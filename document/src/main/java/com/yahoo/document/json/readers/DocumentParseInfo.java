@@ -2,6 +2,7 @@
 package com.yahoo.document.json.readers;
 
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
 import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.document.DocumentParser;
 
@@ -13,4 +14,6 @@ public class DocumentParseInfo {
     public Optional<String> condition = Optional.empty();
     public DocumentParser.SupportedOperation operationType = null;
     public TokenBuffer fieldsBuffer = new TokenBuffer();
+    /** The put, if its fields were read directly from the parser rather than into the fields buffer */
+    public DocumentPut put = null;
 }
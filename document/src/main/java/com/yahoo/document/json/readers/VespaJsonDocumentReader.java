@@ -4,6 +4,7 @@ package com.yahoo.document.json.readers;
 import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Preconditions;
 import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentOperation;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.DocumentRemove;
@@ -43,9 +44,9 @@ public class VespaJsonDocumentReader {
         try {
             switch (documentParseInfo.operationType) {
                 case PUT:
-                    documentOperation = new DocumentPut(new Document(documentType, documentParseInfo.documentId));
-                    readPut(documentParseInfo.fieldsBuffer, (DocumentPut) documentOperation);
-                    verifyEndState(documentParseInfo.fieldsBuffer, JsonToken.END_OBJECT);
+                    documentOperation = (documentParseInfo.put != null)
+                            ? documentParseInfo.put
+                            : createPut(documentType, documentParseInfo.documentId, documentParseInfo.fieldsBuffer);
                     break;
                 case REMOVE:
                     documentOperation = new DocumentRemove(documentParseInfo.documentId);
@@ -71,6 +72,17 @@ public class VespaJsonDocumentReader {
         return documentOperation;
     }
 
+    /**
+     * Creates a put of a document with the given type and id, and reads its fields from the given buffer, which must
+     * hold exactly the fields object of the operation.
+     */
+    public DocumentPut createPut(DocumentType documentType, DocumentId documentId, TokenBuffer fields) {
+        DocumentPut put = new DocumentPut(new Document(documentType, documentId));
+        readPut(fields, put);
+        verifyEndState(fields, JsonToken.END_OBJECT);
+        return put;
+    }
+
     // Exposed for unit testing...
     public void readPut(TokenBuffer buffer, DocumentPut put) {
         try {
@@ -598,6 +598,31 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
         }
     }
 
+    /**
+     * Reads the id of the serialized document at the current position, without decoding the rest of the document and
+     * without moving the position of this.
+     *
+     * @return The id of the document.
+     */
+    public DocumentId peekDocumentId() {
+        int pos = position();
+        try {
+            short version = getShort(null);
+            if (version < 6 || version > Document.SERIALIZED_VERSION) {
+                throw new DeserializationException("Unknown version " + version + ", expected " +
+                                                   Document.SERIALIZED_VERSION + ".");
+            }
+            if (version < 7) {
+                getInt2_4_8Bytes(null);
+            } else {
+                getInt(null);
+            }
+            return readDocumentId();
+        } finally {
+            position(pos);
+        }
+    }
+
     public DocumentId readDocumentId() {
         Utf8String uri = new Utf8String(parseNullTerminatedString(getBuf().getByteBuffer()));
         return new DocumentId(uri.toString());
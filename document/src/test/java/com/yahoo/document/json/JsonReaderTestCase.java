@@ -1253,6 +1253,36 @@ public class JsonReaderTestCase {
         );
     }
 
+    @Test
+    public void require_that_feed_continues_after_error_in_put_read_directly_from_parser() {
+        final String jsonData = inputJson(
+                "[",
+                "      {",
+                "          'put': 'id:unittest:testint::0',",
+                "          'fields': {",
+                "              'integerfield': ' 1'",
+                "          },",
+                "          'condition': 'testint.integerfield == 1'",
+                "      },",
+                "      {",
+                "          'put': 'id:unittest:smoke::whee',",
+                "          'fields': {",
+                "              'something': 'smoketest',",
+                "              'nalle': 'bamse'",
+                "          }",
+                "      }",
+                "]");
+        JsonReader r = new JsonReader(types, jsonToInputStream(jsonData), parserFactory);
+        try {
+            r.next();
+            fail("Expected exception");
+        } catch (JsonReaderException e) {
+            assertTrue(e.getMessage().contains("Error in document 'id:unittest:testint::0' - could not parse field 'integerfield'"));
+        }
+        smokeTestDoc(((DocumentPut) r.next()).getDocument());
+        assertNull(r.next());
+    }
+
     @Test
     public void requireThatUnknownDocTypeThrowsIllegalArgumentException() {
         exception.expect(IllegalArgumentException.class);
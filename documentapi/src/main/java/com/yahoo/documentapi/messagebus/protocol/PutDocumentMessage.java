@@ -1,10 +1,11 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.documentapi.messagebus.protocol;
 
-import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.TestAndSetCondition;
 import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.VespaDocumentDeserializer42;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -16,6 +17,7 @@ public class PutDocumentMessage extends TestAndSetMessage {
 
     private DocumentDeserializer buffer = null;
     private DocumentPut put = null;
+    private DocumentId id = null;
     private long time = 0;
     private LazyDecoder decoder = null;
 
@@ -58,9 +60,11 @@ public class PutDocumentMessage extends TestAndSetMessage {
      */
     private void deserialize() {
         if (decoder != null && buffer != null) {
+            LazyDecoder decoder = this.decoder;
+            DocumentDeserializer buffer = this.buffer;
+            this.decoder = null;
+            this.buffer = null;
             decoder.decode(this, buffer);
-            decoder = null;
-            buffer = null;
         }
     }
 
@@ -72,6 +76,23 @@ public class PutDocumentMessage extends TestAndSetMessage {
         return put;
     }
 
+    /**
+     * Returns the id of the document to put. If this message has not been deserialized yet, the id is read from the
+     * serialized buffer without decoding the rest of the document, so routing on the id does not cost a full decode.
+     *
+     * @return The document id.
+     */
+    public DocumentId getDocumentId() {
+        if (decoder != null && buffer instanceof VespaDocumentDeserializer42) {
+            if (id == null) {
+                id = ((VespaDocumentDeserializer42)buffer).peekDocumentId();
+            }
+            return id;
+        }
+        deserialize();
+        return put.getId();
+    }
+
     /**
      * Sets the document to put.
      *
@@ -80,6 +101,7 @@ public class PutDocumentMessage extends TestAndSetMessage {
     public void setDocumentPut(DocumentPut put) {
         buffer = null;
         decoder = null;
+        id = null;
         this.put = put;
     }
 
@@ -99,8 +121,7 @@ public class PutDocumentMessage extends TestAndSetMessage {
      * @param time The timestamp to set.
      */
     public void setTimestamp(long time) {
-        buffer = null;
-        decoder = null;
+        deserialize();
         this.time = time;
     }
 
@@ -134,8 +155,7 @@ public class PutDocumentMessage extends TestAndSetMessage {
 
     @Override
     public long getSequenceId() {
-        deserialize();
-        return Arrays.hashCode(put.getId().getGlobalId());
+        return Arrays.hashCode(getDocumentId().getGlobalId());
     }
 
     @Override
@@ -151,6 +171,7 @@ public class PutDocumentMessage extends TestAndSetMessage {
 
     @Override
     public void setCondition(TestAndSetCondition condition) {
+        deserialize();
         put.setCondition(condition);
     }
 }
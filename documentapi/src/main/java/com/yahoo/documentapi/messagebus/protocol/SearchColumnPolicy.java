@@ -86,7 +86,7 @@ public class SearchColumnPolicy implements DocumentProtocolRoutingPolicy {
         switch (msg.getType()) {
 
             case DocumentProtocol.MESSAGE_PUTDOCUMENT:
-                id = ((PutDocumentMessage)msg).getDocumentPut().getDocument().getId();
+                id = ((PutDocumentMessage)msg).getDocumentId();
                 break;
 
             case DocumentProtocol.MESSAGE_GETDOCUMENT:
@@ -55,6 +55,8 @@ public class Messages52TestCase extends Messages51TestCase {
 
             for (Language lang : LANGUAGES) {
                 final PutDocumentMessage deserializedMsg = (PutDocumentMessage)deserialize("PutDocumentMessage", DocumentProtocol.MESSAGE_PUTDOCUMENT, lang);
+                assertEquals(msg.getDocumentPut().getDocument().getId(), deserializedMsg.getDocumentId());
+                assertEquals(msg.getSequenceId(), deserializedMsg.getSequenceId());
                 assertEquals(msg.getDocumentPut().getDocument().getDataType().getName(), deserializedMsg.getDocumentPut().getDocument().getDataType().getName());
                 assertEquals(msg.getDocumentPut().getDocument().getId().toString(), deserializedMsg.getDocumentPut().getDocument().getId().toString());
                 assertEquals(msg.getTimestamp(), deserializedMsg.getTimestamp());
@@ -3,12 +3,16 @@ package com.yahoo.vespa.indexinglanguage.expressions;
 
 import com.yahoo.document.DataType;
 import com.yahoo.document.FieldPath;
+import com.yahoo.document.annotation.SpanTree;
+import com.yahoo.document.annotation.SpanTrees;
 import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.language.Language;
 import com.yahoo.language.Linguistics;
 import com.yahoo.language.detect.Detection;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 /**
@@ -17,6 +21,7 @@ import java.util.Map;
 public class ExecutionContext implements FieldTypeAdapter, FieldValueAdapter, Cloneable {
 
     private final Map<String, FieldValue> variables = new HashMap<>();
+    private final Map<StringFieldValue, AnnotatedValues> annotatedValues = new IdentityHashMap<>();
     private final FieldValueAdapter adapter;
     private FieldValue value;
     private Language language;
@@ -122,9 +127,69 @@ public class ExecutionContext implements FieldTypeAdapter, FieldValueAdapter, Cl
         return this;
     }
 
+    /**
+     * Clears the state of the statement executing in this. The annotated values of this are kept, as each field
+     * statement of a document starts by clearing the state, see {@link #clearAnnotatedValues}.
+     */
     public ExecutionContext clear() {
         variables.clear();
         value = null;
         return this;
     }
+
+    /** Forgets the annotated values of this. Call this if a context is reused for another document. */
+    public ExecutionContext clearAnnotatedValues() {
+        annotatedValues.clear();
+        return this;
+    }
+
+    /**
+     * Returns a copy of the value which was annotated from the given input using the given settings earlier in
+     * this context, or null if there is none. This lets the statements of different fields which tokenize the same
+     * input in the same way share the work.
+     */
+    StringFieldValue getAnnotatedValue(StringFieldValue input, Object settings) {
+        AnnotatedValues values = annotatedValues.get(input);
+        if (values == null || values.text != input.getString()) {
+            return null;
+        }
+        AnnotatedValue annotated = values.values.get(settings);
+        if (annotated == null || annotated.value.getSpanTree(SpanTrees.LINGUISTICS) != annotated.tree) {
+            return null;
+        }
+        return annotated.value.clone();
+    }
+
+    /** Remembers the value which was annotated from the given input using the given settings */
+    void putAnnotatedValue(StringFieldValue input, Object settings, StringFieldValue annotated) {
+        AnnotatedValues values = annotatedValues.get(input);
+        if (values == null || values.text != input.getString()) {
+            values = new AnnotatedValues(input.getString());
+            annotatedValues.put(input, values);
+        }
+        values.values.put(settings, new AnnotatedValue(annotated));
+    }
+
+    private static class AnnotatedValues {
+
+        // The text of the input when it was annotated, in case it was changed afterwards
+        final String text;
+        final Map<Object, AnnotatedValue> values = new HashMap<>();
+
+        AnnotatedValues(String text) {
+            this.text = text;
+        }
+    }
+
+    private static class AnnotatedValue {
+
+        // The annotated value is not copied, but is not reused if a later expression replaced its annotations
+        final StringFieldValue value;
+        final SpanTree tree;
+
+        AnnotatedValue(StringFieldValue value) {
+            this.value = value;
+            this.tree = value.getSpanTree(SpanTrees.LINGUISTICS);
+        }
+    }
 }
@@ -19,6 +19,10 @@ import java.util.Iterator;
  */
 public class ScriptExpression extends ExpressionList<StatementExpression> {
 
+    // The input type of a script is resolved on first use, instead of each time it is executed
+    private volatile boolean inputTypeResolved = false;
+    private DataType requiredInputType;
+
     public ScriptExpression() {
         super();
     }
@@ -51,6 +55,14 @@ public class ScriptExpression extends ExpressionList<StatementExpression> {
 
     @Override
     public DataType requiredInputType() {
+        if ( ! inputTypeResolved) {
+            requiredInputType = resolveRequiredInputType();
+            inputTypeResolved = true;
+        }
+        return requiredInputType;
+    }
+
+    private DataType resolveRequiredInputType() {
         DataType prev = null;
         for (Expression exp : this) {
             DataType next = exp.requiredInputType();
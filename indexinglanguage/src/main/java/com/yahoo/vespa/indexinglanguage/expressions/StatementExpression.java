@@ -9,9 +9,9 @@ import com.yahoo.vespa.indexinglanguage.ScriptParserContext;
 import com.yahoo.vespa.indexinglanguage.parser.IndexingInput;
 import com.yahoo.vespa.indexinglanguage.parser.ParseException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -19,6 +19,11 @@ import java.util.List;
  */
 public class StatementExpression extends ExpressionList<Expression> {
 
+    // The types of a statement are resolved on first use, instead of each time it is executed
+    private volatile boolean typesResolved = false;
+    private DataType requiredInputType;
+    private DataType createdOutputType;
+
     public StatementExpression(Expression... lst) {
         this(Arrays.asList(lst));
     }
@@ -43,6 +48,24 @@ public class StatementExpression extends ExpressionList<Expression> {
 
     @Override
     public DataType requiredInputType() {
+        resolveTypes();
+        return requiredInputType;
+    }
+
+    @Override
+    public DataType createdOutputType() {
+        resolveTypes();
+        return createdOutputType;
+    }
+
+    private void resolveTypes() {
+        if (typesResolved) return;
+        requiredInputType = resolveRequiredInputType();
+        createdOutputType = resolveCreatedOutputType();
+        typesResolved = true;
+    }
+
+    private DataType resolveRequiredInputType() {
         for (Expression exp : this) {
             DataType type = exp.requiredInputType();
             if (type != null) {
@@ -56,8 +79,7 @@ public class StatementExpression extends ExpressionList<Expression> {
         return null;
     }
 
-    @Override
-    public DataType createdOutputType() {
+    private DataType resolveCreatedOutputType() {
         for (int i = size(); --i >= 0; ) {
             DataType type = get(i).createdOutputType();
             if (type != null) {
@@ -98,7 +120,7 @@ public class StatementExpression extends ExpressionList<Expression> {
     }
 
     private static List<Expression> filterList(Iterable<Expression> lst) {
-        List<Expression> ret = new LinkedList<>();
+        List<Expression> ret = new ArrayList<>();
         for (Expression exp : lst) {
             if (exp instanceof StatementExpression) {
                 ret.addAll(filterList((StatementExpression)exp));
@@ -34,6 +34,18 @@ public class TokenizeExpression extends Expression {
     @Override
     protected void doExecute(ExecutionContext context) {
         StringFieldValue input = (StringFieldValue)context.getValue();
+        // The annotations only depend on the text of an input without span trees, the language and the settings,
+        // so these are reused when several statements tokenize the same field the same way
+        boolean shareable = input.getSpanTreeMap() == null || input.getSpanTreeMap().isEmpty();
+        AnnotationSettings settings = new AnnotationSettings(linguistics, config, context.getLanguage());
+        if (shareable) {
+            StringFieldValue annotated = context.getAnnotatedValue(input, settings);
+            if (annotated != null) {
+                context.setValue(annotated);
+                return;
+            }
+        }
+
         StringFieldValue output = input.clone();
         context.setValue(output);
 
@@ -44,6 +56,9 @@ public class TokenizeExpression extends Expression {
         }
         LinguisticsAnnotator annotator = new LinguisticsAnnotator(linguistics, cfg);
         annotator.annotate(output);
+        if (shareable) {
+            context.putAnnotatedValue(input, settings, output);
+        }
     }
 
     @Override
@@ -93,4 +108,32 @@ public class TokenizeExpression extends Expression {
     public int hashCode() {
         return getClass().hashCode() + config.hashCode();
     }
+
+    /** What the annotations of a tokenized value depend on, besides its text */
+    private static class AnnotationSettings {
+
+        final Linguistics linguistics;
+        final AnnotatorConfig config;
+        final Language language;
+
+        AnnotationSettings(Linguistics linguistics, AnnotatorConfig config, Language language) {
+            this.linguistics = linguistics;
+            this.config = config;
+            this.language = language;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AnnotationSettings)) {
+                return false;
+            }
+            AnnotationSettings rhs = (AnnotationSettings)obj;
+            return linguistics == rhs.linguistics && config.equals(rhs.config) && language == rhs.language;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(linguistics) + config.hashCode() + language.hashCode();
+        }
+    }
 }
@@ -1,7 +1,10 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.indexinglanguage.linguistics;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.yahoo.document.annotation.*;
@@ -10,6 +13,7 @@ import com.yahoo.language.Linguistics;
 import com.yahoo.language.process.StemMode;
 import com.yahoo.language.process.Token;
 import com.yahoo.language.process.Tokenizer;
+import com.yahoo.language.simple.SimpleTokenizer;
 
 import static com.yahoo.language.LinguisticsCase.toLowerCase;
 
@@ -67,12 +71,26 @@ public class LinguisticsAnnotator {
         String input = (text.getString().length() <=  config.getMaxTokenizeLength())
                 ? text.getString()
                 : text.getString().substring(0, config.getMaxTokenizeLength());
-        Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
-                                                    config.getRemoveAccents());
         TermOccurrences termOccurrences = new TermOccurrences(config.getMaxTermOccurrences());
         SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
-        for (Token token : tokens) {
-            addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
+        if (tokenizer instanceof SimpleTokenizer) {
+            // Only create strings for the indexable tokens
+            SimpleTokenizer.Cursor cursor = ((SimpleTokenizer)tokenizer).cursor(input, config.getLanguage(),
+                                                                                 config.getStemMode(),
+                                                                                 config.getRemoveAccents());
+            while (cursor.next()) {
+                if (cursor.getType().isIndexable()) {
+                    addTermSpan(tree.spanList(), tokenizer, cursor.getOrig(), cursor.getOffset(),
+                                cursor.getTokenString(), Collections.emptyList(), config.getStemMode(),
+                                termOccurrences);
+                }
+            }
+        } else {
+            Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
+                                                        config.getRemoveAccents());
+            for (Token token : tokens) {
+                addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
+            }
         }
 
         if (tree.numAnnotations() == 0) return false;
@@ -125,13 +143,26 @@ public class LinguisticsAnnotator {
             throw new IllegalArgumentException("Token '" + orig + "' has offset " + pos + ", which makes it overflow " +
                                                "the bounds of the input string; " + input);
         }
+        List<String> stems = Collections.emptyList();
+        if (mode == StemMode.ALL && token.getNumStems() > 0) {
+            stems = new ArrayList<>(token.getNumStems());
+            for (int i = 0; i < token.getNumStems(); i++) {
+                stems.add(token.getStem(i));
+            }
+        }
+        addTermSpan(parent, tokenizer, orig, pos, token.getTokenString(), stems, mode, termOccurrences);
+    }
+
+    private static void addTermSpan(SpanList parent, Tokenizer tokenizer, String orig, int pos, String tokenString,
+                                    List<String> stems, StemMode mode, TermOccurrences termOccurrences) {
+        int len = orig.length();
         if (mode == StemMode.ALL) {
             Span where = parent.span(pos, len);
             String lowercasedOrig = toLowerCase(orig);
             addAnnotation(where, orig, orig, termOccurrences);
 
             String lowercasedTerm = lowercasedOrig;
-            String term = token.getTokenString();
+            String term = tokenString;
             if (term != null) {
                 term = tokenizer.getReplacementTerm(term);
             }
@@ -141,15 +172,14 @@ public class LinguisticsAnnotator {
             if (! lowercasedOrig.equals(lowercasedTerm)) {
                 addAnnotation(where, term, orig, termOccurrences);
             }
-            for (int i = 0; i < token.getNumStems(); i++) {
-                String stem = token.getStem(i);
+            for (String stem : stems) {
                 String lowercasedStem = toLowerCase(stem);
                 if (! (lowercasedOrig.equals(lowercasedStem) || lowercasedTerm.equals(lowercasedStem))) {
                     addAnnotation(where, stem, orig, termOccurrences);
                 }
             }
         } else {
-            String term = token.getTokenString();
+            String term = tokenString;
             if (term != null) {
                 term = tokenizer.getReplacementTerm(term);
             }
@@ -157,7 +187,7 @@ public class LinguisticsAnnotator {
                 return;
             }
             if (termOccurrences.termCountBelowLimit(term))  {
-                parent.span(pos, len).annotate(lowerCaseTermAnnotation(term, token.getOrig()));
+                parent.span(pos, len).annotate(lowerCaseTermAnnotation(term, orig));
             }
         }
     }
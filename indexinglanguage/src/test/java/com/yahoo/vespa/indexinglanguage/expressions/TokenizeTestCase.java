@@ -7,12 +7,17 @@ import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.language.Language;
 import com.yahoo.language.Linguistics;
+import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Tokenizer;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.vespa.indexinglanguage.SimpleTestAdapter;
 import com.yahoo.vespa.indexinglanguage.linguistics.AnnotatorConfig;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.yahoo.vespa.indexinglanguage.expressions.ExpressionAssert.assertVerify;
 import static com.yahoo.vespa.indexinglanguage.expressions.ExpressionAssert.assertVerifyThrows;
 import static org.junit.Assert.*;
@@ -62,4 +67,65 @@ public class TokenizeTestCase {
         assertTrue(val instanceof StringFieldValue);
         assertNotNull(((StringFieldValue)val).getSpanTree(SpanTrees.LINGUISTICS));
     }
+
+    @Test
+    public void requireThatAnnotationsAreSharedBetweenEqualTokenizations() {
+        AtomicInteger tokenizerCount = new AtomicInteger();
+        Linguistics linguistics = new SimpleLinguistics() {
+
+            @Override
+            public Tokenizer getTokenizer() {
+                tokenizerCount.incrementAndGet();
+                return super.getTokenizer();
+            }
+        };
+        ExecutionContext ctx = new ExecutionContext(new SimpleTestAdapter());
+        StringFieldValue input = new StringFieldValue("foo bar");
+        StringFieldValue first = tokenize(ctx, input, new TokenizeExpression(linguistics, new AnnotatorConfig()));
+        StringFieldValue second = tokenize(ctx, input, new TokenizeExpression(linguistics, new AnnotatorConfig()));
+        assertEquals(1, tokenizerCount.get());
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        assertNull(input.getSpanTree(SpanTrees.LINGUISTICS));
+
+        tokenize(ctx, input, new TokenizeExpression(linguistics, new AnnotatorConfig().setStemMode(StemMode.ALL)));
+        assertEquals(2, tokenizerCount.get());
+        tokenize(ctx, new StringFieldValue("foo bar"), new TokenizeExpression(linguistics, new AnnotatorConfig()));
+        assertEquals(3, tokenizerCount.get());
+
+        new NGramExpression(linguistics, 2).execute(ctx.setValue(first));
+        tokenize(ctx, input, new TokenizeExpression(linguistics, new AnnotatorConfig()));
+        assertEquals(4, tokenizerCount.get());
+    }
+
+    @Test
+    public void requireThatAnnotationsAreSharedBetweenFieldStatementsClearingTheState() throws ParseException {
+        AtomicInteger tokenizerCount = new AtomicInteger();
+        Linguistics linguistics = new SimpleLinguistics() {
+
+            @Override
+            public Tokenizer getTokenizer() {
+                tokenizerCount.incrementAndGet();
+                return super.getTokenizer();
+            }
+        };
+        ExecutionContext ctx = new ExecutionContext(new SimpleTestAdapter());
+        ctx.setOutputValue(null, "in", new StringFieldValue("foo bar"));
+        ScriptExpression.fromString("{ clear_state | guard { input in | tokenize normalize stem:\"BEST\" | index a; }; " +
+                                    "  clear_state | guard { input in | tokenize normalize stem:\"BEST\" | index b; }; " +
+                                    "  clear_state | guard { input in | tokenize normalize | index c; }; }",
+                                    linguistics).execute(ctx);
+        assertEquals(2, tokenizerCount.get());
+
+        StringFieldValue a = (StringFieldValue)ctx.getInputValue("a");
+        StringFieldValue b = (StringFieldValue)ctx.getInputValue("b");
+        assertNotNull(a.getSpanTree(SpanTrees.LINGUISTICS));
+        assertEquals(a, b);
+        assertNotSame(a, b);
+        assertNotNull(ctx.getInputValue("c"));
+    }
+
+    private static StringFieldValue tokenize(ExecutionContext ctx, StringFieldValue input, Expression exp) {
+        return (StringFieldValue)exp.execute(ctx.setValue(input));
+    }
 }
@@ -218,6 +218,27 @@ public class LinguisticsAnnotatorTestCase {
         }
     }
 
+    @Test
+    public void requireThatSimpleTokenizerCursorGivesSameAnnotationsAsTokens() {
+        String input = "Running dogs ran, and \u00E5 dog RAN: 42 times! Some more running dogs.";
+        for (StemMode mode : new StemMode[] { StemMode.NONE, StemMode.SHORTEST, StemMode.ALL }) {
+            AnnotatorConfig config = new AnnotatorConfig().setStemMode(mode).setRemoveAccents(true);
+            Linguistics linguistics = new SimpleLinguistics() {
+
+                @Override
+                public Tokenizer getTokenizer() {
+                    return super.getTokenizer()::tokenize; // Hides the cursor of the simple tokenizer
+                }
+            };
+
+            StringFieldValue expected = new StringFieldValue(input);
+            assertTrue(new LinguisticsAnnotator(linguistics, config).annotate(expected));
+            StringFieldValue actual = new StringFieldValue(input);
+            assertTrue(new LinguisticsAnnotator(new SimpleLinguistics(), config).annotate(actual));
+            assertEquals(expected.getSpanTree(SpanTrees.LINGUISTICS), actual.getSpanTree(SpanTrees.LINGUISTICS));
+        }
+    }
+
     // --------------------------------------------------------------------------------
     //
     // Utilities
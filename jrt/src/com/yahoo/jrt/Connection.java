@@ -32,6 +32,8 @@ class Connection extends Target {
     private Queue         myQueue    = new Queue();
     private Buffer        input      = new Buffer(READ_SIZE * 2);
     private Buffer        output     = new Buffer(WRITE_SIZE * 2);
+    private ByteBuffer[]  gather     = null;
+    private int           gatherPos  = 0;
     private int           maxInputSize  = 64*1024;
     private int           maxOutputSize = 64*1024;
     private Map<Integer, ReplyHandler> replyMap = new HashMap<>();
@@ -202,8 +204,9 @@ class Connection extends Target {
 
     public void read() throws IOException {
         boolean doneRead = false;
+        int readSize = READ_SIZE;
         for (int i = 0; !doneRead && i < READ_REDO; i++) {
-            ByteBuffer wb = input.getChannelWritable(READ_SIZE);
+            ByteBuffer wb = input.getChannelWritable(readSize);
             if (channel.read(wb) == -1) {
                 throw new IOException("jrt: Connection closed by peer");
             }
@@ -212,6 +215,10 @@ class Connection extends Target {
             while (true) {
                 PacketInfo info = PacketInfo.getPacketInfo(rb);
                 if (info == null || info.packetLength() > rb.remaining()) {
+                    // make room for all of a partial packet at once
+                    readSize = (info == null)
+                        ? READ_SIZE
+                        : Math.max(READ_SIZE, info.packetLength() - rb.remaining());
                     break;
                 }
                 owner.readPacket(info);
@@ -243,15 +250,26 @@ class Connection extends Target {
             queue.flush(myQueue);
         }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
+            while (gather == null && output.bytes() < WRITE_SIZE) {
                 Packet packet = (Packet) myQueue.dequeue();
                 if (packet == null) {
                     break;
                 }
                 PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
                 owner.writePacket(info);
-                info.encodePacket(packet, wb);
+                if (packet.referencedBytes() > 0) {
+                    gather = info.encodePacket(packet);
+                    gatherPos = 0;
+                } else {
+                    ByteBuffer wb = output.getWritable(info.packetLength());
+                    info.encodePacket(packet, wb);
+                }
+            }
+            if (output.bytes() == 0 && gather != null) {
+                if (!writeGather()) {
+                    break;
+                }
+                continue;
             }
             ByteBuffer rb = output.getChannelReadable();
             if (rb.remaining() == 0) {
@@ -266,7 +284,7 @@ class Connection extends Target {
         synchronized (this) {
             writeWork = queue.size()
                 + myQueue.size()
-                + ((output.bytes() > 0) ? 1 : 0);
+                + ((output.bytes() > 0 || gather != null) ? 1 : 0);
             disableWrite = (writeWork == 0);
         }
         if (disableWrite) {
@@ -277,6 +295,40 @@ class Connection extends Target {
         }
     }
 
+    /**
+     * Write the segments of a packet encoded with references to its
+     * data, at most MAX_IO bytes at a time, since the channel copies
+     * heap buffers into temporary direct buffers before writing them.
+     *
+     * @return true if all the bytes offered to the channel were written
+     **/
+    private boolean writeGather() throws IOException {
+        int end = gatherPos;
+        int budget = Buffer.MAX_IO;
+        while (end < gather.length && budget > 0) {
+            budget -= gather[end++].remaining();
+        }
+        ByteBuffer last = gather[end - 1];
+        int limit = last.limit();
+        if (budget < 0) {
+            last.limit(limit + budget);
+        }
+        boolean done;
+        try {
+            channel.write(gather, gatherPos, end - gatherPos);
+            done = !last.hasRemaining();
+        } finally {
+            last.limit(limit);
+        }
+        while (gatherPos < gather.length && !gather[gatherPos].hasRemaining()) {
+            gatherPos++;
+        }
+        if (gatherPos == gather.length) {
+            gather = null;
+        }
+        return done;
+    }
+
     public void fini() {
         setState(CLOSED);
         if (selectionKey != null) {
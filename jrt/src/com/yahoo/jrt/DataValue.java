@@ -10,6 +10,13 @@ import java.nio.ByteBuffer;
  **/
 public class DataValue extends Value
 {
+    /**
+     * Data values at least this large are written to the network
+     * directly from the array holding them rather than being copied
+     * into the connection output buffer
+     **/
+    static final int REFERENCE_SIZE = 16384;
+
     private byte[] value;
 
     /**
@@ -41,6 +48,17 @@ public class DataValue extends Value
         dst.putInt(value.length);
         dst.put(value);
     }
+    int referencedBytes() {
+        return (value.length >= REFERENCE_SIZE) ? value.length : 0;
+    }
+    void encode(GatherBuffer dst) {
+        if (referencedBytes() == 0) {
+            encode(dst.current());
+            return;
+        }
+        dst.current().putInt(value.length);
+        dst.reference(value);
+    }
 
     public byte[] asData() { return value; }
 
@@ -0,0 +1,70 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The encoded form of a packet held as a sequence of byte buffers,
+ * to be written to the network with a single gathering write. Small
+ * values are encoded into the current buffer, while the payload of
+ * large data values is referenced where it is rather than copied.
+ **/
+class GatherBuffer
+{
+    private List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+
+    /**
+     * Create a gather buffer
+     *
+     * @param size the number of bytes which will be encoded rather
+     *             than referenced
+     **/
+    GatherBuffer(int size) {
+        current = ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Obtain the buffer to encode the next bytes into
+     *
+     * @return the current buffer
+     **/
+    ByteBuffer current() {
+        return current;
+    }
+
+    /**
+     * Add the given data as the next segment, without copying it
+     *
+     * @param data the data to reference
+     **/
+    void reference(byte[] data) {
+        ByteBuffer done = current.duplicate();
+        done.flip();
+        segments.add(done);
+        segments.add(ByteBuffer.wrap(data));
+        current = current.slice().order(current.order());
+    }
+
+    /**
+     * Obtain the segments holding the encoded bytes, ready to be
+     * written
+     *
+     * @return the non-empty segments, in order
+     **/
+    ByteBuffer[] segments() {
+        current.flip();
+        segments.add(current);
+        List<ByteBuffer> result = new ArrayList<>(segments.size());
+        for (ByteBuffer segment : segments) {
+            if (segment.hasRemaining()) {
+                result.add(segment);
+            }
+        }
+        return result.toArray(new ByteBuffer[result.size()]);
+    }
+}
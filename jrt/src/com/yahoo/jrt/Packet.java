@@ -44,6 +44,14 @@ abstract class Packet
     public abstract int packetCode();
     public abstract void encode(ByteBuffer dst);
 
+    public int referencedBytes() {
+        return 0;
+    }
+
+    public void encode(GatherBuffer dst) {
+        encode(dst.current());
+    }
+
     public PacketInfo getPacketInfo() {
         return new PacketInfo(bytes(), flags, packetCode(), requestId);
     }
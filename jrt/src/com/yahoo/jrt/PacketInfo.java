@@ -106,4 +106,17 @@ class PacketInfo
             dst.limit(limit);
         }
     }
+
+    public ByteBuffer[] encodePacket(Packet packet) {
+        GatherBuffer dst = new GatherBuffer(packetLength - packet.referencedBytes());
+        dst.current().putInt(packetLength - 4);
+        dst.current().putShort((short)flags);
+        dst.current().putShort((short)packetCode);
+        dst.current().putInt(requestId);
+        if (reverseByteOrder()) {
+            dst.current().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        packet.encode(dst);
+        return dst.segments();
+    }
 }
@@ -36,6 +36,14 @@ class ReplyPacket extends Packet
         returnValues.encode(dst);
     }
 
+    public int referencedBytes() {
+        return returnValues.referencedBytes();
+    }
+
+    public void encode(GatherBuffer dst) {
+        returnValues.encode(dst);
+    }
+
     public Values returnValues() {
         return returnValues;
     }
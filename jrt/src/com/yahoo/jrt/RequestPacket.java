@@ -42,6 +42,15 @@ class RequestPacket extends Packet
         parameters.encode(dst);
     }
 
+    public int referencedBytes() {
+        return parameters.referencedBytes();
+    }
+
+    public void encode(GatherBuffer dst) {
+        methodName.encode(dst.current());
+        parameters.encode(dst);
+    }
+
     public String methodName() {
         return methodName.asString();
     }
@@ -2,7 +2,8 @@
 package com.yahoo.jrt;
 
 
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -46,7 +47,7 @@ public class Supervisor {
 
     private Transport               transport;
     private SessionHandler          sessionHandler = null;
-    private HashMap<String, Method> methodMap      = new HashMap<>();
+    private Map<String, Method>     methodMap      = new ConcurrentHashMap<>();
     private int                     maxInputBufferSize  = 0;
     private int                     maxOutputBufferSize = 0;
 
@@ -94,7 +95,7 @@ public class Supervisor {
      *
      * @return the method map
      **/
-    HashMap<String, Method> methodMap() {
+    Map<String, Method> methodMap() {
         return methodMap;
     }
 
@@ -2,10 +2,7 @@
 package com.yahoo.jrt;
 
 
-import java.io.IOException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,166 +13,82 @@ import java.util.logging.Logger;
  * multiplexed network IO, handles scheduled tasks and keeps track of
  * some additional helper threads. A single Transport object can back
  * multiple {@link Supervisor} objects.
+ * <p>
+ * A Transport may use multiple threads for network IO. Each
+ * connection is assigned to one of the threads by hash, and all IO
+ * for a connection, including invocation of methods and request
+ * callbacks, happens in that thread. IO and callbacks for
+ * connections owned by different threads may therefore run
+ * concurrently. Scheduled tasks and commands given to {@link
+ * #perform} run in the first transport thread, and never
+ * concurrently with IO or callbacks in any of the transport threads.
  **/
 public class Transport {
 
-    private static final int OPEN    = 1;
-    private static final int CLOSING = 2;
-    private static final int CLOSED  = 3;
-
-    private class Run implements Runnable {
-        public void run() {
-            try {
-                Transport.this.run();
-            } catch (Throwable problem) {
-                handleFailure(problem, Transport.this);
-            }
-        }
-    }
-
-    private class AddConnectionCmd implements Runnable {
-        private Connection conn;
-        AddConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleAddConnection(conn); }
-    }
-
-    private class CloseConnectionCmd implements Runnable {
-        private Connection conn;
-        CloseConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleCloseConnection(conn); }
-    }
-
-    private class EnableWriteCmd implements Runnable {
-        private Connection conn;
-        EnableWriteCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleEnableWrite(conn); }
-    }
-
-    private class SyncCmd implements Runnable {
-        boolean done = false;
-        public synchronized void waitDone() {
-            while (!done) {
-                try { wait(); } catch (InterruptedException e) {}
-            }
-        }
-        public synchronized void run() {
-            done = true;
-            notify();
-        }
-    }
-
     private static Logger log = Logger.getLogger(Transport.class.getName());
 
     private FatalErrorHandler fatalHandler; // NB: this must be set first
-    private Thread            thread;
-    private Queue             queue;
-    private Queue             myQueue;
+    private TransportThread[] threads;
     private Connector         connector;
     private Closer            closer;
     private Scheduler         scheduler;
-    private int               state;
-    private Selector          selector;
 
-    private void handleAddConnection(Connection conn) {
-        if (conn.isClosed()) {
-            if (conn.hasSocket()) {
-                closer.closeLater(conn);
-            }
-            return;
-        }
-        if (!conn.init(selector)) {
-            handleCloseConnection(conn);
-        }
-    }
+    // held shared by the transport threads while doing IO, and
+    // exclusively while running tasks and performed commands
+    private final ReentrantReadWriteLock ioLock = new ReentrantReadWriteLock();
 
-    private void handleCloseConnection(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.fini();
-        if (conn.hasSocket()) {
-            closer.closeLater(conn);
-        }
-    }
-
-    private void handleEnableWrite(Connection conn) {
-        if (conn.isClosed()) {
-            return;
+    /** Returns the thread handling the given connection */
+    private TransportThread threadOf(Connection conn) {
+        if (threads.length == 1) {
+            return threads[0];
         }
-        conn.enableWrite();
+        return threads[(System.identityHashCode(conn) & 0x7fffffff) % threads.length];
     }
 
-    private boolean postCommand(Runnable cmd) {
-        boolean wakeup;
-        synchronized (this) {
-            if (state == CLOSED) {
-                return false;
-            }
-            wakeup = queue.isEmpty();
-            queue.enqueue(cmd);
-        }
-        if (wakeup) {
-            selector.wakeup();
+    /**
+     * Create a new Transport object with the given fatal error
+     * handler and number of network threads.
+     *
+     * @param fatalHandler fatal error handler
+     * @param threads the number of threads performing network IO, at least 1
+     **/
+    public Transport(FatalErrorHandler fatalHandler, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A transport needs at least 1 thread, not " + threads);
         }
-        return true;
-    }
-
-    private void handleEvents() {
         synchronized (this) {
-            queue.flush(myQueue);
-        }
-        while (!myQueue.isEmpty()) {
-            ((Runnable)myQueue.dequeue()).run();
-        }
-    }
-
-    private boolean handleIOEvents(Connection conn,
-                                   SelectionKey key) {
-        if (conn.isClosed()) {
-            return true;
+            this.fatalHandler = fatalHandler; // NB: this must be set first
         }
-        if (key.isReadable()) {
-            try {
-                conn.read();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
+        this.threads = new TransportThread[threads];
+        for (int i = 0; i < threads; i++) {
+            this.threads[i] = new TransportThread(this, (i == 0) ? "<transport>" : "<transport-" + i + ">", i == 0);
         }
-        if (key.isWritable()) {
-            try {
-                conn.write();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
+        connector = new Connector(this);
+        closer    = new Closer(this);
+        scheduler = new Scheduler(System.currentTimeMillis());
+        for (TransportThread thread : this.threads) {
+            thread.start();
         }
-        return true;
     }
 
     /**
-     * Create a new Transport object with the given fatal error handler.
+     * Create a new Transport object with the given fatal error
+     * handler and a single network thread.
      *
      * @param fatalHandler fatal error handler
      **/
     public Transport(FatalErrorHandler fatalHandler) {
-        synchronized (this) {
-            this.fatalHandler = fatalHandler; // NB: this must be set first
-        }
-        thread    = new Thread(new Run(), "<transport>");
-        queue     = new Queue();
-        myQueue   = new Queue();
-        connector = new Connector(this);
-        closer    = new Closer(this);
-        scheduler = new Scheduler(System.currentTimeMillis());
-        state     = OPEN;
-        try {
-            selector = Selector.open();
-        } catch (Exception e) {
-            throw new Error("Could not open transport selector", e);
-        }
-        thread.setDaemon(true);
-        thread.start();
+        this(fatalHandler, 1);
+    }
+
+    /**
+     * Create a Transport object with no fatal error handler and the
+     * given number of network threads.
+     *
+     * @param threads the number of threads performing network IO, at least 1
+     **/
+    public Transport(int threads) {
+        this(null, threads);
     }
 
     /**
@@ -247,8 +160,9 @@ public class Transport {
      * @param conn the connection to add
      **/
     void addConnection(Connection conn) {
-        if (!postCommand(new AddConnectionCmd(conn))) {
-            perform(new CloseConnectionCmd(conn));
+        TransportThread thread = threadOf(conn);
+        if (!thread.addConnection(conn)) {
+            perform(() -> thread.handleCloseConnection(conn));
         }
     }
 
@@ -258,7 +172,7 @@ public class Transport {
      * @param conn the connection to close
      **/
     void closeConnection(Connection conn) {
-        postCommand(new CloseConnectionCmd(conn));
+        threadOf(conn).closeConnection(conn);
     }
 
     /**
@@ -268,11 +182,59 @@ public class Transport {
      * @param conn the connection to enable write events for
      **/
     void enableWrite(Connection conn) {
-        if (Thread.currentThread() == thread) {
-            handleEnableWrite(conn);
-        } else {
-            postCommand(new EnableWriteCmd(conn));
+        threadOf(conn).enableWrite(conn);
+    }
+
+    /** Returns the closer of this, which closes sockets in the background */
+    Closer closer() {
+        return closer;
+    }
+
+    /**
+     * Marks the start of network IO, including method invocations
+     * and request callbacks, in a transport thread. This blocks while
+     * a task or a performed command is running.
+     **/
+    void beginIO() {
+        ioLock.readLock().lock();
+    }
+
+    /** Marks the end of network IO started by {@link #beginIO} */
+    void endIO() {
+        ioLock.readLock().unlock();
+    }
+
+    /** Runs the given command while no transport thread is doing IO */
+    private void runExclusive(Runnable cmd) {
+        ioLock.writeLock().lock();
+        try {
+            cmd.run();
+        } finally {
+            ioLock.writeLock().unlock();
+        }
+    }
+
+    /** Runs the scheduled tasks which are due. Invoked by the first transport thread. */
+    void checkTasks() {
+        runExclusive(() -> scheduler.checkTasks(System.currentTimeMillis()));
+    }
+
+    /** Stops connecting. Invoked by the first transport thread when it starts shutting down. */
+    void shutdownConnector() {
+        connector.shutdown().waitDone();
+    }
+
+    /**
+     * Waits for the other transport threads and the helper threads
+     * to finish. Invoked by the first transport thread when it has
+     * shut down.
+     **/
+    void completeShutdown() {
+        for (int i = 1; i < threads.length; i++) {
+            threads[i].join();
         }
+        closer.shutdown().join();
+        connector.exit().join();
     }
 
     /**
@@ -288,113 +250,74 @@ public class Transport {
 
     /**
      * Perform the given command in such a way that it does not run
-     * concurrently with the transport thread or other commands
+     * concurrently with the transport threads or other commands
      * performed by invoking this method. This method will continue to
-     * work even after the transport thread has been shut down.
+     * work even after the transport thread has been shut down. When
+     * this has multiple threads, commands are run by the first
+     * transport thread while none of the threads are doing IO. A
+     * command performed from IO in a transport thread is therefore
+     * run later, after that IO is done, unless there is a single
+     * transport thread.
      *
      * @param cmd the command to perform
      **/
     public void perform(Runnable cmd) {
-        if (Thread.currentThread() == thread) {
+        if (threads[0].isCurrentThread() && (threads.length == 1 || ioLock.isWriteLockedByCurrentThread())) {
             cmd.run();
             return;
         }
-        if (!postCommand(cmd)) {
+        if (!threads[0].postCommand(() -> runExclusive(cmd))) {
             join();
-            synchronized (thread) {
+            synchronized (threads[0].lock()) {
                 cmd.run();
             }
         }
     }
 
     /**
-     * Synchronize with the transport thread. This method will block
+     * Synchronize with the transport threads. This method will block
      * until all commands issued before this method was invoked has
-     * completed. If the transport thread has been shut down (or is in
+     * completed. If the transport has been shut down (or is in
      * the progress of being shut down) this method will instead wait
-     * for the transport thread to complete, since no more commands
+     * for the transport threads to complete, since no more commands
      * will be performed, and waiting would be forever. Invoking this
-     * method from the transport thread is not a good idea.
+     * method from a transport thread is not a good idea.
      *
      * @return this object, to enable chaining
      **/
     public Transport sync() {
-        SyncCmd cmd = new SyncCmd();
-        if (postCommand(cmd)) {
-            cmd.waitDone();
-        } else {
-            join();
-        }
-        return this;
-    }
-
-    private void run() {
-        while (state == OPEN) {
-
-            // perform I/O selection
-            try {
-                selector.select(100);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "error during select", e);
+        TransportThread.SyncCmd[] cmds = new TransportThread.SyncCmd[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            cmds[i] = new TransportThread.SyncCmd();
+            if (!threads[i].postCommand(cmds[i])) {
+                join();
+                return this;
             }
-
-            // handle internal events
-            handleEvents();
-
-            // handle I/O events
-            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-            while (keys.hasNext()) {
-                SelectionKey key = keys.next();
-                Connection conn = (Connection) key.attachment();
-                keys.remove();
-                if (!handleIOEvents(conn, key)) {
-                    handleCloseConnection(conn);
-                }
-            }
-
-            // check scheduled tasks
-            scheduler.checkTasks(System.currentTimeMillis());
-        }
-        connector.shutdown().waitDone();
-        synchronized (this) {
-            state = CLOSED;
         }
-        handleEvents();
-        Iterator<SelectionKey> keys = selector.keys().iterator();
-        while (keys.hasNext()) {
-            SelectionKey key = keys.next();
-            Connection conn = (Connection) key.attachment();
-            handleCloseConnection(conn);
+        for (TransportThread.SyncCmd cmd : cmds) {
+            cmd.waitDone();
         }
-        try { selector.close(); } catch (Exception e) {}
-        closer.shutdown().join();
-        connector.exit().join();
+        return this;
     }
 
     /**
-     * Initiate controlled shutdown of the transport thread.
+     * Initiate controlled shutdown of the transport threads.
      *
      * @return this object, to enable chaining with join
      **/
     public Transport shutdown() {
-        synchronized (this) {
-            if (state == OPEN) {
-                state = CLOSING;
-                selector.wakeup();
-            }
+        for (TransportThread thread : threads) {
+            thread.shutdown();
         }
         return this;
     }
 
     /**
-     * Wait for the transport thread to finish.
+     * Wait for the transport threads to finish.
      **/
     public void join() {
-        while (true) {
-            try {
-                thread.join();
-                return;
-            } catch (InterruptedException e) {}
+        for (TransportThread thread : threads) {
+            thread.join();
         }
     }
 }
@@ -0,0 +1,324 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A single network thread of a {@link Transport}. Each transport
+ * thread owns a selector and performs all IO for the connections
+ * assigned to it. IO, and commands acting on connections, are run
+ * between {@link Transport#beginIO} and {@link Transport#endIO}. The
+ * first thread of a Transport also runs the scheduled tasks and the
+ * commands given to {@link Transport#perform}, and drives the
+ * shutdown of the Transport.
+ **/
+class TransportThread {
+
+    private static final int OPEN    = 1;
+    private static final int CLOSING = 2;
+    private static final int CLOSED  = 3;
+
+    private class Run implements Runnable {
+        public void run() {
+            try {
+                TransportThread.this.run();
+            } catch (Throwable problem) {
+                parent.handleFailure(problem, parent);
+            }
+        }
+    }
+
+    private class AddConnectionCmd implements Runnable {
+        private Connection conn;
+        AddConnectionCmd(Connection conn) { this.conn = conn; }
+        public void run() {
+            parent.beginIO();
+            try {
+                handleAddConnection(conn);
+            } finally {
+                parent.endIO();
+            }
+        }
+    }
+
+    private class CloseConnectionCmd implements Runnable {
+        private Connection conn;
+        CloseConnectionCmd(Connection conn) { this.conn = conn; }
+        public void run() {
+            parent.beginIO();
+            try {
+                handleCloseConnection(conn);
+            } finally {
+                parent.endIO();
+            }
+        }
+    }
+
+    private class EnableWriteCmd implements Runnable {
+        private Connection conn;
+        EnableWriteCmd(Connection conn) { this.conn = conn; }
+        public void run() {
+            parent.beginIO();
+            try {
+                handleEnableWrite(conn);
+            } finally {
+                parent.endIO();
+            }
+        }
+    }
+
+    static class SyncCmd implements Runnable {
+        boolean done = false;
+        public synchronized void waitDone() {
+            while (!done) {
+                try { wait(); } catch (InterruptedException e) {}
+            }
+        }
+        public synchronized void run() {
+            done = true;
+            notify();
+        }
+    }
+
+    private static Logger log = Logger.getLogger(TransportThread.class.getName());
+
+    private Transport parent;
+    private boolean   first;
+    private Thread    thread;
+    private Queue     queue;
+    private Queue     myQueue;
+    private int       state;
+    private Selector  selector;
+
+    private void handleAddConnection(Connection conn) {
+        if (conn.isClosed()) {
+            if (conn.hasSocket()) {
+                parent.closer().closeLater(conn);
+            }
+            return;
+        }
+        if (!conn.init(selector)) {
+            handleCloseConnection(conn);
+        }
+    }
+
+    private void handleEnableWrite(Connection conn) {
+        if (conn.isClosed()) {
+            return;
+        }
+        conn.enableWrite();
+    }
+
+    private void handleEvents() {
+        synchronized (this) {
+            queue.flush(myQueue);
+        }
+        while (!myQueue.isEmpty()) {
+            ((Runnable)myQueue.dequeue()).run();
+        }
+    }
+
+    private boolean handleIOEvents(Connection conn,
+                                   SelectionKey key) {
+        if (conn.isClosed()) {
+            return true;
+        }
+        if (key.isReadable()) {
+            try {
+                conn.read();
+            } catch (IOException e) {
+                conn.setLostReason(e);
+                return false;
+            }
+        }
+        if (key.isWritable()) {
+            try {
+                conn.write();
+            } catch (IOException e) {
+                conn.setLostReason(e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create and start a new transport thread.
+     *
+     * @param parent the Transport owning this thread
+     * @param name the name of the thread
+     * @param first whether this is the first thread of the
+     *              Transport, which runs tasks and commands
+     **/
+    TransportThread(Transport parent, String name, boolean first) {
+        this.parent = parent;
+        this.first  = first;
+        thread  = new Thread(new Run(), name);
+        queue   = new Queue();
+        myQueue = new Queue();
+        state   = OPEN;
+        try {
+            selector = Selector.open();
+        } catch (Exception e) {
+            throw new Error("Could not open transport selector", e);
+        }
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Close a connection. This is invoked in this thread, or in any
+     * thread after this thread has been shut down.
+     *
+     * @param conn the connection to close
+     **/
+    void handleCloseConnection(Connection conn) {
+        if (conn.isClosed()) {
+            return;
+        }
+        conn.fini();
+        if (conn.hasSocket()) {
+            parent.closer().closeLater(conn);
+        }
+    }
+
+    /**
+     * Post a command to be run in this thread.
+     *
+     * @return false if this thread has been shut down, in which case
+     *         the command will not be run
+     * @param cmd the command
+     **/
+    boolean postCommand(Runnable cmd) {
+        boolean wakeup;
+        synchronized (this) {
+            if (state == CLOSED) {
+                return false;
+            }
+            wakeup = queue.isEmpty();
+            queue.enqueue(cmd);
+        }
+        if (wakeup) {
+            selector.wakeup();
+        }
+        return true;
+    }
+
+    boolean addConnection(Connection conn) {
+        return postCommand(new AddConnectionCmd(conn));
+    }
+
+    void closeConnection(Connection conn) {
+        postCommand(new CloseConnectionCmd(conn));
+    }
+
+    void enableWrite(Connection conn) {
+        if (isCurrentThread()) {
+            handleEnableWrite(conn);
+        } else {
+            postCommand(new EnableWriteCmd(conn));
+        }
+    }
+
+    /** Returns whether the calling thread is this thread */
+    boolean isCurrentThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /** Returns the object to synchronize on when running commands after this thread has been shut down */
+    Object lock() {
+        return thread;
+    }
+
+    private void run() {
+        while (state == OPEN) {
+
+            // perform I/O selection
+            try {
+                selector.select(100);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "error during select", e);
+            }
+
+            // handle internal events
+            handleEvents();
+
+            // handle I/O events
+            parent.beginIO();
+            try {
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    Connection conn = (Connection) key.attachment();
+                    keys.remove();
+                    if (!handleIOEvents(conn, key)) {
+                        handleCloseConnection(conn);
+                    }
+                }
+            } finally {
+                parent.endIO();
+            }
+
+            // check scheduled tasks
+            if (first) {
+                parent.checkTasks();
+            }
+        }
+        if (first) {
+            parent.shutdownConnector();
+        }
+        synchronized (this) {
+            state = CLOSED;
+        }
+        handleEvents();
+        parent.beginIO();
+        try {
+            Iterator<SelectionKey> keys = selector.keys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                Connection conn = (Connection) key.attachment();
+                handleCloseConnection(conn);
+            }
+        } finally {
+            parent.endIO();
+        }
+        try { selector.close(); } catch (Exception e) {}
+        if (first) {
+            parent.completeShutdown();
+        }
+    }
+
+    /**
+     * Initiate controlled shutdown of this thread.
+     **/
+    void shutdown() {
+        synchronized (this) {
+            if (state == OPEN) {
+                state = CLOSING;
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Wait for this thread to finish.
+     **/
+    void join() {
+        while (true) {
+            try {
+                thread.join();
+                return;
+            } catch (InterruptedException e) {}
+        }
+    }
+}
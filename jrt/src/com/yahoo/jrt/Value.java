@@ -100,6 +100,27 @@ public abstract class Value
      **/
     abstract void encode(ByteBuffer dst);
 
+    /**
+     * Encode this value into the given gather buffer. Values holding
+     * large amounts of data may reference it rather than copy it.
+     *
+     * @param dst where to encode this value
+     **/
+    void encode(GatherBuffer dst) {
+        encode(dst.current());
+    }
+
+    /**
+     * Determine the number of bytes of this value which are
+     * referenced rather than copied when encoded into a gather
+     * buffer
+     *
+     * @return number of bytes referenced by the encoded value
+     **/
+    int referencedBytes() {
+        return 0;
+    }
+
     /**
      * Decode a value from the given buffer. This method also acts as
      * a factory for value objects
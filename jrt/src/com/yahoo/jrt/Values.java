@@ -110,6 +110,37 @@ public class Values
         }
     }
 
+    /**
+     * Determine the number of bytes of this value sequence which are
+     * referenced rather than copied when encoded into a gather buffer
+     *
+     * @return number of bytes referenced by the encoded values
+     **/
+    int referencedBytes() {
+        int bytes = 0;
+        for (int i = 0; i < values.size(); i++) {
+            bytes += get(i).referencedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode this value sequence into the given gather buffer
+     *
+     * @param dst where to encode this value sequence
+     **/
+    void encode(GatherBuffer dst) {
+        byte[] types = new byte[values.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = get(i).type();
+        }
+        dst.current().putInt(types.length);
+        dst.current().put(types);
+        for (int i = 0; i < types.length; i++) {
+            get(i).encode(dst);
+        }
+    }
+
     /**
      * Decode a value sequence from the given buffer into this object
      *
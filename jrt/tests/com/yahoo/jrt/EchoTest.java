@@ -20,6 +20,7 @@ public class EchoTest extends junit.framework.TestCase {
         acceptor = server.listen(new Spec(Test.PORT));
         target   = client.connect(new Spec("localhost", Test.PORT));
         server.addMethod(new Method("echo", "*", "*", this, "rpc_echo"));
+        server.addMethod(new Method("echoData", "*", "*", this, "rpc_echoData"));
         refValues = new Values();
         byte[]   dataValue   = { 1, 2, 3, 4 };
         byte[]   int8Array   = { 1, 2, 3, 4 };
@@ -71,6 +72,14 @@ public class EchoTest extends junit.framework.TestCase {
         }
     }
 
+    public void rpc_echoData(Request req) {
+        Values p = req.parameters();
+        Values r = req.returnValues();
+        for (int i = 0; i < p.size(); i++) {
+            r.add(new DataValue(p.get(i).asData()));
+        }
+    }
+
     public void testEcho() {
         Request req = new Request("echo");
         Values p = req.parameters();
@@ -83,4 +92,20 @@ public class EchoTest extends junit.framework.TestCase {
         assertTrue(Test.equals(req.returnValues(), refValues));
         assertTrue(Test.equals(req.parameters(), refValues));
     }
+
+    public void testEchoLargeData() {
+        int[] sizes = { 0, 100, DataValue.REFERENCE_SIZE, 1000000, 10, 3000000 };
+        Request req = new Request("echoData");
+        for (int size : sizes) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte)(i * 31 + size);
+            }
+            req.parameters().add(new DataValue(data));
+        }
+        target.invokeSync(req, 60.0);
+        assertFalse(req.errorMessage(), req.isError());
+        assertTrue(req.checkReturnTypes("xxxxxx"));
+        assertTrue(Test.equals(req.returnValues(), req.parameters()));
+    }
 }
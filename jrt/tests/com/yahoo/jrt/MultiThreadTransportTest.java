@@ -0,0 +1,209 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class MultiThreadTransportTest extends junit.framework.TestCase {
+
+    private static final int TARGETS  = 8;
+    private static final int REQUESTS = 50;
+
+    Supervisor   server;
+    Acceptor     acceptor;
+    Supervisor   client;
+    List<Target> targets = new ArrayList<>();
+
+    Set<String>          serverThreads = new HashSet<>();
+    Map<Target, Integer> lastSequence  = new HashMap<>();
+    boolean              outOfOrder    = false;
+
+    AtomicInteger        activeInvocations = new AtomicInteger();
+    AtomicBoolean        overlap           = new AtomicBoolean(false);
+    volatile long        invocationMillis  = 0;
+
+    public MultiThreadTransportTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws ListenFailedException {
+        server   = new Supervisor(new Transport(4));
+        client   = new Supervisor(new Transport(4));
+        acceptor = server.listen(new Spec(Test.PORT));
+        server.addMethod(new Method("inc", "i", "i", this, "rpc_inc"));
+        for (int i = 0; i < TARGETS; i++) {
+            targets.add(client.connect(new Spec("localhost", Test.PORT)));
+        }
+    }
+
+    public void tearDown() {
+        for (Target target : targets) {
+            target.close();
+        }
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_inc(Request req) {
+        activeInvocations.incrementAndGet();
+        try {
+            if (invocationMillis > 0) {
+                try { Thread.sleep(invocationMillis); } catch (InterruptedException e) {}
+            }
+            inc(req);
+        } finally {
+            activeInvocations.decrementAndGet();
+        }
+    }
+
+    private void inc(Request req) {
+        int value = req.parameters().get(0).asInt32();
+        synchronized (this) {
+            serverThreads.add(Thread.currentThread().getName());
+            Integer last = lastSequence.put(req.target(), value);
+            if (last != null && last >= value) {
+                outOfOrder = true;
+            }
+        }
+        req.returnValues().add(new Int32Value(value + 1));
+    }
+
+    public void testInvocationsOverManyConnections() {
+        invokeAndVerify();
+    }
+
+    private void invokeAndVerify() {
+        List<Request> requests = new ArrayList<>();
+        int expected = TARGETS * REQUESTS;
+        final int[] done = new int[1];
+        RequestWaiter counter = new RequestWaiter() {
+                public void handleRequestDone(Request req) {
+                    synchronized (done) {
+                        if (++done[0] == expected) {
+                            done.notifyAll();
+                        }
+                    }
+                }
+            };
+        for (int i = 0; i < REQUESTS; i++) {
+            for (Target target : targets) {
+                Request req = new Request("inc");
+                req.parameters().add(new Int32Value(i));
+                requests.add(req);
+                target.invokeAsync(req, 60.0, counter);
+            }
+        }
+        synchronized (done) {
+            long end = System.currentTimeMillis() + 60000;
+            while (done[0] < expected && System.currentTimeMillis() < end) {
+                try { done.wait(100); } catch (InterruptedException e) {}
+            }
+        }
+        assertEquals(expected, done[0]);
+        for (Request req : requests) {
+            assertFalse(req.errorMessage(), req.isError());
+            assertEquals(req.parameters().get(0).asInt32() + 1, req.returnValues().get(0).asInt32());
+        }
+        synchronized (this) {
+            assertFalse("Requests on a connection are handled in order", outOfOrder);
+            assertEquals(TARGETS, lastSequence.size());
+            assertTrue("Connections are spread over threads", serverThreads.size() > 1);
+        }
+    }
+
+    public void testSyncAndPerform() {
+        final boolean[] performed = new boolean[1];
+        server.transport().perform(new Runnable() {
+                public void run() { performed[0] = true; }
+            });
+        server.transport().sync();
+        assertTrue(performed[0]);
+    }
+
+    public void testTasksAndCommandsDoNotRunConcurrentlyWithIO() {
+        invocationMillis = 1;
+        Runnable check = new Runnable() {
+                public void run() {
+                    if (activeInvocations.get() != 0) {
+                        overlap.set(true);
+                    }
+                }
+            };
+        AtomicBoolean stop = new AtomicBoolean(false);
+        Task[] task = new Task[1];
+        task[0] = server.transport().createTask(new Runnable() {
+                public void run() {
+                    check.run();
+                    task[0].scheduleNow();
+                }
+            });
+        task[0].scheduleNow();
+        Thread performer = new Thread(new Runnable() {
+                public void run() {
+                    while (!stop.get()) {
+                        server.transport().perform(check);
+                        server.transport().sync();
+                    }
+                }
+            });
+        performer.start();
+        try {
+            invokeAndVerify();
+        } finally {
+            stop.set(true);
+            try { performer.join(); } catch (InterruptedException e) {}
+            task[0].kill();
+        }
+        assertFalse("Tasks and performed commands never overlap with method invocations", overlap.get());
+    }
+
+    public void testPerformFromIOIsRunAfterTheIO() {
+        final boolean[] performedDuringIO = new boolean[1];
+        final int[] performed = new int[1];
+        server.addMethod(new Method("perform", "", "", new MethodHandler() {
+                public void invoke(Request req) {
+                    activeInvocations.incrementAndGet();
+                    try {
+                        server.transport().perform(new Runnable() {
+                                public void run() {
+                                    synchronized (performed) {
+                                        performedDuringIO[0] |= activeInvocations.get() != 0;
+                                        performed[0]++;
+                                    }
+                                }
+                            });
+                    } finally {
+                        activeInvocations.decrementAndGet();
+                    }
+                }
+            }));
+        for (Target target : targets) {
+            Request req = new Request("perform");
+            target.invokeSync(req, 60.0);
+            assertFalse(req.errorMessage(), req.isError());
+        }
+        server.transport().sync();
+        synchronized (performed) {
+            assertEquals(TARGETS, performed[0]);
+            assertFalse(performedDuringIO[0]);
+        }
+    }
+
+    public void testIllegalThreadCount() {
+        try {
+            new Transport(0);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("A transport needs at least 1 thread, not 0", e.getMessage());
+        }
+    }
+}
@@ -126,4 +126,41 @@ public class PacketTest extends junit.framework.TestCase {
                      ((ErrorPacket)packet2).errorCode());
         assertEquals(errStr, ((ErrorPacket)packet2).errorMessage());
     }
+
+
+    public void testGatheredPacket() {
+
+        byte[] small = new byte[DataValue.REFERENCE_SIZE - 1];
+        byte[] large = new byte[DataValue.REFERENCE_SIZE * 3];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte)i;
+        }
+        Values params = new Values();
+        params.add(new DataValue(large));
+        params.add(new Int32Value(123));
+        params.add(new DataValue(small));
+        params.add(new DataValue(large));
+
+        for (int flags : new int[] { 0, Packet.FLAG_REVERSE }) {
+            Packet packet = new RequestPacket(flags, 42, "foobar", params);
+            PacketInfo info = packet.getPacketInfo();
+            assertEquals(2 * large.length, packet.referencedBytes());
+
+            ByteBuffer ref = ByteBuffer.allocate(info.packetLength());
+            info.encodePacket(packet, ref);
+            ref.flip();
+
+            ByteBuffer[] segments = info.encodePacket(packet);
+            assertEquals(4, segments.length);
+            assertTrue(segments[1].array() == large);
+            assertTrue(segments[3].array() == large);
+            ByteBuffer buf = ByteBuffer.allocate(info.packetLength());
+            for (ByteBuffer segment : segments) {
+                buf.put(segment);
+            }
+            assertEquals(0, buf.remaining());
+            buf.flip();
+            assertTrue(buf.equals(ref));
+        }
+    }
 }
@@ -28,12 +28,13 @@ public class SimpleLinguistics implements Linguistics {
     private final static Detector detector = new SimpleDetector();
     private final static CharacterClasses characterClasses = new CharacterClasses();
     private final static GramSplitter gramSplitter = new GramSplitter(characterClasses);
+    private final static StemCache stemCache = new StemCache();
 
     @Override
     public Stemmer getStemmer() { return new StemmerImpl(getTokenizer()); }
 
     @Override
-    public Tokenizer getTokenizer() { return new SimpleTokenizer(normalizer, transformer); }
+    public Tokenizer getTokenizer() { return new SimpleTokenizer(normalizer, transformer, stemCache); }
 
     @Override
     public Normalizer getNormalizer() { return normalizer; }
@@ -14,6 +14,9 @@ import java.util.List;
  * <p>A tokenizer which splits on whitespace, normalizes and transforms using the given implementations
  * and stems using the kstem algorithm.</p>
  *
+ * <p>Besides returning token objects from {@link #tokenize}, this can step through the tokens of a text with a
+ * {@link Cursor}, which does not create any objects for a token unless its strings are asked for.</p>
+ *
  * <p>This is not multithread safe.</p>
  *
  * @author Mathias Mølster Lidal
@@ -25,6 +28,7 @@ public class SimpleTokenizer implements Tokenizer {
     private final Normalizer normalizer;
     private final Transformer transformer;
     private final KStemmer stemmer = new KStemmer();
+    private final StemCache stemCache;
 
     public SimpleTokenizer() {
         this(new SimpleNormalizer(), new SimpleTransformer());
@@ -35,8 +39,14 @@ public class SimpleTokenizer implements Tokenizer {
     }
 
     public SimpleTokenizer(Normalizer normalizer, Transformer transformer) {
+        this(normalizer, transformer, new StemCache());
+    }
+
+    /** Creates a tokenizer sharing a cache with other tokenizers using the same normalizer and transformer */
+    SimpleTokenizer(Normalizer normalizer, Transformer transformer, StemCache stemCache) {
         this.normalizer = normalizer;
         this.transformer = transformer;
+        this.stemCache = stemCache;
     }
 
     @Override
@@ -44,33 +54,127 @@ public class SimpleTokenizer implements Tokenizer {
         if (input.isEmpty()) return Collections.emptyList();
 
         List<Token> tokens = new ArrayList<>();
-        int nextCode = input.codePointAt(0);
-        TokenType prevType = SimpleTokenType.valueOf(nextCode);
-        for (int prev = 0, next = Character.charCount(nextCode); next <= input.length(); ) {
-            nextCode = next < input.length() ? input.codePointAt(next) : SPACE_CODE;
-            TokenType nextType = SimpleTokenType.valueOf(nextCode);
-            if (!prevType.isIndexable() || !nextType.isIndexable()) {
-                String original = input.substring(prev, next);
-                String token = processToken(original, language, stemMode, removeAccents);
-                tokens.add(new SimpleToken(original).setOffset(prev)
-                                                .setType(prevType)
-                                                .setTokenString(token));
-                prev = next;
-                prevType = nextType;
-            }
-            next += Character.charCount(nextCode);
+        Cursor cursor = cursor(input, language, stemMode, removeAccents);
+        while (cursor.next()) {
+            tokens.add(new SimpleToken(cursor.getOrig()).setOffset(cursor.getOffset())
+                                                        .setType(cursor.getType())
+                                                        .setTokenString(cursor.getTokenString()));
         }
         return tokens;
     }
 
+    /**
+     * Returns a cursor over the tokens of the given input, producing the same tokens as {@link #tokenize}.
+     *
+     * @param input the text to tokenize
+     * @param language the language of the input
+     * @param stemMode the stem mode applied on the token strings
+     * @param removeAccents if true accents and similar are removed from the token strings
+     * @return a cursor positioned before the first token
+     */
+    public Cursor cursor(CharSequence input, Language language, StemMode stemMode, boolean removeAccents) {
+        return new Cursor(language, stemMode, removeAccents).reset(input);
+    }
+
     private String processToken(String token, Language language, StemMode stemMode, boolean removeAccents) {
-        token = normalizer.normalize(token);
-        token = LinguisticsCase.toLowerCase(token);
+        boolean stem = stemMode != StemMode.NONE;
+        String cached = language != null ? stemCache.get(token, language, stem, removeAccents) : null;
+        if (cached != null) return cached;
+
+        String processed = normalizer.normalize(token);
+        processed = LinguisticsCase.toLowerCase(processed);
         if (removeAccents)
-            token = transformer.accentDrop(token, language);
-        if (stemMode != StemMode.NONE)
-            token = stemmer.stem(token);
-        return token;
+            processed = transformer.accentDrop(processed, language);
+        if (stem)
+            processed = stemmer.stem(processed);
+        if (language != null)
+            stemCache.put(token, processed, language, stem, removeAccents);
+        return processed;
+    }
+
+    /**
+     * Steps through the tokens of a text. The offset, length and type of the current token are kept in fields
+     * of the cursor, and its strings are only created when asked for, so skipping tokens is cheap. The same
+     * cursor may be used for several texts, see {@link #reset}.
+     */
+    public class Cursor {
+
+        private final Language language;
+        private final StemMode stemMode;
+        private final boolean removeAccents;
+
+        private CharSequence input;
+        private int offset;
+        private int end;
+        private TokenType type;
+        private int nextCode;
+        private TokenType nextType;
+        private String orig;
+        private String tokenString;
+
+        private Cursor(Language language, StemMode stemMode, boolean removeAccents) {
+            this.language = language;
+            this.stemMode = stemMode;
+            this.removeAccents = removeAccents;
+        }
+
+        /** Positions this cursor before the first token of the given input, and returns it */
+        public Cursor reset(CharSequence input) {
+            this.input = input;
+            offset = 0;
+            end = 0;
+            type = null;
+            if (input.length() > 0) {
+                nextCode = Character.codePointAt(input, 0);
+                nextType = SimpleTokenType.valueOf(nextCode);
+            }
+            return this;
+        }
+
+        /** Moves to the next token, and returns whether there was one */
+        public boolean next() {
+            orig = null;
+            tokenString = null;
+            if (end >= input.length()) {
+                type = null;
+                return false;
+            }
+            offset = end;
+            type = nextType;
+            int next = offset + Character.charCount(nextCode);
+            while (next <= input.length()) {
+                nextCode = next < input.length() ? Character.codePointAt(input, next) : SPACE_CODE;
+                nextType = SimpleTokenType.valueOf(nextCode);
+                if ( ! type.isIndexable() || ! nextType.isIndexable()) break;
+                next += Character.charCount(nextCode);
+            }
+            end = next;
+            return true;
+        }
+
+        /** Returns the offset of the current token in the input */
+        public int getOffset() { return offset; }
+
+        /** Returns the number of chars of the input the current token spans */
+        public int getLength() { return end - offset; }
+
+        /** Returns the type of the current token */
+        public TokenType getType() { return type; }
+
+        /** Returns the input text of the current token */
+        public String getOrig() {
+            if (orig == null)
+                orig = input.subSequence(offset, end).toString();
+            return orig;
+        }
+
+        /** Returns the normalized, lower cased and, as requested, accent dropped and stemmed current token */
+        public String getTokenString() {
+            if (tokenString == null)
+                tokenString = processToken(getOrig(), language, stemMode, removeAccents);
+            return tokenString;
+        }
+
     }
 
 }
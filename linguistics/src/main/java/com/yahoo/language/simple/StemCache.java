@@ -0,0 +1,61 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.Language;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded, thread-safe cache of the token strings {@link SimpleTokenizer} produces from terms, which saves
+ * normalizing, lower casing, accent dropping and stemming the frequent terms of a text over and over.
+ * <p>
+ * Token strings are cached separately for each language and combination of stemming and accent removal.
+ * When the cache for one of these reaches its maximum size it is cleared, which is cheap, and makes room for
+ * the terms which are frequent at that time. A cache is only valid for the normalizer and transformer
+ * of the tokenizers it was created for.
+ * </p>
+ */
+class StemCache {
+
+    static final int DEFAULT_MAX_SIZE = 100_000;
+
+    private final int maxSize;
+    private final Map<Language, List<Map<String, String>>> caches = new ConcurrentHashMap<>();
+
+    StemCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    StemCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /** Returns the cached token string of the given term, or null if it is not cached */
+    String get(String term, Language language, boolean stem, boolean removeAccents) {
+        return cache(language, stem, removeAccents).get(term);
+    }
+
+    /** Caches the token string of the given term */
+    void put(String term, String tokenString, Language language, boolean stem, boolean removeAccents) {
+        Map<String, String> cache = cache(language, stem, removeAccents);
+        if (cache.size() >= maxSize) {
+            cache.clear();
+        }
+        cache.put(term, tokenString);
+    }
+
+    private Map<String, String> cache(Language language, boolean stem, boolean removeAccents) {
+        List<Map<String, String>> languageCaches = caches.computeIfAbsent(language, key -> {
+            List<Map<String, String>> list = new ArrayList<>(4);
+            for (int i = 0; i < 4; i++) {
+                list.add(new ConcurrentHashMap<>());
+            }
+            return list;
+        });
+        return languageCaches.get((stem ? 1 : 0) | (removeAccents ? 2 : 0));
+    }
+
+}
@@ -1,10 +1,18 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.language.simple;
 
+import com.yahoo.language.Language;
 import com.yahoo.language.process.AbstractTokenizerTestCase;
 import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
 import org.junit.Test;
 
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @author bratseth
@@ -33,4 +41,45 @@ public class SimpleTokenizerTestCase extends AbstractTokenizerTestCase {
                             " ", "gods", ".", "running", ")");
     }
 
+    @Test
+    public void testCursorGivesSameTokensAsTokenize() {
+        String input = "a\u030a tralalala n4lle. \uD800\uDFC8 (old Persian sign Auramazda, sorry if " +
+                       "anyone 1s offended by ancien7 gods.Running)";
+        SimpleTokenizer tokenizer = new SimpleTokenizer();
+        Iterator<Token> tokens = tokenizer.tokenize(input, Language.ENGLISH, StemMode.ALL, true).iterator();
+        SimpleTokenizer.Cursor cursor = tokenizer.cursor(input, Language.ENGLISH, StemMode.ALL, true);
+        while (cursor.next()) {
+            Token token = tokens.next();
+            assertEquals(token.getOffset(), cursor.getOffset());
+            assertEquals(token.getOrig().length(), cursor.getLength());
+            assertEquals(token.getType(), cursor.getType());
+            assertEquals(token.getOrig(), cursor.getOrig());
+            assertEquals(token.getTokenString(), cursor.getTokenString());
+        }
+        assertFalse(tokens.hasNext());
+
+        assertTrue(cursor.reset(new StringBuilder("Foo")).next());
+        assertEquals("foo", cursor.getTokenString());
+        assertFalse(cursor.next());
+        assertFalse(cursor.reset("").next());
+    }
+
+    @Test
+    public void testCachedTokenStringsDependOnOptions() {
+        SimpleTokenizer tokenizer = new SimpleTokenizer(new SimpleNormalizer(), new SimpleTransformer(), new StemCache(2));
+        for (int i = 0; i < 3; i++) {
+            assertEquals("r\u00E9sum\u00E9s", tokenString(tokenizer, "R\u00E9sum\u00E9s", StemMode.NONE, false));
+            assertEquals("resumes", tokenString(tokenizer, "R\u00E9sum\u00E9s", StemMode.NONE, true));
+            assertEquals("resume", tokenString(tokenizer, "R\u00E9sum\u00E9s", StemMode.ALL, true));
+            assertEquals("offend", tokenString(tokenizer, "offended", StemMode.ALL, true));
+            assertEquals("offended", tokenString(tokenizer, "offended", StemMode.NONE, true));
+        }
+    }
+
+    private static String tokenString(SimpleTokenizer tokenizer, String input, StemMode stemMode, boolean removeAccents) {
+        SimpleTokenizer.Cursor cursor = tokenizer.cursor(input, Language.ENGLISH, stemMode, removeAccents);
+        assertTrue(cursor.next());
+        return cursor.getTokenString();
+    }
+
 }
@@ -39,6 +39,16 @@ public class CallStack {
         return frame.handler;
     }
 
+    /**
+     * Returns the handler of the top frame of this stack, without removing it.
+     *
+     * @return The next handler on the stack, or null if the stack is empty.
+     */
+    public ReplyHandler peek() {
+        StackFrame frame = stack.peek();
+        return frame != null ? frame.handler : null;
+    }
+
     /**
      * Swap the content of this and the argument stack.
      *
@@ -0,0 +1,277 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.metrics.ThrottlePolicyMetricSet;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * This is an implementation of the {@link ThrottlePolicy} that limits the number of pending messages of a {@link
+ * SourceSession} to what the receivers can handle without queuing them up.
+ *
+ * <p>The latency of every reply is measured, and once per window of replies the average latency is compared to the
+ * lowest latency seen in recent windows. As long as the average latency stays close to the lowest, more pending
+ * messages give more throughput, and the window grows at an increasing pace. When the average latency grows beyond
+ * that, the extra messages only wait in queues, and the window is immediately cut to the number of messages the
+ * measured throughput can sustain at the lowest latency. Replies with timeouts or transient errors also shrink the
+ * window. This lets the window follow the capacity of the receivers in a few round trips when it changes.</p>
+ *
+ * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ */
+public class LatencyThrottlePolicy extends StaticThrottlePolicy {
+
+    private static final Logger log = Logger.getLogger(LatencyThrottlePolicy.class.getName());
+    private static final long IDLE_TIME_MILLIS = 60000;
+    private final Timer timer;
+    private final ThrottlePolicyMetricSet metrics = new ThrottlePolicyMetricSet();
+    private final double[] minLatencies = new double[10];
+    private int minLatencyIndex = 0;
+    private double minWindowSize = 16;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private double windowSize = minWindowSize;
+    private double windowSizeIncrement = 1;
+    private double latencyTolerance = 0.2;
+    private double latencyThreshold = 0.5;
+    private double windowSizeBackOff = 0.7;
+    private long timeOfLastMessage;
+    private long periodStart;
+    private int numReplies = 0;
+    private int numOk = 0;
+    private int numOverloaded = 0;
+    private double latencySum = 0;
+    private double periodMinLatency = Double.MAX_VALUE;
+
+    /**
+     * Constructs a new instance of this policy and sets the appropriate default values of member data.
+     */
+    public LatencyThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this class using the given clock to measure latency and throughput.
+     *
+     * @param timer The timer to use.
+     */
+    public LatencyThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.timeOfLastMessage = timer.milliTime();
+        this.periodStart = timeOfLastMessage;
+        Arrays.fill(minLatencies, Double.MAX_VALUE);
+        metrics.windowSize.set((int)windowSize);
+    }
+
+    @Override
+    public boolean canSend(Message msg, int pendingCount) {
+        if (!super.canSend(msg, pendingCount)) {
+            return false;
+        }
+        long time = timer.milliTime();
+        if (time - timeOfLastMessage > IDLE_TIME_MILLIS) {
+            windowSize = Math.max(minWindowSize, Math.min(windowSize, pendingCount + minWindowSize));
+        }
+        timeOfLastMessage = time;
+        return pendingCount < windowSize;
+    }
+
+    @Override
+    public void processMessage(Message msg) {
+        super.processMessage(msg);
+        msg.setContext(new SendContext((Integer)msg.getContext(), timer.milliTime()));
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        SendContext ctx = (SendContext)reply.getContext();
+        reply.setContext(ctx.size);
+        super.processReply(reply);
+
+        long time = timer.milliTime();
+        double latency = Math.max(1, time - ctx.timeSent);
+        latencySum += latency;
+        periodMinLatency = Math.min(periodMinLatency, latency);
+        ++numReplies;
+        if (!reply.hasErrors()) {
+            ++numOk;
+        } else if (isOverloaded(reply)) {
+            ++numOverloaded;
+        }
+        if (numReplies >= windowSize && time > periodStart) {
+            resize(time);
+        }
+    }
+
+    private static boolean isOverloaded(Reply reply) {
+        for (int i = 0; i < reply.getNumErrors(); ++i) {
+            int code = reply.getError(i).getCode();
+            if (code == ErrorCode.TIMEOUT || (code >= ErrorCode.TRANSIENT_ERROR && code < ErrorCode.FATAL_ERROR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void resize(long time) {
+        minLatencies[minLatencyIndex] = periodMinLatency;
+        minLatencyIndex = (minLatencyIndex + 1) % minLatencies.length;
+        double minLatency = Double.MAX_VALUE;
+        for (double value : minLatencies) {
+            minLatency = Math.min(minLatency, value);
+        }
+        double latency = latencySum / numReplies;
+        double throughput = (double)numOk / (time - periodStart);
+
+        if (numOverloaded > 0) {
+            windowSize *= windowSizeBackOff;
+            windowSizeIncrement = 1;
+        } else if (latency > minLatency * (1 + latencyThreshold)) {
+            // messages are queued at the receivers; keep only as many as the throughput needs, plus some slack
+            windowSize = Math.min(windowSize * windowSizeBackOff,
+                                  throughput * minLatency * (1 + latencyTolerance));
+            windowSizeIncrement = 1;
+        } else if (latency <= minLatency * (1 + latencyTolerance)) {
+            windowSize += windowSizeIncrement;
+            windowSizeIncrement = Math.min(windowSizeIncrement * 2, windowSize);
+        } else {
+            windowSizeIncrement = 1;
+        }
+        windowSize = Math.max(minWindowSize, Math.min(maxWindowSize, windowSize));
+
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.log(LogLevel.DEBUG, "windowSize " + windowSize + " latency " + latency + " minLatency " + minLatency +
+                                    " throughput " + throughput);
+        }
+        metrics.windowSize.set((int)windowSize);
+        metrics.latency.set(latency);
+        metrics.minLatency.set(minLatency);
+        metrics.throughput.set(throughput * 1000);
+
+        periodStart = time;
+        numReplies = 0;
+        numOk = 0;
+        numOverloaded = 0;
+        latencySum = 0;
+        periodMinLatency = Double.MAX_VALUE;
+    }
+
+    /**
+     * Returns the metrics describing the current state of this policy. These are not registered anywhere, so the
+     * owner of the session must add them to its metrics to have them reported.
+     *
+     * @return The metrics of this.
+     */
+    public ThrottlePolicyMetricSet getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets how much the average latency may exceed the lowest latency while the window keeps growing, as a fraction
+     * of the lowest latency.
+     *
+     * @param latencyTolerance The tolerance to set.
+     * @return This, to allow chaining.
+     */
+    public LatencyThrottlePolicy setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    /**
+     * Sets how much the average latency may exceed the lowest latency before the window is cut, as a fraction of the
+     * lowest latency. This should be larger than the latency tolerance.
+     *
+     * @param latencyThreshold The threshold to set.
+     * @return This, to allow chaining.
+     */
+    public LatencyThrottlePolicy setLatencyThreshold(double latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+        return this;
+    }
+
+    /**
+     * Sets the factor of window size to back off to when replies signal overload. This value is capped to the [0, 1]
+     * range.
+     *
+     * @param windowSizeBackOff The back off to set.
+     * @return This, to allow chaining.
+     */
+    public LatencyThrottlePolicy setWindowSizeBackOff(double windowSizeBackOff) {
+        this.windowSizeBackOff = Math.max(0, Math.min(1, windowSizeBackOff));
+        return this;
+    }
+
+    /**
+     * Sets the minimium number of pending operations allowed at any time, in order to keep a level of performance.
+     *
+     * @param min The min to set.
+     * @return This, to allow chaining.
+     */
+    public LatencyThrottlePolicy setMinWindowSize(double min) {
+        this.minWindowSize = min;
+        this.windowSize = Math.max(windowSize, min);
+        return this;
+    }
+
+    /**
+     * Get the minimum number of pending operations allowed at any time.
+     *
+     * @return The minimum number of operations.
+     */
+    public double getMinWindowSize() {
+        return minWindowSize;
+    }
+
+    /**
+     * Sets the maximium number of pending operations allowed at any time, in order to avoid using too much
+     * resources.
+     *
+     * @param max The max to set.
+     * @return This, to allow chaining.
+     */
+    public LatencyThrottlePolicy setMaxWindowSize(double max) {
+        this.maxWindowSize = max;
+        this.windowSize = Math.min(windowSize, max);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of pending operations allowed at any time.
+     *
+     * @return The maximum number of operations.
+     */
+    public double getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    @Override
+    public LatencyThrottlePolicy setMaxPendingCount(int maxCount) {
+        super.setMaxPendingCount(maxCount);
+        setMaxWindowSize(maxCount);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pending messages allowed.
+     *
+     * @return The max limit.
+     */
+    @Override
+    public int getMaxPendingCount() {
+        return (int)windowSize;
+    }
+
+    private static class SendContext {
+
+        final int size;
+        final long timeSent;
+
+        SendContext(int size, long timeSent) {
+            this.size = size;
+            this.timeSent = timeSent;
+        }
+    }
+}
@@ -139,7 +139,7 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
             throw new IllegalStateException("Network failed to become ready in time.");
 
         // Start messenger.
-        msn = new Messenger();
+        msn = new Messenger(params.getNumMessengerThreads());
 
         RetryPolicy retryPolicy = params.getRetryPolicy();
         if (retryPolicy != null) {
@@ -393,7 +393,7 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
             return;
         }
         SendProxy proxy = new SendProxy(this, net, resender);
-        msn.deliverMessage(msg, proxy);
+        msn.deliverMessage(msg, proxy, orderKey(msg, proxy));
     }
 
     @Override
@@ -446,7 +446,24 @@ public class MessageBus implements ConfigHandler, NetworkOwner, MessageHandler,
 
     @Override
     public void deliverReply(Reply reply, ReplyHandler handler) {
-        msn.deliverReply(reply, handler);
+        if (handler instanceof RoutingNode) {
+            msn.deliverReply(reply, handler, orderKey(((RoutingNode)handler).getMessage(), handler));
+        } else {
+            msn.deliverReply(reply, handler);
+        }
+    }
+
+    /**
+     * Returns the key that orders the delivery of the given message, and of the replies to it, with those of the other
+     * messages of the same session. This is the handler that will receive the reply to the message.
+     *
+     * @param msg      The message being routed.
+     * @param fallback The key to use if the message has no reply handler.
+     * @return The ordering key.
+     */
+    private static Object orderKey(Message msg, Object fallback) {
+        ReplyHandler handler = msg.getCallStack().peek();
+        return handler != null ? handler : fallback;
     }
 
     @Override
@@ -19,6 +19,7 @@ public class MessageBusParams {
     private RetryPolicy retryPolicy;
     private int maxPendingCount;
     private int maxPendingSize;
+    private int numMessengerThreads;
 
     /**
      * Constructs a new instance of this parameter object with default values for all members.
@@ -27,6 +28,7 @@ public class MessageBusParams {
         retryPolicy = new RetryTransientErrorsPolicy();
         maxPendingCount = 1024;
         maxPendingSize = 128 * 1024 * 1024;
+        numMessengerThreads = 1;
     }
 
     /**
@@ -39,6 +41,7 @@ public class MessageBusParams {
         retryPolicy = params.retryPolicy;
         maxPendingCount = params.maxPendingCount;
         maxPendingSize = params.maxPendingSize;
+        numMessengerThreads = params.numMessengerThreads;
     }
 
     /**
@@ -143,4 +146,26 @@ public class MessageBusParams {
         this.maxPendingSize = maxSize;
         return this;
     }
+
+    /**
+     * Returns the number of threads that deliver messages and replies.
+     *
+     * @return The number of threads.
+     */
+    public int getNumMessengerThreads() {
+        return numMessengerThreads;
+    }
+
+    /**
+     * Sets the number of threads that deliver messages and replies. With more than one thread, routing and the
+     * callbacks of different sessions run concurrently, so the routing policies of all protocols must be thread-safe.
+     * The callbacks of a single session are still made one at a time and in order.
+     *
+     * @param numThreads The number of threads to set.
+     * @return This, to allow chaining.
+     */
+    public MessageBusParams setNumMessengerThreads(int numThreads) {
+        this.numMessengerThreads = numThreads;
+        return this;
+    }
 }
@@ -3,38 +3,62 @@ package com.yahoo.messagebus;
 
 import com.yahoo.log.LogLevel;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 /**
- * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * <p>This class implements a pool of threads that is able to process
+ * arbitrary tasks. Each thread owns a queue of tasks, and each task is run by
+ * the thread selected by its ordering key. Tasks that are enqueued with the
+ * same key are run one at a time in the order they were enqueued, so handlers
+ * that are used as keys see their callbacks in order and never concurrently.
+ * Tasks that are enqueued without a key are run by the first thread. With a
+ * single thread, which is the default, all tasks are run in the order they
+ * were enqueued.</p>
  *
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
  */
 public class Messenger implements Runnable {
 
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final Queue<Task> queue = new ArrayDeque<>();
-    private final Thread thread = new Thread(this, "Messenger");
+    private final Worker[] workers;
 
     public Messenger() {
-        thread.setDaemon(true);
+        this(1);
+    }
+
+    /**
+     * <p>Constructs a messenger that runs its tasks in the given number of
+     * threads.</p>
+     *
+     * @param numThreads The number of threads to run tasks in.
+     */
+    public Messenger(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A messenger needs at least 1 thread, not " + numThreads);
+        }
+        workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; ++i) {
+            workers[i] = new Worker(numThreads == 1 ? "Messenger" : "Messenger-" + i, i == 0);
+        }
     }
 
     /**
      * <p>Adds a recurrent task to this that is to be run for every iteration of
-     * the main loop. This task must be very light-weight as to not block the
-     * messenger. Note that this method is NOT thread-safe, so it should NOT be
-     * used after calling {@link #start()}.</p>
+     * the main loop of the first thread. This task must be very light-weight
+     * as to not block the messenger. Note that this method is NOT
+     * thread-safe, so it should NOT be used after calling {@link
+     * #start()}.</p>
      *
      * @param task The task to add.
      */
@@ -43,70 +67,135 @@ public class Messenger implements Runnable {
     }
 
     /**
-     * <p>Starts the internal thread. This must be done AFTER all recurrent
+     * <p>Starts the internal threads. This must be done AFTER all recurrent
      * tasks have been added.</p>
      *
      * @see #addRecurrentTask(Task)
      */
     public void start() {
-        thread.start();
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * <p>Returns the number of threads that run the tasks of this.</p>
+     *
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return workers.length;
     }
 
     /**
      * <p>Convenience method to post a {@link Task} that delivers a {@link
      * Message} to a {@link MessageHandler} to the queue of tasks to be
-     * executed.</p>
+     * executed. The handler is used as the ordering key of the task.</p>
      *
      * @param msg     The message to send.
      * @param handler The handler to send to.
      */
     public void deliverMessage(final Message msg, final MessageHandler handler) {
-        enqueue(new MessageTask(msg, handler));
+        deliverMessage(msg, handler, handler);
     }
 
     /**
      * <p>Convenience method to post a {@link Task} that delivers a {@link
-     * Reply} to a {@link ReplyHandler} to the queue of tasks to be
+     * Message} to a {@link MessageHandler} to the queue of tasks to be
      * executed.</p>
      *
+     * @param msg     The message to send.
+     * @param handler The handler to send to.
+     * @param key     The ordering key of the task.
+     */
+    public void deliverMessage(final Message msg, final MessageHandler handler, final Object key) {
+        enqueue(key, new MessageTask(msg, handler));
+    }
+
+    /**
+     * <p>Convenience method to post a {@link Task} that delivers a {@link
+     * Reply} to a {@link ReplyHandler} to the queue of tasks to be
+     * executed. The handler is used as the ordering key of the task.</p>
+     *
      * @param reply   The reply to return.
      * @param handler The handler to return to.
      */
     public void deliverReply(final Reply reply, final ReplyHandler handler) {
-        enqueue(new ReplyTask(reply, handler));
+        deliverReply(reply, handler, handler);
     }
 
     /**
-     * <p>Enqueues the given task in the list of tasks that this worker is to
-     * process. If this thread has been destroyed previously, this method
-     * invokes {@link Messenger.Task#destroy()}.</p>
+     * <p>Convenience method to post a {@link Task} that delivers a {@link
+     * Reply} to a {@link ReplyHandler} to the queue of tasks to be
+     * executed.</p>
+     *
+     * @param reply   The reply to return.
+     * @param handler The handler to return to.
+     * @param key     The ordering key of the task.
+     */
+    public void deliverReply(final Reply reply, final ReplyHandler handler, final Object key) {
+        enqueue(key, new ReplyTask(reply, handler));
+    }
+
+    /**
+     * <p>Enqueues the given task in the list of tasks that the first thread
+     * of this is to process. If this has been destroyed previously, this
+     * method invokes {@link Messenger.Task#destroy()}.</p>
      *
      * @param task The task to enqueue.
      */
     public void enqueue(final Task task) {
+        post(workers[0], task);
+    }
+
+    /**
+     * <p>Enqueues the given task in the list of tasks of the thread selected
+     * by the given key. All tasks enqueued with equal keys are processed by
+     * the same thread in the order they were enqueued. If this has been
+     * destroyed previously, this method invokes {@link
+     * Messenger.Task#destroy()}.</p>
+     *
+     * @param key  The ordering key of the task.
+     * @param task The task to enqueue.
+     */
+    public void enqueue(final Object key, final Task task) {
+        post(workers.length == 1 ? workers[0] : workers[spread(key.hashCode()) % workers.length], task);
+    }
+
+    private void post(final Worker worker, final Task task) {
         if (destroyed.get()) {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
-        }
+        worker.enqueue(task);
+    }
+
+    private static int spread(int hash) {
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash & 0x7fffffff;
     }
 
     /**
-     * <p>Handshakes with the internal thread. If this method is called using
-     * the messenger thread, this will deadlock.</p>
+     * <p>Handshakes with all the internal threads. If this method is called
+     * using one of the messenger threads, it returns immediately since
+     * waiting for the other threads could deadlock.</p>
      */
     public void sync() {
-        if (Thread.currentThread() == thread) {
-            return; // no need to wait for self
+        for (Worker worker : workers) {
+            if (Thread.currentThread() == worker.thread) {
+                return; // no need to wait for self
+            }
+        }
+        final SyncTask[] tasks = new SyncTask[workers.length];
+        for (int i = 0; i < workers.length; ++i) {
+            tasks[i] = new SyncTask();
+            post(workers[i], tasks[i]);
+        }
+        for (SyncTask task : tasks) {
+            task.await();
         }
-        final SyncTask task = new SyncTask();
-        enqueue(task);
-        task.await();
     }
 
     /**
@@ -119,18 +208,20 @@ public class Messenger implements Runnable {
      */
     public boolean destroy() {
         boolean done = false;
-        enqueue(Terminate.INSTANCE);
+        for (Worker worker : workers) {
+            worker.enqueue(Terminate.INSTANCE);
+        }
         if (!destroyed.getAndSet(true)) {
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
-                    }
+                for (Worker worker : workers) {
+                    worker.thread.join();
                 }
-                thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
+            for (Worker worker : workers) {
+                worker.destroyQueued();
+            }
             done = true;
         }
         return done;
@@ -138,51 +229,13 @@ public class Messenger implements Runnable {
 
     @Override
     public void run() {
-        while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
-                    try {
-                        wait(100);
-                    } catch (final InterruptedException e) {
-                        continue;
-                    }
-                }
-                if (queue.size() > 0) {
-                    task = queue.poll();
-                }
-            }
-            if (task == Terminate.INSTANCE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (final Exception e) {
-                    log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
-                }
-                try {
-                    task.destroy();
-                } catch (final Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
-                                e.toString());
-                    log.warning("Someone, somewhere might have to wait indefinetly for something.");
-                }
-            }
-            for (final Task child : children) {
-                child.run();
-            }
-        }
-        for (final Task child : children) {
-            child.destroy();
-        }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
-                task.destroy();
+        for (Worker worker : workers) {
+            if (Thread.currentThread() == worker.thread) {
+                worker.run();
+                return;
             }
-            notify();
         }
+        throw new IllegalStateException("Messenger.run() may only be called by the messenger threads.");
     }
 
     @Override
@@ -214,6 +267,75 @@ public class Messenger implements Runnable {
         public void destroy();
     }
 
+    private class Worker {
+
+        final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        final boolean runsChildren;
+        volatile boolean sleeping = false;
+
+        Worker(String name, boolean runsChildren) {
+            this.thread = new Thread(Messenger.this, name);
+            this.thread.setDaemon(true);
+            this.runsChildren = runsChildren;
+        }
+
+        void enqueue(Task task) {
+            queue.offer(task);
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void run() {
+            while (true) {
+                Task task = queue.poll();
+                if (task == null) {
+                    sleeping = true;
+                    task = queue.poll();
+                    if (task == null) {
+                        LockSupport.parkNanos(this, IDLE_NANOS);
+                    }
+                    sleeping = false;
+                }
+                if (task == Terminate.INSTANCE) {
+                    break;
+                }
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (final Exception e) {
+                        log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                    }
+                    try {
+                        task.destroy();
+                    } catch (final Exception e) {
+                        log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
+                                    e.toString());
+                        log.warning("Someone, somewhere might have to wait indefinetly for something.");
+                    }
+                }
+                if (runsChildren) {
+                    for (final Task child : children) {
+                        child.run();
+                    }
+                }
+            }
+            if (runsChildren) {
+                for (final Task child : children) {
+                    child.destroy();
+                }
+            }
+            destroyQueued();
+        }
+
+        void destroyQueued() {
+            for (Task task = queue.poll(); task != null; task = queue.poll()) {
+                task.destroy();
+            }
+        }
+    }
+
     private static class MessageTask implements Task {
 
         final MessageHandler handler;
@@ -1,10 +1,13 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.messagebus.metrics.SequencerMetricSet;
+
+import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -13,13 +16,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
  *
+ * The state of each sequence id is updated atomically in a concurrent map, so messages with different sequence ids do
+ * not contend on a shared lock. A sequence id with a message in flight and nothing queued behind it is mapped to a
+ * shared empty queue, so the common case of sending a message with a sequence id that has nothing pending does not
+ * allocate a queue.
+ *
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    /** The queue of a sequence id which has a message in flight and no messages waiting. */
+    private static final Queue<Queued> inFlight = new ArrayDeque<>(0);
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<Long, Queue<Message>>();
+    private final SequencerMetricSet metrics;
+    private final ConcurrentMap<Long, Queue<Queued>> seqMap = new ConcurrentHashMap<>();
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -27,7 +39,18 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      * @param sender The underlying sender.
      */
     public Sequencer(MessageHandler sender) {
+        this(sender, new SequencerMetricSet());
+    }
+
+    /**
+     * Constructs a new sequencer on top of the given async sender.
+     *
+     * @param sender  The underlying sender.
+     * @param metrics The metrics to update with the queueing done by this.
+     */
+    public Sequencer(MessageHandler sender, SequencerMetricSet metrics) {
         this.sender = sender;
+        this.metrics = metrics;
     }
 
     /**
@@ -38,15 +61,14 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
-                        }
+            for (Long seqId : seqMap.keySet()) {
+                Queue<Queued> queue = seqMap.remove(seqId);
+                if (queue != null) {
+                    for (Queued queued : queue) {
+                        metrics.queued.inc(-1);
+                        queued.msg.discard();
                     }
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,23 +87,30 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
-            if (seqMap.containsKey(seqId)) {
-                Queue<Message> queue = seqMap.get(seqId);
-                if (queue == null) {
-                    queue = new LinkedList<Message>();
-                    seqMap.put(seqId, queue);
-                }
-                if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
-                    msg.getTrace().trace(TraceLevel.COMPONENT,
-                                         "Sequencer queued message with sequence id '" + seqId + "'.");
-                }
-                queue.add(msg);
-                return false;
+        if (seqMap.putIfAbsent(seqId, inFlight) == null) {
+            return true;
+        }
+        boolean[] queued = new boolean[1];
+        seqMap.compute(seqId, (id, queue) -> {
+            if (queue == null) {
+                return inFlight; // the pending message was replied to in the meantime
             }
-            seqMap.put(seqId, null);
+            if (queue == inFlight) {
+                queue = new ArrayDeque<>();
+            }
+            queue.add(new Queued(msg, SystemTimer.INSTANCE.milliTime()));
+            queued[0] = true;
+            return queue;
+        });
+        if ( ! queued[0]) {
+            return true;
+        }
+        metrics.queued.inc(1);
+        if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
+            msg.getTrace().trace(TraceLevel.COMPONENT,
+                                 "Sequencer queued message with sequence id '" + seqId + "'.");
         }
-        return true;
+        return false;
     }
 
     /**
@@ -137,19 +166,32 @@ public class Sequencer implements MessageHandler, ReplyHandler {
             reply.getTrace().trace(TraceLevel.COMPONENT,
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
-        Message msg = null;
-        synchronized (this) {
-            Queue<Message> queue = seqMap.get(seqId);
-            if (queue == null || queue.isEmpty()) {
-                seqMap.remove(seqId);
-            } else {
-                msg = queue.remove();
+        Queued[] next = new Queued[1];
+        seqMap.computeIfPresent(seqId, (id, queue) -> {
+            if (queue.isEmpty()) {
+                return null;
             }
-        }
-        if (msg != null) {
-            sequencedSend(msg);
+            next[0] = queue.remove();
+            return queue.isEmpty() ? inFlight : queue;
+        });
+        if (next[0] != null) {
+            metrics.queued.inc(-1);
+            metrics.addWaitTime(SystemTimer.INSTANCE.milliTime() - next[0].timeQueued);
+            sequencedSend(next[0].msg);
         }
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
     }
+
+    /** A message waiting for the pending message with the same sequence id to be replied to. */
+    private static class Queued {
+
+        final Message msg;
+        final long timeQueued;
+
+        Queued(Message msg, long timeQueued) {
+            this.msg = msg;
+            this.timeQueued = timeQueued;
+        }
+    }
 }
@@ -10,12 +10,14 @@ import com.yahoo.messagebus.routing.Route;
  */
 public class MessageBusMetricSet extends MetricSet {
     public MetricSet protocols = new MetricSet("protocols");
+    public SequencerMetricSet sequencer = new SequencerMetricSet();
 
     private final CopyOnWriteHashMap<String, RouteMetricSet> routeMetrics = new CopyOnWriteHashMap<String, RouteMetricSet>();
 
     public MessageBusMetricSet() {
         super("messagebus");
         addMetric(protocols);
+        addMetric(sequencer);
     }
 
     public RouteMetricSet getRouteMetrics(Route r) {
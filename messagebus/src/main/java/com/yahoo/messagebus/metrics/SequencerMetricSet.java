@@ -0,0 +1,24 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.metrics;
+
+/**
+ * Metrics of the sequencing of messages in source sessions.
+ */
+public class SequencerMetricSet extends MetricSet {
+
+    /** The number of messages currently queued behind a pending message with the same sequence id. */
+    public final CountMetric queued = new CountMetric("queued", this);
+
+    /** The number of milliseconds messages have been queued before being sent. */
+    public final AverageMetric waitTime = new AverageMetric("waittime", this);
+
+    public SequencerMetricSet() {
+        super("sequencer");
+    }
+
+    public void addWaitTime(long millis) {
+        synchronized (waitTime) {
+            waitTime.addValue(millis);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.metrics;
+
+/**
+ * Metrics of the state of a throttle policy which adjusts its window to the measured latency and throughput.
+ */
+public class ThrottlePolicyMetricSet extends MetricSet {
+
+    /** The number of messages currently allowed to be pending. */
+    public final ValueMetric<Integer> windowSize = new ValueMetric<>("windowsize", 0, this);
+
+    /** The average number of milliseconds until a reply was received, in the last measurement period. */
+    public final ValueMetric<Double> latency = new ValueMetric<>("latency", 0.0, this);
+
+    /** The lowest number of milliseconds until a reply was received, in recent measurement periods. */
+    public final ValueMetric<Double> minLatency = new ValueMetric<>("minlatency", 0.0, this);
+
+    /** The number of successful replies per second, in the last measurement period. */
+    public final ValueMetric<Double> throughput = new ValueMetric<>("throughput", 0.0, this);
+
+    public ThrottlePolicyMetricSet() {
+        super("throttling");
+    }
+
+}
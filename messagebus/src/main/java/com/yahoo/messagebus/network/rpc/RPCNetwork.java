@@ -64,6 +64,8 @@ public class RPCNetwork implements Network, MethodHandler {
     private final Mirror mirror;
     private final Register register;
     private final TreeMap<Version, RPCSendAdapter> sendAdapters = new TreeMap<>();
+    private final int maxBatchSize;
+    private final double batchLingerSecs;
     private NetworkOwner owner;
     private final SlobrokConfigSubscriber slobroksConfig;
     private final LinkedHashMap<String, Route> lruRouteMap = new LinkedHashMap<>(10000, 0.5f, true);
@@ -84,10 +86,12 @@ public class RPCNetwork implements Network, MethodHandler {
     public RPCNetwork(RPCNetworkParams params, SlobrokConfigSubscriber slobrokConfig) {
         this.slobroksConfig = slobrokConfig;
         identity = params.getIdentity();
-        orb = new Supervisor(new Transport());
+        orb = new Supervisor(new Transport(params.getTransportThreads()));
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
         targetPool = new RPCTargetPool(params.getConnectionExpireSecs());
+        maxBatchSize = params.getMaxBatchSize();
+        batchLingerSecs = params.getBatchLingerSecs();
         servicePool = new RPCServicePool(this, 4096);
 
         Method method = new Method("mbus.getVersion", "", "s", this);
@@ -182,9 +186,15 @@ public class RPCNetwork implements Network, MethodHandler {
         this.owner = owner;
 
         RPCSendAdapter adapter1 = new RPCSendV1();
-        RPCSendAdapter adapter2 = new RPCSendV2();
+        RPCSendV2 adapter2 = new RPCSendV2();
+        RPCSendAdapter adapter3 = new RPCSendV3(adapter2, maxBatchSize, batchLingerSecs);
         addSendAdapter(new Version(5), adapter1);
         addSendAdapter(new Version(6,149), adapter2);
+        if (maxBatchSize > 1) {
+            addSendAdapter(new Version(6,200), adapter3);
+        } else {
+            adapter3.attach(this); // always serve batches from others
+        }
     }
 
     @Override
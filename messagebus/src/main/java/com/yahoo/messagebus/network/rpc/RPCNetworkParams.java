@@ -20,6 +20,9 @@ public class RPCNetworkParams {
     private int maxInputBufferSize = 256 * 1024;
     private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
+    private int maxBatchSize = 1;
+    private double batchLingerSecs = 0;
+    private int transportThreads = 1;
 
     /**
      * Constructs a new instance of this class with reasonable default values.
@@ -42,6 +45,9 @@ public class RPCNetworkParams {
         connectionExpireSecs = params.connectionExpireSecs;
         maxInputBufferSize = params.maxInputBufferSize;
         maxOutputBufferSize = params.maxOutputBufferSize;
+        maxBatchSize = params.maxBatchSize;
+        batchLingerSecs = params.batchLingerSecs;
+        transportThreads = params.transportThreads;
     }
 
     /**
@@ -207,4 +213,70 @@ public class RPCNetworkParams {
         this.maxOutputBufferSize = maxOutputBufferSize;
         return this;
     }
+
+    /**
+     * Returns the maximum number of messages to send to a single recipient in one request.
+     *
+     * @return The maximum number of messages.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of messages to send to a single recipient in one request. Using a value larger than 1
+     * enables batching of messages to recipients of version 6.200 or later. Recipients which do not support batching,
+     * like C++ nodes, are detected on the first batch, and are sent single messages instead. The default value 1
+     * disables batching.
+     *
+     * @param maxBatchSize The maximum number of messages.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Returns the number of seconds to wait for more messages to the same recipient before sending a batch.
+     *
+     * @return The number of seconds.
+     */
+    public double getBatchLingerSecs() {
+        return batchLingerSecs;
+    }
+
+    /**
+     * Sets the number of seconds to wait for more messages to the same recipient before sending a batch. Using the
+     * value 0, the default, sends a batch as soon as the network thread gets to it, so that only the messages which
+     * were sent in the meantime are batched together.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setBatchLingerSecs(double secs) {
+        this.batchLingerSecs = secs;
+        return this;
+    }
+
+    /**
+     * Returns the number of threads performing network IO for the network.
+     *
+     * @return The number of threads.
+     */
+    public int getTransportThreads() {
+        return transportThreads;
+    }
+
+    /**
+     * Sets the number of threads performing network IO for the network. Each connection is served by one of the
+     * threads, so using more threads than the default single one only helps when there are many connections.
+     *
+     * @param transportThreads The number of threads, at least 1.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setTransportThreads(int transportThreads) {
+        this.transportThreads = transportThreads;
+        return this;
+    }
 }
@@ -62,11 +62,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         Request req = encodeRequest(version, route, address,msg, timeRemaining, payload, ctx.trace.getLevel());
 
-        if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
-            ctx.trace.trace(TraceLevel.SEND_RECEIVE,
-                    "Sending message (version " + version + ") from " + clientIdent + " to '" +
-                            address.getServiceName() + "' with " + ctx.timeout + " seconds timeout.");
-        }
+        traceSend(ctx.trace, version, address, ctx.timeout);
 
         if (hop.getIgnoreResult()) {
             address.getTarget().getJRTTarget().invokeVoid(req);
@@ -84,6 +80,14 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         req.discardParameters(); // allow garbage collection of request parameters
     }
 
+    final void traceSend(Trace trace, Version version, RPCServiceAddress address, double timeout) {
+        if (trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+            trace.trace(TraceLevel.SEND_RECEIVE,
+                    "Sending message (version " + version + ") from " + clientIdent + " to '" +
+                            address.getServiceName() + "' with " + timeout + " seconds timeout.");
+        }
+    }
+
     protected final Object decode(Utf8Array protocolName, Version version, byte [] payload) {
         Protocol protocol = net.getOwner().getProtocol(protocolName);
         if (protocol != null) {
@@ -116,34 +120,47 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Reply reply = null;
         Error error = null;
         if (!req.checkReturnTypes(getReturnSpec())) {
-            // Map all known JRT errors to the appropriate message bus error.
             reply = new EmptyReply();
-            switch (req.errorCode()) {
-                case com.yahoo.jrt.ErrorCode.TIMEOUT:
-                    error = new Error(ErrorCode.TIMEOUT,
-                            "A timeout occured while waiting for '" + serviceName + "' (" +
-                                    ctx.timeout + " seconds expired); " + req.errorMessage());
-                    break;
-                case com.yahoo.jrt.ErrorCode.CONNECTION:
-                    error = new Error(ErrorCode.CONNECTION_ERROR,
-                            "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
-                    break;
-                default:
-                    error = new Error(ErrorCode.NETWORK_ERROR,
-                            "A network error occured for '" + serviceName + "'; " + req.errorMessage());
-            }
+            error = toError(req, serviceName, ctx.timeout);
         } else {
             reply = createReply(req.returnValues(), serviceName, ctx.trace);
         }
-        if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
-            ctx.trace.trace(TraceLevel.SEND_RECEIVE,
+        deliverReply(reply, error, ctx.trace, ctx.recipient);
+    }
+
+    /**
+     * Maps all known JRT errors of a failed request to the appropriate message bus error.
+     *
+     * @param req         The failed request.
+     * @param serviceName The name of the service the request was sent to.
+     * @param timeout     The timeout of the request, in seconds.
+     * @return The message bus error.
+     */
+    static Error toError(Request req, String serviceName, double timeout) {
+        switch (req.errorCode()) {
+            case com.yahoo.jrt.ErrorCode.TIMEOUT:
+                return new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + serviceName + "' (" +
+                                timeout + " seconds expired); " + req.errorMessage());
+            case com.yahoo.jrt.ErrorCode.CONNECTION:
+                return new Error(ErrorCode.CONNECTION_ERROR,
+                        "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
+            default:
+                return new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + serviceName + "'; " + req.errorMessage());
+        }
+    }
+
+    final void deliverReply(Reply reply, Error error, Trace trace, RoutingNode recipient) {
+        if (trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+            trace.trace(TraceLevel.SEND_RECEIVE,
                     "Reply (type " + reply.getType() + ") received at " + clientIdent + ".");
         }
-        reply.getTrace().swap(ctx.trace);
+        reply.getTrace().swap(trace);
         if (error != null) {
             reply.addError(error);
         }
-        net.getOwner().deliverReply(reply, ctx.recipient);
+        net.getOwner().deliverReply(reply, recipient);
     }
 
     protected final class Params {
@@ -169,33 +186,42 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        Error error = deliverMessage(p, new ReplyContext(request, p.version), this);
+        if (error != null) {
+            replyError(request, p.version, p.traceLevel, error);
+        }
+    }
+
+    /**
+     * Decodes the message of the given parameters and delivers it to the owner of the network.
+     *
+     * @param p       The parameters of the received message.
+     * @param context The context to set on the message.
+     * @param handler The handler of the reply to the message.
+     * @return The error preventing delivery of the message, or null if it was delivered.
+     */
+    final Error deliverMessage(Params p, Object context, ReplyHandler handler) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, p.traceLevel,
-                    new Error(ErrorCode.UNKNOWN_PROTOCOL,
-                            "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
-            return;
+            return new Error(ErrorCode.UNKNOWN_PROTOCOL,
+                    "Protocol '" + p.protocolName + "' is not known by " + serverIdent + ".");
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, p.traceLevel,
-                    new Error(ErrorCode.DECODE_ERROR,
-                            "Protocol '" + protocol.getName() + "' failed to decode routable."));
-            return;
+            return new Error(ErrorCode.DECODE_ERROR,
+                    "Protocol '" + protocol.getName() + "' failed to decode routable.");
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, p.traceLevel,
-                    new Error(ErrorCode.DECODE_ERROR,
-                            "Payload decoded to a reply when expecting a message."));
-            return;
+            return new Error(ErrorCode.DECODE_ERROR,
+                    "Payload decoded to a reply when expecting a message.");
         }
         Message msg = (Message)routable;
         if (p.route != null && p.route.length() > 0) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version));
-        msg.pushHandler(this);
+        msg.setContext(context);
+        msg.pushHandler(handler);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
         msg.setTimeReceivedNow();
@@ -206,6 +232,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                     "Message (type " + msg.getType() + ") received at " + serverIdent + " for session '" + p.session + "'.");
         }
         net.getOwner().deliverMessage(msg, p.session);
+        return null;
     }
 
     @Override
@@ -213,26 +240,40 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         ReplyContext ctx = (ReplyContext)reply.getContext();
         reply.setContext(null);
 
+        // Encode and return the reply through the RPC request.
+        byte[] payload = encodePayload(reply, ctx.version);
+        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
+        ctx.request.returnRequest();
+    }
+
+    /**
+     * Adds trace information to the given reply and encodes it. If the reply can not be encoded an error is added to
+     * it, and an empty payload is returned.
+     *
+     * @param reply   The reply to encode.
+     * @param version The version to serialize for.
+     * @return The encoded reply.
+     */
+    final byte[] encodePayload(Reply reply, Version version) {
         // Add trace information.
         if (reply.getTrace().shouldTrace(TraceLevel.SEND_RECEIVE)) {
             reply.getTrace().trace(TraceLevel.SEND_RECEIVE,
-                    "Sending reply (version " + ctx.version + ") from " + serverIdent + ".");
+                    "Sending reply (version " + version + ") from " + serverIdent + ".");
         }
 
-        // Encode and return the reply through the RPC request.
         byte[] payload = new byte[0];
         if (reply.getType() != 0) {
             Protocol protocol = net.getOwner().getProtocol(reply.getProtocol());
             if (protocol != null) {
-                payload = protocol.encode(ctx.version, reply);
+                payload = protocol.encode(version, reply);
             }
             if (payload == null || payload.length == 0) {
+                payload = new byte[0];
                 reply.addError(new Error(ErrorCode.ENCODE_ERROR,
                         "An error occured while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
-        ctx.request.returnRequest();
+        return payload;
     }
 
     /**
@@ -0,0 +1,409 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int8Value;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Task;
+import com.yahoo.jrt.Values;
+import com.yahoo.messagebus.EmptyReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Trace;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.routing.RoutingNode;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implements the request adapter for method "mbus.slime.batch". This sends all messages routed to the same target
+ * within a short linger time as a single request, where each message is encoded as in {@link RPCSendV2}. The replies
+ * are returned together once all the messages of a request have been replied to, and are then delivered to each
+ * message's reply handler. Messages which time out before the reply to their request arrives are given a timeout
+ * error on their own. Targets which do not support this method, like C++ nodes, are remembered, and the messages
+ * to them are resent, and from then on sent, one by one with {@link RPCSendV2}.
+ */
+public class RPCSendV3 implements MethodHandler, ReplyHandler, RequestWaiter, RPCSendAdapter {
+
+    private final static String METHOD_NAME = "mbus.slime.batch";
+    private final static String METHOD_PARAMS = "bix";
+    private final static String METHOD_RETURN = "bix";
+    private final static int MAX_BATCH_BYTES = 1 << 20;
+
+    private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+    private final RPCSendV2 single;
+    private final int maxBatchSize;
+    private final double lingerSecs;
+    private final Map<RPCTarget, Batch> batches = new HashMap<>();
+    private final Set<RPCTarget> unbatchedTargets = Collections.newSetFromMap(new WeakHashMap<>());
+    private final AtomicLong batchesSent = new AtomicLong(0);
+    private RPCNetwork net = null;
+
+    /**
+     * Creates a batching send adapter.
+     *
+     * @param single       The attached adapter used to encode each message, and to send messages whose result is
+     *                     ignored.
+     * @param maxBatchSize The maximum number of messages to send in one request.
+     * @param lingerSecs   The time to wait for more messages to the same target before sending a request.
+     */
+    public RPCSendV3(RPCSendV2 single, int maxBatchSize, double lingerSecs) {
+        this.single = single;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerSecs = lingerSecs;
+    }
+
+    @Override
+    public void attach(RPCNetwork net) {
+        this.net = net;
+        Method method = new Method(METHOD_NAME, METHOD_PARAMS, METHOD_RETURN, this);
+        method.methodDesc("Send a batch of message bus requests and get their replies back.");
+        method.paramDesc(0, "encoding", "Encoding type of the messages.")
+                .paramDesc(1, "decodedSize", "Number of bytes after decoding.")
+                .paramDesc(2, "payload", "Slime encoded array of messages.");
+        method.returnDesc(0, "encoding", "Encoding type of the replies.")
+                .returnDesc(1, "decodedSize", "Number of bytes after decoding.")
+                .returnDesc(2, "payload", "Slime encoded array of replies, in the order of the messages.");
+        net.getSupervisor().addMethod(method);
+    }
+
+    @Override
+    public void send(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
+        if (recipient.getRoute().getHop(0).getIgnoreResult()) {
+            single.send(recipient, version, payload, timeRemaining);
+            return;
+        }
+        Entry entry = new Entry(recipient, version, payload, timeRemaining);
+        RPCTarget target = entry.address.getTarget();
+        boolean batched;
+        Batch full = null;
+        synchronized (batches) {
+            batched = ! unbatchedTargets.contains(target);
+            if (batched) {
+                full = add(target, entry);
+            }
+        }
+        if ( ! batched) {
+            single.send(recipient, version, payload, timeRemaining);
+        }
+        else if (full != null) {
+            full.send();
+        }
+    }
+
+    /** Adds an entry to the batch of its target, and returns the batch if it is full. Must be called synchronized. */
+    private Batch add(RPCTarget target, Entry entry) {
+        Batch batch = batches.get(target);
+        if (batch == null) {
+            batch = new Batch(target);
+            batches.put(target, batch);
+            batch.scheduleFlush();
+        }
+        batch.add(entry);
+        if (batch.entries.size() >= maxBatchSize || batch.bytes >= MAX_BATCH_BYTES) {
+            batches.remove(target);
+            return batch;
+        }
+        return null;
+    }
+
+    /** Returns the number of batch requests sent by this */
+    long batchesSent() { return batchesSent.get(); }
+
+    /** Sends the batch collected for the given target, unless it has already been sent. */
+    private void flush(Batch batch) {
+        synchronized (batches) {
+            if (batches.get(batch.target) != batch) {
+                return;
+            }
+            batches.remove(batch.target);
+        }
+        net.getExecutor().execute(batch::send);
+    }
+
+    @Override
+    public void handleRequestDone(Request req) {
+        net.getExecutor().execute(() -> doRequestDone(req));
+    }
+
+    private void doRequestDone(Request req) {
+        Batch batch = (Batch)req.getContext();
+        batch.timeoutTask.kill();
+        if (req.errorCode() == com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD) {
+            synchronized (batches) {
+                unbatchedTargets.add(batch.target);
+            }
+            for (Entry entry : batch.entries) {
+                entry.resend();
+            }
+            return;
+        }
+        if (!req.checkReturnTypes(METHOD_RETURN)) {
+            for (Entry entry : batch.entries) {
+                entry.deliver(new EmptyReply(), RPCSend.toError(req, entry.serviceName(), entry.timeout));
+            }
+            return;
+        }
+        Inspector replies = decode(req.returnValues());
+        for (int i = 0; i < batch.entries.size(); i++) {
+            Entry entry = batch.entries.get(i);
+            if (i < replies.entries()) {
+                entry.deliver(single.createReply(replies.entry(i), entry.serviceName(), entry.trace), null);
+            } else {
+                entry.deliver(new EmptyReply(), new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + entry.serviceName() + "'; missing reply in batch."));
+            }
+        }
+    }
+
+    @Override
+    public void invoke(Request request) {
+        request.detach();
+        net.getExecutor().execute(() -> doInvoke(request));
+    }
+
+    private void doInvoke(Request request) {
+        Inspector messages = decode(request.parameters());
+        request.discardParameters(); // allow garbage collection of request parameters
+
+        BatchReply batchReply = new BatchReply(request, messages.entries());
+        for (int i = 0; i < messages.entries(); i++) {
+            RPCSend.Params p = single.toParams(messages.entry(i));
+            Error error = single.deliverMessage(p, new ReplyContext(batchReply, i, p.version), this);
+            if (error != null) {
+                Reply reply = new EmptyReply();
+                reply.setContext(new ReplyContext(batchReply, i, p.version));
+                reply.getTrace().setLevel(p.traceLevel);
+                reply.addError(error);
+                handleReply(reply);
+            }
+        }
+    }
+
+    @Override
+    public void handleReply(Reply reply) {
+        ReplyContext ctx = (ReplyContext)reply.getContext();
+        reply.setContext(null);
+        byte[] payload = single.encodePayload(reply, ctx.version);
+        ctx.batchReply.set(ctx.index, reply, ctx.version, payload);
+    }
+
+    private Inspector decode(Values values) {
+        CompressionType compression = CompressionType.valueOf(values.get(0).asInt8());
+        byte[] slimeBytes = compressor.decompress(values.get(2).asData(), compression, values.get(1).asInt32());
+        return BinaryFormat.decode(slimeBytes).get();
+    }
+
+    private void encode(Slime slime, Values values) {
+        byte[] serializedSlime = BinaryFormat.encode(slime);
+        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+        values.add(new Int8Value(compressionResult.type().getCode()));
+        values.add(new Int32Value(compressionResult.uncompressedSize()));
+        values.add(new DataValue(compressionResult.data()));
+    }
+
+    /** A message waiting to be sent, or for its reply. */
+    private class Entry {
+
+        final RoutingNode recipient;
+        final RPCServiceAddress address;
+        final Version version;
+        final byte[] payload;
+        final Trace trace;
+        final double timeout;
+        final long deadline;
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        Entry(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
+            this.recipient = recipient;
+            this.address = (RPCServiceAddress)recipient.getServiceAddress();
+            this.version = version;
+            this.payload = payload;
+            trace = new Trace(recipient.getTrace().getLevel());
+            timeout = timeRemaining * 0.001;
+            deadline = SystemTimer.INSTANCE.milliTime() + timeRemaining;
+        }
+
+        String serviceName() {
+            return address.getServiceName();
+        }
+
+        /** Delivers the given reply, unless a reply has already been delivered for this message. */
+        void deliver(Reply reply, Error error) {
+            if ( ! done.compareAndSet(false, true)) {
+                return;
+            }
+            single.deliverReply(reply, error, trace, recipient);
+        }
+
+        /** Sends this message on its own, unless a reply has already been delivered for it. */
+        void resend() {
+            long timeRemaining = deadline - SystemTimer.INSTANCE.milliTime();
+            if (timeRemaining <= 0) {
+                deliver(new EmptyReply(), new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + serviceName() + "' (" +
+                                timeout + " seconds expired); the batch was not supported by the recipient."));
+                return;
+            }
+            if ( ! done.compareAndSet(false, true)) {
+                return;
+            }
+            single.send(recipient, version, payload, timeRemaining);
+        }
+    }
+
+    /** The messages to send to a single target in one request. */
+    private class Batch {
+
+        final RPCTarget target;
+        final List<Entry> entries = new ArrayList<>();
+        final Task timeoutTask;
+        int bytes = 0;
+
+        Batch(RPCTarget target) {
+            this.target = target;
+            timeoutTask = net.getSupervisor().transport().createTask(() -> net.getExecutor().execute(this::expire));
+        }
+
+        void scheduleFlush() {
+            Task flushTask = net.getSupervisor().transport().createTask(() -> flush(this));
+            if (lingerSecs > 0) {
+                flushTask.schedule(lingerSecs);
+            } else {
+                flushTask.scheduleNow();
+            }
+        }
+
+        void add(Entry entry) {
+            entries.add(entry);
+            bytes += entry.payload.length;
+        }
+
+        void send() {
+            Slime slime = new Slime();
+            Cursor messages = slime.setArray();
+            double timeout = 0;
+            for (Entry entry : entries) {
+                Route route = new Route(entry.recipient.getRoute());
+                route.removeHop(0);
+                single.encodeMessage(messages.addObject(), entry.version, route, entry.address,
+                                     entry.recipient.getMessage(), entry.payload, entry.trace.getLevel());
+                single.traceSend(entry.trace, entry.version, entry.address, entry.timeout);
+                timeout = Math.max(timeout, entry.timeout);
+            }
+            Request req = new Request(METHOD_NAME);
+            encode(slime, req.parameters());
+            req.setContext(this);
+            scheduleExpiry();
+            target.getJRTTarget().invokeAsync(req, timeout, RPCSendV3.this);
+            batchesSent.incrementAndGet();
+            req.discardParameters(); // allow garbage collection of request parameters
+        }
+
+        /** Gives a timeout error to each message which has timed out before the request completed. */
+        void expire() {
+            long now = SystemTimer.INSTANCE.milliTime();
+            for (Entry entry : entries) {
+                if (entry.deadline <= now) {
+                    entry.deliver(new EmptyReply(), new Error(ErrorCode.TIMEOUT,
+                            "A timeout occured while waiting for '" + entry.serviceName() + "' (" +
+                                    entry.timeout + " seconds expired); reply to the batch not yet received."));
+                }
+            }
+            scheduleExpiry();
+        }
+
+        /** Schedules expiry of the first message to time out before the request itself does. */
+        private void scheduleExpiry() {
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (Entry entry : entries) {
+                last = Math.max(last, entry.deadline);
+                if ( ! entry.done.get()) {
+                    first = Math.min(first, entry.deadline);
+                }
+            }
+            if (first < last) {
+                timeoutTask.schedule(Math.max(0, first - SystemTimer.INSTANCE.milliTime()) * 0.001);
+            }
+        }
+    }
+
+    /** Collects the replies to the messages of a received request, and returns it once all are replied to. */
+    private class BatchReply {
+
+        final Request request;
+        final Slime slime = new Slime();
+        final Reply[] replies;
+        final Version[] versions;
+        final byte[][] payloads;
+        int pending;
+
+        BatchReply(Request request, int size) {
+            this.request = request;
+            replies = new Reply[size];
+            versions = new Version[size];
+            payloads = new byte[size][];
+            pending = size;
+            if (size == 0) {
+                returnRequest();
+            }
+        }
+
+        void set(int index, Reply reply, Version version, byte[] payload) {
+            synchronized (this) {
+                replies[index] = reply;
+                versions[index] = version;
+                payloads[index] = payload;
+                if (--pending > 0) {
+                    return;
+                }
+            }
+            returnRequest();
+        }
+
+        private void returnRequest() {
+            Cursor array = slime.setArray();
+            for (int i = 0; i < replies.length; i++) {
+                single.createResponse(array.addObject(), replies[i], versions[i], payloads[i]);
+            }
+            encode(slime, request.returnValues());
+            request.returnRequest();
+        }
+    }
+
+    private static class ReplyContext {
+
+        final BatchReply batchReply;
+        final int index;
+        final Version version;
+
+        ReplyContext(BatchReply batchReply, int index, Version version) {
+            this.batchReply = batchReply;
+            this.index = index;
+            this.version = version;
+        }
+    }
+}
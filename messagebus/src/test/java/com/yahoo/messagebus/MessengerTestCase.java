@@ -3,10 +3,17 @@ package com.yahoo.messagebus;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
@@ -95,6 +102,101 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatTasksWithSameKeyAreRunInOrder() throws InterruptedException {
+        final int numKeys = 16;
+        final int numTasks = 1000;
+        Messenger msn = new Messenger(4);
+        msn.start();
+
+        final List<Object> keys = new ArrayList<>();
+        final List<List<Integer>> results = new ArrayList<>();
+        final Set<String> threads = new HashSet<>();
+        final CountDownLatch latch = new CountDownLatch(numKeys * numTasks);
+        for (int i = 0; i < numKeys; ++i) {
+            keys.add(new Object());
+            results.add(new ArrayList<>());
+        }
+        for (int i = 0; i < numTasks; ++i) {
+            for (int key = 0; key < numKeys; ++key) {
+                final List<Integer> result = results.get(key);
+                final int value = i;
+                msn.enqueue(keys.get(key), new Messenger.Task() {
+
+                    @Override
+                    public void run() {
+                        result.add(value); // not synchronized, tasks with the same key never run concurrently
+                        synchronized (threads) {
+                            threads.add(Thread.currentThread().getName());
+                        }
+                    }
+
+                    @Override
+                    public void destroy() {
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        msn.sync();
+        for (List<Integer> result : results) {
+            assertEquals(numTasks, result.size());
+            for (int i = 0; i < numTasks; ++i) {
+                assertEquals(i, result.get(i).intValue());
+            }
+        }
+        synchronized (threads) {
+            assertTrue(threads.size() > 1);
+        }
+        assertTrue(msn.destroy());
+        assertFalse(msn.destroy());
+    }
+
+    @Test
+    public void requireThatSyncWaitsForAllThreads() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        final List<Object> done = new ArrayList<>();
+        for (int i = 0; i < 64; ++i) {
+            final Object key = new Object();
+            msn.enqueue(key, new Messenger.Task() {
+
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        // ignore
+                    }
+                    synchronized (done) {
+                        done.add(key);
+                    }
+                }
+
+                @Override
+                public void destroy() {
+
+                }
+            });
+        }
+        msn.sync();
+        synchronized (done) {
+            assertEquals(64, done.size());
+        }
+        msn.destroy();
+    }
+
+    @Test
+    public void requireThatThreadCountIsValidated() {
+        try {
+            new Messenger(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("A messenger needs at least 1 thread, not 0", e.getMessage());
+        }
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
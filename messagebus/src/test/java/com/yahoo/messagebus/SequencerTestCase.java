@@ -1,10 +1,16 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import com.yahoo.messagebus.metrics.SequencerMetricSet;
 import com.yahoo.messagebus.test.SimpleMessage;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
@@ -97,6 +103,107 @@ public class SequencerTestCase extends junit.framework.TestCase {
         assertEquals(0, dst.size());
     }
 
+    public void testQueuedMetric() {
+        TestQueue src = new TestQueue();
+        TestQueue dst = new TestQueue();
+        SequencerMetricSet metrics = new SequencerMetricSet();
+        Sequencer seq = new Sequencer(new QueueSender(dst), metrics);
+
+        seq.handleMessage(src.createMessage(true, 1L));
+        seq.handleMessage(src.createMessage(true, 1L));
+        seq.handleMessage(src.createMessage(true, 1L));
+        seq.handleMessage(src.createMessage(true, 2L));
+        assertEquals(2, dst.size());
+        assertEquals(2, metrics.queued.get().get());
+
+        dst.replyNext();
+        assertEquals(1, metrics.queued.get().get());
+        dst.replyNext();
+        dst.replyNext();
+        assertEquals(0, metrics.queued.get().get());
+        dst.replyNext();
+        assertEquals(4, src.size());
+        assertEquals(0, dst.size());
+
+        seq.handleMessage(src.createMessage(true, 1L));
+        seq.handleMessage(src.createMessage(true, 1L));
+        assertEquals(1, metrics.queued.get().get());
+        seq.destroy();
+        assertEquals(0, metrics.queued.get().get());
+    }
+
+    public void testConcurrentSequencing() throws InterruptedException {
+        final int numThreads = 8;
+        final int numIds = 16;
+        final int numMessages = 2000;
+        final List<Long> sent = new ArrayList<>();
+        final Queue<Reply> replies = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<Message> pending = new ConcurrentLinkedQueue<>();
+        final boolean[] overlap = new boolean[1];
+        final Set<Long> inFlight = new HashSet<>();
+        final Sequencer seq = new Sequencer(new MessageHandler() {
+
+            @Override
+            public void handleMessage(Message msg) {
+                synchronized (inFlight) {
+                    if (!inFlight.add(msg.getSequenceId())) {
+                        overlap[0] = true;
+                    }
+                    sent.add(msg.getSequenceId());
+                }
+                pending.add(msg);
+            }
+        });
+        final ReplyHandler sink = new ReplyHandler() {
+
+            @Override
+            public void handleReply(Reply reply) {
+                replies.add(reply);
+            }
+        };
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; ++i) {
+            final int offset = i;
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < numMessages; ++j) {
+                        Message msg = new MyMessage(true, (offset + j) % numIds);
+                        msg.pushHandler(sink);
+                        seq.handleMessage(msg);
+                        Message next = pending.poll();
+                        if (next != null) {
+                            replyTo(next, inFlight);
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Message next = pending.poll(); next != null; next = pending.poll()) {
+            replyTo(next, inFlight);
+        }
+        assertFalse(overlap[0]);
+        assertEquals(numThreads * numMessages, sent.size());
+        assertEquals(numThreads * numMessages, replies.size());
+    }
+
+    private static void replyTo(Message msg, Set<Long> inFlight) {
+        synchronized (inFlight) {
+            inFlight.remove(msg.getSequenceId());
+        }
+        Reply reply = new EmptyReply();
+        reply.swapState(msg);
+        reply.setMessage(msg);
+        reply.popHandler().handleReply(reply);
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
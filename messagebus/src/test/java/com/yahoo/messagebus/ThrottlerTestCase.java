@@ -8,7 +8,9 @@ import com.yahoo.messagebus.routing.RoutingTableSpec;
 import com.yahoo.messagebus.test.*;
 
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
@@ -197,6 +199,54 @@ public class ThrottlerTestCase extends junit.framework.TestCase {
         assertTrue(windowSize >= 40 && windowSize <= 50);
     }
 
+    public void testLatencyWindowSize() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+
+        int windowSize = getWindowSize(policy, timer, 200, 100);
+        assertTrue(windowSize >= 200 && windowSize <= 300);
+        assertEquals(windowSize, (int)policy.getMetrics().windowSize.get());
+        assertEquals(1000.0, policy.getMetrics().minLatency.get());
+
+        // a receiver slows down, and the window follows in a single round trip
+        windowSize = getWindowSize(policy, timer, 100, 1);
+        assertTrue(windowSize >= 100 && windowSize <= 150);
+        windowSize = getWindowSize(policy, timer, 100, 100);
+        assertTrue(windowSize >= 100 && windowSize <= 150);
+
+        // the receiver recovers, and the window grows back within a few round trips
+        windowSize = getWindowSize(policy, timer, 200, 10);
+        assertTrue(windowSize >= 200 && windowSize <= 300);
+    }
+
+    public void testLatencyWindowSizeBackOffOnOverload() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        policy.setMinWindowSize(10);
+
+        int windowSize = getWindowSize(policy, timer, 200, 100);
+        for (int i = 0; i < windowSize; ++i) {
+            Message msg = new SimpleMessage("foo");
+            policy.processMessage(msg);
+            Reply reply = new SimpleReply("bar");
+            reply.setContext(msg.getContext());
+            reply.addError(new Error(ErrorCode.TIMEOUT, "timeout"));
+            timer.millis += 1;
+            policy.processReply(reply);
+        }
+        assertTrue(policy.getMaxPendingCount() < windowSize);
+    }
+
+    public void testLatencyMinAndMaxWindowSize() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        policy.setMinWindowSize(150);
+        assertTrue(getWindowSize(policy, timer, 100, 100) >= 150);
+
+        policy = new LatencyThrottlePolicy(timer);
+        policy.setMaxPendingCount(50);
+        assertEquals(50, getWindowSize(policy, timer, 100, 100));
+    }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
@@ -227,4 +277,28 @@ public class ThrottlerTestCase extends junit.framework.TestCase {
         return ret;
     }
 
+    /**
+     * Feeds for the given number of round trips to a receiver which handles the given number of messages per
+     * second in the order they were sent, and queues the rest, and returns the resulting window size.
+     */
+    private int getWindowSize(LatencyThrottlePolicy policy, CustomTimer timer, int capacity, int roundTrips) {
+        for (int i = 0; i < roundTrips; ++i) {
+            List<Object> pending = new ArrayList<>();
+            while (policy.canSend(new SimpleMessage("foo"), pending.size())) {
+                Message msg = new SimpleMessage("foo");
+                policy.processMessage(msg);
+                pending.add(msg.getContext());
+            }
+            for (int j = 0; j < pending.size(); ++j) {
+                if (j % capacity == 0) {
+                    timer.millis += 1000;
+                }
+                Reply reply = new SimpleReply("bar");
+                reply.setContext(pending.get(j));
+                policy.processReply(reply);
+            }
+        }
+        return policy.getMaxPendingCount();
+    }
+
 }
@@ -0,0 +1,180 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.*;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests sending messages in batches with {@link RPCSendV3}.
+ */
+public class BatchSendTestCase {
+
+    /** The version of the destination, which is the first to support batching */
+    private static final Version batchVersion = new Version(6, 200);
+
+    Slobrok slobrok;
+    TestServer srcServer, dstServer;
+    SourceSession srcSession;
+    DestinationSession dstSession;
+
+    @Before
+    public void setUp() throws ListenFailedException, UnknownHostException {
+        slobrok = new Slobrok();
+        dstServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setIdentity(new Identity("dst")).setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        dstServer.net.setVersion(batchVersion);
+        dstSession = dstServer.mb.createDestinationSession(
+                new DestinationSessionParams().setName("session").setMessageHandler(new Receptor()));
+        srcServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                      .setMaxBatchSize(16)
+                                      .setBatchLingerSecs(0.2));
+        srcSession = srcServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(new Receptor()));
+        assertTrue(srcServer.waitSlobrok("dst/session", 1));
+    }
+
+    @After
+    public void tearDown() {
+        slobrok.stop();
+        dstSession.destroy();
+        dstServer.destroy();
+        srcSession.destroy();
+        srcServer.destroy();
+    }
+
+    @Test
+    public void requireThatBatchingIsOnlyUsedWhenEnabled() {
+        assertTrue(srcServer.net.getSendAdapter(new Version(6,199)) instanceof RPCSendV2);
+        assertTrue(srcServer.net.getSendAdapter(new Version(6,200)) instanceof RPCSendV3);
+        assertTrue(dstServer.net.getSendAdapter(new Version(9,999)) instanceof RPCSendV2);
+    }
+
+    @Test
+    public void requireThatBatchedMessagesAreRepliedToIndividually() {
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            assertTrue(srcSession.send(new SimpleMessage("msg" + i), Route.parse("dst/session")).isAccepted());
+        }
+        for (int i = 0; i < count; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            Reply reply = new SimpleReply("re:" + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.hasErrors());
+            values.add(((SimpleReply)reply).getValue());
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(values.contains("re:msg" + i));
+        }
+        long batchesSent = batchSendAdapter().batchesSent();
+        assertTrue("Messages were sent in batches: " + batchesSent, batchesSent > 0 && batchesSent < count);
+    }
+
+    @Test
+    public void requireThatMessagesInABatchTimeOutIndividually() {
+        Message shortTimeout = new SimpleMessage("short");
+        shortTimeout.setTimeRemaining(1000);
+        shortTimeout.setRetryEnabled(false);
+        Message longTimeout = new SimpleMessage("long");
+        longTimeout.setTimeRemaining(60000);
+        longTimeout.setRetryEnabled(false);
+        assertTrue(srcSession.send(shortTimeout, Route.parse("dst/session")).isAccepted());
+        assertTrue(srcSession.send(longTimeout, Route.parse("dst/session")).isAccepted());
+
+        Receptor dst = (Receptor)dstSession.getMessageHandler();
+        Message first = dst.getMessage(60);
+        Message second = dst.getMessage(60);
+        assertNotNull(first);
+        assertNotNull(second);
+
+        Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+        assertNotNull(reply);
+        assertEquals(ErrorCode.TIMEOUT, reply.getError(0).getCode());
+        assertSame(shortTimeout, reply.getMessage());
+
+        for (Message msg : new Message[] { first, second }) {
+            Reply dstReply = new SimpleReply("re:" + ((SimpleMessage)msg).getValue());
+            dstReply.swapState(msg);
+            dstSession.reply(dstReply);
+        }
+        reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+        assertNotNull(reply);
+        assertFalse(reply.hasErrors());
+        assertEquals("re:long", ((SimpleReply)reply).getValue());
+        assertNull(((Receptor)srcSession.getReplyHandler()).getReply(1));
+        assertTrue(batchSendAdapter().batchesSent() > 0);
+    }
+
+    @Test
+    public void requireThatMessagesAreSentOneByOneToTargetsWithoutBatchSupport() {
+        ((RPCNetwork)dstServer.net).getSupervisor().removeMethod("mbus.slime.batch"); // like a C++ node
+        assertAllReplied(sendAndReply(50, "first"));
+        long batchesSent = batchSendAdapter().batchesSent();
+        assertTrue(batchesSent > 0);
+
+        assertAllReplied(sendAndReply(50, "second"));
+        assertEquals("No more batches are sent to the target", batchesSent, batchSendAdapter().batchesSent());
+    }
+
+    /** Sends the given number of messages, replies to them at the destination, and returns the replies */
+    private List<Reply> sendAndReply(int count, String prefix) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(srcSession.send(new SimpleMessage(prefix + i), Route.parse("dst/session")).isAccepted());
+        }
+        for (int i = 0; i < count; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            Reply reply = new SimpleReply("re:" + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+        List<Reply> replies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            replies.add(reply);
+        }
+        return replies;
+    }
+
+    private static void assertAllReplied(List<Reply> replies) {
+        for (Reply reply : replies) {
+            assertFalse(reply.hasErrors() ? reply.getError(0).toString() : "", reply.hasErrors());
+            assertTrue(((SimpleReply)reply).getValue().startsWith("re:"));
+        }
+    }
+
+    private RPCSendV3 batchSendAdapter() {
+        return (RPCSendV3)srcServer.net.getSendAdapter(batchVersion);
+    }
+
+}
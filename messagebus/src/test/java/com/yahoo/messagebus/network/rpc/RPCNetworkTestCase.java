@@ -9,6 +9,9 @@ import com.yahoo.messagebus.network.rpc.test.TestServer;
 import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingPolicy;
 import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
 import com.yahoo.text.Utf8String;
 import org.junit.Test;
 
@@ -46,6 +49,40 @@ public class RPCNetworkTestCase {
         assertTrue(actual, actual.contains(expected.toString()));
     }
 
+    @Test
+    public void requireThatMessagesCanBeSentWithSeveralTransportThreads() throws Exception {
+        Slobrok slobrok = new Slobrok();
+        TestServer server = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                           new RPCNetworkParams().setSlobrokConfigId(slobrok.configId())
+                                                                 .setTransportThreads(4));
+        Receptor receptor = new Receptor();
+        SourceSession src = server.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(receptor));
+        Receptor handler = new Receptor();
+        DestinationSession dst = server.mb.createDestinationSession(
+                new DestinationSessionParams().setMessageHandler(handler));
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            assertTrue(src.send(new SimpleMessage("msg" + i).setRoute(Route.parse(dst.getConnectionSpec()))).isAccepted());
+        }
+        for (int i = 0; i < count; i++) {
+            Message msg = handler.getMessage(60);
+            assertNotNull(msg);
+            Reply reply = new SimpleReply("re:" + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dst.reply(reply);
+        }
+        for (int i = 0; i < count; i++) {
+            Reply reply = receptor.getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.hasErrors());
+        }
+        src.destroy();
+        dst.destroy();
+        server.destroy();
+        slobrok.stop();
+    }
+
     private static class MyMessage extends Message {
 
         @Override
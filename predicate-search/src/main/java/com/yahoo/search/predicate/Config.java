@@ -2,6 +2,8 @@
 package com.yahoo.search.predicate;
 
 import com.google.common.annotations.Beta;
+import com.yahoo.search.predicate.serialization.IndexFileReader;
+import com.yahoo.search.predicate.serialization.IndexFileWriter;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -41,6 +43,21 @@ public class Config {
         return new Config(arity, lowerBound, upperBound, useConjunctionAlgorithm);
     }
 
+    public void writeToIndexFile(IndexFileWriter out) throws IOException {
+        out.writeInt(arity);
+        out.writeLong(lowerBound);
+        out.writeLong(upperBound);
+        out.writeByte((byte) (useConjunctionAlgorithm ? 1 : 0));
+    }
+
+    public static Config fromIndexFile(IndexFileReader in) throws IOException {
+        int arity = in.readInt();
+        long lowerBound = in.readLong();
+        long upperBound = in.readLong();
+        boolean useConjunctionAlgorithm = in.readByte() != 0;
+        return new Config(arity, lowerBound, upperBound, useConjunctionAlgorithm);
+    }
+
     public static class Builder {
         private int arity = 8;
         private long lowerBound = Long.MIN_VALUE;
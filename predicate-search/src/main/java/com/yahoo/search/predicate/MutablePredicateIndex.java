@@ -0,0 +1,251 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.document.predicate.Predicate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A {@link PredicateIndex} which documents can be added to and removed from without rebuilding it.
+ * <p>
+ * The index consists of immutable {@link PredicateIndex} segments. Documents which are added are kept in a small
+ * delta segment, which is rebuilt from their predicates by {@link #commit()}, while documents which are removed
+ * from the other segments are hidden by tombstones. {@link #compact()} merges all segments into one, dropping the
+ * removed documents. It does not block updates or searches while merging, so it is meant to be run periodically
+ * in a background thread, e.g., when the delta segment has grown too large to be rebuilt cheaply on each commit.
+ * </p><p>
+ * Changes are not seen by searches until {@link #commit()} is called, and each search runs against the state of
+ * the index at the last commit before it started. Updates are thread-safe, but a {@link Searcher} is not,
+ * so each thread <strong>must</strong> use its own searcher.
+ * </p>
+ */
+@Beta
+public class MutablePredicateIndex {
+
+    private final Config config;
+    private final Object compactionMonitor = new Object();
+
+    // The segments and tombstones of the index, and the documents added since the last compaction, which make
+    // up the delta segment. Guarded by this.
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Set<Integer>> removed = new ArrayList<>();
+    private final Map<Integer, Predicate> pending = new LinkedHashMap<>();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param config Configuration for the index.
+     */
+    public MutablePredicateIndex(Config config) {
+        this(new PredicateIndexBuilder(config).build());
+    }
+
+    /**
+     * Creates an index containing the documents of the given index.
+     *
+     * @param index The index to start from.
+     */
+    public MutablePredicateIndex(PredicateIndex index) {
+        this.config = index.getConfig();
+        segments.add(new Segment(index));
+        removed.add(new HashSet<>());
+        snapshot = new Snapshot(segments, removed);
+    }
+
+    /**
+     * Indexes a predicate with the given id, replacing any predicate already indexed with this id.
+     *
+     * @param docId     A 32-bit document id, returned in the Hit objects when the predicate matches.
+     * @param predicate The predicate to index.
+     */
+    public synchronized void indexDocument(int docId, Predicate predicate) {
+        removeDocument(docId);
+        pending.put(docId, predicate);
+    }
+
+    /**
+     * Removes the predicate with the given id, if any.
+     *
+     * @param docId The document id to remove.
+     */
+    public synchronized void removeDocument(int docId) {
+        if (pending.remove(docId) != null) {
+            return;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).contains(docId)) {
+                removed.get(i).add(docId);
+            }
+        }
+    }
+
+    /**
+     * Makes all changes done so far visible to searches started after this returns.
+     */
+    public synchronized void commit() {
+        List<Segment> committed = new ArrayList<>(segments);
+        List<Set<Integer>> committedRemoved = new ArrayList<>(removed);
+        if ( ! pending.isEmpty()) {
+            PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+            pending.forEach(builder::indexDocument);
+            committed.add(new Segment(builder.build()));
+            committedRemoved.add(Collections.emptySet());
+        }
+        snapshot = new Snapshot(committed, committedRemoved);
+    }
+
+    /**
+     * Commits all changes, and then merges all segments into one, leaving out removed documents. Changes done
+     * while merging are kept, but not made visible until the next commit. Only one compaction runs at a time.
+     */
+    public void compact() {
+        synchronized (compactionMonitor) {
+            List<PredicateIndex> indexes = new ArrayList<>();
+            List<Set<Integer>> merged = new ArrayList<>();
+            synchronized (this) {
+                commit();
+                List<Segment> committed = snapshot.segments;
+                if (committed.size() > segments.size()) {
+                    segments.add(committed.get(committed.size() - 1));
+                    removed.add(new HashSet<>());
+                    pending.clear();
+                }
+                for (int i = 0; i < segments.size(); i++) {
+                    indexes.add(segments.get(i).index);
+                    merged.add(new HashSet<>(removed.get(i)));
+                }
+            }
+            Segment segment = new Segment(PredicateIndex.merge(indexes, merged));
+            synchronized (this) {
+                Snapshot current = snapshot;
+                replaceMerged(segments, removed, segment, merged);
+                List<Segment> committed = new ArrayList<>(current.segments);
+                List<Set<Integer>> committedRemoved = new ArrayList<>(current.removed);
+                replaceMerged(committed, committedRemoved, segment, merged);
+                snapshot = new Snapshot(committed, committedRemoved);
+            }
+        }
+    }
+
+    // Replaces the first segments by the one they were merged into, keeping the tombstones added while merging.
+    private static void replaceMerged(List<Segment> segments, List<Set<Integer>> removed, Segment segment,
+                                      List<Set<Integer>> merged) {
+        Set<Integer> stillRemoved = new HashSet<>();
+        for (int i = 0; i < merged.size(); i++) {
+            for (int docId : removed.get(i)) {
+                if ( ! merged.get(i).contains(docId)) {
+                    stillRemoved.add(docId);
+                }
+            }
+        }
+        segments.subList(0, merged.size()).clear();
+        segments.add(0, segment);
+        removed.subList(0, merged.size()).clear();
+        removed.add(0, stillRemoved);
+    }
+
+    /**
+     * Rebuilds the posting list cache of all segments, see {@link PredicateIndex#rebuildPostingListCache()}.
+     */
+    public void rebuildPostingListCache() {
+        for (Segment segment : snapshot.segments) {
+            segment.index.rebuildPostingListCache();
+        }
+    }
+
+    /**
+     * Create a new searcher.
+     */
+    public Searcher searcher() {
+        return new Searcher();
+    }
+
+    private static class Segment {
+
+        final PredicateIndex index;
+        final int[] sortedIds;
+
+        Segment(PredicateIndex index) {
+            this.index = index;
+            this.sortedIds = index.getExternalIds().clone();
+            Arrays.sort(sortedIds);
+        }
+
+        boolean contains(int docId) {
+            return Arrays.binarySearch(sortedIds, docId) >= 0;
+        }
+    }
+
+    /** The state of the index at a commit, which searches run against. */
+    private static class Snapshot {
+
+        final List<Segment> segments;
+        final List<Set<Integer>> removed;
+
+        Snapshot(List<Segment> segments, List<Set<Integer>> removed) {
+            this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+            List<Set<Integer>> copies = new ArrayList<>();
+            for (Set<Integer> docIds : removed) {
+                copies.add(docIds.isEmpty() ? Collections.emptySet() : new HashSet<>(docIds));
+            }
+            this.removed = Collections.unmodifiableList(copies);
+        }
+    }
+
+    @Beta
+    public class Searcher {
+
+        private Snapshot snapshot;
+        private Map<Segment, PredicateIndex.Searcher> searchers = new IdentityHashMap<>();
+
+        private Searcher() { }
+
+        /**
+         * Retrieves a stream of hits for the given query, from the index as it was at the last commit.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query) {
+            updateSearchers();
+            Stream<Hit> hits = Stream.empty();
+            for (int i = 0; i < snapshot.segments.size(); i++) {
+                Stream<Hit> segmentHits = searchers.get(snapshot.segments.get(i)).search(query);
+                Set<Integer> removedIds = snapshot.removed.get(i);
+                if ( ! removedIds.isEmpty()) {
+                    segmentHits = segmentHits.filter(hit -> ! removedIds.contains(hit.getDocId()));
+                }
+                hits = Stream.concat(hits, segmentHits);
+            }
+            return hits;
+        }
+
+        // Keeps the searchers of segments which are still in use, as these are expensive to create.
+        private void updateSearchers() {
+            Snapshot current = MutablePredicateIndex.this.snapshot;
+            if (current == snapshot) {
+                return;
+            }
+            Map<Segment, PredicateIndex.Searcher> updated = new IdentityHashMap<>();
+            for (Segment segment : current.segments) {
+                PredicateIndex.Searcher searcher = searchers.get(segment);
+                updated.put(segment, searcher != null ? searcher : segment.index.searcher());
+            }
+            searchers = updated;
+            snapshot = current;
+        }
+    }
+
+}
@@ -6,16 +6,27 @@ import com.yahoo.document.predicate.Predicate;
 import com.yahoo.search.predicate.index.*;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndex;
+import com.yahoo.search.predicate.serialization.IndexFileReader;
+import com.yahoo.search.predicate.serialization.IndexFileWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * An index of {@link Predicate} objects.
  * <p>
@@ -38,6 +49,8 @@ import java.util.stream.Stream;
 @Beta
 public class PredicateIndex {
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
+    private static final int INDEX_FILE_MAGIC = 0x50524458; // "PRDX"
+    private static final int INDEX_FILE_FORMAT_VERSION = 1;
 
     private final PredicateRangeTermExpander expander;
     private final int[] internalToExternalIdMapping;
@@ -84,6 +97,110 @@ public class PredicateIndex {
         this.postingListCounter = new AtomicReference<>(new CachedPostingListCounter(internalToExternalIdMapping.length));
     }
 
+    /**
+     * Merges the given indexes into a new index, leaving out the documents with the given external ids.
+     * The documents of each index get internal ids after those of the indexes before it, and interval lists
+     * which are no longer referenced are dropped.
+     *
+     * @param indexes The indexes to merge. These must all have the same configuration.
+     * @param removedIds The external ids of documents to leave out, for each index.
+     * @return The merged index.
+     */
+    static PredicateIndex merge(List<PredicateIndex> indexes, List<? extends Set<Integer>> removedIds) {
+        Config config = indexes.get(0).config;
+        int nDocuments = 0;
+        int highestIntervalEnd = 1;
+        for (PredicateIndex index : indexes) {
+            if (index.config.arity != config.arity || index.config.lowerBound != config.lowerBound
+                    || index.config.upperBound != config.upperBound
+                    || index.config.useConjunctionAlgorithm != config.useConjunctionAlgorithm) {
+                throw new IllegalArgumentException("Cannot merge indexes with different configuration");
+            }
+            nDocuments += index.internalToExternalIdMapping.length;
+            highestIntervalEnd = Math.max(highestIntervalEnd, index.highestIntervalEnd);
+        }
+
+        int[] internalToExternalIdMapping = new int[nDocuments];
+        byte[] minFeatureIndex = new byte[nDocuments];
+        short[] intervalEnds = new short[nDocuments];
+        int[] zeroConstraintDocuments = new int[nDocuments];
+        int nZeroConstraintDocuments = 0;
+        int nextId = 0;
+        List<int[]> docIdMappings = new ArrayList<>();
+        List<IntUnaryOperator> dataRefMappings = new ArrayList<>();
+        PredicateIntervalStore.Builder intervalStoreBuilder = new PredicateIntervalStore.Builder();
+        for (int i = 0; i < indexes.size(); i++) {
+            PredicateIndex index = indexes.get(i);
+            Set<Integer> removed = removedIds.get(i);
+            int[] docIdMapping = new int[index.internalToExternalIdMapping.length];
+            for (int docId = 0; docId < docIdMapping.length; docId++) {
+                int externalId = index.internalToExternalIdMapping[docId];
+                if (removed.contains(externalId)) {
+                    docIdMapping[docId] = -1;
+                } else {
+                    internalToExternalIdMapping[nextId] = externalId;
+                    minFeatureIndex[nextId] = index.minFeatureIndex[docId];
+                    intervalEnds[nextId] = index.intervalEnds[docId];
+                    docIdMapping[docId] = nextId++;
+                }
+            }
+            for (int docId : index.zeroConstraintDocuments) {
+                if (docIdMapping[docId] >= 0) {
+                    zeroConstraintDocuments[nZeroConstraintDocuments++] = docIdMapping[docId];
+                }
+            }
+            docIdMappings.add(docIdMapping);
+            dataRefMappings.add(dataRefMapping(index.intervalStore, intervalStoreBuilder));
+        }
+
+        SimpleIndex intervalIndex = SimpleIndex.merge(
+                mapToList(indexes, index -> index.intervalIndex), docIdMappings, dataRefMappings);
+        SimpleIndex boundsIndex = SimpleIndex.merge(
+                mapToList(indexes, index -> index.boundsIndex), docIdMappings, dataRefMappings);
+        SimpleIndex conjunctionIntervalIndex = SimpleIndex.merge(
+                mapToList(indexes, index -> index.conjunctionIntervalIndex), docIdMappings, dataRefMappings);
+        ConjunctionIndex conjunctionIndex = ConjunctionIndex.merge(
+                mapToList(indexes, index -> index.conjunctionIndex),
+                conjunctionId -> conjunctionIntervalIndex.getPostingList(conjunctionId) != null);
+        return new PredicateIndex(
+                config,
+                Arrays.copyOf(internalToExternalIdMapping, nextId),
+                Arrays.copyOf(minFeatureIndex, nextId),
+                Arrays.copyOf(intervalEnds, nextId),
+                highestIntervalEnd,
+                intervalIndex,
+                boundsIndex,
+                conjunctionIntervalIndex,
+                intervalStoreBuilder.build(),
+                conjunctionIndex,
+                Arrays.copyOf(zeroConstraintDocuments, nZeroConstraintDocuments));
+    }
+
+    // Copies each interval list of the given store to the builder the first time it is referenced.
+    private static IntUnaryOperator dataRefMapping(PredicateIntervalStore store, PredicateIntervalStore.Builder builder) {
+        int[] mapping = new int[store.size()];
+        Arrays.fill(mapping, -1);
+        return dataRef -> {
+            if (mapping[dataRef] < 0) {
+                mapping[dataRef] = builder.insert(store.get(dataRef));
+            }
+            return mapping[dataRef];
+        };
+    }
+
+    private static <T> List<T> mapToList(List<PredicateIndex> indexes, Function<PredicateIndex, T> mapper) {
+        return indexes.stream().map(mapper).collect(toList());
+    }
+
+    Config getConfig() {
+        return config;
+    }
+
+    /** Returns the external ids of the documents in this index, in internal id order. */
+    int[] getExternalIds() {
+        return internalToExternalIdMapping;
+    }
+
     public void rebuildPostingListCache() {
         postingListCounter.getAndUpdate(CachedPostingListCounter::rebuildCache);
     }
@@ -142,6 +259,85 @@ public class PredicateIndex {
         );
     }
 
+    /**
+     * Writes this index to a file in a page aligned format, which {@link #fromFile(Path)} copies into heap arrays in
+     * bulk. This loads much faster than the format written by {@link #writeToOutputStream(DataOutputStream)}.
+     *
+     * @param path The file to write to.
+     */
+    public void writeToFile(Path path) throws IOException {
+        try (IndexFileWriter out = new IndexFileWriter(path)) {
+            out.writeInt(INDEX_FILE_MAGIC);
+            out.writeInt(INDEX_FILE_FORMAT_VERSION);
+            config.writeToIndexFile(out);
+            out.writeInt(highestIntervalEnd);
+            out.alignToPage();
+            out.writeIntArray(internalToExternalIdMapping);
+            out.writeByteArray(minFeatureIndex);
+            out.writeShortArray(intervalEnds);
+            out.writeIntArray(zeroConstraintDocuments);
+            out.alignToPage();
+            intervalIndex.writeToIndexFile(out);
+            out.alignToPage();
+            boundsIndex.writeToIndexFile(out);
+            out.alignToPage();
+            conjunctionIntervalIndex.writeToIndexFile(out);
+            out.alignToPage();
+            intervalStore.writeToIndexFile(out);
+            out.alignToPage();
+            conjunctionIndex.writeToIndexFile(out);
+        }
+    }
+
+    /**
+     * Reads an index from a file written by {@link #writeToFile(Path)}.
+     *
+     * @param path The file to read.
+     */
+    public static PredicateIndex fromFile(Path path) throws IOException {
+        try (IndexFileReader in = new IndexFileReader(path)) {
+            int magic = in.readInt();
+            if (magic != INDEX_FILE_MAGIC) {
+                throw new IllegalArgumentException(String.format("%s is not a predicate index file.", path));
+            }
+            int version = in.readInt();
+            if (version != INDEX_FILE_FORMAT_VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid index file format version. Expected %d, was %d.", INDEX_FILE_FORMAT_VERSION, version));
+            }
+            Config config = Config.fromIndexFile(in);
+            int highestIntervalEnd = in.readInt();
+            in.alignToPage();
+            int[] internalToExternalIdMapping = in.readIntArray();
+            byte[] minFeatureIndex = in.readByteArray();
+            short[] intervalEnds = in.readShortArray();
+            int[] zeroConstraintDocuments = in.readIntArray();
+            in.alignToPage();
+            SimpleIndex intervalIndex = SimpleIndex.fromIndexFile(in);
+            in.alignToPage();
+            SimpleIndex boundsIndex = SimpleIndex.fromIndexFile(in);
+            in.alignToPage();
+            SimpleIndex conjunctionIntervalIndex = SimpleIndex.fromIndexFile(in);
+            in.alignToPage();
+            PredicateIntervalStore intervalStore = PredicateIntervalStore.fromIndexFile(in);
+            in.alignToPage();
+            ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromIndexFile(in);
+            return new PredicateIndex(
+                    config,
+                    internalToExternalIdMapping,
+                    minFeatureIndex,
+                    intervalEnds,
+                    highestIntervalEnd,
+                    intervalIndex,
+                    boundsIndex,
+                    conjunctionIntervalIndex,
+                    intervalStore,
+                    conjunctionIndex,
+                    zeroConstraintDocuments
+            );
+        }
+    }
+
     @Beta
     public class Searcher {
         private final byte[] nPostingListsForDocument;
@@ -183,6 +379,84 @@ public class PredicateIndex {
                     .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
         }
 
+        /**
+         * Retrieves the hits for each of the given queries. Up to 64 queries are searched together, as one query where
+         * each of them is a subquery, so the posting list of a feature shared by several queries is only walked once.
+         * Queries which use subqueries themselves are searched one by one.
+         *
+         * @param queries The queries to search for.
+         * @return A stream of hits for each query, in the same order as the queries.
+         */
+        public List<Stream<Hit>> search(List<PredicateQuery> queries) {
+            List<List<Hit>> hits = new ArrayList<>(queries.size());
+            List<Integer> batch = new ArrayList<>(Long.SIZE);
+            for (int i = 0; i < queries.size(); i++) {
+                hits.add(new ArrayList<>());
+                if (usesSubqueries(queries.get(i))) {
+                    search(queries.get(i)).forEach(hits.get(i)::add);
+                } else {
+                    batch.add(i);
+                    if (batch.size() == Long.SIZE) {
+                        searchBatch(queries, batch, hits);
+                        batch.clear();
+                    }
+                }
+            }
+            if ( ! batch.isEmpty()) {
+                searchBatch(queries, batch, hits);
+            }
+            List<Stream<Hit>> streams = new ArrayList<>(hits.size());
+            for (List<Hit> queryHits : hits) {
+                streams.add(queryHits.stream());
+            }
+            return streams;
+        }
+
+        private void searchBatch(List<PredicateQuery> queries, List<Integer> batch, List<List<Hit>> hits) {
+            Map<Long, PredicateQuery.Feature> features = new LinkedHashMap<>();
+            Map<String, Map<Long, Long>> rangeFeatures = new LinkedHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                long subquery = 1L << i;
+                PredicateQuery query = queries.get(batch.get(i));
+                for (PredicateQuery.Feature f : query.getFeatures()) {
+                    features.merge(f.featureHash, new PredicateQuery.Feature(f.key, f.value, subquery),
+                                   (a, b) -> new PredicateQuery.Feature(a.key, a.value, a.subqueryBitmap | subquery));
+                }
+                for (PredicateQuery.RangeFeature f : query.getRangeFeatures()) {
+                    rangeFeatures.computeIfAbsent(f.key, key -> new LinkedHashMap<>())
+                            .merge(f.value, subquery, (a, b) -> a | b);
+                }
+            }
+            PredicateQuery combined = new PredicateQuery();
+            features.values().forEach(f -> combined.addFeature(f.key, f.value, f.subqueryBitmap));
+            rangeFeatures.forEach((key, values) -> values.forEach(
+                    (value, subqueries) -> combined.addRangeFeature(key, value, subqueries)));
+
+            long batchSubqueries = batch.size() == Long.SIZE ? SubqueryBitmap.ALL_SUBQUERIES : (1L << batch.size()) - 1;
+            search(combined).forEach(hit -> {
+                long subqueries = hit.getSubquery() & batchSubqueries;
+                while (subqueries != 0) {
+                    int i = Long.numberOfTrailingZeros(subqueries);
+                    hits.get(batch.get(i)).add(new Hit(hit.getDocId()));
+                    subqueries &= subqueries - 1;
+                }
+            });
+        }
+
+        private boolean usesSubqueries(PredicateQuery query) {
+            for (PredicateQuery.Feature feature : query.getFeatures()) {
+                if (feature.subqueryBitmap != SubqueryBitmap.DEFAULT_VALUE) {
+                    return true;
+                }
+            }
+            for (PredicateQuery.RangeFeature feature : query.getRangeFeatures()) {
+                if (feature.subqueryBitmap != SubqueryBitmap.DEFAULT_VALUE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
             SimpleIndex.Entry e = intervalIndex.getPostingList(Feature.Z_STAR_COMPRESSED_ATTRIBUTE_HASH);
             if (e != null) {
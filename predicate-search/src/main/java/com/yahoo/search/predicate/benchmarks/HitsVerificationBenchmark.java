@@ -72,6 +72,11 @@ public class HitsVerificationBenchmark {
                     args.feedFile, Integer.MAX_VALUE, p -> builder.indexDocument(idCounter.incrementAndGet(), p));
             builder.getStats().putValues(output);
             return builder.build();
+        } else if (args.indexFileFormat) {
+            long start = System.currentTimeMillis();
+            PredicateIndex index = PredicateIndex.fromFile(Paths.get(args.indexFile));
+            output.put("Time deserialize index", System.currentTimeMillis() - start);
+            return index;
         } else {
             try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args.indexFile)))) {
                 long start = System.currentTimeMillis();
@@ -142,6 +147,7 @@ public class HitsVerificationBenchmark {
         output.put("Query file", args.queryFile);
         output.put("Output file", args.outputFile);
         output.put("Index file", args.indexFile);
+        output.put("Index file format", args.indexFileFormat);
     }
 
     private static void writeOutputToStandardOut(Map<String, Object> output) {
@@ -177,6 +183,10 @@ public class HitsVerificationBenchmark {
         @Option(name = {"-if", "--index-file"}, description = "File path to index file (Serialized index)")
         public String indexFile;
 
+        @Option(name = {"-iff", "--index-file-format"},
+                description = "Read the index file with PredicateIndex.fromFile instead of as a stream")
+        public boolean indexFileFormat = false;
+
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
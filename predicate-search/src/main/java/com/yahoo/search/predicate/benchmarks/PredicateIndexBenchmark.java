@@ -24,6 +24,7 @@ import java.io.DataOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -40,6 +41,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static com.yahoo.search.predicate.benchmarks.PredicateIndexBenchmark.BenchmarkArguments.Algorithm;
 import static com.yahoo.search.predicate.benchmarks.PredicateIndexBenchmark.BenchmarkArguments.Format;
@@ -68,7 +70,7 @@ public class PredicateIndexBenchmark {
                 .build();
         PredicateIndex index = getIndex(args, config);
         if (args.indexOutputFile != null) {
-            writeIndexToFile(index, args.indexOutputFile);
+            writeIndexToFile(index, args.indexOutputFile, args.indexFileFormat);
         }
         if (args.queryFile != null) {
             runQueries(args, index);
@@ -105,6 +107,11 @@ public class PredicateIndexBenchmark {
             PredicateIndex index = builder.build();
             output.put("Time prepare index", System.currentTimeMillis() - start);
             return index;
+        } else if (args.indexFileFormat) {
+            long start = System.currentTimeMillis();
+            PredicateIndex index = PredicateIndex.fromFile(Paths.get(args.indexFile));
+            output.put("Time deserialize index", System.currentTimeMillis() - start);
+            return index;
         } else {
             try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args.indexFile)))) {
                 long start = System.currentTimeMillis();
@@ -115,7 +122,14 @@ public class PredicateIndexBenchmark {
         }
     }
 
-    private static void writeIndexToFile(PredicateIndex index, String indexOutputFile) throws IOException {
+    private static void writeIndexToFile(PredicateIndex index, String indexOutputFile, boolean indexFileFormat)
+            throws IOException {
+        if (indexFileFormat) {
+            long start = System.currentTimeMillis();
+            index.writeToFile(Paths.get(indexOutputFile));
+            output.put("Time write index", System.currentTimeMillis() - start);
+            return;
+        }
         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexOutputFile)))) {
             long start = System.currentTimeMillis();
             index.writeToOutputStream(out);
@@ -128,9 +142,11 @@ public class PredicateIndexBenchmark {
         output.put("Max documents", args.maxDocuments);
         output.put("Max queries", args.maxQueries);
         output.put("Threads", args.nThreads);
+        output.put("Batch size", args.batchSize);
         output.put("Runtime", args.runtime);
         output.put("Algorithm", args.algorithm);
         output.put("Serialized index output file", args.indexOutputFile);
+        output.put("Index file format", args.indexFileFormat);
         output.put("Feed file", args.feedFile);
         output.put("Query file", args.queryFile);
         output.put("Index file", args.indexFile);
@@ -140,12 +156,12 @@ public class PredicateIndexBenchmark {
 
     private static void runQueries(BenchmarkArguments args, PredicateIndex index) throws IOException {
         List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
-        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup1 = warmup(queries, index, args.nThreads, args.batchSize, args.warmup / 2);
         output.put("Time warmup before building posting cache", warmup1);
         rebuildPostingListCache(index);
-        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup2 = warmup(queries, index, args.nThreads, args.batchSize, args.warmup / 2);
         output.put("Time warmup after building posting cache", warmup2);
-        searchIndex(queries, index, args.nThreads, args.runtime);
+        searchIndex(queries, index, args.nThreads, args.batchSize, args.runtime);
     }
 
     private static void rebuildPostingListCache(PredicateIndex index) {
@@ -164,27 +180,29 @@ public class PredicateIndexBenchmark {
         return queries;
     }
 
-    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup) {
+    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int batchSize,
+                               int warmup) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            executor.submit(new QueryRunner(shuffledQueries, index.searcher()));
+            executor.submit(new QueryRunner(shuffledQueries, index.searcher(), batchSize));
         }
         long start = System.currentTimeMillis();
         waitAndShutdown(warmup, executor);
         return System.currentTimeMillis() - start;
     }
 
-    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime) {
+    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int batchSize,
+                                    int runtime) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         List<QueryRunner> runners = new ArrayList<>();
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+            runners.add(new QueryRunner(shuffledQueries, index.searcher(), batchSize));
         }
         long start = System.currentTimeMillis();
         List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).collect(toList());
@@ -218,10 +236,12 @@ public class PredicateIndexBenchmark {
     private static class QueryRunner implements Callable<ResultMetrics> {
         private final List<PredicateQuery> queries;
         private final PredicateIndex.Searcher searcher;
+        private final int batchSize;
 
-        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher) {
+        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher, int batchSize) {
             this.queries = queries;
             this.searcher = seacher;
+            this.batchSize = batchSize;
         }
 
         @Override
@@ -229,13 +249,29 @@ public class PredicateIndexBenchmark {
             Iterator<PredicateQuery> iterator = Iterators.cycle(queries);
             ResultMetrics result = new ResultMetrics();
             while (!Thread.interrupted()) {
-                long start = System.nanoTime();
-                long hits = searcher.search(iterator.next()).count();
-                double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
-                result.registerResult(hits, latencyMilliseconds);
+                if (batchSize > 1) {
+                    runBatch(iterator, result);
+                } else {
+                    long start = System.nanoTime();
+                    long hits = searcher.search(iterator.next()).count();
+                    double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
+                    result.registerResult(hits, latencyMilliseconds);
+                }
             }
             return result;
         }
+
+        // Registers the time of the whole batch as the latency of each query, as none of them complete before it.
+        private void runBatch(Iterator<PredicateQuery> iterator, ResultMetrics result) {
+            List<PredicateQuery> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(iterator.next());
+            }
+            long start = System.nanoTime();
+            List<Long> hits = searcher.search(batch).stream().map(Stream::count).collect(toList());
+            double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
+            hits.forEach(queryHits -> result.registerResult(queryHits, latencyMilliseconds));
+        }
     }
 
     private static void writeOutputToStandardOut() {
@@ -256,6 +292,10 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-t", "--threads"}, description = "Number of search threads")
         public int nThreads = 1;
 
+        @Option(name = {"-bs", "--batch-size"},
+                description = "Number of queries each search thread searches for together, using batched search")
+        public int batchSize = 1;
+
         @Option(name = {"-a", "--arity"}, description = "Arity")
         public int arity = 2;
 
@@ -288,6 +328,10 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-wi", "--write-index"}, description = "Serialize index to the given file")
         public String indexOutputFile;
 
+        @Option(name = {"-iff", "--index-file-format"},
+                description = "Read and write index files with PredicateIndex.fromFile/writeToFile instead of as a stream")
+        public boolean indexFileFormat = false;
+
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
@@ -2,6 +2,8 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.primitives.Ints;
+import com.yahoo.search.predicate.serialization.IndexFileReader;
+import com.yahoo.search.predicate.serialization.IndexFileWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
@@ -29,6 +31,10 @@ public class PredicateIntervalStore {
         return intervalsList[intervalRef];
     }
 
+    public int size() {
+        return intervalsList.length;
+    }
+
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         out.writeInt(intervalsList.length);
         for (int[] intervals : intervalsList) {
@@ -45,6 +51,14 @@ public class PredicateIntervalStore {
         return new PredicateIntervalStore(intervalsList);
     }
 
+    public void writeToIndexFile(IndexFileWriter out) throws IOException {
+        out.writeIntArrays(intervalsList);
+    }
+
+    public static PredicateIntervalStore fromIndexFile(IndexFileReader in) throws IOException {
+        return new PredicateIntervalStore(in.readIntArrays());
+    }
+
     public static class Builder {
         private final List<int[]> intervalsListBuilder = new ArrayList<>();
         private final Map<Entry, Integer> intervalsListIndexes = new HashMap<>();
@@ -53,11 +67,14 @@ public class PredicateIntervalStore {
         private int totalInserts = 0;
 
         public int insert(List<Integer> intervals) {
-            int size = intervals.size();
+            return insert(Ints.toArray(intervals));
+        }
+
+        public int insert(int[] array) {
+            int size = array.length;
             if (size == 0) {
                 throw new IllegalArgumentException("Cannot insert interval list of size 0");
             }
-            int[] array = Ints.toArray(intervals);
             Entry entry = new Entry(array);
             ++totalInserts;
             if (intervalsListIndexes.containsKey(entry)) {
@@ -4,16 +4,20 @@ package com.yahoo.search.predicate.index;
 import com.gs.collections.api.map.primitive.LongObjectMap;
 import com.gs.collections.api.tuple.primitive.LongObjectPair;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import com.yahoo.search.predicate.serialization.IndexFileReader;
+import com.yahoo.search.predicate.serialization.IndexFileWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntUnaryOperator;
 
 /**
  * An index mapping keys of type Long to lists of postings of generic data.
@@ -60,6 +64,77 @@ public class SimpleIndex {
         return new SimpleIndex(dictionary);
     }
 
+    public void writeToIndexFile(IndexFileWriter out) throws IOException {
+        int size = dictionary.size();
+        long[] keys = new long[size];
+        int[][] docIds = new int[size][];
+        int[][] dataRefs = new int[size][];
+        int i = 0;
+        for (LongObjectPair<Entry> pair : dictionary.keyValuesView()) {
+            keys[i] = pair.getOne();
+            docIds[i] = pair.getTwo().docIds;
+            dataRefs[i] = pair.getTwo().dataRefs;
+            ++i;
+        }
+        out.writeLongArray(keys);
+        out.writeIntArrays(docIds);
+        out.writeIntArrays(dataRefs);
+    }
+
+    public static SimpleIndex fromIndexFile(IndexFileReader in) throws IOException {
+        long[] keys = in.readLongArray();
+        int[][] docIds = in.readIntArrays();
+        int[][] dataRefs = in.readIntArrays();
+        LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            dictionary.put(keys[i], new Entry(docIds[i], dataRefs[i]));
+        }
+        dictionary.compact();
+        return new SimpleIndex(dictionary);
+    }
+
+    /**
+     * Merges the posting lists of the given indexes into a new index. Each document id mapping must map the
+     * documents of its index to ids above those of the preceding indexes, so that the posting lists stay sorted,
+     * or to -1 to leave a document out. Keys left without postings are dropped.
+     *
+     * @param indexes The indexes to merge
+     * @param docIdMappings The new document id of each document id, for each index
+     * @param dataRefMappings The new data reference of each data reference, for each index
+     * @return The merged index
+     */
+    public static SimpleIndex merge(
+            List<SimpleIndex> indexes, List<int[]> docIdMappings, List<IntUnaryOperator> dataRefMappings) {
+        LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>();
+        for (int i = 0; i < indexes.size(); i++) {
+            int[] docIdMapping = docIdMappings.get(i);
+            IntUnaryOperator dataRefMapping = dataRefMappings.get(i);
+            for (LongObjectPair<Entry> pair : indexes.get(i).dictionary.keyValuesView()) {
+                Entry entry = pair.getTwo();
+                Entry previous = dictionary.get(pair.getOne());
+                int offset = previous == null ? 0 : previous.docIds.length;
+                int[] docIds = previous == null
+                        ? new int[entry.docIds.length] : Arrays.copyOf(previous.docIds, offset + entry.docIds.length);
+                int[] dataRefs = previous == null
+                        ? new int[entry.dataRefs.length] : Arrays.copyOf(previous.dataRefs, offset + entry.dataRefs.length);
+                int size = offset;
+                for (int j = 0; j < entry.docIds.length; j++) {
+                    int docId = docIdMapping[entry.docIds[j]];
+                    if (docId >= 0) {
+                        docIds[size] = docId;
+                        dataRefs[size] = dataRefMapping.applyAsInt(entry.dataRefs[j]);
+                        ++size;
+                    }
+                }
+                if (size > offset) {
+                    dictionary.put(pair.getOne(), new Entry(Arrays.copyOf(docIds, size), Arrays.copyOf(dataRefs, size)));
+                }
+            }
+        }
+        dictionary.compact();
+        return new SimpleIndex(dictionary);
+    }
+
     public static class Entry {
         public final int[] docIds;
         public final int[] dataRefs;
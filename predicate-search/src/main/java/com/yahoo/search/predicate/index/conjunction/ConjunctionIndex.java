@@ -10,6 +10,8 @@ import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import com.yahoo.document.predicate.FeatureConjunction;
 import com.yahoo.search.predicate.PredicateQuery;
 import com.yahoo.search.predicate.SubqueryBitmap;
+import com.yahoo.search.predicate.serialization.IndexFileReader;
+import com.yahoo.search.predicate.serialization.IndexFileWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 import com.yahoo.search.predicate.utils.PrimitiveArraySorter;
 
@@ -18,8 +20,12 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
 
 /**
  * A searchable index of conjunctions (see {@link FeatureConjunction} / {@link IndexableFeatureConjunction}).
@@ -67,6 +73,96 @@ public class ConjunctionIndex {
         return new ConjunctionIndex(kIndex, zList, idMapping);
     }
 
+    public void writeToIndexFile(IndexFileWriter out) throws IOException {
+        out.writeIntArray(zList);
+        out.writeLongArray(idMapping);
+        out.writeInt(kIndex.size());
+        for (IntObjectPair<FeatureIndex> p : kIndex.keyValuesView()) {
+            out.writeInt(p.getOne());
+            p.getTwo().writeToIndexFile(out);
+        }
+    }
+
+    public static ConjunctionIndex fromIndexFile(IndexFileReader in) throws IOException {
+        int[] zList = in.readIntArray();
+        long[] idMapping = in.readLongArray();
+        int kIndexSize = in.readInt();
+        IntObjectHashMap<FeatureIndex> kIndex = new IntObjectHashMap<>(kIndexSize);
+        for (int i = 0; i < kIndexSize; i++) {
+            int key = in.readInt();
+            kIndex.put(key, FeatureIndex.fromIndexFile(in));
+        }
+        kIndex.compact();
+        return new ConjunctionIndex(kIndex, zList, idMapping);
+    }
+
+    /**
+     * Merges the given indexes into a new index, keeping only the conjunctions for which the given predicate holds.
+     * Conjunctions present in several of the indexes are merged into one.
+     *
+     * @param indexes The indexes to merge
+     * @param keepConjunction Tells whether to keep the conjunction with the given id
+     * @return The merged index
+     */
+    public static ConjunctionIndex merge(List<ConjunctionIndex> indexes, LongPredicate keepConjunction) {
+        Map<Long, Integer> newIds = new HashMap<>();
+        List<int[]> idMappings = new ArrayList<>();
+        for (ConjunctionIndex index : indexes) {
+            int[] idMapping = new int[index.idMapping.length];
+            for (int i = 0; i < idMapping.length; i++) {
+                long externalId = index.idMapping[i];
+                idMapping[i] = keepConjunction.test(externalId)
+                        ? newIds.computeIfAbsent(externalId, id -> newIds.size()) : -1;
+            }
+            idMappings.add(idMapping);
+        }
+        long[] idMapping = new long[newIds.size()];
+        newIds.forEach((externalId, internalId) -> idMapping[internalId] = externalId);
+
+        Map<Integer, Map<Long, int[]>> kIndexBuilder = new HashMap<>();
+        int[] zList = new int[0];
+        for (int i = 0; i < indexes.size(); i++) {
+            ConjunctionIndex index = indexes.get(i);
+            int[] mapping = idMappings.get(i);
+            for (IntObjectPair<FeatureIndex> k : index.kIndex.keyValuesView()) {
+                Map<Long, int[]> featureIndexBuilder = kIndexBuilder.computeIfAbsent(k.getOne(), key -> new HashMap<>());
+                for (LongObjectPair<int[]> feature : k.getTwo().map.keyValuesView()) {
+                    featureIndexBuilder.merge(
+                            feature.getOne(), mapConjunctionIds(feature.getTwo(), mapping), ConjunctionIndex::union);
+                }
+            }
+            zList = union(zList, mapConjunctionIds(index.zList, mapping));
+        }
+
+        IntObjectHashMap<FeatureIndex> kIndex = new IntObjectHashMap<>();
+        for (Map.Entry<Integer, Map<Long, int[]>> k : kIndexBuilder.entrySet()) {
+            LongObjectHashMap<int[]> map = new LongObjectHashMap<>();
+            k.getValue().forEach((featureId, conjunctionIds) -> {
+                if (conjunctionIds.length > 0) {
+                    map.put(featureId, conjunctionIds);
+                }
+            });
+            if (map.size() > 0) {
+                map.compact();
+                kIndex.put(k.getKey(), new FeatureIndex(map));
+            }
+        }
+        kIndex.compact();
+        return new ConjunctionIndex(kIndex, zList, idMapping);
+    }
+
+    private static int[] mapConjunctionIds(int[] conjunctionIds, int[] idMapping) {
+        return Arrays.stream(conjunctionIds)
+                .filter(id -> idMapping[id >>> 1] >= 0)
+                .map(id -> (idMapping[id >>> 1] << 1) | (id & 1))
+                .sorted()
+                .toArray();
+    }
+
+    private static int[] union(int[] left, int[] right) {
+        return IntStream.concat(Arrays.stream(left), Arrays.stream(right)).sorted().distinct().toArray();
+    }
+
     public static class FeatureIndex {
         // Maps a feature id to conjunction id
         private final LongObjectMap<int[]> map;
@@ -97,6 +193,31 @@ public class ConjunctionIndex {
             map.compact();
             return new FeatureIndex(map);
         }
+
+        public void writeToIndexFile(IndexFileWriter out) throws IOException {
+            int size = map.size();
+            long[] keys = new long[size];
+            int[][] conjunctionIds = new int[size][];
+            int i = 0;
+            for (LongObjectPair<int[]> p : map.keyValuesView()) {
+                keys[i] = p.getOne();
+                conjunctionIds[i] = p.getTwo();
+                ++i;
+            }
+            out.writeLongArray(keys);
+            out.writeIntArrays(conjunctionIds);
+        }
+
+        public static FeatureIndex fromIndexFile(IndexFileReader in) throws IOException {
+            long[] keys = in.readLongArray();
+            int[][] conjunctionIds = in.readIntArrays();
+            LongObjectHashMap<int[]> map = new LongObjectHashMap<>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], conjunctionIds[i]);
+            }
+            map.compact();
+            return new FeatureIndex(map);
+        }
     }
 
     public class Searcher {
@@ -0,0 +1,153 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import com.yahoo.search.predicate.PredicateIndex;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a {@link PredicateIndex} file written by {@link IndexFileWriter}.
+ * <p>
+ * The file is memory mapped, one window of up to a gigabyte at a time, and arrays are copied out of the mapping
+ * with bulk gets on typed buffer views, rather than decoded one value at a time from a stream.
+ * </p>
+ */
+public class IndexFileReader implements AutoCloseable {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long position = 0;
+
+    public IndexFileReader(Path path) throws IOException {
+        this(path, WINDOW_SIZE);
+    }
+
+    IndexFileReader(Path path, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    public byte readByte() throws IOException {
+        byte value = bytes(1).get();
+        position += 1;
+        return value;
+    }
+
+    public int readInt() throws IOException {
+        int value = bytes(4).getInt();
+        position += 4;
+        return value;
+    }
+
+    public long readLong() throws IOException {
+        long value = bytes(8).getLong();
+        position += 8;
+        return value;
+    }
+
+    public byte[] readByteArray() throws IOException {
+        byte[] array = new byte[readArrayHeader()];
+        for (int offset = 0; offset < array.length; ) {
+            MappedByteBuffer buffer = bytes(1);
+            int n = Math.min(array.length - offset, buffer.remaining());
+            buffer.get(array, offset, n);
+            position += n;
+            offset += n;
+        }
+        return array;
+    }
+
+    public short[] readShortArray() throws IOException {
+        short[] array = new short[readArrayHeader()];
+        for (int offset = 0; offset < array.length; ) {
+            MappedByteBuffer buffer = bytes(2);
+            int n = Math.min(array.length - offset, buffer.remaining() / 2);
+            buffer.asShortBuffer().get(array, offset, n);
+            position += 2L * n;
+            offset += n;
+        }
+        return array;
+    }
+
+    public int[] readIntArray() throws IOException {
+        int[] array = new int[readArrayHeader()];
+        readInts(array);
+        return array;
+    }
+
+    public long[] readLongArray() throws IOException {
+        long[] array = new long[readArrayHeader()];
+        for (int offset = 0; offset < array.length; ) {
+            MappedByteBuffer buffer = bytes(8);
+            int n = Math.min(array.length - offset, buffer.remaining() / 8);
+            buffer.asLongBuffer().get(array, offset, n);
+            position += 8L * n;
+            offset += n;
+        }
+        return array;
+    }
+
+    /** Reads a list of int arrays written by {@link IndexFileWriter#writeIntArrays(int[][])}. */
+    public int[][] readIntArrays() throws IOException {
+        int[] lengths = readIntArray();
+        int[][] arrays = new int[lengths.length][];
+        for (int i = 0; i < lengths.length; i++) {
+            arrays[i] = new int[lengths[i]];
+            readInts(arrays[i]);
+        }
+        return arrays;
+    }
+
+    /** Skips the padding up to the next page boundary. */
+    public void alignToPage() {
+        position = (position + IndexFileWriter.PAGE_SIZE - 1) / IndexFileWriter.PAGE_SIZE * IndexFileWriter.PAGE_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private void readInts(int[] array) throws IOException {
+        for (int offset = 0; offset < array.length; ) {
+            MappedByteBuffer buffer = bytes(4);
+            int n = Math.min(array.length - offset, buffer.remaining() / 4);
+            buffer.asIntBuffer().get(array, offset, n);
+            position += 4L * n;
+            offset += n;
+        }
+    }
+
+    private int readArrayHeader() throws IOException {
+        int length = readInt();
+        position = (position + 7) & ~7L;
+        return length;
+    }
+
+    // Returns the mapped window positioned at the current position, with at least the given number of bytes left.
+    private MappedByteBuffer bytes(int count) throws IOException {
+        if (position + count > size) {
+            throw new EOFException("Unexpected end of index file at offset " + position);
+        }
+        if (window == null || position < windowStart || position + count > windowStart + window.limit()) {
+            windowStart = position / IndexFileWriter.PAGE_SIZE * IndexFileWriter.PAGE_SIZE;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+            window.order(IndexFileWriter.BYTE_ORDER);
+        }
+        window.position((int) (position - windowStart));
+        return window;
+    }
+
+}
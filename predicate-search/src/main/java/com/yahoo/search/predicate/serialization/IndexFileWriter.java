@@ -0,0 +1,158 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import com.yahoo.search.predicate.PredicateIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {@link PredicateIndex} file which can be loaded with bulk copies, see {@link IndexFileReader}.
+ * <p>
+ * All values are little-endian. Arrays are written as their length followed by their elements, which start
+ * at an 8 byte aligned offset, so that they can be read as typed buffer views. Sections can be aligned to
+ * the page size using {@link #alignToPage()}.
+ * </p>
+ */
+public class IndexFileWriter implements AutoCloseable {
+
+    public static final int PAGE_SIZE = 4096;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(BYTE_ORDER);
+    private long position = 0;
+
+    public IndexFileWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void writeByte(byte value) throws IOException {
+        ensureSpace(1);
+        buffer.put(value);
+        position += 1;
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureSpace(4);
+        buffer.putInt(value);
+        position += 4;
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensureSpace(8);
+        buffer.putLong(value);
+        position += 8;
+    }
+
+    public void writeByteArray(byte[] array) throws IOException {
+        writeArrayHeader(array.length);
+        for (int offset = 0; offset < array.length; ) {
+            int n = Math.min(array.length - offset, ensureSpace(1));
+            buffer.put(array, offset, n);
+            position += n;
+            offset += n;
+        }
+    }
+
+    public void writeShortArray(short[] array) throws IOException {
+        writeArrayHeader(array.length);
+        for (int offset = 0; offset < array.length; ) {
+            int n = Math.min(array.length - offset, ensureSpace(2) / 2);
+            buffer.asShortBuffer().put(array, offset, n);
+            advance(2 * n);
+            offset += n;
+        }
+    }
+
+    public void writeIntArray(int[] array) throws IOException {
+        writeArrayHeader(array.length);
+        writeInts(array);
+    }
+
+    public void writeLongArray(long[] array) throws IOException {
+        writeArrayHeader(array.length);
+        for (int offset = 0; offset < array.length; ) {
+            int n = Math.min(array.length - offset, ensureSpace(8) / 8);
+            buffer.asLongBuffer().put(array, offset, n);
+            advance(8 * n);
+            offset += n;
+        }
+    }
+
+    /**
+     * Writes a list of int arrays as the length of each, followed by all their elements in one block, which
+     * is more compact than writing each of them with {@link #writeIntArray(int[])} when they are small.
+     */
+    public void writeIntArrays(int[][] arrays) throws IOException {
+        int[] lengths = new int[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            lengths[i] = arrays[i].length;
+        }
+        writeIntArray(lengths);
+        for (int[] array : arrays) {
+            writeInts(array);
+        }
+    }
+
+    /** Pads the file with zeros up to the next page boundary. */
+    public void alignToPage() throws IOException {
+        align(PAGE_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeInts(int[] array) throws IOException {
+        for (int offset = 0; offset < array.length; ) {
+            int n = Math.min(array.length - offset, ensureSpace(4) / 4);
+            buffer.asIntBuffer().put(array, offset, n);
+            advance(4 * n);
+            offset += n;
+        }
+    }
+
+    private void writeArrayHeader(int length) throws IOException {
+        writeInt(length);
+        align(8);
+    }
+
+    private void align(int alignment) throws IOException {
+        while (position % alignment != 0) {
+            writeByte((byte) 0);
+        }
+    }
+
+    private void advance(int bytes) {
+        buffer.position(buffer.position() + bytes);
+        position += bytes;
+    }
+
+    // Makes room for at least the given number of bytes in the buffer, and returns the room available.
+    private int ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        return buffer.remaining();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
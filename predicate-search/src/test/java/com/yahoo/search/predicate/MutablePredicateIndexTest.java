@@ -0,0 +1,136 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.yahoo.document.predicate.Predicate;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+public class MutablePredicateIndexTest {
+
+    private static final Config CONFIG = new Config.Builder().setArity(10).setUseConjunctionAlgorithm(true).build();
+
+    private static PredicateQuery query(String... features) {
+        PredicateQuery query = new PredicateQuery();
+        for (int i = 0; i < features.length; i += 2) {
+            query.addFeature(features[i], features[i + 1]);
+        }
+        return query;
+    }
+
+    private static String search(MutablePredicateIndex.Searcher searcher, PredicateQuery query) {
+        return searcher.search(query).sorted().collect(toList()).toString();
+    }
+
+    @Test
+    public void requireThatChangesAreVisibleAfterCommit() {
+        MutablePredicateIndex index = new MutablePredicateIndex(CONFIG);
+        MutablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        index.indexDocument(2, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        PredicateQuery query = query("country", "no", "gender", "male", "gender", "female");
+        assertEquals("[]", search(searcher, query));
+
+        index.commit();
+        assertEquals("[1, 2]", search(searcher, query));
+
+        index.removeDocument(1);
+        assertEquals("[1, 2]", search(searcher, query));
+        index.commit();
+        assertEquals("[2]", search(searcher, query));
+    }
+
+    @Test
+    public void requireThatDocumentsOfInitialIndexCanBeUpdatedAndRemoved() {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(CONFIG);
+        builder.indexDocument(1, Predicate.fromString("gender in ['male'] and age in [20..40]"));
+        builder.indexDocument(2, Predicate.fromString("gender in ['female'] and age in [20..40]"));
+        builder.indexDocument(3, Predicate.fromString("true"));
+        MutablePredicateIndex index = new MutablePredicateIndex(builder.build());
+        MutablePredicateIndex.Searcher searcher = index.searcher();
+        PredicateQuery query = query("gender", "male");
+        query.addRangeFeature("age", 36);
+        assertEquals("[1, 3]", search(searcher, query));
+
+        index.indexDocument(1, Predicate.fromString("gender in ['male'] and age in [40..60]"));
+        index.indexDocument(2, Predicate.fromString("gender in ['male'] and age in [30..40]"));
+        index.removeDocument(3);
+        index.removeDocument(4);
+        index.commit();
+        assertEquals("[2]", search(searcher, query));
+
+        index.compact();
+        assertEquals("[2]", search(searcher, query));
+        query = query("gender", "male");
+        query.addRangeFeature("age", 50);
+        assertEquals("[1]", search(searcher, query));
+    }
+
+    @Test
+    public void requireThatCompactionKeepsChangesDoneSinceLastCommit() {
+        MutablePredicateIndex index = new MutablePredicateIndex(CONFIG);
+        MutablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("a in [b]"));
+        index.indexDocument(2, Predicate.fromString("a in [b]"));
+        index.commit();
+        index.removeDocument(1);
+        index.indexDocument(3, Predicate.fromString("a in [b]"));
+        index.compact();
+        assertEquals("[2, 3]", search(searcher, query("a", "b")));
+
+        index.removeDocument(2);
+        index.compact();
+        index.removeDocument(3);
+        assertEquals("[3]", search(searcher, query("a", "b")));
+        index.commit();
+        assertEquals("[]", search(searcher, query("a", "b")));
+    }
+
+    @Test
+    public void requireThatCompactedIndexGivesSameHitsAsRebuiltIndex() {
+        String[] values = {"a", "b", "c", "d"};
+        Random random = new Random(42);
+        Map<Integer, Predicate> documents = new LinkedHashMap<>();
+        MutablePredicateIndex index = new MutablePredicateIndex(CONFIG);
+        MutablePredicateIndex.Searcher searcher = index.searcher();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                int docId = random.nextInt(100);
+                if (random.nextInt(4) == 0) {
+                    documents.remove(docId);
+                    index.removeDocument(docId);
+                } else {
+                    Predicate predicate = Predicate.fromString(String.format(
+                            "(x in [%s] and y in [%s]) or (x in [%s] and y not in [%s]) or z in [%d..%d]",
+                            values[random.nextInt(4)], values[random.nextInt(4)],
+                            values[random.nextInt(4)], values[random.nextInt(4)],
+                            random.nextInt(50), 50 + random.nextInt(50)));
+                    documents.put(docId, predicate);
+                    index.indexDocument(docId, predicate);
+                }
+            }
+            if (round % 3 == 0) {
+                index.compact();
+            } else {
+                index.commit();
+            }
+
+            PredicateIndexBuilder builder = new PredicateIndexBuilder(CONFIG);
+            documents.forEach(builder::indexDocument);
+            PredicateIndex.Searcher expected = builder.build().searcher();
+            for (String x : values) {
+                for (String y : values) {
+                    PredicateQuery query = query("x", x, "y", y);
+                    query.addRangeFeature("z", random.nextInt(100));
+                    assertEquals(expected.search(query).sorted().collect(toList()).toString(), search(searcher, query));
+                }
+            }
+        }
+    }
+
+}
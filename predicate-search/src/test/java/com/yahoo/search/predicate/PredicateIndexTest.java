@@ -4,10 +4,19 @@ package com.yahoo.search.predicate;
 import com.yahoo.document.predicate.Predicate;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -129,6 +138,46 @@ public class PredicateIndexTest {
         assertEquals("[42]", searcher.search(query).collect(toList()).toString());
     }
 
+    @Test
+    public void requireThatBatchedSearchGivesSameHitsAsSingleSearches() {
+        String[] values = {"a", "b", "c", "d"};
+        Random random = new Random(42);
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(
+                new Config.Builder().setArity(10).setUseConjunctionAlgorithm(true).build());
+        for (int docId = 1; docId <= 200; docId++) {
+            builder.indexDocument(docId, Predicate.fromString(String.format(
+                    "(x in [%s] and y in [%s]) or (x in [%s] and y not in [%s]) or z in [%d..%d]",
+                    values[random.nextInt(4)], values[random.nextInt(4)],
+                    values[random.nextInt(4)], values[random.nextInt(4)],
+                    random.nextInt(50), 50 + random.nextInt(50))));
+        }
+        builder.indexDocument(201, Predicate.fromString("true"));
+        PredicateIndex.Searcher searcher = builder.build().searcher();
+
+        List<PredicateQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            PredicateQuery query = new PredicateQuery();
+            query.addFeature("x", values[random.nextInt(4)]);
+            if (random.nextBoolean()) {
+                query.addFeature("y", values[random.nextInt(4)]);
+            }
+            query.addRangeFeature("z", random.nextInt(110));
+            queries.add(query);
+        }
+        PredicateQuery subqueries = new PredicateQuery();
+        subqueries.addFeature("x", "a", 0x1);
+        subqueries.addFeature("x", "b", 0x2);
+        queries.add(70, subqueries);
+        queries.add(new PredicateQuery());
+
+        List<Stream<Hit>> hits = searcher.search(queries);
+        assertEquals(queries.size(), hits.size());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(searcher.search(queries.get(i)).sorted().collect(toList()),
+                         hits.get(i).sorted().collect(toList()));
+        }
+    }
+
     @Test
     public void require_that_serialization_and_deserialization_retain_data() throws IOException {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -138,4 +187,35 @@ public class PredicateIndexTest {
         assertSerializationDeserializationMatches(
                 index, PredicateIndex::writeToOutputStream, PredicateIndex::fromInputStream);
     }
+
+    @Test
+    public void require_that_index_file_retains_data() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(
+                new Config.Builder().setArity(10).setUseConjunctionAlgorithm(true).build());
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("gender in ['female'] and age in [20..40]"));
+        builder.indexDocument(3, Predicate.fromString("true"));
+        builder.indexDocument(0x3fffffe, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        PredicateIndex index = builder.build();
+        Path file = Files.createTempFile("predicate-index", ".dat");
+        try {
+            index.writeToFile(file);
+            PredicateIndex read = PredicateIndex.fromFile(file);
+            assertArrayEquals(serialize(index), serialize(read));
+
+            PredicateQuery query = new PredicateQuery();
+            query.addFeature("country", "no");
+            query.addFeature("gender", "female");
+            query.addRangeFeature("age", 36);
+            assertEquals("[2, 3, 67108862]", read.searcher().search(query).collect(toList()).toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] serialize(PredicateIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeToOutputStream(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
 }
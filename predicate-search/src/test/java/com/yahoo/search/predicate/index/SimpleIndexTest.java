@@ -4,10 +4,14 @@ package com.yahoo.search.predicate.index;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author <a href="mailto:magnarn@yahoo-inc.com">Magnar Nedland</a>
@@ -62,4 +66,28 @@ public class SimpleIndexTest {
         SimpleIndex index = builder.build();
         assertSerializationDeserializationMatches(index, SimpleIndex::writeToOutputStream, SimpleIndex::fromInputStream);
     }
+
+    @Test
+    public void requireThatIndexesCanBeMerged() {
+        SimpleIndex.Builder builder = new SimpleIndex.Builder();
+        builder.insert(KEY, new Posting(0, 10));
+        builder.insert(KEY, new Posting(1, 20));
+        builder.insert(KEY + 1, new Posting(1, 30));
+        SimpleIndex first = builder.build();
+        builder = new SimpleIndex.Builder();
+        builder.insert(KEY, new Posting(0, 10));
+        builder.insert(KEY + 2, new Posting(1, 20));
+        SimpleIndex second = builder.build();
+
+        IntUnaryOperator dataRefMapping = dataRef -> dataRef + 1;
+        SimpleIndex index = SimpleIndex.merge(
+                Arrays.asList(first, second),
+                Arrays.asList(new int[]{0, -1}, new int[]{1, 2}),
+                Arrays.asList(dataRefMapping, dataRefMapping));
+        assertArrayEquals(new int[]{0, 1}, index.getPostingList(KEY).docIds);
+        assertArrayEquals(new int[]{11, 11}, index.getPostingList(KEY).dataRefs);
+        assertNull(index.getPostingList(KEY + 1));
+        assertArrayEquals(new int[]{2}, index.getPostingList(KEY + 2).docIds);
+        assertArrayEquals(new int[]{21}, index.getPostingList(KEY + 2).dataRefs);
+    }
 }
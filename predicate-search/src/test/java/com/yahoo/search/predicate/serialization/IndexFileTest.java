@@ -0,0 +1,88 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IndexFileTest {
+
+    @Test
+    public void require_that_values_and_arrays_can_be_read_back() throws IOException {
+        Path file = Files.createTempFile("predicate-index", ".dat");
+        try {
+            try (IndexFileWriter out = new IndexFileWriter(file)) {
+                out.writeByte((byte) 7);
+                out.writeByteArray(new byte[]{1, 2, 3});
+                out.writeShortArray(new short[]{1, 2, 3, 4, 5});
+                out.alignToPage();
+                out.writeIntArray(new int[]{1, -2, 3});
+                out.writeLong(0x123456789L);
+                out.writeLongArray(new long[]{-1, Long.MAX_VALUE});
+                out.writeIntArrays(new int[][]{{1, 2}, {}, {3}});
+                out.writeInt(42);
+            }
+            try (IndexFileReader in = new IndexFileReader(file)) {
+                assertEquals(7, in.readByte());
+                assertArrayEquals(new byte[]{1, 2, 3}, in.readByteArray());
+                assertArrayEquals(new short[]{1, 2, 3, 4, 5}, in.readShortArray());
+                in.alignToPage();
+                assertArrayEquals(new int[]{1, -2, 3}, in.readIntArray());
+                assertEquals(0x123456789L, in.readLong());
+                assertArrayEquals(new long[]{-1, Long.MAX_VALUE}, in.readLongArray());
+                int[][] arrays = in.readIntArrays();
+                assertEquals(3, arrays.length);
+                assertArrayEquals(new int[]{1, 2}, arrays[0]);
+                assertArrayEquals(new int[]{}, arrays[1]);
+                assertArrayEquals(new int[]{3}, arrays[2]);
+                assertEquals(42, in.readInt());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void require_that_arrays_can_span_several_mapped_windows() throws IOException {
+        int[] ints = IntStream.range(0, 10000).toArray();
+        long[] longs = IntStream.range(0, 10000).asLongStream().toArray();
+        Path file = Files.createTempFile("predicate-index", ".dat");
+        try {
+            try (IndexFileWriter out = new IndexFileWriter(file)) {
+                out.writeIntArray(ints);
+                out.writeLongArray(longs);
+                out.writeInt(42);
+            }
+            try (IndexFileReader in = new IndexFileReader(file, IndexFileWriter.PAGE_SIZE)) {
+                assertArrayEquals(ints, in.readIntArray());
+                assertArrayEquals(longs, in.readLongArray());
+                assertEquals(42, in.readInt());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void require_that_truncated_file_is_detected() throws IOException {
+        Path file = Files.createTempFile("predicate-index", ".dat");
+        try {
+            try (IndexFileWriter out = new IndexFileWriter(file)) {
+                out.writeInt(10);
+            }
+            try (IndexFileReader in = new IndexFileReader(file)) {
+                in.readIntArray();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+/**
+ * A ranking expression compiled to a tree of primitive evaluators by an {@link ExpressionCompiler}.
+ * The variables of the expression are read as doubles from an array, indexed as in the
+ * context the expression was compiled for.
+ * <p>
+ * Instances are immutable and may be used by multiple threads at the same time.
+ */
+public abstract class CompiledExpression {
+
+    CompiledExpression() {}
+
+    /**
+     * Returns the value of this expression
+     *
+     * @param features the values of the variables of the expression, in the order given by
+     *                 {@link AbstractArrayContext#getIndex} of the context this was compiled for
+     */
+    public final double evaluate(double[] features) {
+        return evaluate(features, null);
+    }
+
+    /**
+     * Returns the value of this expression given the values set in a context.
+     * The context must be the one this was compiled for, or a clone of it.
+     * Subexpressions which could not be compiled are evaluated against this context,
+     * so variables holding values which are not doubles are available to those.
+     */
+    public final double evaluate(AbstractArrayContext context) {
+        return evaluate(context.doubleValues(), context);
+    }
+
+    /**
+     * Returns the value of this expression
+     *
+     * @param features the values of the variables of the expression as doubles
+     * @param context the context to use when interpreting subexpressions, or null to create one from the features
+     */
+    abstract double evaluate(double[] features, Context context);
+
+}
@@ -0,0 +1,511 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.BooleanNode;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles ranking expressions into trees of evaluators working directly on primitive doubles,
+ * which avoids the value objects and context lookups of interpreting the expression.
+ * Clients using compiled expressions will do
+ *
+ * <code>
+ * // Set up once
+ * RankingExpression expression = new RankingExpression(myExpressionString);
+ * DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression);
+ * new ExpressionOptimizer().optimize(expression, context); // optional
+ * CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+ *
+ * // Execute repeatedly
+ * context.put("featureName1", value1);
+ * ...
+ * compiled.evaluate(context);
+ * </code>
+ * <p>
+ * Decision trees are compiled to nested branches, and trees which are already optimized to
+ * GBDT nodes are evaluated by walking their value arrays directly.
+ * Subexpressions which cannot be evaluated over doubles, such as tensor functions,
+ * are interpreted and converted to a double.
+ */
+public class ExpressionCompiler {
+
+    /**
+     * Compiles an expression
+     *
+     * @param expression the expression to compile
+     * @param context the context deciding the index of each variable. If the expression is optimized,
+     *                this must be the context it was optimized with
+     */
+    public CompiledExpression compile(RankingExpression expression, AbstractArrayContext context) {
+        return new Compilation(context.nameToIndex()).compileOrInterpret(expression.getRoot());
+    }
+
+    private static class Compilation {
+
+        private final Map<String, Integer> nameToIndex;
+
+        Compilation(Map<String, Integer> nameToIndex) {
+            this.nameToIndex = nameToIndex;
+        }
+
+        CompiledExpression compileOrInterpret(ExpressionNode node) {
+            CompiledExpression compiled = compile(node);
+            if (compiled != null) return compiled;
+            return new Interpreted(node, nameToIndex);
+        }
+
+        /** Returns the compiled node, or null if this node must be interpreted */
+        private CompiledExpression compile(ExpressionNode node) {
+            if (node instanceof ConstantNode)
+                return compileConstant((ConstantNode)node);
+            if (node instanceof ReferenceNode)
+                return compileReference((ReferenceNode)node);
+            if (node instanceof ArithmeticNode)
+                return compileArithmetic((ArithmeticNode)node);
+            if (node instanceof NegativeNode)
+                return new Negate(compileOrInterpret(((NegativeNode)node).getValue()));
+            if (node instanceof EmbracedNode)
+                return compileOrInterpret(((EmbracedNode)node).getValue());
+            if (node instanceof FunctionNode)
+                return compileFunction((FunctionNode)node);
+            if (node instanceof ComparisonNode)
+                return compileComparison((ComparisonNode)node);
+            if (node instanceof SetMembershipNode)
+                return compileSetMembership((SetMembershipNode)node);
+            if (node instanceof IfNode)
+                return compileIf((IfNode)node);
+            if (node instanceof GBDTNode)
+                return new Tree(((GBDTNode)node).values());
+            if (node instanceof GBDTForestNode)
+                return new Forest(((GBDTForestNode)node).values());
+            return null;
+        }
+
+        private CompiledExpression compileConstant(ConstantNode node) {
+            if ( ! (node.getValue() instanceof DoubleCompatibleValue)) return null;
+            return new Constant(node.getValue().asDouble());
+        }
+
+        private CompiledExpression compileReference(ReferenceNode node) {
+            if (node.getArguments().expressions().size() > 0) return null;
+            Integer index = nameToIndex.get(node.toString());
+            if (index == null) return null;
+            return new Variable(index);
+        }
+
+        /** Resolves the precedence of the operators of the node in the same way as ArithmeticNode.evaluate */
+        private CompiledExpression compileArithmetic(ArithmeticNode node) {
+            List<ExpressionNode> children = node.children();
+            List<ArithmeticOperator> operators = node.operators();
+
+            if (operators.stream().allMatch(operator -> operator == ArithmeticOperator.PLUS)) {
+                CompiledExpression[] terms = new CompiledExpression[children.size()];
+                for (int i = 0; i < terms.length; i++)
+                    terms[i] = compileOrInterpret(children.get(i));
+                return new Sum(terms);
+            }
+
+            Deque<OperatorItem> stack = new ArrayDeque<>();
+            stack.push(new OperatorItem(ArithmeticOperator.PLUS, compileOrInterpret(children.get(0))));
+            for (int i = 0; i < operators.size() && i + 1 < children.size(); i++) {
+                ArithmeticOperator operator = operators.get(i);
+                while (stack.peek().operator.hasPrecedenceOver(operator))
+                    popStack(stack);
+                stack.push(new OperatorItem(operator, compileOrInterpret(children.get(i + 1))));
+            }
+            while (stack.size() > 1)
+                popStack(stack);
+            return stack.getFirst().expression;
+        }
+
+        private void popStack(Deque<OperatorItem> stack) {
+            OperatorItem rhs = stack.pop();
+            OperatorItem lhs = stack.peek();
+            switch (rhs.operator) {
+                case PLUS: lhs.expression = new Add(lhs.expression, rhs.expression); break;
+                case MINUS: lhs.expression = new Subtract(lhs.expression, rhs.expression); break;
+                case MULTIPLY: lhs.expression = new Multiply(lhs.expression, rhs.expression); break;
+                case DIVIDE: lhs.expression = new Divide(lhs.expression, rhs.expression); break;
+                default: throw new UnsupportedOperationException("Operator " + rhs.operator + " is not supported");
+            }
+        }
+
+        private CompiledExpression compileFunction(FunctionNode node) {
+            List<ExpressionNode> arguments = node.children();
+            if (arguments.size() == 0)
+                return new Constant(node.getFunction().evaluate(0, 0));
+            if (arguments.size() == 1)
+                return new UnaryFunction(node.getFunction(), compileOrInterpret(arguments.get(0)));
+            return new BinaryFunction(node.getFunction(),
+                                      compileOrInterpret(arguments.get(0)), compileOrInterpret(arguments.get(1)));
+        }
+
+        /** Comparisons of values which are not doubles, such as strings, have other semantics and are interpreted */
+        private CompiledExpression compileComparison(ComparisonNode node) {
+            CompiledExpression left = compile(node.getLeftCondition());
+            CompiledExpression right = compile(node.getRightCondition());
+            if (left == null || right == null) return null;
+            return new Comparison(left, node.getOperator(), right);
+        }
+
+        /**
+         * Set membership is compiled when the set consists of constants. Strings are compared by their double
+         * hash, the same way as in GBDT optimized expressions.
+         */
+        private CompiledExpression compileSetMembership(SetMembershipNode node) {
+            if (node.getTestValue() instanceof BooleanNode) return null;
+            CompiledExpression testValue = compile(node.getTestValue());
+            if (testValue == null) return null;
+
+            double[] setValues = new double[node.getSetValues().size()];
+            for (int i = 0; i < setValues.length; i++) {
+                ExpressionNode setValue = node.getSetValues().get(i);
+                if ( ! (setValue instanceof ConstantNode)) return null;
+                Value value = ((ConstantNode)setValue).getValue();
+                if ( ! (value instanceof DoubleValue || value instanceof StringValue)) return null;
+                setValues[i] = value.asDouble();
+            }
+            return new SetMembership(testValue, setValues);
+        }
+
+        private CompiledExpression compileIf(IfNode node) {
+            CompiledExpression condition = compile(node.getCondition());
+            if (condition == null)
+                condition = new InterpretedCondition(node.getCondition(), nameToIndex);
+            return new If(condition,
+                          compileOrInterpret(node.getTrueExpression()),
+                          compileOrInterpret(node.getFalseExpression()));
+        }
+
+    }
+
+    private static class OperatorItem {
+
+        final ArithmeticOperator operator;
+        CompiledExpression expression;
+
+        OperatorItem(ArithmeticOperator operator, CompiledExpression expression) {
+            this.operator = operator;
+            this.expression = expression;
+        }
+
+    }
+
+    private static final class Constant extends CompiledExpression {
+
+        private final double value;
+
+        Constant(double value) { this.value = value; }
+
+        @Override
+        double evaluate(double[] features, Context context) { return value; }
+
+    }
+
+    private static final class Variable extends CompiledExpression {
+
+        private final int index;
+
+        Variable(int index) { this.index = index; }
+
+        @Override
+        double evaluate(double[] features, Context context) { return features[index]; }
+
+    }
+
+    /** A sum of any number of terms, added right to left as in ArithmeticNode */
+    private static final class Sum extends CompiledExpression {
+
+        private final CompiledExpression[] terms;
+
+        Sum(CompiledExpression[] terms) { this.terms = terms; }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            double sum = terms[terms.length - 1].evaluate(features, context);
+            for (int i = terms.length - 2; i >= 0; i--)
+                sum = terms[i].evaluate(features, context) + sum;
+            return sum;
+        }
+
+    }
+
+    private static final class Add extends CompiledExpression {
+
+        private final CompiledExpression x, y;
+
+        Add(CompiledExpression x, CompiledExpression y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return x.evaluate(features, context) + y.evaluate(features, context);
+        }
+
+    }
+
+    private static final class Subtract extends CompiledExpression {
+
+        private final CompiledExpression x, y;
+
+        Subtract(CompiledExpression x, CompiledExpression y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return x.evaluate(features, context) - y.evaluate(features, context);
+        }
+
+    }
+
+    private static final class Multiply extends CompiledExpression {
+
+        private final CompiledExpression x, y;
+
+        Multiply(CompiledExpression x, CompiledExpression y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return x.evaluate(features, context) * y.evaluate(features, context);
+        }
+
+    }
+
+    private static final class Divide extends CompiledExpression {
+
+        private final CompiledExpression x, y;
+
+        Divide(CompiledExpression x, CompiledExpression y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return x.evaluate(features, context) / y.evaluate(features, context);
+        }
+
+    }
+
+    private static final class Negate extends CompiledExpression {
+
+        private final CompiledExpression x;
+
+        Negate(CompiledExpression x) { this.x = x; }
+
+        @Override
+        double evaluate(double[] features, Context context) { return -x.evaluate(features, context); }
+
+    }
+
+    private static final class UnaryFunction extends CompiledExpression {
+
+        private final Function function;
+        private final CompiledExpression x;
+
+        UnaryFunction(Function function, CompiledExpression x) {
+            this.function = function;
+            this.x = x;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return function.evaluate(x.evaluate(features, context), 0);
+        }
+
+    }
+
+    private static final class BinaryFunction extends CompiledExpression {
+
+        private final Function function;
+        private final CompiledExpression x, y;
+
+        BinaryFunction(Function function, CompiledExpression x, CompiledExpression y) {
+            this.function = function;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return function.evaluate(x.evaluate(features, context), y.evaluate(features, context));
+        }
+
+    }
+
+    private static final class Comparison extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+        private final TruthOperator operator;
+
+        Comparison(CompiledExpression left, TruthOperator operator, CompiledExpression right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return operator.evaluate(left.evaluate(features, context), right.evaluate(features, context)) ? 1 : 0;
+        }
+
+    }
+
+    private static final class SetMembership extends CompiledExpression {
+
+        private final CompiledExpression testValue;
+        private final double[] setValues;
+
+        SetMembership(CompiledExpression testValue, double[] setValues) {
+            this.testValue = testValue;
+            this.setValues = setValues;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            double value = testValue.evaluate(features, context);
+            for (double setValue : setValues)
+                if (setValue == value) return 1;
+            return 0;
+        }
+
+    }
+
+    private static final class If extends CompiledExpression {
+
+        private final CompiledExpression condition, trueExpression, falseExpression;
+
+        If(CompiledExpression condition, CompiledExpression trueExpression, CompiledExpression falseExpression) {
+            this.condition = condition;
+            this.trueExpression = trueExpression;
+            this.falseExpression = falseExpression;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            if (condition.evaluate(features, context) != 0)
+                return trueExpression.evaluate(features, context);
+            else
+                return falseExpression.evaluate(features, context);
+        }
+
+    }
+
+    private static final class Tree extends CompiledExpression {
+
+        private final double[] values;
+
+        Tree(double[] values) { this.values = values; }
+
+        @Override
+        double evaluate(double[] features, Context context) { return GBDTNode.evaluate(values, 0, features); }
+
+    }
+
+    private static final class Forest extends CompiledExpression {
+
+        private final double[] values;
+
+        Forest(double[] values) { this.values = values; }
+
+        @Override
+        double evaluate(double[] features, Context context) { return GBDTForestNode.evaluate(values, features); }
+
+    }
+
+    /** A subexpression which is interpreted and converted to a double */
+    private static class Interpreted extends CompiledExpression {
+
+        private final ExpressionNode node;
+        private final Map<String, Integer> nameToIndex;
+
+        Interpreted(ExpressionNode node, Map<String, Integer> nameToIndex) {
+            this.node = node;
+            this.nameToIndex = nameToIndex;
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return interpret(features, context).asDouble();
+        }
+
+        Value interpret(double[] features, Context context) {
+            if (context == null)
+                context = new FeatureArrayContext(nameToIndex, features);
+            return node.evaluate(context);
+        }
+
+    }
+
+    /** A condition which is interpreted and converted to 1 if true and 0 if false */
+    private static final class InterpretedCondition extends Interpreted {
+
+        InterpretedCondition(ExpressionNode node, Map<String, Integer> nameToIndex) {
+            super(node, nameToIndex);
+        }
+
+        @Override
+        double evaluate(double[] features, Context context) {
+            return interpret(features, context).asBoolean() ? 1 : 0;
+        }
+
+    }
+
+    /** A context exposing an array of feature values to interpreted subexpressions */
+    private static final class FeatureArrayContext extends Context {
+
+        private final Map<String, Integer> nameToIndex;
+        private final double[] features;
+
+        FeatureArrayContext(Map<String, Integer> nameToIndex, double[] features) {
+            this.nameToIndex = nameToIndex;
+            this.features = features;
+        }
+
+        @Override
+        public Value get(String name) {
+            Integer index = nameToIndex.get(name);
+            if (index == null) return DoubleValue.zero;
+            return new DoubleValue(features[index]);
+        }
+
+        @Override
+        public Value get(int index) {
+            return new DoubleValue(features[index]);
+        }
+
+        @Override
+        public double getDouble(int index) {
+            return features[index];
+        }
+
+    }
+
+}
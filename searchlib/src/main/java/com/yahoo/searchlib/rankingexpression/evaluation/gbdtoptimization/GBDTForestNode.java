@@ -23,6 +23,9 @@ public class GBDTForestNode extends ExpressionNode {
         this.values=values;
     }
 
+    /** Returns a direct reference to the values of this. The returned array must not be modified. */
+    public final double[] values() { return values; }
+
     @Override
     public final Value evaluate(Context context) {
         int pc = 0;
@@ -35,6 +38,21 @@ public class GBDTForestNode extends ExpressionNode {
         return new DoubleValue(treeSum);
     }
 
+    /**
+     * Evaluates the forest encoded in the given values with the variable values given directly as an array
+     * indexed as in the context this was optimized for.
+     */
+    public static double evaluate(double[] values, double[] features) {
+        int pc = 0;
+        double treeSum = 0;
+        while (pc < values.length) {
+            int nextTree = (int)values[pc++];
+            treeSum += GBDTNode.evaluate(values, pc, features);
+            pc += nextTree;
+        }
+        return treeSum;
+    }
+
     /** Returns (optimized sum of condition trees) */
     public String toString(SerializationContext context, Deque<String> path, CompositeNode parent) {
         return "(optimized sum of condition trees of size " + (values.length*8) + " bytes)";
@@ -90,6 +90,48 @@ public final class GBDTNode extends ExpressionNode {
         }
     }
 
+    /**
+     * Evaluates the tree starting at the given offset with the variable values given directly as an array
+     * indexed as in the context this was optimized for.
+     * This must interpret the values exactly as {@link #evaluate(double[], int, Context)}.
+     */
+    public static double evaluate(double[] values, int startOffset, double[] features) {
+        int pc = startOffset;
+        while (true) {
+            double nextValue = values[pc++];
+            if (nextValue >= MAX_LEAF_VALUE) { // a condition node
+                int offset = (int)nextValue - MAX_LEAF_VALUE;
+                boolean comparisonIsTrue = false;
+                if (offset < MAX_VARIABLES) {
+                    comparisonIsTrue = features[offset]<values[pc++];
+                }
+                else if (offset < MAX_VARIABLES*2) {
+                    comparisonIsTrue = features[offset-MAX_VARIABLES]==values[pc++];
+                }
+                else { // offset<MAX_VARIABLES*3
+                    double testValue = features[offset-MAX_VARIABLES*2];
+                    int setValuesLeft = (int)values[pc++];
+                    while (setValuesLeft > 0) { // test each value in the set
+                        setValuesLeft--;
+                        if (testValue == values[pc++]) {
+                            comparisonIsTrue=true;
+                            break;
+                        }
+                    }
+                    pc += setValuesLeft; // jump to after the set
+                }
+
+                if (comparisonIsTrue)
+                    pc++; // true branch - skip the jump value
+                else
+                    pc += values[pc]; // false branch - jump
+            }
+            else { // a leaf
+                return nextValue;
+            }
+        }
+    }
+
     /** Returns "(optimized condition tree)" */
     @Override
     public String toString(SerializationContext context, Deque<String> path, CompositeNode parent) {
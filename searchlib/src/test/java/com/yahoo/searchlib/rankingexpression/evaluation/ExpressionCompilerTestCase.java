@@ -0,0 +1,94 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.io.IOUtils;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that compiled expressions evaluate to the same values as interpreted ones
+ */
+public class ExpressionCompilerTestCase {
+
+    private static final double tolerance = 0.000001;
+
+    @Test
+    public void testCompilation() throws ParseException {
+        assertCompiled("0.5");
+        assertCompiled("-a");
+        assertCompiled("a + b + c");
+        assertCompiled("2*3*4+3*4*5-4*200/10");
+        assertCompiled("a - b * c / 2 + a * a - c");
+        assertCompiled("(a + b) * (c - a)");
+        assertCompiled("nonexisting + a");
+        assertCompiled("max(a, b) + sqrt(c) + exp(-a) + pow(b, 2) + sigmoid(a)");
+        assertCompiled("if (a < b, 1, 2) + if (b == 2, 3, 4) + if (c >= a, 5, 6) + if (a ~= 1.0, 7, 8)");
+        assertCompiled("if (a, b, c) + if (a - 1, b, c)");
+        assertCompiled("if (b in [0, 2, 4], a, c) + if (a in [2, 4], a, c)");
+        assertCompiled("if (a < 2, if (b < 1, 0.1, if (c > 2, 0.2, 0.3)), 0.4) + if (c < 1, 0.5, 0.6)");
+        assertCompiled("if (\"a\" == \"a\", 1, 0)");
+    }
+
+    @Test
+    public void testTensorSubexpressionsAreInterpreted() throws ParseException {
+        assertCompiled("reduce(tensor(x[3])(x), sum) * a + b");
+        assertCompiled("if (reduce(tensor(x[2],y[3])(x+1==y), sum) == 2, a, b)");
+    }
+
+    @Test
+    public void testStringSetMembership() throws ParseException {
+        RankingExpression expression = new RankingExpression("if (s in [\"foo\", \"bar\"], a, b)");
+        ArrayContext context = new ArrayContext(expression);
+        CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+        context.put("a", 1d);
+        context.put("b", 2d);
+        context.put("s", new StringValue("bar"));
+        assertEquals(1, compiled.evaluate(context), tolerance);
+        context.put("s", new StringValue("baz"));
+        assertEquals(2, compiled.evaluate(context), tolerance);
+    }
+
+    @Test
+    public void testOptimizedForest() throws ParseException, IOException {
+        RankingExpression expression = new RankingExpression(IOUtils.readFile(new File("src/test/files/s-expression.vre")));
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression);
+        CompiledExpression compiledTrees = new ExpressionCompiler().compile(expression, context);
+        context.put("ORDER_IN_CLUSTER", 2.0);
+        context.put("GOOD_SYNTAX", 1.0);
+        context.put("TERM_CASE_4", 1.0);
+        context.put("LENGTH", 6.0);
+        double interpreted = expression.evaluate(context).asDouble();
+        assertEquals(interpreted, compiledTrees.evaluate(context), tolerance);
+
+        new ExpressionOptimizer().optimize(expression, context);
+        CompiledExpression compiledForest = new ExpressionCompiler().compile(expression, context);
+        assertEquals(interpreted, compiledForest.evaluate(context), tolerance);
+        assertEquals(-2.3450294999999994, compiledForest.evaluate(context), tolerance);
+    }
+
+    private void assertCompiled(String expressionString) throws ParseException {
+        RankingExpression expression = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression, true);
+        CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+        double[][] bindings = { { 1, 2, 3 }, { 2, 0, 0.5 }, { -1, 4, 2 } };
+        for (double[] binding : bindings) {
+            context.put("a", binding[0]);
+            context.put("b", binding[1]);
+            context.put("c", binding[2]);
+            double[] features = new double[context.size()];
+            for (String name : context.names())
+                features[context.getIndex(name)] = context.get(name).asDouble();
+
+            double expected = expression.evaluate(context).asDouble();
+            assertEquals(expressionString, expected, compiled.evaluate(context), tolerance);
+            assertEquals(expressionString, expected, compiled.evaluate(features), tolerance);
+        }
+    }
+
+}
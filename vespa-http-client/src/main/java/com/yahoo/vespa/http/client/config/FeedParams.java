@@ -52,6 +52,7 @@ public final class FeedParams {
         private boolean denyIfBusyV3 = true;
         private long maxSleepTimeMs = 3000;
         private boolean silentUpgrade = true;
+        private boolean dynamicMaxInFlightRequests = false;
 
         /**
          * Make server not throw 4xx/5xx for situations that are normal during upgrade as this can esily mask
@@ -67,6 +68,19 @@ public final class FeedParams {
             return this;
         }
 
+        /**
+         * Let each connection find its own limit on in-flight operations by measuring the throughput it gets,
+         * instead of using a fixed share of the max in-flight requests. The limit then never exceeds that share,
+         * which may be set high to leave the sizing to the client.
+         * @param dynamicMaxInFlightRequests true to size the in-flight window of each connection dynamically.
+         * @return this, for chaining
+         */
+        @Beta
+        public Builder setDynamicMaxInFlightRequests(boolean dynamicMaxInFlightRequests) {
+            this.dynamicMaxInFlightRequests = dynamicMaxInFlightRequests;
+            return this;
+        }
+
         /**
          * When throttling the load due to transient errors on gateway, what is the most time to wait between
          * requests per thread. Only active for V3 protocol.
@@ -231,7 +245,7 @@ public final class FeedParams {
             return new FeedParams(
                     dataFormat, serverTimeout, clientTimeout, route,
                     maxChunkSizeBytes, maxInFlightRequests, localQueueTimeOut, priority,
-                    denyIfBusyV3, maxSleepTimeMs, silentUpgrade);
+                    denyIfBusyV3, maxSleepTimeMs, silentUpgrade, dynamicMaxInFlightRequests);
         }
 
         public long getClientTimeout(TimeUnit unit) {
@@ -257,6 +271,10 @@ public final class FeedParams {
         public int getmaxInFlightRequests() {
             return maxInFlightRequests;
         }
+
+        public boolean getDynamicMaxInFlightRequests() {
+            return dynamicMaxInFlightRequests;
+        }
     }
 
     private final DataFormat dataFormat;
@@ -270,12 +288,12 @@ public final class FeedParams {
     private final boolean denyIfBusyV3;
     private final long maxSleepTimeMs;
     private final boolean silentUpgrade;
-
+    private final boolean dynamicMaxInFlightRequests;
 
     private FeedParams(DataFormat dataFormat, long serverTimeout, long clientTimeout, String route,
                        int maxChunkSizeBytes, final int maxInFlightRequests,
                        long localQueueTimeOut, String priority, boolean denyIfBusyV3, long maxSleepTimeMs,
-                       boolean silentUpgrade) {
+                       boolean silentUpgrade, boolean dynamicMaxInFlightRequests) {
         this.dataFormat = dataFormat;
         this.serverTimeoutMillis = serverTimeout;
         this.clientTimeoutMillis = clientTimeout;
@@ -287,6 +305,7 @@ public final class FeedParams {
         this.denyIfBusyV3 = denyIfBusyV3;
         this.maxSleepTimeMs = maxSleepTimeMs;
         this.silentUpgrade = silentUpgrade;
+        this.dynamicMaxInFlightRequests = dynamicMaxInFlightRequests;
     }
 
     public DataFormat getDataFormat() {
@@ -323,6 +342,10 @@ public final class FeedParams {
         return maxInFlightRequests;
     }
 
+    public boolean getDynamicMaxInFlightRequests() {
+        return dynamicMaxInFlightRequests;
+    }
+
     public long getLocalQueueTimeOut() {
         return localQueueTimeOut;
     }
@@ -32,6 +32,7 @@ public class ClusterConnection implements AutoCloseable {
     private final SessionParams.ErrorReporter errorReporter;
     private static JsonFactory jsonFactory = new JsonFactory();
     private static ObjectMapper objectMapper = new ObjectMapper();
+    private static final int minDynamicInFlightPerSession = 20;
 
     public ClusterConnection(
             OperationProcessor operationProcessor,
@@ -92,7 +93,7 @@ public class ClusterConnection implements AutoCloseable {
                         gatewayConnection,
                         clusterId,
                         feedParams.getMaxChunkSizeBytes(),
-                        maxInFlightPerSession,
+                        createInFlightWindow(feedParams, maxInFlightPerSession),
                         feedParams.getLocalQueueTimeOut(),
                         documentQueue,
                         connectionParams.isEnableV3Protocol() ? feedParams.getMaxSleepTimeMs() : 0);
@@ -101,6 +102,16 @@ public class ClusterConnection implements AutoCloseable {
         }
     }
 
+    private static DynamicInFlightWindow createInFlightWindow(
+            FeedParams feedParams, int maxInFlightPerSession) {
+        if (feedParams.getDynamicMaxInFlightRequests()) {
+            return new DynamicInFlightWindow(
+                    Math.min(minDynamicInFlightPerSession, maxInFlightPerSession), maxInFlightPerSession,
+                    System::currentTimeMillis);
+        }
+        return DynamicInFlightWindow.fixed(maxInFlightPerSession);
+    }
+
     public int getClusterId() {
         return clusterId;
     }
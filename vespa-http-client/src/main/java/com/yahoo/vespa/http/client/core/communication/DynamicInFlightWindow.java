@@ -0,0 +1,107 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.core.operationProcessor.IncompleteResultsThrottler;
+
+/**
+ * Decides how many operations a connection may have in flight, based on the throughput measured on it.
+ *
+ * The window grows while throughput grows with it, and backs off when throughput per in-flight operation drops,
+ * i.e., when the extra operations only wait in queues on the gateway or in the cluster. This is the same algorithm
+ * as the dynamic throttle policy of messagebus uses for its send window. If the minimum and maximum sizes are
+ * equal, the window is static.
+ *
+ * Not thread safe, the window is owned by the thread of its connection.
+ */
+public class DynamicInFlightWindow {
+
+    private static final double windowSizeBackOff = 0.9;
+    private static final double efficiencyThreshold = 1.0;
+    private static final double resizeRate = 3;
+
+    private final IncompleteResultsThrottler.Clock clock;
+    private final double minWindowSize;
+    private final double maxWindowSize;
+    private final double windowSizeIncrement;
+    private double windowSize;
+    private double localMaxThroughput = 0;
+    private long resizeTimeMs;
+    private int numSent = 0;
+    private int numOk = 0;
+
+    /**
+     * Creates a window which starts at its minimum size.
+     *
+     * @param minWindowSize the window never gets smaller than this
+     * @param maxWindowSize the window never gets larger than this
+     * @param clock the clock to measure throughput with
+     */
+    public DynamicInFlightWindow(int minWindowSize, int maxWindowSize, IncompleteResultsThrottler.Clock clock) {
+        if (minWindowSize < 1 || maxWindowSize < minWindowSize) {
+            throw new IllegalArgumentException("Illegal window size limits [" + minWindowSize + ", " + maxWindowSize + "]");
+        }
+        this.minWindowSize = minWindowSize;
+        this.maxWindowSize = maxWindowSize;
+        this.windowSizeIncrement = minWindowSize;
+        this.windowSize = minWindowSize;
+        this.clock = clock;
+        this.resizeTimeMs = clock.getTimeMillis();
+    }
+
+    /** Creates a window which is always of the given size. */
+    public static DynamicInFlightWindow fixed(int size) {
+        return new DynamicInFlightWindow(size, size, () -> 0L);
+    }
+
+    /** Returns the number of operations that may be in flight now. */
+    public int size() {
+        return (int) windowSize;
+    }
+
+    /** Registers that the given number of results were received, of which the given number were successful. */
+    public void resultsReceived(int numSuccessful) {
+        numOk += numSuccessful;
+    }
+
+    /** Registers that the given number of operations were sent, and resizes the window if enough were sent. */
+    public void operationsSent(int count) {
+        if (minWindowSize == maxWindowSize) {
+            return;
+        }
+        numSent += count;
+        if (numSent < windowSize * resizeRate) {
+            return;
+        }
+
+        long now = clock.getTimeMillis();
+        double elapsed = Math.max(1, now - resizeTimeMs);
+        resizeTimeMs = now;
+
+        double throughput = numOk / elapsed;
+        numSent = 0;
+        numOk = 0;
+
+        if (throughput > localMaxThroughput * 1.01) {
+            localMaxThroughput = throughput;
+            windowSize += windowSizeIncrement;
+        } else {
+            // scale throughput to be comparable to window size
+            double period = 1;
+            while (throughput > 0 && throughput * period / windowSize < 2) {
+                period *= 10;
+            }
+            while (throughput * period / windowSize > 2) {
+                period *= 0.1;
+            }
+            double efficiency = throughput * period / windowSize;
+            if (efficiency < efficiencyThreshold) {
+                windowSize = Math.min(windowSize * windowSizeBackOff, windowSize - 2 * windowSizeIncrement);
+                localMaxThroughput = 0;
+            } else {
+                windowSize += windowSizeIncrement;
+            }
+        }
+        windowSize = Math.max(minWindowSize, Math.min(maxWindowSize, windowSize));
+    }
+
+}
@@ -39,7 +39,7 @@ class IOThread implements Runnable, AutoCloseable {
     private final CountDownLatch running = new CountDownLatch(1);
     private final CountDownLatch stopSignal = new CountDownLatch(1);
     private final int maxChunkSizeBytes;
-    private final int maxInFlightRequests;
+    private final DynamicInFlightWindow inFlightWindow;
     private final long localQueueTimeOut;
     private final GatewayThrottler gatewayThrottler;
 
@@ -53,6 +53,7 @@ class IOThread implements Runnable, AutoCloseable {
     private final AtomicInteger pendingDocumentStatusCount = new AtomicInteger(0);
     private final AtomicInteger successfullHandshakes = new AtomicInteger(0);
     private final AtomicInteger lastGatewayProcessTimeMillis = new AtomicInteger(0);
+    private final AtomicInteger maxInFlightRequests = new AtomicInteger(0);
 
     IOThread(
             EndpointResultQueue endpointResultQueue,
@@ -63,13 +64,27 @@ class IOThread implements Runnable, AutoCloseable {
             long localQueueTimeOut,
             DocumentQueue documentQueue,
             long maxSleepTimeMs) {
+        this(endpointResultQueue, client, clusterId, maxChunkSizeBytes, DynamicInFlightWindow.fixed(maxInFlightRequests),
+             localQueueTimeOut, documentQueue, maxSleepTimeMs);
+    }
+
+    IOThread(
+            EndpointResultQueue endpointResultQueue,
+            GatewayConnection client,
+            int clusterId,
+            int maxChunkSizeBytes,
+            DynamicInFlightWindow inFlightWindow,
+            long localQueueTimeOut,
+            DocumentQueue documentQueue,
+            long maxSleepTimeMs) {
         this.documentQueue = documentQueue;
         this.endpoint = client.getEndpoint();
         this.client = client;
         this.resultQueue = endpointResultQueue;
         this.clusterId = clusterId;
         this.maxChunkSizeBytes = maxChunkSizeBytes;
-        this.maxInFlightRequests = maxInFlightRequests;
+        this.inFlightWindow = inFlightWindow;
+        this.maxInFlightRequests.set(inFlightWindow.size());
         this.gatewayThrottler = new GatewayThrottler(maxSleepTimeMs);
         thread = new Thread(this, "IOThread " + endpoint);
         thread.setDaemon(true);
@@ -91,6 +106,7 @@ class IOThread implements Runnable, AutoCloseable {
         public final int pendingDocumentStatusCount;
         public final int successfullHandshakes;
         public final int lastGatewayProcessTimeMillis;
+        public final int maxInFlightRequests;
 
         protected ConnectionStats(
                 final int wrongSessionDetectedCounter,
@@ -101,7 +117,8 @@ class IOThread implements Runnable, AutoCloseable {
                 final int statusReceivedCounter,
                 final int pendingDocumentStatusCount,
                 final int successfullHandshakes,
-                final int lastGatewayProcessTimeMillis) {
+                final int lastGatewayProcessTimeMillis,
+                final int maxInFlightRequests) {
             this.wrongSessionDetectedCounter = wrongSessionDetectedCounter;
             this.wrongVersionDetectedCounter = wrongVersionDetectedCounter;
             this.problemStatusCodeFromServerCounter = problemStatusCodeFromServerCounter;
@@ -111,6 +128,7 @@ class IOThread implements Runnable, AutoCloseable {
             this.pendingDocumentStatusCount = pendingDocumentStatusCount;
             this.successfullHandshakes = successfullHandshakes;
             this.lastGatewayProcessTimeMillis = lastGatewayProcessTimeMillis;
+            this.maxInFlightRequests = maxInFlightRequests;
         }
     }
 
@@ -127,7 +145,8 @@ class IOThread implements Runnable, AutoCloseable {
                 statusReceivedCounter.get(),
                 pendingDocumentStatusCount.get(),
                 successfullHandshakes.get(),
-                lastGatewayProcessTimeMillis.get());
+                lastGatewayProcessTimeMillis.get(),
+                maxInFlightRequests.get());
     }
 
     @Override
@@ -189,7 +208,7 @@ class IOThread implements Runnable, AutoCloseable {
         }
         int pendingSize = 1 + resultQueue.getPendingSize();
         // see if we can get more documents without blocking
-        while (chunkSizeBytes < maxChunkSizeBytes && pendingSize < maxInFlightRequests) {
+        while (chunkSizeBytes < maxChunkSizeBytes && pendingSize < inFlightWindow.size()) {
             drainFirstDocumentsInQueueIfOld();
             Document d = documentQueue.poll();
             if (d == null) {
@@ -236,9 +255,11 @@ class IOThread implements Runnable, AutoCloseable {
     private static class ProcessResponse {
         private final int transitiveErrorCount;
         private final int processResultsCount;
-        ProcessResponse(int transitiveErrorCount, int processResultsCount) {
+        private final int successCount;
+        ProcessResponse(int transitiveErrorCount, int processResultsCount, int successCount) {
             this.transitiveErrorCount = transitiveErrorCount;
             this.processResultsCount = processResultsCount;
+            this.successCount = successCount;
         }
     }
 
@@ -247,13 +268,16 @@ class IOThread implements Runnable, AutoCloseable {
                 EndPointResultFactory.createResult(endpoint, serverResponse);
         statusReceivedCounter.addAndGet(endpointResults.size());
         int transientErrors = 0;
+        int successes = 0;
         for (EndpointResult endpointResult : endpointResults) {
             if (endpointResult.getDetail().getResultType() == Result.ResultType.TRANSITIVE_ERROR) {
                 transientErrors++;
+            } else if (endpointResult.getDetail().getResultType() == Result.ResultType.OPERATION_EXECUTED) {
+                successes++;
             }
             resultQueue.resultReceived(endpointResult, clusterId);
         }
-        return new ProcessResponse(transientErrors, endpointResults.size());
+        return new ProcessResponse(transientErrors, endpointResults.size(), successes);
     }
 
     private ProcessResponse feedDocumentAndProcessResults(List<Document> docs)
@@ -264,6 +288,9 @@ class IOThread implements Runnable, AutoCloseable {
 
         ProcessResponse processResponse = processResponse(serverResponse);
         lastGatewayProcessTimeMillis.set((int) (System.currentTimeMillis() - startTime));
+        inFlightWindow.resultsReceived(processResponse.successCount);
+        inFlightWindow.operationsSent(docs.size());
+        maxInFlightRequests.set(inFlightWindow.size());
         return processResponse;
     }
 
@@ -271,6 +298,7 @@ class IOThread implements Runnable, AutoCloseable {
             throws ServerResponseException, IOException {
         final int pendingResultQueueSize = resultQueue.getPendingSize();
         pendingDocumentStatusCount.set(pendingResultQueueSize);
+        final int maxInFlightRequests = inFlightWindow.size();
 
         List<Document> nextDocsForFeeding = (pendingResultQueueSize > maxInFlightRequests)
               ? new ArrayList<>()       // The queue is full, will not send more documents.
@@ -280,7 +308,7 @@ class IOThread implements Runnable, AutoCloseable {
         if (nextDocsForFeeding.isEmpty() && pendingResultQueueSize == 0) {
             //we have no unfinished business with the server now.
             log.finest("No document awaiting feeding, not waiting for results.");
-            return new ProcessResponse(0, 0);
+            return new ProcessResponse(0, 0, 0);
         }
         log.finest("Awaiting " + pendingResultQueueSize + " results.");
         ProcessResponse processResponse = feedDocumentAndProcessResults(nextDocsForFeeding);
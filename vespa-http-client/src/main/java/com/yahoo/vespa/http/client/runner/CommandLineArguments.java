@@ -198,6 +198,7 @@ public class CommandLineArguments {
                                 .setLocalQueueTimeOut(timeoutArg * 1000)
                                 .setPriority(priorityArg)
                                 .setMaxChunkSizeBytes(maxChunkSizeBytes)
+                                .setDynamicMaxInFlightRequests(useDynamicThrottlingArg)
                                 .build()
                 )
                 .setConnectionParams(
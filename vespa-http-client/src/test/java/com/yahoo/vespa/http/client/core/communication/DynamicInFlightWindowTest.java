@@ -0,0 +1,60 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DynamicInFlightWindowTest {
+
+    private long timeMs = 0;
+
+    /**
+     * Simulates a cluster which completes at most capacity operations per millisecond, and which needs
+     * latencyMs milliseconds for each operation, and returns the window size after feeding for a while.
+     */
+    private int feed(DynamicInFlightWindow window, int capacity, int latencyMs) {
+        for (int i = 0; i < 5000; i++) {
+            int inFlight = window.size();
+            int ok = Math.min(inFlight, capacity * latencyMs);
+            timeMs += latencyMs;
+            window.resultsReceived(ok);
+            window.operationsSent(ok);
+        }
+        return window.size();
+    }
+
+    @Test
+    public void requireThatFixedWindowNeverChanges() {
+        DynamicInFlightWindow window = DynamicInFlightWindow.fixed(100);
+        assertEquals(100, window.size());
+        window.resultsReceived(1000);
+        window.operationsSent(1000);
+        assertEquals(100, window.size());
+    }
+
+    @Test
+    public void requireThatWindowGrowsTowardsCapacityOfCluster() {
+        DynamicInFlightWindow window = new DynamicInFlightWindow(20, 10000, () -> timeMs);
+        assertEquals(20, window.size());
+        int size = feed(window, 10, 50);
+        assertTrue("Window size " + size + " should be close to 500", size >= 400 && size <= 1000);
+    }
+
+    @Test
+    public void requireThatWindowStaysWithinLimits() {
+        DynamicInFlightWindow window = new DynamicInFlightWindow(20, 100, () -> timeMs);
+        assertEquals(100, feed(window, 1000, 10));
+
+        window = new DynamicInFlightWindow(20, 100, () -> timeMs);
+        window.operationsSent(1000); // no results at all
+        assertEquals(20, window.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatIllegalLimitsAreRejected() {
+        new DynamicInFlightWindow(100, 10, () -> timeMs);
+    }
+
+}
@@ -117,6 +117,7 @@ public class CommandLineArgumentsTest {
         assertThat(params.getFeedParams().getDataFormat(), is(FeedParams.DataFormat.JSON_UTF8));
         assertThat(params.getFeedParams().getLocalQueueTimeOut(), is(2345000L));
         assertThat(params.getFeedParams().getMaxInFlightRequests(), is(3456));
+        assertThat(params.getFeedParams().getDynamicMaxInFlightRequests(), is(true));
         assertThat(params.getFeedParams().getClientTimeout(TimeUnit.MILLISECONDS), is(2345000L));
     }
 
@@ -48,6 +48,9 @@ import java.util.zip.GZIPInputStream;
 public class FeedHandler extends LoggingRequestHandler {
 
     private final ExecutorService workers = Executors.newCachedThreadPool(ThreadFactoryFactory.getThreadFactory("feedhandler"));
+    // Shared by all feeders, so decoding scales with the cores of the container rather than the number of clients
+    private final ExecutorService decoders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                                          ThreadFactoryFactory.getThreadFactory("feedhandler.decoder"));
     private final DocumentTypeManager docTypeManager;
     private final Map<String, ClientState> clients;
     private final ScheduledThreadPoolExecutor cron;
@@ -250,7 +253,8 @@ public class FeedHandler extends LoggingRequestHandler {
                 this,
                 metric,
                 feedReplyHandler,
-                localHostname);
+                localHostname,
+                decoders);
     }
 
     private Tuple2<String, Boolean> sessionId(HttpRequest request) {
@@ -315,6 +319,7 @@ public class FeedHandler extends LoggingRequestHandler {
     private void internalDestroy() {
         super.destroy();
         workers.shutdown();
+        decoders.shutdown();
         cron.shutdown();
         synchronized (clients) {
             for (ClientState client : clients.values()) {
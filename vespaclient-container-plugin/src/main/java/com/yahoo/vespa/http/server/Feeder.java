@@ -35,11 +35,19 @@ import com.yahoo.vespaxmlparser.FeedReader;
 import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
 import com.yahoo.vespaxmlparser.VespaXMLFeedReader.Operation;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -49,6 +57,10 @@ import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
 /**
  * Read documents from client, and send them through message bus.
  *
+ * If given an executor for decoding, the feeder only splits the stream into operation frames, and leaves decoding
+ * of the frames to the executor. A bounded number of frames are decoded ahead of the one being sent, and messages are
+ * sent in stream order, so a blocked send stops reading from the client.
+ *
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
 public class Feeder implements Runnable {
@@ -73,6 +85,12 @@ public class Feeder implements Runnable {
     protected final boolean sessionIdWasGeneratedJustNow;
     private final CountDownLatch requestReceived = new CountDownLatch(1);
     private final FeedReaderFactory feedReaderFactory;
+    private final Executor decoders;
+    private final Deque<Future<Tuple2<String, Message>>> decoding = new ArrayDeque<>();
+    private boolean endOfStream = false;
+
+    /** The maximum number of operations to decode ahead of the one being sent. */
+    static final int maxPendingDecodes = 64;
 
     public Feeder(InputStream requestInputStream,
                   FeedReaderFactory feedReaderFactory,
@@ -84,8 +102,28 @@ public class Feeder implements Runnable {
                   SessionCache sessionCache,
                   FeedHandler handler, Metric metric, ReplyHandler feedReplyHandler,
                   String localHostname) throws Exception {
+        this(requestInputStream, feedReaderFactory, docTypeManager, operations, storedState, settings, clientId,
+             sessionIdWasGeneratedJustNow, sessionParams, sessionCache, handler, metric, feedReplyHandler,
+             localHostname, null);
+    }
+
+    /**
+     * @param decoders the executor to decode operations in, or null to decode them in the feeding thread
+     */
+    public Feeder(InputStream requestInputStream,
+                  FeedReaderFactory feedReaderFactory,
+                  DocumentTypeManager docTypeManager,
+                  BlockingQueue<OperationStatus> operations,
+                  ClientState storedState,
+                  FeederSettings settings,
+                  String clientId, boolean sessionIdWasGeneratedJustNow, SourceSessionParams sessionParams,
+                  SessionCache sessionCache,
+                  FeedHandler handler, Metric metric, ReplyHandler feedReplyHandler,
+                  String localHostname,
+                  Executor decoders) throws Exception {
         super();
         this.feedReaderFactory = feedReaderFactory;
+        this.decoders = decoders;
         if (storedState == null) {
             if (!sessionIdWasGeneratedJustNow) {
                 // We do not have a stored state, BUT the session ID came in with the request.
@@ -204,39 +242,21 @@ public class Feeder implements Runnable {
     }
 
     void feed() throws InterruptedException {
-        while (true) {
-            Result result;
-            String operationId;
-            try {
-                operationId = getNextOperationId();
-            } catch (IOException ioe) {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
-                }
-                break;
-            }
-
-            //noinspection StringEquality
-            if (operationId == EOF) {
-                break;
-            }
-
-            Tuple2<String, Message> msg;
-            try {
-                msg = getNextMessage(operationId);
-                setRoute(msg);
-            } catch (Exception e) {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, Exceptions.toMessageString(e), e);
-                }
-                //noinspection StringEquality
-                if (operationId != null) {  //v1 always returns null, all others return something useful, or throw an exception above
-                    msg = newErrorMessage(operationId, e);
-                } else {
-                    break;
-                }
+        try {
+            feedMessages();
+        } finally {
+            // operations decoded after one which could not be sent are dropped, as if they were never read
+            for (Future<Tuple2<String, Message>> pending : decoding) {
+                pending.cancel(false);
             }
+            decoding.clear();
+        }
+    }
 
+    private void feedMessages() throws InterruptedException {
+        while (true) {
+            Result result;
+            Tuple2<String, Message> msg = (decoders == null) ? readNextMessage() : decodeNextMessage();
             if (msg == null) {
                 break;
             }
@@ -285,6 +305,103 @@ public class Feeder implements Runnable {
         }
     }
 
+    private Tuple2<String, Message> readNextMessage() {
+        String operationId;
+        try {
+            operationId = getNextOperationId();
+        } catch (IOException ioe) {
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
+            }
+            return null;
+        }
+
+        //noinspection StringEquality
+        if (operationId == EOF) {
+            return null;
+        }
+
+        try {
+            Tuple2<String, Message> msg = getNextMessage(operationId);
+            setRoute(msg);
+            return msg;
+        } catch (Exception e) {
+            return toErrorMessage(operationId, e);
+        }
+    }
+
+    /**
+     * Reads operation frames from the stream and hands them to the decoders until enough are in progress, and
+     * returns the oldest decoded message, or null at the end of the feed.
+     */
+    private Tuple2<String, Message> decodeNextMessage() throws InterruptedException {
+        while ( ! endOfStream && decoding.size() < maxPendingDecodes
+                && (decoding.isEmpty() || ! decoding.peekFirst().isDone())) {
+            String operationId;
+            try {
+                operationId = getNextOperationId();
+            } catch (IOException ioe) {
+                if (log.isLoggable(LogLevel.DEBUG)) {
+                    log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
+                }
+                endOfStream = true;
+                break;
+            }
+
+            //noinspection StringEquality
+            if (operationId == EOF) {
+                endOfStream = true;
+                break;
+            }
+
+            byte[] frame;
+            try {
+                frame = readFrame();
+            } catch (Exception e) {
+                decoding.addLast(CompletableFuture.completedFuture(toErrorMessage(operationId, e)));
+                continue;
+            }
+            decoding.addLast(CompletableFuture.supplyAsync(() -> decodeMessage(operationId, frame), decoders));
+        }
+
+        Future<Tuple2<String, Message>> next = decoding.pollFirst();
+        if (next == null) {
+            return null;
+        }
+        try {
+            return next.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unexpected failure while decoding an operation", e.getCause());
+        }
+    }
+
+    private Tuple2<String, Message> decodeMessage(String operationId, byte[] frame) {
+        try {
+            VespaXMLFeedReader.Operation op = new VespaXMLFeedReader.Operation();
+            try (InputStream frameInputStream = new ByteArrayInputStream(frame)) {
+                FeedReader reader = feedReaderFactory.createReader(frameInputStream, docTypeManager, settings.dataFormat);
+                reader.read(op);
+            }
+            Tuple2<String, Message> msg = toMessage(op, operationId);
+            setRoute(msg);
+            return msg;
+        } catch (Exception e) {
+            return toErrorMessage(operationId, e);
+        }
+    }
+
+    private Tuple2<String, Message> toErrorMessage(String operationId, Exception e) {
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.log(LogLevel.DEBUG, Exceptions.toMessageString(e), e);
+        }
+        //noinspection StringEquality
+        if (operationId != null) {  //v1 always returns null, all others return something useful, or throw an exception above
+            return newErrorMessage(operationId, e);
+        } else {
+            return null;
+        }
+    }
+
     private Tuple2<String, Message> newErrorMessage(String operationId, Exception e) {
         Message m = new FeedErrorMessage(operationId);
         Tuple2<String, Message> msg = new Tuple2<>(operationId, m);
@@ -328,10 +445,12 @@ public class Feeder implements Runnable {
 
     private Tuple2<String, Message> getNextMessage(String operationId) throws Exception {
         VespaXMLFeedReader.Operation op = new VespaXMLFeedReader.Operation();
-        Tuple2<String, Message> msg;
-
         getNextOperation(op);
+        return toMessage(op, operationId);
+    }
 
+    private Tuple2<String, Message> toMessage(VespaXMLFeedReader.Operation op, String operationId) {
+        Tuple2<String, Message> msg;
         switch (op.getType()) {
             case DOCUMENT:
                 msg = newPutMessage(op, operationId);
@@ -383,6 +502,12 @@ public class Feeder implements Runnable {
         }
     }
 
+    private byte[] readFrame() throws IOException {
+        byte[] frame = new byte[readByteLength()];
+        new DataInputStream(requestInputStream).readFully(frame);
+        return frame;
+    }
+
     protected String getNextOperationId() throws IOException {
         return readOperationId();
     }
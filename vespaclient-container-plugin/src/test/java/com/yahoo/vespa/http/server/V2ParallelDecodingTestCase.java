@@ -0,0 +1,205 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.HttpResponse;
+import com.yahoo.container.jdisc.messagebus.SessionCache;
+import com.yahoo.container.logging.AccessLog;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.config.DocumentmanagerConfig;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.References;
+import com.yahoo.jdisc.http.HttpRequest.Method;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.shared.SharedMessageBus;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.text.Utf8;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.OperationStatus;
+import com.yahoo.vespaxmlparser.FeedReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that operations decoded in parallel are sent in the order they were fed.
+ */
+public class V2ParallelDecodingTestCase {
+
+    private static final int numOperations = 200;
+
+    LessConfiguredHandler handler;
+    ExecutorService workers;
+    ExecutorService decoders;
+    final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        workers = Executors.newCachedThreadPool();
+        decoders = Executors.newFixedThreadPool(8);
+        handler = new LessConfiguredHandler(workers);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        handler.destroy();
+        workers.shutdown();
+        decoders.shutdown();
+    }
+
+    private class LessConfiguredHandler extends FeedHandler {
+
+        public LessConfiguredHandler(Executor executor) throws Exception {
+            super(executor, null, null, new DummyMetric(), AccessLog.voidAccessLog(), null, MetricReceiver.nullImplementation);
+        }
+
+        @Override
+        protected Feeder createFeeder(HttpRequest request, InputStream requestInputStream,
+                                      BlockingQueue<OperationStatus> operations, String clientId,
+                                      boolean sessionIdWasGeneratedJustNow, int protocolVersion)
+                throws Exception {
+            return new LessConfiguredFeeder(requestInputStream, operations,
+                    popClient(clientId), new FeederSettings(request), clientId, sessionIdWasGeneratedJustNow,
+                    sourceSessionParams(request), null, this, this.feedReplyHandler, "");
+        }
+
+        @Override
+        protected DocumentTypeManager createDocumentManager(DocumentmanagerConfig documentManagerConfig) {
+            return null;
+        }
+    }
+
+    private class MockSharedSession extends SharedSourceSession {
+
+        public MockSharedSession(SourceSessionParams params) {
+            super(new SharedMessageBus(new MessageBus(new MockNetwork(), new MessageBusParams())), params);
+        }
+
+        @Override
+        public Result sendMessageBlocking(Message msg) throws InterruptedException {
+            return sendMessage(msg);
+        }
+
+        @Override
+        public Result sendMessage(Message msg) {
+            ReplyHandler handler = msg.popHandler();
+            if (msg instanceof PutDocumentMessage) {
+                sent.add(((PutDocumentMessage) msg).getDocumentId().toString());
+            } else {
+                sent.add("error");
+            }
+            handler.handleReply(new MockReply(msg.getContext()));
+            return Result.ACCEPTED;
+        }
+    }
+
+    /** Reads a document id from the whole operation, taking longer for the earlier operations. */
+    private static class FrameReaderFactory extends FeedReaderFactory {
+
+        @Override
+        public FeedReader createReader(InputStream inputStream, DocumentTypeManager docTypeManager,
+                                       FeedParams.DataFormat dataFormat) {
+            if ( ! (inputStream instanceof ByteArrayInputStream)) {
+                throw new IllegalStateException("Expected the operation to be read into a frame");
+            }
+            return operation -> {
+                ByteArrayOutputStream frame = new ByteArrayOutputStream();
+                for (int b = inputStream.read(); b != -1; b = inputStream.read()) {
+                    frame.write(b);
+                }
+                String id = Utf8.toString(frame.toByteArray());
+                if (id.equals("garbage")) {
+                    throw new IllegalArgumentException("Could not parse operation");
+                }
+                Thread.sleep((numOperations - Integer.parseInt(id.substring(id.lastIndexOf("doc") + 3))) / 20);
+                operation.setDocument(new Document(new DocumentType("banana"), new DocumentId(id)));
+            };
+        }
+    }
+
+    private class LessConfiguredFeeder extends Feeder {
+
+        public LessConfiguredFeeder(InputStream stream,
+                                    BlockingQueue<OperationStatus> operations,
+                                    ClientState storedState, FeederSettings settings,
+                                    String clientId, boolean sessionIdWasGeneratedJustNow, SourceSessionParams sessionParams,
+                                    SessionCache sessionCache, FeedHandler handler, ReplyHandler feedReplyHandler,
+                                    String localHostname) throws Exception {
+            super(stream, new FrameReaderFactory(), null, operations, storedState, settings, clientId, sessionIdWasGeneratedJustNow,
+                  sessionParams, sessionCache, handler, new DummyMetric(), feedReplyHandler, localHostname, decoders);
+        }
+
+        protected ReferencedResource<SharedSourceSession> retainSession(
+                SourceSessionParams sessionParams, SessionCache sessionCache) {
+            final SharedSourceSession session = new MockSharedSession(sessionParams);
+            return new ReferencedResource<>(session, References.fromResource(session));
+        }
+    }
+
+    private static String frame(String operationId, String operation) {
+        return operationId + " " + Integer.toHexString(Utf8.toBytes(operation).length) + "\n" + operation;
+    }
+
+    private HttpResponse feed(String sessionId, String feed) throws IOException {
+        HttpRequest request = HttpRequest.createTestRequest("http://localhost:19020/reserved-for-internal-use/feedapi",
+                                                            Method.POST, new ByteArrayInputStream(Utf8.toBytes(feed)));
+        request.getJDiscRequest().headers().add(Headers.VERSION, "2");
+        request.getJDiscRequest().headers().add(Headers.DRAIN, "true");
+        if (sessionId != null) {
+            request.getJDiscRequest().headers().add(Headers.SESSION_ID, sessionId);
+        }
+        HttpResponse response = handler.handle(request);
+        response.render(new ByteArrayOutputStream());
+        return response;
+    }
+
+    @Test
+    public void requireThatOperationsAreSentInFeedOrder() throws IOException {
+        String sessionId = feed(null, "").headers().getFirst(Headers.SESSION_ID);
+
+        StringBuilder feed = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < numOperations; ++i) {
+            String id = "id:banana:banana::doc" + i;
+            if (i == numOperations / 2) {
+                feed.append(frame(id, "garbage"));
+                expected.add("error");
+            } else {
+                feed.append(frame(id, id));
+                expected.add(id);
+            }
+        }
+        feed(sessionId, feed.toString());
+
+        assertTrue(numOperations > Feeder.maxPendingDecodes);
+        assertEquals(expected, sent);
+    }
+
+}
@@ -90,7 +90,7 @@ public final class FeedResponse extends HttpResponse implements SharedSender.Res
 
     public String prettyPrint(Message m) {
         if (m instanceof PutDocumentMessage) {
-            return "PUT[" + ((PutDocumentMessage)m).getDocumentPut().getDocument().getId() + "] ";
+            return "PUT[" + ((PutDocumentMessage)m).getDocumentId() + "] ";
         }
         if (m instanceof RemoveDocumentMessage) {
             return "REMOVE[" + ((RemoveDocumentMessage)m).getDocumentId() + "] ";
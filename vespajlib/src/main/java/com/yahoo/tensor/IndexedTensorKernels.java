@@ -0,0 +1,306 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ScalarFunctions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Implementations of tensor functions over indexed tensors which work directly on the value arrays
+ * of the tensors, without creating cell or address objects.
+ *
+ * Each operation first computes a plan containing the size of each dimension of the space to iterate over
+ * and the stride of each of the operands in that dimension (0 if the operand does not have that dimension).
+ * The space is then traversed with the last dimension in the innermost loop, which is a tight loop over primitive
+ * arrays the JIT compiler can unroll and vectorize when strides are 0 or 1.
+ */
+@Beta
+public class IndexedTensorKernels {
+
+    private IndexedTensorKernels() {}
+
+    /**
+     * Returns the join of two indexed tensors. Dimensions present in both tensors get the smallest size
+     * of the two.
+     *
+     * @param joinedType the type of the result, which must contain exactly the dimensions of a and b
+     */
+    public static IndexedTensor join(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+        Plan plan = new Plan(joinedType, a, b);
+        double[] result = new double[plan.totalSize()];
+        if (result.length > 0)
+            join(plan, a.values(), b.values(), result, combinator);
+        return new IndexedTensor(joinedType, plan.sizes(), result);
+    }
+
+    /**
+     * Returns an indexed tensor reduced over the dimensions which are not present in the given type.
+     * The argument tensor must be non-empty.
+     *
+     * @param reducedType the type of the result, which must contain a subset of the dimensions of the argument
+     */
+    public static IndexedTensor reduce(IndexedTensor argument, TensorType reducedType, Reduce.Aggregator aggregator) {
+        Plan plan = new Plan(argument.type(), argument);
+        DimensionSizes reducedSizes = plan.sizesOf(reducedType);
+        plan.addOperand(reducedType, reducedSizes);
+        double[] values = argument.values();
+        double[] result = new double[reducedSizes.totalSize()];
+        int reducedCellsPerResult = values.length / result.length;
+
+        switch (aggregator) {
+            case avg :
+                reduceSum(plan, values, result);
+                for (int i = 0; i < result.length; i++)
+                    result[i] /= reducedCellsPerResult;
+                break;
+            case count :
+                Arrays.fill(result, reducedCellsPerResult);
+                break;
+            case prod :
+                Arrays.fill(result, 1.0);
+                reduce(plan, values, result, ScalarFunctions.multiply());
+                break;
+            case sum :
+                reduceSum(plan, values, result);
+                break;
+            case max :
+                Arrays.fill(result, Double.NEGATIVE_INFINITY);
+                reduce(plan, values, result, Math::max);
+                break;
+            case min :
+                Arrays.fill(result, Double.MAX_VALUE);
+                reduce(plan, values, result, Math::min);
+                break;
+            default: throw new UnsupportedOperationException("Aggregator " + aggregator + " is not implemented");
+        }
+        return new IndexedTensor(reducedType, reducedSizes, result);
+    }
+
+    /**
+     * Returns the sum over the given dimensions of the product of two indexed tensors, without creating the
+     * product tensor. This is the computation done by e.g dot products and matrix multiplication.
+     *
+     * @param a the first factor, must be non-empty
+     * @param b the second factor, must be non-empty
+     * @param joinedType the type of the product of a and b
+     * @param resultType the type of the result: The joined type without the dimensions to sum over
+     */
+    public static IndexedTensor multiplyAndSum(IndexedTensor a, IndexedTensor b, TensorType joinedType, TensorType resultType) {
+        Plan plan = new Plan(joinedType, a, b);
+        DimensionSizes resultSizes = plan.sizesOf(resultType);
+        plan.addOperand(resultType, resultSizes);
+        double[] result = new double[resultSizes.totalSize()];
+        if (plan.totalSize() > 0)
+            multiplyAndSum(plan, a.values(), b.values(), result);
+        return new IndexedTensor(resultType, resultSizes, result);
+    }
+
+    private static void join(Plan plan, double[] a, double[] b, double[] result, DoubleBinaryOperator combinator) {
+        int n = plan.dimensions();
+        int[] sizes = plan.sizes;
+        int[] aStrides = plan.strides[0], bStrides = plan.strides[1];
+        int inner = n - 1;
+        int length = n == 0 ? 1 : sizes[inner];
+        int aStride = n == 0 ? 0 : aStrides[inner];
+        int bStride = n == 0 ? 0 : bStrides[inner];
+        boolean multiply = combinator instanceof ScalarFunctions.Multiplication;
+        boolean add = combinator instanceof ScalarFunctions.Addition;
+
+        int[] indexes = new int[n];
+        int aOffset = 0, bOffset = 0, r = 0;
+        do {
+            if (multiply) {
+                for (int i = 0, ai = aOffset, bi = bOffset; i < length; i++, ai += aStride, bi += bStride)
+                    result[r++] = a[ai] * b[bi];
+            }
+            else if (add) {
+                for (int i = 0, ai = aOffset, bi = bOffset; i < length; i++, ai += aStride, bi += bStride)
+                    result[r++] = a[ai] + b[bi];
+            }
+            else {
+                for (int i = 0, ai = aOffset, bi = bOffset; i < length; i++, ai += aStride, bi += bStride)
+                    result[r++] = combinator.applyAsDouble(a[ai], b[bi]);
+            }
+
+            // advance to the next row
+            int d = inner - 1;
+            for (; d >= 0; d--) {
+                aOffset += aStrides[d];
+                bOffset += bStrides[d];
+                if (++indexes[d] < sizes[d]) break;
+                aOffset -= aStrides[d] * sizes[d];
+                bOffset -= bStrides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+            if (d < 0) return;
+        } while (true);
+    }
+
+    /** Adds each value of the argument to the result cell it is reduced into */
+    private static void reduceSum(Plan plan, double[] argument, double[] result) {
+        int n = plan.dimensions();
+        int[] sizes = plan.sizes;
+        int[] resultStrides = plan.strides[1];
+        int inner = n - 1;
+        int length = n == 0 ? 1 : sizes[inner];
+        int resultStride = n == 0 ? 0 : resultStrides[inner];
+
+        int[] indexes = new int[n];
+        int resultOffset = 0, v = 0;
+        do {
+            if (resultStride == 0) { // summing over the innermost dimension
+                double sum = 0;
+                for (int i = 0; i < length; i++)
+                    sum += argument[v++];
+                result[resultOffset] += sum;
+            }
+            else {
+                for (int i = 0, ri = resultOffset; i < length; i++, ri += resultStride)
+                    result[ri] += argument[v++];
+            }
+
+            int d = inner - 1;
+            for (; d >= 0; d--) {
+                resultOffset += resultStrides[d];
+                if (++indexes[d] < sizes[d]) break;
+                resultOffset -= resultStrides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+            if (d < 0) return;
+        } while (true);
+    }
+
+    /** Combines each value of the argument into the result cell it is reduced into */
+    private static void reduce(Plan plan, double[] argument, double[] result, DoubleBinaryOperator aggregator) {
+        int n = plan.dimensions();
+        int[] sizes = plan.sizes;
+        int[] resultStrides = plan.strides[1];
+        int inner = n - 1;
+        int length = n == 0 ? 1 : sizes[inner];
+        int resultStride = n == 0 ? 0 : resultStrides[inner];
+
+        int[] indexes = new int[n];
+        int resultOffset = 0, v = 0;
+        do {
+            for (int i = 0, ri = resultOffset; i < length; i++, ri += resultStride)
+                result[ri] = aggregator.applyAsDouble(result[ri], argument[v++]);
+
+            int d = inner - 1;
+            for (; d >= 0; d--) {
+                resultOffset += resultStrides[d];
+                if (++indexes[d] < sizes[d]) break;
+                resultOffset -= resultStrides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+            if (d < 0) return;
+        } while (true);
+    }
+
+    private static void multiplyAndSum(Plan plan, double[] a, double[] b, double[] result) {
+        int n = plan.dimensions();
+        int[] sizes = plan.sizes;
+        int[] aStrides = plan.strides[0], bStrides = plan.strides[1], resultStrides = plan.strides[2];
+        int inner = n - 1;
+        int length = n == 0 ? 1 : sizes[inner];
+        int aStride = n == 0 ? 0 : aStrides[inner];
+        int bStride = n == 0 ? 0 : bStrides[inner];
+        int resultStride = n == 0 ? 0 : resultStrides[inner];
+
+        int[] indexes = new int[n];
+        int aOffset = 0, bOffset = 0, resultOffset = 0;
+        do {
+            if (resultStride == 0) { // dot product along the innermost dimension
+                double sum = 0;
+                for (int i = 0, ai = aOffset, bi = bOffset; i < length; i++, ai += aStride, bi += bStride)
+                    sum += a[ai] * b[bi];
+                result[resultOffset] += sum;
+            }
+            else {
+                for (int i = 0, ai = aOffset, bi = bOffset, ri = resultOffset; i < length;
+                     i++, ai += aStride, bi += bStride, ri += resultStride)
+                    result[ri] += a[ai] * b[bi];
+            }
+
+            int d = inner - 1;
+            for (; d >= 0; d--) {
+                aOffset += aStrides[d];
+                bOffset += bStrides[d];
+                resultOffset += resultStrides[d];
+                if (++indexes[d] < sizes[d]) break;
+                aOffset -= aStrides[d] * sizes[d];
+                bOffset -= bStrides[d] * sizes[d];
+                resultOffset -= resultStrides[d] * sizes[d];
+                indexes[d] = 0;
+            }
+            if (d < 0) return;
+        } while (true);
+    }
+
+    /**
+     * The space to iterate over, and the strides of each operand in that space.
+     * The space has the dimensions of the given type, where each dimension gets the smallest size
+     * it has in the operands having it.
+     */
+    private static final class Plan {
+
+        private final TensorType type;
+        private final int[] sizes;
+        private int[][] strides;
+
+        Plan(TensorType type, IndexedTensor ... operands) {
+            this.type = type;
+            this.sizes = new int[type.dimensions().size()];
+            Arrays.fill(sizes, Integer.MAX_VALUE);
+            this.strides = new int[0][];
+            for (IndexedTensor operand : operands) {
+                List<TensorType.Dimension> dimensions = operand.type().dimensions();
+                for (int i = 0; i < dimensions.size(); i++) {
+                    int index = type.indexOfDimension(dimensions.get(i).name()).get();
+                    sizes[index] = Math.min(sizes[index], operand.dimensionSizes().size(i));
+                }
+            }
+            for (IndexedTensor operand : operands)
+                addOperand(operand.type(), operand.dimensionSizes());
+        }
+
+        /** Adds an operand having the given type and sizes. It must have a subset of the dimensions of this */
+        void addOperand(TensorType operandType, DimensionSizes operandSizes) {
+            int[] operandStrides = new int[sizes.length];
+            int stride = 1;
+            for (int i = operandType.dimensions().size() - 1; i >= 0; i--) {
+                operandStrides[type.indexOfDimension(operandType.dimensions().get(i).name()).get()] = stride;
+                stride *= operandSizes.size(i);
+            }
+            strides = Arrays.copyOf(strides, strides.length + 1);
+            strides[strides.length - 1] = operandStrides;
+        }
+
+        /** Returns the sizes of the dimensions of the given type in this space */
+        DimensionSizes sizesOf(TensorType subtype) {
+            DimensionSizes.Builder builder = new DimensionSizes.Builder(subtype.dimensions().size());
+            for (int i = 0; i < subtype.dimensions().size(); i++) {
+                Optional<Integer> index = type.indexOfDimension(subtype.dimensions().get(i).name());
+                builder.set(i, sizes[index.get()]);
+            }
+            return builder.build();
+        }
+
+        DimensionSizes sizes() { return sizesOf(type); }
+
+        int dimensions() { return sizes.length; }
+
+        int totalSize() {
+            int totalSize = 1;
+            for (int size : sizes)
+                totalSize *= size;
+            return totalSize;
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@ import com.yahoo.tensor.functions.Random;
 import com.yahoo.tensor.functions.Range;
 import com.yahoo.tensor.functions.Reduce;
 import com.yahoo.tensor.functions.Rename;
+import com.yahoo.tensor.functions.ScalarFunctions;
 import com.yahoo.tensor.functions.Softmax;
 import com.yahoo.tensor.functions.XwPlusB;
 
@@ -160,7 +161,7 @@ public interface Tensor {
 
     // ----------------- Composite tensor functions mapped to primitives here on the fly
 
-    default Tensor multiply(Tensor argument) { return join(argument, (a, b) -> (a * b )); }
+    default Tensor multiply(Tensor argument) { return join(argument, ScalarFunctions.multiply()); }
     default Tensor add(Tensor argument) { return join(argument, (a, b) -> (a + b )); }
     default Tensor divide(Tensor argument) { return join(argument, (a, b) -> (a / b )); }
     default Tensor subtract(Tensor argument) { return join(argument, (a, b) -> (a - b )); }
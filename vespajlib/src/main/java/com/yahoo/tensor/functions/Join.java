@@ -3,10 +3,8 @@ package com.yahoo.tensor.functions;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
-import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
-import com.yahoo.tensor.PartialAddress;
+import com.yahoo.tensor.IndexedTensorKernels;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -15,13 +13,10 @@ import com.yahoo.tensor.evaluation.EvaluationContext;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
@@ -72,13 +67,16 @@ public class Join extends PrimitiveTensorFunction {
 
     @Override
     public Tensor evaluate(EvaluationContext context) {
-        Tensor a = argumentA.evaluate(context);
-        Tensor b = argumentB.evaluate(context);
+        return evaluate(argumentA.evaluate(context), argumentB.evaluate(context));
+    }
+
+    /** Returns the join of the given argument tensors using the combinator of this */
+    Tensor evaluate(Tensor a, Tensor b) {
         TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
 
         // Choose join algorithm
-        if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
-            return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType);
+        if (a instanceof IndexedTensor && b instanceof IndexedTensor)
+            return IndexedTensorKernels.join((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
         else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
             return singleSpaceJoin(a, b, joinedType);
         else if (a.type().dimensions().containsAll(b.type().dimensions()))
@@ -89,20 +87,6 @@ public class Join extends PrimitiveTensorFunction {
             return generalJoin(a, b, joinedType);
     }
     
-    private boolean hasSingleIndexedDimension(Tensor tensor) {
-        return tensor.type().dimensions().size() == 1 && tensor.type().dimensions().get(0).isIndexed();
-    }
-    
-    private Tensor indexedVectorJoin(IndexedTensor a, IndexedTensor b, TensorType type) {
-        int joinedLength = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
-        Iterator<Double> aIterator = a.valueIterator();
-        Iterator<Double> bIterator = b.valueIterator();
-        IndexedTensor.Builder builder = IndexedTensor.Builder.of(type, new DimensionSizes.Builder(1).set(0, joinedLength).build());
-        for (int i = 0; i < joinedLength; i++)
-            builder.cell(combinator.applyAsDouble(aIterator.next(), bIterator.next()), i);
-        return builder.build();
-    }
-
     /** When both tensors have the same dimensions, at most one cell matches a cell in the other tensor */
     private Tensor singleSpaceJoin(Tensor a, Tensor b, TensorType joinedType) {
         Tensor.Builder builder = Tensor.Builder.of(joinedType);
@@ -117,65 +101,7 @@ public class Join extends PrimitiveTensorFunction {
     
     /** Join a tensor into a superspace */
     private Tensor subspaceJoin(Tensor subspace, Tensor superspace, TensorType joinedType, boolean reversedArgumentOrder) {
-        if (subspace instanceof IndexedTensor && superspace instanceof IndexedTensor)
-            return indexedSubspaceJoin((IndexedTensor) subspace, (IndexedTensor) superspace, joinedType, reversedArgumentOrder);
-        else
-            return generalSubspaceJoin(subspace, superspace, joinedType, reversedArgumentOrder);
-    }
-
-    private Tensor indexedSubspaceJoin(IndexedTensor subspace, IndexedTensor superspace, TensorType joinedType, boolean reversedArgumentOrder) {
-        if (subspace.size() == 0 || superspace.size() == 0) // special case empty here to avoid doing it when finding sizes
-            return Tensor.Builder.of(joinedType, new DimensionSizes.Builder(joinedType.dimensions().size()).build()).build();
-        
-        DimensionSizes joinedSizes = joinedSize(joinedType, subspace, superspace);
-
-        IndexedTensor.Builder builder = (IndexedTensor.Builder)Tensor.Builder.of(joinedType, joinedSizes);
-
-        // Find dimensions which are only in the supertype
-        Set<String> superDimensionNames = new HashSet<>(superspace.type().dimensionNames());
-        superDimensionNames.removeAll(subspace.type().dimensionNames());
-        
-        for (Iterator<IndexedTensor.SubspaceIterator> i = superspace.subspaceIterator(superDimensionNames, joinedSizes); i.hasNext(); ) {
-            IndexedTensor.SubspaceIterator subspaceInSuper = i.next();
-            joinSubspaces(subspace.valueIterator(), subspace.size(),
-                          subspaceInSuper, subspaceInSuper.size(),
-                          reversedArgumentOrder, builder);
-        }
-        
-        return builder.build();
-    }
-
-    private void joinSubspaces(Iterator<Double> subspace, int subspaceSize,
-                               Iterator<Tensor.Cell> superspace, int superspaceSize,
-                               boolean reversedArgumentOrder, IndexedTensor.Builder builder) {
-        int joinedLength = Math.min(subspaceSize, superspaceSize);
-        if (reversedArgumentOrder) {
-            for (int i = 0; i < joinedLength; i++) {
-                Tensor.Cell supercell = superspace.next();
-                builder.cell(supercell, combinator.applyAsDouble(supercell.getValue(), subspace.next()));
-            }
-        } else {
-            for (int i = 0; i < joinedLength; i++) {
-                Tensor.Cell supercell = superspace.next();
-                builder.cell(supercell, combinator.applyAsDouble(subspace.next(), supercell.getValue()));
-            }
-        }
-    }
-
-    private DimensionSizes joinedSize(TensorType joinedType, IndexedTensor a, IndexedTensor b) {
-        DimensionSizes.Builder builder = new DimensionSizes.Builder(joinedType.dimensions().size());
-        for (int i = 0; i < builder.dimensions(); i++) {
-            String dimensionName = joinedType.dimensions().get(i).name();
-            Optional<Integer> aIndex = a.type().indexOfDimension(dimensionName);
-            Optional<Integer> bIndex = b.type().indexOfDimension(dimensionName);
-            if (aIndex.isPresent() && bIndex.isPresent())
-                builder.set(i, Math.min(b.dimensionSizes().size(bIndex.get()), a.dimensionSizes().size(aIndex.get())));
-            else if (aIndex.isPresent())
-                builder.set(i, a.dimensionSizes().size(aIndex.get()));
-            else if (bIndex.isPresent())
-                builder.set(i, b.dimensionSizes().size(bIndex.get()));
-        }
-        return builder.build();
+        return generalSubspaceJoin(subspace, superspace, joinedType, reversedArgumentOrder);
     }
 
     private Tensor generalSubspaceJoin(Tensor subspace, Tensor superspace, TensorType joinedType, boolean reversedArgumentOrder) {
@@ -210,68 +136,9 @@ public class Join extends PrimitiveTensorFunction {
 
     /** Slow join which works for any two tensors */
     private Tensor generalJoin(Tensor a, Tensor b, TensorType joinedType) {
-        if (a instanceof IndexedTensor && b instanceof IndexedTensor)
-            return indexedGeneralJoin((IndexedTensor) a, (IndexedTensor) b, joinedType);
-        else
-            return mappedHashJoin(a, b, joinedType);
+        return mappedHashJoin(a, b, joinedType);
     }
 
-    private Tensor indexedGeneralJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType) {
-        DimensionSizes joinedSize = joinedSize(joinedType, a, b);
-        Tensor.Builder builder = Tensor.Builder.of(joinedType, joinedSize);
-        int[] aToIndexes = mapIndexes(a.type(), joinedType);
-        int[] bToIndexes = mapIndexes(b.type(), joinedType);
-        joinTo(a, b, joinedType, joinedSize, aToIndexes, bToIndexes, false, builder);
-        joinTo(b, a, joinedType, joinedSize, bToIndexes, aToIndexes, true, builder);
-        return builder.build();
-    }
-
-    private void joinTo(IndexedTensor a, IndexedTensor b, TensorType joinedType, DimensionSizes joinedSize,
-                        int[] aToIndexes, int[] bToIndexes, boolean reversedOrder, Tensor.Builder builder) {
-        Set<String> sharedDimensions = Sets.intersection(a.type().dimensionNames(), b.type().dimensionNames());
-        Set<String> dimensionsOnlyInA = Sets.difference(a.type().dimensionNames(), b.type().dimensionNames());
-
-        DimensionSizes aIterateSize = joinedSizeOf(a.type(), joinedType, joinedSize);
-        DimensionSizes bIterateSize = joinedSizeOf(b.type(), joinedType, joinedSize);
-
-        // for each combination of dimensions only in a
-        for (Iterator<IndexedTensor.SubspaceIterator> ia = a.subspaceIterator(dimensionsOnlyInA, aIterateSize); ia.hasNext(); ) { 
-            IndexedTensor.SubspaceIterator aSubspace = ia.next();
-            // for each combination of dimensions in a which is also in b
-            while (aSubspace.hasNext()) {
-                Tensor.Cell aCell = aSubspace.next();
-                PartialAddress matchingBCells = partialAddress(a.type(), aSubspace.address(), sharedDimensions);
-                // for each matching combination of dimensions ony in b
-                for (IndexedTensor.SubspaceIterator bSubspace = b.cellIterator(matchingBCells, bIterateSize); bSubspace.hasNext(); ) {
-                    Tensor.Cell bCell = bSubspace.next();
-                    TensorAddress joinedAddress = joinAddresses(aCell.getKey(), aToIndexes, bCell.getKey(), bToIndexes, joinedType);
-                    double joinedValue = reversedOrder ? combinator.applyAsDouble(bCell.getValue(), aCell.getValue())
-                                                       : combinator.applyAsDouble(aCell.getValue(), bCell.getValue());
-                    builder.cell(joinedAddress, joinedValue);
-                }
-            }
-        }
-    }
-    
-    private PartialAddress partialAddress(TensorType addressType, TensorAddress address, Set<String> retainDimensions) {
-        PartialAddress.Builder builder = new PartialAddress.Builder(retainDimensions.size());
-        for (int i = 0; i < addressType.dimensions().size(); i++)
-            if (retainDimensions.contains(addressType.dimensions().get(i).name()))
-                builder.add(addressType.dimensions().get(i).name(), address.intLabel(i));
-        return builder.build();
-    }
-    
-    /** Returns the sizes from the joined sizes which are present in the type argument */
-    private DimensionSizes joinedSizeOf(TensorType type, TensorType joinedType, DimensionSizes joinedSizes) {
-        DimensionSizes.Builder builder = new DimensionSizes.Builder(type.dimensions().size());
-        int dimensionIndex = 0;
-        for (int i = 0; i < joinedType.dimensions().size(); i++) {
-            if (type.dimensionNames().contains(joinedType.dimensions().get(i).name()))
-                builder.set(dimensionIndex++, joinedSizes.size(i));
-        }
-        return builder.build();
-    }
-    
     private Tensor mappedGeneralJoin(Tensor a, Tensor b, TensorType joinedType) {
         int[] aToIndexes = mapIndexes(a.type(), joinedType);
         int[] bToIndexes = mapIndexes(b.type(), joinedType);
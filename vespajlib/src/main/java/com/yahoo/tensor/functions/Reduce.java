@@ -4,6 +4,7 @@ package com.yahoo.tensor.functions;
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
 import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.IndexedTensorKernels;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -92,24 +93,41 @@ public class Reduce extends PrimitiveTensorFunction {
 
     @Override
     public Tensor evaluate(EvaluationContext context) {
-        Tensor argument = this.argument.evaluate(context);
+        if (aggregator == Aggregator.sum && isMultiplication(argument))
+            return evaluateSumOfProduct((Join)argument, context);
+        return evaluate(this.argument.evaluate(context));
+    }
+
+    private boolean isMultiplication(TensorFunction function) {
+        return function instanceof Join && ((Join)function).combinator() instanceof ScalarFunctions.Multiplication;
+    }
+
+    /** Sums a product of indexed tensors without creating the product tensor, if possible */
+    private Tensor evaluateSumOfProduct(Join product, EvaluationContext context) {
+        Tensor a = product.argumentA().evaluate(context);
+        Tensor b = product.argumentB().evaluate(context);
+        if (a instanceof IndexedTensor && b instanceof IndexedTensor && a.size() > 0 && b.size() > 0) {
+            TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
+            if (dimensions.isEmpty() || joinedType.dimensionNames().containsAll(dimensions))
+                return IndexedTensorKernels.multiplyAndSum((IndexedTensor)a, (IndexedTensor)b,
+                                                           joinedType, reducedType(joinedType));
+        }
+        return evaluate(product.evaluate(a, b));
+    }
+
+    private Tensor evaluate(Tensor argument) {
         if ( ! dimensions.isEmpty() && ! argument.type().dimensionNames().containsAll(dimensions))
             throw new IllegalArgumentException("Cannot reduce " + argument + " over dimensions " + 
                                                dimensions + ": Not all those dimensions are present in this tensor");
 
+        if (argument instanceof IndexedTensor && argument.size() > 0)
+            return IndexedTensorKernels.reduce((IndexedTensor)argument, reducedType(argument.type()), aggregator);
+
         // Special case: Reduce all
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument);
-            else
-                return reduceAllGeneral(argument);
+            return reduceAllGeneral(argument);
         
-        // Reduce type
-        TensorType.Builder builder = new TensorType.Builder();
-        for (TensorType.Dimension dimension : argument.type().dimensions())
-            if ( ! dimensions.contains(dimension.name())) // keep
-                builder.dimension(dimension);
-        TensorType reducedType = builder.build();
+        TensorType reducedType = reducedType(argument.type());
         
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
@@ -126,6 +144,17 @@ public class Reduce extends PrimitiveTensorFunction {
         return reducedBuilder.build();
     }
     
+    /** Returns the type resulting from reducing the given type by this */
+    private TensorType reducedType(TensorType argumentType) {
+        if (dimensions.isEmpty()) return TensorType.empty; // reduce all
+
+        TensorType.Builder builder = new TensorType.Builder();
+        for (TensorType.Dimension dimension : argumentType.dimensions())
+            if ( ! dimensions.contains(dimension.name())) // keep
+                builder.dimension(dimension);
+        return builder.build();
+    }
+
     private TensorAddress reduceDimensions(TensorAddress address, TensorType argumentType, TensorType reducedType) {
         Set<Integer> indexesToRemove = new HashSet<>();
         for (String dimensionToRemove : this.dimensions)
@@ -146,13 +175,6 @@ public class Reduce extends PrimitiveTensorFunction {
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private Tensor reduceIndexedVector(IndexedTensor argument) {
-        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
-            valueAggregator.aggregate(argument.get(i));
-        return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
-    }
-
     private static abstract class ValueAggregator {
         
         private static ValueAggregator ofType(Aggregator aggregator) {
@@ -244,7 +266,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     private static class MaxAggregator extends ValueAggregator {
 
-        private double maxValue = Double.MIN_VALUE;
+        private double maxValue = Double.NEGATIVE_INFINITY;
 
         @Override
         public void aggregate(double value) {
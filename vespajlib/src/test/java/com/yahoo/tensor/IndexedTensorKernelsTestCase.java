@@ -0,0 +1,103 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.functions.ConstantTensor;
+import com.yahoo.tensor.functions.Join;
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.XwPlusB;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.Assert.assertEquals;
+
+public class IndexedTensorKernelsTestCase {
+
+    private final Tensor matrix = Tensor.from("tensor(i[2],j[3]):{{i:0,j:0}:1,{i:0,j:1}:2,{i:0,j:2}:3," +
+                                                                 "{i:1,j:0}:4,{i:1,j:1}:5,{i:1,j:2}:6}");
+    private final Tensor weights = Tensor.from("tensor(j[3],k[2]):{{j:0,k:0}:1,{j:0,k:1}:2,{j:1,k:0}:3," +
+                                                                  "{j:1,k:1}:4,{j:2,k:0}:5,{j:2,k:1}:6}");
+
+    @Test
+    public void testJoin() {
+        Tensor vector = Tensor.from("tensor(j[2]):{{j:0}:10,{j:1}:20}");
+        assertEquals(Tensor.from("tensor(i[2],j[2]):{{i:0,j:0}:11,{i:0,j:1}:22,{i:1,j:0}:14,{i:1,j:1}:25}"),
+                     matrix.add(vector));
+        assertEquals(Tensor.from("tensor(i[2],j[2]):{{i:0,j:0}:-9,{i:0,j:1}:-18,{i:1,j:0}:-6,{i:1,j:1}:-15}"),
+                     matrix.join(vector, (a, b) -> a - b));
+        assertEquals(Tensor.from("tensor(i[2],j[3]):{{i:0,j:0}:2,{i:0,j:1}:4,{i:0,j:2}:6,{i:1,j:0}:8,{i:1,j:1}:10,{i:1,j:2}:12}"),
+                     matrix.multiply(Tensor.from("{{}:2}")));
+    }
+
+    @Test
+    public void testReduce() {
+        assertEquals(Tensor.from("tensor(i[2]):{{i:0}:6,{i:1}:15}"),
+                     matrix.sum(Collections.singletonList("j")));
+        assertEquals(Tensor.from("tensor(j[3]):{{j:0}:4,{j:1}:10,{j:2}:18}"),
+                     matrix.reduce(Reduce.Aggregator.prod, Collections.singletonList("i")));
+        assertEquals(Tensor.from("tensor(j[3]):{{j:0}:2.5,{j:1}:3.5,{j:2}:4.5}"),
+                     matrix.reduce(Reduce.Aggregator.avg, Collections.singletonList("i")));
+        assertEquals(Tensor.from("tensor(i[2]):{{i:0}:3,{i:1}:3}"),
+                     matrix.reduce(Reduce.Aggregator.count, Collections.singletonList("j")));
+        assertEquals(Tensor.from("tensor(i[2]):{{i:0}:1,{i:1}:4}"),
+                     matrix.reduce(Reduce.Aggregator.min, Collections.singletonList("j")));
+        assertEquals(Tensor.from("{{}:21}"), matrix.sum(Collections.emptyList()));
+    }
+
+    @Test
+    public void testReduceMaxOfNegativeValues() {
+        Tensor negative = matrix.multiply(Tensor.from("{{}:-1}"));
+        assertEquals(Tensor.from("tensor(i[2]):{{i:0}:-1,{i:1}:-4}"),
+                     negative.reduce(Reduce.Aggregator.max, Collections.singletonList("j")));
+        assertEquals(Tensor.from("{{}:-1}"), negative.reduce(Reduce.Aggregator.max, Collections.emptyList()));
+        assertEquals(Tensor.from("{{}:-1}"),
+                     Tensor.from("{{x:a}:-1,{x:b}:-2}").reduce(Reduce.Aggregator.max, Collections.emptyList()));
+    }
+
+    @Test
+    public void testMultiplyAndSum() {
+        assertEquals(Tensor.from("tensor(i[2],k[2]):{{i:0,k:0}:22,{i:0,k:1}:28,{i:1,k:0}:49,{i:1,k:1}:64}"),
+                     matrix.matmul(weights, "j"));
+        assertEquals(Tensor.from("{{}:163}"), matrix.multiply(weights).sum(Collections.emptyList()));
+
+        Tensor x = Tensor.from("tensor(j[3]):{{j:0}:1,{j:1}:1,{j:2}:1}");
+        Tensor bias = Tensor.from("tensor(k[2]):{{k:0}:100,{k:1}:200}");
+        assertEquals(Tensor.from("tensor(k[2]):{{k:0}:109,{k:1}:212}"),
+                     new XwPlusB(new ConstantTensor(x), new ConstantTensor(weights), new ConstantTensor(bias), "j").evaluate());
+    }
+
+    @Test
+    public void testSumOfMultiplyIsEvaluatedWithoutComputingTheProduct() {
+        CombinatorRecordingTensor recorder = new CombinatorRecordingTensor((IndexedTensor)matrix);
+        recorder.multiply(weights);
+
+        Join product = new Join(new ConstantTensor(matrix), new ConstantTensor(weights), recorder.combinator) {
+            @Override
+            public Tensor evaluate(EvaluationContext context) {
+                throw new AssertionError("The product tensor should not be computed");
+            }
+        };
+        assertEquals(Tensor.from("tensor(i[2],k[2]):{{i:0,k:0}:22,{i:0,k:1}:28,{i:1,k:0}:49,{i:1,k:1}:64}"),
+                     new Reduce(product, Reduce.Aggregator.sum, "j").evaluate());
+    }
+
+    /** Records the combinator it is joined with */
+    private static class CombinatorRecordingTensor extends IndexedTensor {
+
+        DoubleBinaryOperator combinator;
+
+        CombinatorRecordingTensor(IndexedTensor tensor) {
+            super(tensor.type(), tensor.dimensionSizes(), tensor.values());
+        }
+
+        @Override
+        public Tensor join(Tensor argument, DoubleBinaryOperator combinator) {
+            this.combinator = combinator;
+            return this;
+        }
+
+    }
+
+}
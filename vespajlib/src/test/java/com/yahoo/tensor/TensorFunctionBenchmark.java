@@ -6,6 +6,7 @@ import com.yahoo.tensor.evaluation.VariableTensor;
 import com.yahoo.tensor.functions.ConstantTensor;
 import com.yahoo.tensor.functions.Join;
 import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ScalarFunctions;
 import com.yahoo.tensor.functions.TensorFunction;
 
 import java.util.*;
@@ -50,7 +51,7 @@ public class TensorFunctionBenchmark {
     private double dotProduct(Tensor tensor, List<Tensor> tensors) {
         double largest = Double.MIN_VALUE;
         TensorFunction dotProductFunction = new Reduce(new Join(new ConstantTensor(tensor), 
-                                                                new VariableTensor("argument"), (a, b) -> a * b), 
+                                                                new VariableTensor("argument"), ScalarFunctions.multiply()), 
                                                        Reduce.Aggregator.sum).toPrimitive();
         MapEvaluationContext context = new MapEvaluationContext();
         